@@ -1,17 +1,19 @@
 package org.angularjs.codeInsight.metadata
 
-import com.google.gson.Gson
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.util.Key
-import com.intellij.openapi.vfs.VfsUtil
+import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileWithId
+import com.intellij.openapi.vfs.newvfs.FileAttribute
 import com.intellij.psi.util.CachedValueProvider
 import com.intellij.util.CachedValueImpl
+import java.io.IOException
 
 object AngularMetadataLoader {
-  private val GSON = Gson()
   private val LOG = Logger.getInstance(AngularMetadataLoader::class.java)
   private val KEY = Key.create<CachedValueImpl<AngularMetadata>>("angular.metadata.value")
+  private val ATTRIBUTE = FileAttribute("angular.metadata.declarations", 1, false)
 
   fun load(file: VirtualFile): AngularMetadata {
     var cachedValue = file.getUserData(KEY)
@@ -24,127 +26,85 @@ object AngularMetadataLoader {
   }
 
   private fun doLoad(file: VirtualFile, visited: MutableSet<VirtualFile>): AngularMetadata {
-    val text = VfsUtil.loadText(file)
     val classes = mutableListOf<AngularClass>()
-    try {
-      val json = GSON.fromJson<Any>(text, Any::class.java)
-      if (json is Map<*, *>) {
-        classes.addAll(loadMetadata(file, visited, json))
-      }
-      if (json is ArrayList<*> && json.size > 0) {
-        val metadata = json[0]
-        if (metadata is Map<*, *>) {
-          classes.addAll(loadMetadata(file, visited, metadata))
-        }
-      }
-    }
-    catch (e: Exception) {
-      LOG.error("Error loading " + file.path, e)
-    }
-    return AngularMetadata(classes.toTypedArray())
-  }
-
-  private fun loadMetadata(file: VirtualFile, visited: MutableSet<VirtualFile>, json: Map<*, *>): List<AngularClass> {
-    val classes = mutableListOf<AngularClass>()
-
-    val metadata = json["metadata"]
-    if (metadata is Map<*, *>) {
-      for (clazz in metadata) {
-        if (clazz.key is String && clazz.value is Map<*, *>) {
-          val parsed = parseClass(file, visited, classes, clazz.key as String, clazz.value as Map<*, *>)
-          if (parsed != null) {
-            classes.add(parsed)
-          }
-        }
-      }
-    }
-
-    return classes
-  }
-
-  private fun parseClass(file: VirtualFile, visited: MutableSet<VirtualFile>, classes: List<AngularClass>, key: String, value: Map<*, *>): AngularClass? {
-    if (value["__symbolic"] != "class") return null
-    val members = value["members"]
-    val inputs = mutableListOf<AngularField>()
-    val outputs = mutableListOf<AngularField>()
-    if (members is Map<*, *>) {
-      for (member in members) {
-        if (member.key is String && member.value is ArrayList<*>) {
-          val declarations = (member.value as ArrayList<*>)
-          if (declarations.size < 1) continue
-
-          val name = member.key as String
-          if (findDecorator(declarations[0], "Input") != null) {
-            inputs.add(AngularField(name))
-          }
-          if (findDecorator(declarations[0], "Output") != null) {
-            outputs.add(AngularField(name))
-          }
-        }
-      }
-    }
-    val extends = value["extends"]
-    if (extends is Map<*, *>) {
-      val name = extends["name"]
-      val module = extends["module"]
-      if (name is String) {
+    for (declaration in loadDeclarations(file)) {
+      val inputs = declaration.inputs.mapTo(mutableListOf()) { AngularField(it) }
+      val outputs = declaration.outputs.mapTo(mutableListOf()) { AngularField(it) }
+      val superName = declaration.extendsName
+      if (superName != null) {
         var superClass: AngularClass? = null
-        if (module is String) {
+        val module = declaration.extendsModule
+        if (module != null) {
           val superFile = file.parent.findFileByRelativePath(module + ".metadata.json")
           if (superFile != null) {
             val superMetadata = load(superFile)
             visited.add(superFile)
-            superClass = superMetadata.findClass(name)
+            superClass = superMetadata.findClass(superName)
           }
         } else {
-          superClass = classes.find { it.name == name}
+          superClass = classes.find { it.name == superName }
         }
         if (superClass != null) {
           inputs.addAll(superClass.inputs)
           outputs.addAll(superClass.outputs)
         }
       }
-    }
-    val decorator = findDecorator(value, "Component") ?: findDecorator(value, "Directive")
-    if (decorator is Map<*, *>) {
-      val arguments = decorator["arguments"]
-      if (arguments is ArrayList<*> && arguments.size > 0 && arguments[0] is Map<*, *>) {
-        val argumentsMap = arguments[0] as Map<*, *>
-        val selector = argumentsMap["selector"]
-
-        if (selector is String) {
-          parseFieldsFromDecorator(argumentsMap, inputs, "inputs")
-          parseFieldsFromDecorator(argumentsMap, outputs, "outputs")
-          return AngularDirective(key, inputs.toTypedArray(), outputs.toTypedArray(), selector)
-        }
+      val selector = declaration.selector
+      if (selector != null) {
+        declaration.decoratorInputs.mapTo(inputs) { AngularField(it) }
+        declaration.decoratorOutputs.mapTo(outputs) { AngularField(it) }
+        classes.add(AngularDirective(declaration.name, inputs.toTypedArray(), outputs.toTypedArray(), selector))
+      } else {
+        classes.add(AngularClass(declaration.name, inputs.toTypedArray(), outputs.toTypedArray()))
       }
     }
-    return AngularClass(key, inputs.toTypedArray(), outputs.toTypedArray())
+    return AngularMetadata(classes.toTypedArray())
   }
 
-  private fun parseFieldsFromDecorator(decorator: Map<*, *>,
-                                       fields: MutableList<AngularField>,
-                                       name: String) {
-    val fieldList = decorator[name]
-    if (fieldList is ArrayList<*>) {
-      fieldList.filterIsInstance<String>().mapTo(fields) { AngularField(it) }
+  /**
+   * Declarations of a file are kept in a VFS attribute, so big library metadata is only parsed again when the file changes.
+   */
+  private fun loadDeclarations(file: VirtualFile): List<AngularClassDeclaration> {
+    val cached = readCachedDeclarations(file)
+    if (cached != null) return cached
+
+    val declarations = try {
+      AngularMetadataReader.read(VfsUtilCore.loadText(file))
     }
+    catch (e: Exception) {
+      LOG.error("Error loading " + file.path, e)
+      return emptyList()
+    }
+    writeCachedDeclarations(file, declarations)
+    return declarations
   }
 
-  private fun findDecorator(obj: Any, decoratorName: String): Map<*, *>? {
-    if (obj is Map<*, *>) {
-      val decorators = obj["decorators"]
-      if (decorators is ArrayList<*>) {
-        for (decorator in decorators) {
-          if (decorator is Map<*, *>) {
-            val expression = decorator["expression"]
-            if (expression is Map<*, *> && expression["name"] == decoratorName) {
-              return decorator
-            }
-          }
+  private fun readCachedDeclarations(file: VirtualFile): List<AngularClassDeclaration>? {
+    if (file !is VirtualFileWithId) return null
+    try {
+      ATTRIBUTE.readAttribute(file)?.use { input ->
+        if (input.readLong() == file.timeStamp && input.readLong() == file.length) {
+          return AngularMetadataReader.load(input)
         }
       }
     }
+    catch (e: IOException) {
+      LOG.debug(e)
+    }
     return null
   }
+
+  private fun writeCachedDeclarations(file: VirtualFile, declarations: List<AngularClassDeclaration>) {
+    if (file !is VirtualFileWithId) return
+    try {
+      ATTRIBUTE.writeAttribute(file).use { output ->
+        output.writeLong(file.timeStamp)
+        output.writeLong(file.length)
+        AngularMetadataReader.save(output, declarations)
+      }
+    }
+    catch (e: IOException) {
+      LOG.debug(e)
+    }
+  }
 }
@@ -0,0 +1,289 @@
+package org.angularjs.codeInsight.metadata
+
+import com.google.gson.stream.JsonToken
+import org.jetbrains.io.JsonReaderEx
+import java.io.DataInput
+import java.io.DataOutput
+
+/**
+ * A class of a `.metadata.json` file, with super classes not yet resolved.
+ */
+data class AngularClassDeclaration(val name: String,
+                                   val inputs: List<String>,
+                                   val outputs: List<String>,
+                                   val extendsName: String?,
+                                   val extendsModule: String?,
+                                   val selector: String?,
+                                   val decoratorInputs: List<String>,
+                                   val decoratorOutputs: List<String>)
+
+/**
+ * Streams a `.metadata.json` file and keeps only what [AngularMetadataLoader] needs: classes with their inputs, outputs,
+ * super class and directive selector.
+ */
+object AngularMetadataReader {
+  fun read(text: CharSequence): List<AngularClassDeclaration> {
+    JsonReaderEx(text).use { reader ->
+      when (reader.peek()) {
+        JsonToken.BEGIN_OBJECT -> return readModule(reader)
+        JsonToken.BEGIN_ARRAY -> {
+          reader.beginArray()
+          if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+            return readModule(reader)
+          }
+        }
+        else -> {}
+      }
+    }
+    return emptyList()
+  }
+
+  fun save(out: DataOutput, classes: List<AngularClassDeclaration>) {
+    out.writeInt(classes.size)
+    for (clazz in classes) {
+      out.writeUTF(clazz.name)
+      writeStrings(out, clazz.inputs)
+      writeStrings(out, clazz.outputs)
+      writeNullable(out, clazz.extendsName)
+      writeNullable(out, clazz.extendsModule)
+      writeNullable(out, clazz.selector)
+      writeStrings(out, clazz.decoratorInputs)
+      writeStrings(out, clazz.decoratorOutputs)
+    }
+  }
+
+  fun load(input: DataInput): List<AngularClassDeclaration> {
+    return List(input.readInt()) {
+      AngularClassDeclaration(input.readUTF(), readStrings(input), readStrings(input), readNullable(input), readNullable(input),
+                              readNullable(input), readStrings(input), readStrings(input))
+    }
+  }
+
+  private fun readModule(reader: JsonReaderEx): List<AngularClassDeclaration> {
+    val classes = mutableListOf<AngularClassDeclaration>()
+    reader.beginObject()
+    while (reader.hasNext()) {
+      if (reader.nextName() == "metadata" && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        reader.beginObject()
+        while (reader.hasNext()) {
+          val name = reader.nextName()
+          if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            readClass(reader, name)?.let { classes.add(it) }
+          }
+          else {
+            reader.skipValue()
+          }
+        }
+        reader.endObject()
+      }
+      else {
+        reader.skipValue()
+      }
+    }
+    reader.endObject()
+    return classes
+  }
+
+  private fun readClass(reader: JsonReaderEx, name: String): AngularClassDeclaration? {
+    var isClass = false
+    val inputs = mutableListOf<String>()
+    val outputs = mutableListOf<String>()
+    var extendsName: String? = null
+    var extendsModule: String? = null
+    var decorators: List<Decorator> = emptyList()
+
+    reader.beginObject()
+    while (reader.hasNext()) {
+      when (reader.nextName()) {
+        "__symbolic" -> isClass = nextStringOrNull(reader) == "class"
+        "members" -> readMembers(reader, inputs, outputs)
+        "extends" -> {
+          if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject()
+            while (reader.hasNext()) {
+              when (reader.nextName()) {
+                "name" -> extendsName = nextStringOrNull(reader)
+                "module" -> extendsModule = nextStringOrNull(reader)
+                else -> reader.skipValue()
+              }
+            }
+            reader.endObject()
+          }
+          else {
+            reader.skipValue()
+          }
+        }
+        "decorators" -> decorators = readDecorators(reader)
+        else -> reader.skipValue()
+      }
+    }
+    reader.endObject()
+    if (!isClass) return null
+
+    val decorator = decorators.firstOrNull { it.name == "Component" } ?: decorators.firstOrNull { it.name == "Directive" }
+    val directive = decorator?.takeIf { it.selector != null }
+    return AngularClassDeclaration(name, inputs, outputs, extendsName, extendsModule, directive?.selector,
+                                   directive?.inputs ?: emptyList(), directive?.outputs ?: emptyList())
+  }
+
+  private fun readMembers(reader: JsonReaderEx, inputs: MutableList<String>, outputs: MutableList<String>) {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue()
+      return
+    }
+    reader.beginObject()
+    while (reader.hasNext()) {
+      val name = reader.nextName()
+      if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+        reader.skipValue()
+        continue
+      }
+      reader.beginArray()
+      if (reader.hasNext()) {
+        // only the first declaration of a member is considered
+        val decorators = readDeclarationDecorators(reader)
+        if (decorators.any { it.name == "Input" }) inputs.add(name)
+        if (decorators.any { it.name == "Output" }) outputs.add(name)
+      }
+      while (reader.hasNext()) {
+        reader.skipValue()
+      }
+      reader.endArray()
+    }
+    reader.endObject()
+  }
+
+  private fun readDeclarationDecorators(reader: JsonReaderEx): List<Decorator> {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue()
+      return emptyList()
+    }
+    var decorators: List<Decorator> = emptyList()
+    reader.beginObject()
+    while (reader.hasNext()) {
+      if (reader.nextName() == "decorators") {
+        decorators = readDecorators(reader)
+      }
+      else {
+        reader.skipValue()
+      }
+    }
+    reader.endObject()
+    return decorators
+  }
+
+  private fun readDecorators(reader: JsonReaderEx): List<Decorator> {
+    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+      reader.skipValue()
+      return emptyList()
+    }
+    val decorators = mutableListOf<Decorator>()
+    reader.beginArray()
+    while (reader.hasNext()) {
+      if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+        decorators.add(readDecorator(reader))
+      }
+      else {
+        reader.skipValue()
+      }
+    }
+    reader.endArray()
+    return decorators
+  }
+
+  private fun readDecorator(reader: JsonReaderEx): Decorator {
+    val decorator = Decorator()
+    reader.beginObject()
+    while (reader.hasNext()) {
+      when (reader.nextName()) {
+        "expression" -> {
+          if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject()
+            while (reader.hasNext()) {
+              if (reader.nextName() == "name") {
+                decorator.name = nextStringOrNull(reader)
+              }
+              else {
+                reader.skipValue()
+              }
+            }
+            reader.endObject()
+          }
+          else {
+            reader.skipValue()
+          }
+        }
+        "arguments" -> {
+          if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray()
+            if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+              readDecoratorArgument(reader, decorator)
+            }
+            while (reader.hasNext()) {
+              reader.skipValue()
+            }
+            reader.endArray()
+          }
+          else {
+            reader.skipValue()
+          }
+        }
+        else -> reader.skipValue()
+      }
+    }
+    reader.endObject()
+    return decorator
+  }
+
+  private fun readDecoratorArgument(reader: JsonReaderEx, decorator: Decorator) {
+    reader.beginObject()
+    while (reader.hasNext()) {
+      when (reader.nextName()) {
+        "selector" -> decorator.selector = nextStringOrNull(reader)
+        "inputs" -> readStringArray(reader, decorator.inputs)
+        "outputs" -> readStringArray(reader, decorator.outputs)
+        else -> reader.skipValue()
+      }
+    }
+    reader.endObject()
+  }
+
+  private fun readStringArray(reader: JsonReaderEx, result: MutableList<String>) {
+    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+      reader.skipValue()
+      return
+    }
+    reader.beginArray()
+    while (reader.hasNext()) {
+      nextStringOrNull(reader)?.let { result.add(it) }
+    }
+    reader.endArray()
+  }
+
+  private fun nextStringOrNull(reader: JsonReaderEx): String? {
+    if (reader.peek() == JsonToken.STRING) return reader.nextString()
+    reader.skipValue()
+    return null
+  }
+
+  private fun writeStrings(out: DataOutput, strings: List<String>) {
+    out.writeInt(strings.size)
+    strings.forEach { out.writeUTF(it) }
+  }
+
+  private fun readStrings(input: DataInput): List<String> = List(input.readInt()) { input.readUTF() }
+
+  private fun writeNullable(out: DataOutput, string: String?) {
+    out.writeBoolean(string != null)
+    if (string != null) out.writeUTF(string)
+  }
+
+  private fun readNullable(input: DataInput): String? = if (input.readBoolean()) input.readUTF() else null
+
+  private class Decorator {
+    var name: String? = null
+    var selector: String? = null
+    val inputs = mutableListOf<String>()
+    val outputs = mutableListOf<String>()
+  }
+}
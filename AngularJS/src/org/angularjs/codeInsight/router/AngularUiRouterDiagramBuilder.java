@@ -9,8 +9,12 @@ import com.intellij.lang.javascript.psi.stubs.JSImplicitElement;
 import com.intellij.lang.javascript.psi.stubs.impl.JSImplicitElementImpl;
 import com.intellij.lang.javascript.psi.util.JSStubBasedPsiTreeUtil;
 import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.Conditions;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -22,6 +26,7 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.CommonProcessors;
 import com.intellij.util.ObjectUtils;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.MultiMap;
 import com.intellij.util.indexing.FileBasedIndex;
 import org.angularjs.index.*;
 import org.jetbrains.annotations.NotNull;
@@ -34,11 +39,13 @@ import java.util.*;
  */
 public class AngularUiRouterDiagramBuilder {
   private final List<UiRouterState> myStates;
+  private final Map<VirtualFile, String> myTemplateUrls;
   private final Map<VirtualFile, Template> myTemplatesMap;
   private final Map<VirtualFile, RootTemplate> myRootTemplates;
   @NotNull private final Project myProject;
   private final SmartPointerManager mySmartPointerManager;
   private final Map<PsiFile, Set<VirtualFile>> myModuleRecursiveDependencies;
+  private MultiMap<VirtualFile, String> myDefiningFiles;
   private Map<VirtualFile, Map<String, UiRouterState>> myRootTemplates2States;
   private Map<VirtualFile, Map<String, UiRouterState>> myDefiningFiles2States;
 
@@ -46,6 +53,7 @@ public class AngularUiRouterDiagramBuilder {
   public AngularUiRouterDiagramBuilder(@NotNull final Project project) {
     myProject = project;
     myStates = new ArrayList<>();
+    myTemplateUrls = new HashMap<>();
     myTemplatesMap = new HashMap<>();
     myRootTemplates = new HashMap<>();
     mySmartPointerManager = SmartPointerManager.getInstance(myProject);
@@ -53,51 +61,134 @@ public class AngularUiRouterDiagramBuilder {
   }
 
   public void build() {
-    addStatesFromIndex();
-    addGenericStates();
+    collectRoots();
+    buildStates(Conditions.alwaysTrue());
+  }
+
+  /**
+   * Builds only the states shown in the diagram of the given root template or defining file.
+   */
+  public void build(@NotNull VirtualFile key) {
+    collectRoots();
+    final RootTemplate rootTemplate = myRootTemplates.get(key);
+    buildStates(file -> file.equals(key) || rootTemplate != null && rootTemplate.getModulesFiles().contains(file));
+  }
+
+  /**
+   * Finds the diagrams which can be shown without parsing states:
+   * root templates with states of their modules and files with states not used by any root template.
+   */
+  @NotNull
+  public List<VirtualFile> collectDiagramKeys() {
+    collectRoots();
+    final Set<VirtualFile> usedInRoots = new HashSet<>();
+    final List<VirtualFile> roots = new ArrayList<>();
+    for (Map.Entry<VirtualFile, RootTemplate> entry : myRootTemplates.entrySet()) {
+      final Set<VirtualFile> modulesFiles = entry.getValue().getModulesFiles();
+      boolean hasStates = false;
+      for (VirtualFile file : myDefiningFiles.keySet()) {
+        if (file.equals(entry.getKey()) || modulesFiles.contains(file)) {
+          usedInRoots.add(file);
+          hasStates = true;
+        }
+      }
+      if (hasStates) roots.add(entry.getKey());
+    }
+    // generic states are shown with the first root template
+    if (!myRootTemplates.isEmpty() && !new AngularRouterStateLoader(myProject).loadFreelyDefinedStates().isEmpty()) {
+      final VirtualFile first = myRootTemplates.keySet().iterator().next();
+      if (!roots.contains(first)) roots.add(first);
+    }
+
+    final List<VirtualFile> keys = new ArrayList<>(ContainerUtil.filter(myDefiningFiles.keySet(), file -> !usedInRoots.contains(file)));
+    keys.addAll(roots);
+    return keys;
+  }
+
+  private void collectRoots() {
+    if (myDefiningFiles != null) return;
+    myDefiningFiles = AngularUiRouterStatesCache.getInstance(myProject).getDefiningFiles();
     getRootPages();
+    addEmbeddedRootTemplates();
+  }
+
+  private void buildStates(@NotNull Condition<VirtualFile> filter) {
+    addStatesFromIndex(filter);
+    addGenericStates();
     groupStates();
+    readTemplates();
   }
 
-  private void addStatesFromIndex() {
-    final Collection<String> stateIds = AngularIndexUtil.getAllKeys(AngularUiRouterStatesIndex.KEY, myProject);
-    for (String id : stateIds) {
-      if (id.startsWith(".")) continue;
+  private void addStatesFromIndex(@NotNull Condition<VirtualFile> filter) {
+    // states of unchanged files are taken from the cache, other files resolve only the states they define
+    final AngularUiRouterStatesCache cache = AngularUiRouterStatesCache.getInstance(myProject);
+    final List<VirtualFile> files = ContainerUtil.filter(myDefiningFiles.keySet(), filter);
+    final PsiManager psiManager = PsiManager.getInstance(myProject);
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    for (int i = 0; i < files.size(); i++) {
+      ProgressManager.checkCanceled();
+      final VirtualFile virtualFile = files.get(i);
+      if (indicator != null) {
+        indicator.setText2(virtualFile.getPresentableUrl());
+        indicator.setFraction((double)i / files.size());
+      }
+      AngularUiRouterStatesCache.FileStates fileStates = cache.get(virtualFile);
+      if (fileStates == null) {
+        final PsiFile file = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+        if (file == null) continue;
+        fileStates = parseStates(file, myDefiningFiles.get(virtualFile));
+        cache.put(virtualFile, fileStates);
+      }
+      myStates.addAll(fileStates.copyStates());
+      for (Map.Entry<VirtualFile, String> entry : fileStates.getTemplateUrls().entrySet()) {
+        myTemplateUrls.putIfAbsent(entry.getKey(), entry.getValue());
+      }
+    }
+    cache.retain(myDefiningFiles.keySet());
+  }
+
+  @NotNull
+  private AngularUiRouterStatesCache.FileStates parseStates(@NotNull PsiFile file, @NotNull Collection<String> ids) {
+    final List<UiRouterState> states = new ArrayList<>();
+    final Map<VirtualFile, String> templateUrls = new HashMap<>();
+    final GlobalSearchScope scope = GlobalSearchScope.fileScope(file);
+    for (String id : ids) {
       final CommonProcessors.CollectProcessor<JSImplicitElement> processor = new CommonProcessors.CollectProcessor<>();
-      AngularIndexUtil.multiResolve(myProject, AngularUiRouterStatesIndex.KEY, id, processor);
+      AngularIndexUtil.multiResolve(myProject, scope, AngularUiRouterStatesIndex.KEY, id, processor);
       for (JSImplicitElement element : processor.getResults()) {
-        final UiRouterState state = new UiRouterState(id, element.getContainingFile().getVirtualFile());
-        if (!element.getContainingFile().getLanguage().isKindOf(JavascriptLanguage.INSTANCE)
-            && PsiTreeUtil.getParentOfType(element, JSEmbeddedContent.class) != null) {
-          createRootTemplatesForEmbedded(element.getContainingFile());
-        }
+        states.add(parseState(id, element, templateUrls));
+      }
+    }
+    return new AngularUiRouterStatesCache.FileStates(myProject, file, states, templateUrls);
+  }
 
-        final JSCallExpression call = findWrappingCallExpression(element);
-        if (call != null) {
-          final JSReferenceExpression methodExpression = ObjectUtils.tryCast(call.getMethodExpression(), JSReferenceExpression.class);
-          if (methodExpression != null &&
-              methodExpression.getQualifier() != null &&
-              "state".equals(methodExpression.getReferenceName())) {
-            final JSExpression[] arguments = call.getArguments();
-            if (arguments.length > 0 && PsiTreeUtil.isAncestor(arguments[0], element.getNavigationElement(), false)) {
-              state.setPointer(mySmartPointerManager.createSmartPsiElementPointer(arguments[0]));
-
-              if (arguments.length > 1 && arguments[1] instanceof JSObjectLiteralExpression) {
-                final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[1];
-                fillStateParameters(state, object);
-              } else if (arguments[0] instanceof JSObjectLiteralExpression) {
-                final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[0];
-                final JSProperty name = object.findProperty("name");
-                if (name != null && PsiTreeUtil.isAncestor(name, element.getNavigationElement(), false)) {
-                  fillStateParameters(state, object);
-                }
-              }
+  @NotNull
+  private UiRouterState parseState(@NotNull String id, @NotNull JSImplicitElement element, @NotNull Map<VirtualFile, String> templateUrls) {
+    final UiRouterState state = new UiRouterState(id, element.getContainingFile().getVirtualFile());
+    final JSCallExpression call = findWrappingCallExpression(element);
+    if (call != null) {
+      final JSReferenceExpression methodExpression = ObjectUtils.tryCast(call.getMethodExpression(), JSReferenceExpression.class);
+      if (methodExpression != null &&
+          methodExpression.getQualifier() != null &&
+          "state".equals(methodExpression.getReferenceName())) {
+        final JSExpression[] arguments = call.getArguments();
+        if (arguments.length > 0 && PsiTreeUtil.isAncestor(arguments[0], element.getNavigationElement(), false)) {
+          state.setPointer(mySmartPointerManager.createSmartPsiElementPointer(arguments[0]));
+
+          if (arguments.length > 1 && arguments[1] instanceof JSObjectLiteralExpression) {
+            final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[1];
+            fillStateParameters(state, object, templateUrls);
+          } else if (arguments[0] instanceof JSObjectLiteralExpression) {
+            final JSObjectLiteralExpression object = (JSObjectLiteralExpression)arguments[0];
+            final JSProperty name = object.findProperty("name");
+            if (name != null && PsiTreeUtil.isAncestor(name, element.getNavigationElement(), false)) {
+              fillStateParameters(state, object, templateUrls);
             }
           }
         }
-        myStates.add(state);
       }
     }
+    return state;
   }
 
   private void addGenericStates() {
@@ -108,7 +199,7 @@ public class AngularUiRouterDiagramBuilder {
       final UiRouterState uiState = new UiRouterState(name, property.getContainingFile().getViewProvider().getVirtualFile());
       uiState.setGeneric(true);
       uiState.setPointer(mySmartPointerManager.createSmartPsiElementPointer(property));
-      fillStateParameters(uiState, (JSObjectLiteralExpression)property.getParent());
+      fillStateParameters(uiState, (JSObjectLiteralExpression)property.getParent(), myTemplateUrls);
       if (!myStates.contains(uiState)) myStates.add(uiState);
     }
   }
@@ -163,24 +254,23 @@ public class AngularUiRouterDiagramBuilder {
     final List<VirtualFile> roots = new ArrayList<>();
     Collections.sort(roots, (o1, o2) -> Integer.compare(o2.getUrl().length(), o1.getUrl().length()));
 
-    final Map<PsiFile, AngularNamedItemDefinition> files = new HashMap<>();
+    final Map<VirtualFile, AngularNamedItemDefinition> files = new HashMap<>();
     final FileBasedIndex instance = FileBasedIndex.getInstance();
     final Collection<String> keys = instance.getAllKeys(AngularAppIndex.ANGULAR_APP_INDEX, myProject);
     if (keys.isEmpty()) return;
 
-    final PsiManager psiManager = PsiManager.getInstance(myProject);
     final GlobalSearchScope projectScope = GlobalSearchScope.projectScope(myProject);
     for (String key : keys) {
       instance.processValues(AngularAppIndex.ANGULAR_APP_INDEX, key, null, (file, value) -> {
-        final PsiFile psiFile = psiManager.findFile(file);
-        if (psiFile != null) {
-          files.put(psiFile, value);
-        }
+        files.put(file, value);
         return true;
       }, projectScope);
     }
-    for (Map.Entry<PsiFile, AngularNamedItemDefinition> entry : files.entrySet()) {
-      final PsiFile file = entry.getKey();
+    final PsiManager psiManager = PsiManager.getInstance(myProject);
+    for (Map.Entry<VirtualFile, AngularNamedItemDefinition> entry : files.entrySet()) {
+      ProgressManager.checkCanceled();
+      final PsiFile file = psiManager.findFile(entry.getKey());
+      if (file == null) continue;
       final String relativeUrl = findPossibleRelativeUrl(roots, file.getVirtualFile());
       // not clear how then it can be part of application
       if (relativeUrl == null) continue;
@@ -195,11 +285,24 @@ public class AngularUiRouterDiagramBuilder {
     }
   }
 
-  private void createRootTemplatesForEmbedded(@NotNull PsiFile containingFile) {
-    final Template template = readTemplateFromFile(myProject, "/", containingFile);
-    final RootTemplate rootTemplate = new RootTemplate(mySmartPointerManager.createSmartPsiElementPointer(containingFile),
-                                                       "/", template, Collections.singleton(containingFile.getVirtualFile()));
-    myRootTemplates.put(containingFile.getVirtualFile(), rootTemplate);
+  /**
+   * States defined in script tags of an html file make it a root template.
+   */
+  private void addEmbeddedRootTemplates() {
+    final PsiManager psiManager = PsiManager.getInstance(myProject);
+    for (VirtualFile file : myDefiningFiles.keySet()) {
+      ProgressManager.checkCanceled();
+      if (isJavaScriptFile(file)) continue;
+      final PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+      if (psiFile != null) {
+        myRootTemplates.put(file, createRootTemplateForEmbedded(psiFile));
+      }
+    }
+  }
+
+  private static boolean isJavaScriptFile(@NotNull VirtualFile file) {
+    return file.getFileType() instanceof LanguageFileType &&
+           ((LanguageFileType)file.getFileType()).getLanguage().isKindOf(JavascriptLanguage.INSTANCE);
   }
 
   private static class NonCyclicQueue<T> {
@@ -256,20 +359,19 @@ public class AngularUiRouterDiagramBuilder {
     filesQueue.add(file.getVirtualFile());
 
     while (!modulesQueue.isEmpty()) {
+      ProgressManager.checkCanceled();
       final String moduleName = modulesQueue.removeNext();
       moduleDependenciesStep(moduleName, filesQueue, modulesQueue);
     }
     while (!filesQueue.isEmpty()) {
+      ProgressManager.checkCanceled();
       final VirtualFile moduleFile = filesQueue.removeNext();
       filesDependenciesStep(moduleFile, filesQueue);
     }
     Set<VirtualFile> processed = filesQueue.getProcessed();
 
     final GlobalSearchScope projectScope = GlobalSearchScope.projectScope(myProject);
-    processed =
-      new HashSet<>(ContainerUtil.filter(processed, file1 -> file1.getFileType() instanceof LanguageFileType && ((LanguageFileType)file1
-        .getFileType()).getLanguage().isKindOf(
-        JavascriptLanguage.INSTANCE) && projectScope.contains(file1)));
+    processed = new HashSet<>(ContainerUtil.filter(processed, file1 -> isJavaScriptFile(file1) && projectScope.contains(file1)));
     myModuleRecursiveDependencies.put(file, processed);
     return processed;
   }
@@ -332,7 +434,7 @@ public class AngularUiRouterDiagramBuilder {
     return relativePath == null ? null : AngularUiRouterGraphBuilder.normalizeTemplateUrl(relativePath);
   }
 
-  private void fillStateParameters(UiRouterState state, JSObjectLiteralExpression object) {
+  private void fillStateParameters(UiRouterState state, JSObjectLiteralExpression object, Map<VirtualFile, String> templateUrls) {
     final String url = getPropertyValueIfExists(object, "url");
     if (url != null) {
       state.setUrl(StringUtil.unquoteString(url));
@@ -346,7 +448,7 @@ public class AngularUiRouterDiagramBuilder {
     if (templateUrl != null) {
       state.setTemplateUrl(templateUrl);
       final JSProperty urlProperty = object.findProperty("templateUrl");
-      state.setTemplateFile(parseTemplate(templateUrl, urlProperty));
+      state.setTemplateFile(parseTemplate(templateUrl, urlProperty, templateUrls));
     }
     final JSProperty template = object.findProperty("template");
     if (templateUrl == null && object.findProperty("templateUrl") != null ||
@@ -366,7 +468,7 @@ public class AngularUiRouterDiagramBuilder {
           final List<UiView> viewsList = new ArrayList<>();
           for (JSProperty property : viewsProperties) {
             if (property.getName() != null && property.getValue() != null) {
-              viewsList.add(processView(property));
+              viewsList.add(processView(property, templateUrls));
             }
           }
           state.setViews(viewsList);
@@ -395,26 +497,37 @@ public class AngularUiRouterDiagramBuilder {
   }
 
   @Nullable
-  private VirtualFile parseTemplate(@NotNull final String url, @Nullable JSProperty urlProperty) {
-    PsiFile templateFile = null;
-    Template template = null;
+  private static VirtualFile parseTemplate(@NotNull final String url, @Nullable JSProperty urlProperty,
+                                           @NotNull Map<VirtualFile, String> templateUrls) {
     if (urlProperty != null && urlProperty.getValue() != null) {
       int offset = urlProperty.getValue().getTextRange().getEndOffset() - 1;
       final PsiReference reference = urlProperty.getContainingFile().findReferenceAt(offset);
       if (reference != null) {
         final PsiElement templateFileElement = reference.resolve();
         if (templateFileElement != null && templateFileElement.isValid()) {
-          templateFile = templateFileElement.getContainingFile();
-          if (myTemplatesMap.containsKey(templateFile.getVirtualFile())) return templateFile.getVirtualFile();
-          template = readTemplateFromFile(urlProperty.getProject(), url, templateFile);
-          myTemplatesMap.put(templateFile.getVirtualFile(), template);
-          return templateFile.getVirtualFile();
+          final VirtualFile templateFile = templateFileElement.getContainingFile().getVirtualFile();
+          if (templateFile == null) return null;
+          templateUrls.putIfAbsent(templateFile, url);
+          return templateFile;
         }
       }
     }
     return null;
   }
 
+  // only templates of the built states are known here, so the diagram model can be created without reading PSI
+  private void readTemplates() {
+    final PsiManager psiManager = PsiManager.getInstance(myProject);
+    for (Map.Entry<VirtualFile, String> entry : myTemplateUrls.entrySet()) {
+      ProgressManager.checkCanceled();
+      final VirtualFile templateFile = entry.getKey();
+      final PsiFile file = templateFile.isValid() ? psiManager.findFile(templateFile) : null;
+      if (file != null) {
+        myTemplatesMap.put(templateFile, readTemplateFromFile(myProject, entry.getValue(), file));
+      }
+    }
+  }
+
   @NotNull
   static Template readTemplateFromFile(@NotNull Project project, @NotNull String url, PsiElement templateElement) {
     final PsiFile templateFile = templateElement.getContainingFile();
@@ -446,7 +559,7 @@ public class AngularUiRouterDiagramBuilder {
     return template;
   }
 
-  private UiView processView(@NotNull final JSProperty property) {
+  private UiView processView(@NotNull final JSProperty property, @NotNull Map<VirtualFile, String> templateUrls) {
     final String name = property.getName();
     final JSExpression value = property.getValue();
     final JSObjectLiteralExpression expression = ObjectUtils.tryCast(value, JSObjectLiteralExpression.class);
@@ -456,7 +569,7 @@ public class AngularUiRouterDiagramBuilder {
       templateUrl = getPropertyValueIfExists(expression, "templateUrl");
       if (templateUrl != null) {
         final JSProperty urlProperty = expression.findProperty("templateUrl");
-        templateFile = parseTemplate(templateUrl, urlProperty);
+        templateFile = parseTemplate(templateUrl, urlProperty, templateUrls);
       }
     }
     final UiView view = new UiView(name, templateUrl, templateFile,
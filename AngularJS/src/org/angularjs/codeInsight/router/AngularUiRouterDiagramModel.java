@@ -60,7 +60,7 @@ public class AngularUiRouterDiagramModel extends DiagramDataModel<DiagramObject>
   @Override
   public void refreshDataModel() {
     final AngularUiRouterDiagramBuilder builder = new AngularUiRouterDiagramBuilder(getProject());
-    builder.build();
+    builder.build(myRootFile);
     final Map<VirtualFile, RootTemplate> rootTemplates = builder.getRootTemplates();
     final RootTemplate template = rootTemplates.get(myRootFile);
     if (template != null) {
@@ -0,0 +1,130 @@
+package org.angularjs.codeInsight.router;
+
+import com.intellij.lang.javascript.psi.JSImplicitElementProvider;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.MultiMap;
+import org.angularjs.index.AngularIndexUtil;
+import org.angularjs.index.AngularUiRouterStatesIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps ui-router states parsed by {@link AngularUiRouterDiagramBuilder} per defining file, so that rebuilding
+ * the diagram only parses states of files which have changed.
+ */
+public class AngularUiRouterStatesCache {
+  @NotNull private final Project myProject;
+  private final Map<VirtualFile, FileStates> myFileStates = ContainerUtil.newConcurrentMap();
+
+  public static AngularUiRouterStatesCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, AngularUiRouterStatesCache.class);
+  }
+
+  public AngularUiRouterStatesCache(@NotNull Project project) {
+    myProject = project;
+  }
+
+  /**
+   * @return ids of the states defined in each file; only the index is queried, states are resolved when the file is parsed
+   */
+  @NotNull
+  MultiMap<VirtualFile, String> getDefiningFiles() {
+    return CachedValuesManager.getManager(myProject).getCachedValue(myProject, () -> {
+      final MultiMap<VirtualFile, String> files = MultiMap.createLinkedSet();
+      final GlobalSearchScope scope = GlobalSearchScope.allScope(myProject);
+      for (String id : AngularIndexUtil.getAllKeys(AngularUiRouterStatesIndex.KEY, myProject)) {
+        ProgressManager.checkCanceled();
+        if (id.startsWith(".")) continue;
+        StubIndex.getInstance().processElements(AngularUiRouterStatesIndex.KEY, id, myProject, scope, JSImplicitElementProvider.class,
+                                                provider -> {
+                                                  files.putValue(provider.getContainingFile().getViewProvider().getVirtualFile(), id);
+                                                  return true;
+                                                });
+      }
+      return CachedValueProvider.Result.create(files, PsiModificationTracker.MODIFICATION_COUNT);
+    });
+  }
+
+  @Nullable
+  FileStates get(@NotNull VirtualFile file) {
+    final FileStates states = myFileStates.get(file);
+    if (states != null && !states.isUpToDate(myProject, file)) {
+      myFileStates.remove(file, states);
+      return null;
+    }
+    return states;
+  }
+
+  void put(@NotNull VirtualFile file, @NotNull FileStates states) {
+    myFileStates.put(file, states);
+  }
+
+  /**
+   * Drops states of files which no longer define any.
+   */
+  void retain(@NotNull Collection<VirtualFile> files) {
+    myFileStates.keySet().retainAll(files);
+  }
+
+  static class FileStates {
+    private final List<UiRouterState> myStates;
+    private final Map<VirtualFile, String> myTemplateUrls;
+    private final long myModificationStamp;
+    private final long myStructureModificationCount;
+
+    FileStates(@NotNull Project project,
+               @NotNull PsiFile file,
+               @NotNull List<UiRouterState> states,
+               @NotNull Map<VirtualFile, String> templateUrls) {
+      myStates = states;
+      myTemplateUrls = templateUrls;
+      myModificationStamp = file.getModificationStamp();
+      myStructureModificationCount = getStructureModificationCount(project);
+    }
+
+    /**
+     * @return copies of the states, they may be changed by the builder
+     */
+    @NotNull
+    List<UiRouterState> copyStates() {
+      return ContainerUtil.map(myStates, UiRouterState::copy);
+    }
+
+    /**
+     * @return urls of the template files used by the states; templates themselves are read when the diagram shows them
+     */
+    @NotNull
+    Map<VirtualFile, String> getTemplateUrls() {
+      return myTemplateUrls;
+    }
+
+    private boolean isUpToDate(@NotNull Project project, @NotNull VirtualFile file) {
+      if (myStructureModificationCount != getStructureModificationCount(project) || !file.isValid()) return false;
+      final PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+      return psiFile != null && psiFile.getModificationStamp() == myModificationStamp;
+    }
+
+    private static long getStructureModificationCount(@NotNull Project project) {
+      // template urls are resolved against the file system
+      return VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS.getModificationCount() +
+             ProjectRootModificationTracker.getInstance(project).getModificationCount();
+    }
+  }
+}
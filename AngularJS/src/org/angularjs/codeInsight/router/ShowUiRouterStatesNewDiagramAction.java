@@ -1,14 +1,16 @@
 package org.angularjs.codeInsight.router;
 
+import com.intellij.concurrency.SensitiveProgressWrapper;
 import com.intellij.diagram.DiagramProvider;
 import com.intellij.internal.statistic.UsageTrigger;
 import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
-import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.components.JBList;
 import com.intellij.uml.core.actions.ShowDiagram;
@@ -16,6 +18,8 @@ import com.intellij.util.ArrayUtil;
 import com.intellij.util.Consumer;
 import icons.AngularJSIcons;
 import org.angularjs.index.AngularIndexUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -38,32 +42,62 @@ public class ShowUiRouterStatesNewDiagramAction extends ShowDiagram {
     final AngularUiRouterDiagramProvider diagramProvider =
       (AngularUiRouterDiagramProvider)DiagramProvider.findByID(AngularUiRouterDiagramProvider.ANGULAR_UI_ROUTER);
     if (diagramProvider == null) return;
-    List<Pair<String, AngularUiRouterGraphBuilder>> graphBuilders = new ArrayList<>();
-    ProgressManager.getInstance().runProcessWithProgressSynchronously(
-      () -> {
-        ApplicationManager.getApplication().runReadAction(() -> {
-          final AngularUiRouterDiagramBuilder builder = new AngularUiRouterDiagramBuilder(project);
-          builder.build();
-          final Map<VirtualFile, RootTemplate> rootTemplates = builder.getRootTemplates();
+    // the diagrams to choose from are found without parsing states, then only the states of the chosen one are parsed
+    final List<VirtualFile> keys = new ArrayList<>();
+    runInBackground(project, "Looking for ui-router states", builder -> {
+      keys.clear();
+      keys.addAll(builder.collectDiagramKeys());
+    }, () -> {
+      if (keys.isEmpty()) {
+        Messages.showInfoMessage(project, "No router states found.", DESCRIPTION);
+      }
+      else if (keys.size() == 1) {
+        showDiagram(project, diagramProvider, keys.get(0));
+      }
+      else {
+        chooseKey(project, keys, key -> showDiagram(project, diagramProvider, key));
+      }
+    });
+  }
+
+  /**
+   * Runs the builder in background under a read action which gives way to write actions: parsed files are cached
+   * by AngularUiRouterStatesCache, so a restarted attempt continues from where the interrupted one stopped.
+   */
+  private static void runInBackground(@NotNull Project project, @NotNull String title,
+                                      @NotNull Consumer<AngularUiRouterDiagramBuilder> task, @NotNull Runnable onSuccess) {
+    new Task.Backgroundable(project, title, true) {
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(false);
+        while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> task.consume(new AngularUiRouterDiagramBuilder(project)),
+                                                                               new SensitiveProgressWrapper(indicator))) {
+          indicator.checkCanceled();
+          ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+      }
 
-          for (Map.Entry<VirtualFile, Map<String, UiRouterState>> entry : builder.getDefiningFiles2States().entrySet()) {
-            final AngularUiRouterGraphBuilder graphBuilder =
-              new AngularUiRouterGraphBuilder(project, entry.getValue(), builder.getTemplatesMap(), null, entry.getKey());
-            graphBuilders.add(Pair.create(entry.getKey().getName(), graphBuilder));
-          }
-          for (Map.Entry<VirtualFile, Map<String, UiRouterState>> entry : builder.getRootTemplates2States().entrySet()) {
-            final AngularUiRouterGraphBuilder graphBuilder =
-              new AngularUiRouterGraphBuilder(project, entry.getValue(), builder.getTemplatesMap(), rootTemplates.get(entry.getKey()),
-                                              entry.getKey());
-            graphBuilders.add(Pair.create(entry.getKey().getName(), graphBuilder));
-          }
-        });
-      }, "Building " + diagramProvider.getPresentableName() + " diagram", false, project);
+      @Override
+      public void onSuccess() {
+        if (!project.isDisposed()) onSuccess.run();
+      }
+    }.queue();
+  }
 
-    final AngularUiRouterProviderContext routerProviderContext = AngularUiRouterProviderContext.getInstance(project);
-    routerProviderContext.reset();
-    final Consumer<AngularUiRouterGraphBuilder> consumer = graphBuilder -> {
-      final AngularUiRouterGraphBuilder.GraphNodesBuilder nodesBuilder = graphBuilder.createDataModel(diagramProvider);
+  private void showDiagram(@NotNull Project project, @NotNull AngularUiRouterDiagramProvider diagramProvider, @NotNull VirtualFile key) {
+    final Ref<AngularUiRouterGraphBuilder.GraphNodesBuilder> model = Ref.create();
+    runInBackground(project, "Building " + diagramProvider.getPresentableName() + " diagram", builder -> {
+      builder.build(key);
+      final AngularUiRouterGraphBuilder graphBuilder = createGraphBuilder(project, builder, key);
+      model.set(graphBuilder == null ? null : graphBuilder.createDataModel(diagramProvider));
+    }, () -> {
+      if (model.isNull()) {
+        Messages.showInfoMessage(project, "No router states found.", DESCRIPTION);
+        return;
+      }
+      final AngularUiRouterProviderContext routerProviderContext = AngularUiRouterProviderContext.getInstance(project);
+      routerProviderContext.reset();
+      final AngularUiRouterGraphBuilder.GraphNodesBuilder nodesBuilder = model.get();
       routerProviderContext.registerNodesBuilder(nodesBuilder);
       final DiagramObject element = nodesBuilder.getRootNode().getIdentifyingElement();
 
@@ -71,21 +105,26 @@ public class ShowUiRouterStatesNewDiagramAction extends ShowDiagram {
       if (callback != null) {
         callback.run();
       }
-    };
-    if (graphBuilders.isEmpty()) {
-      Messages.showInfoMessage(project, "No router states found.", DESCRIPTION);
-      return;
+    });
+  }
+
+  @Nullable
+  private static AngularUiRouterGraphBuilder createGraphBuilder(@NotNull Project project,
+                                                                @NotNull AngularUiRouterDiagramBuilder builder,
+                                                                @NotNull VirtualFile key) {
+    final Map<String, UiRouterState> rootStates = builder.getRootTemplates2States().get(key);
+    if (rootStates != null) {
+      return new AngularUiRouterGraphBuilder(project, rootStates, builder.getTemplatesMap(), builder.getRootTemplates().get(key), key);
     }
-    if (graphBuilders.size() == 1) consumer.consume(graphBuilders.get(0).getSecond());
-    else filterGraphBuilders(project, graphBuilders, consumer);
+    final Map<String, UiRouterState> states = builder.getDefiningFiles2States().get(key);
+    return states == null ? null : new AngularUiRouterGraphBuilder(project, states, builder.getTemplatesMap(), null, key);
   }
 
-  private static void filterGraphBuilders(Project project, List<Pair<String, AngularUiRouterGraphBuilder>> builders,
-                                                                                     Consumer<AngularUiRouterGraphBuilder> consumer) {
+  private static void chooseKey(@NotNull Project project, @NotNull List<VirtualFile> keys, @NotNull Consumer<VirtualFile> consumer) {
     final JBList list = new JBList();
     final List<Object> data = new ArrayList<>();
-    for (Pair<String, AngularUiRouterGraphBuilder> builder : builders) {
-      data.add(builder.getSecond().getKey().getPath());
+    for (VirtualFile key : keys) {
+      data.add(key.getPath());
     }
     list.setListData(ArrayUtil.toObjectArray(data));
     JBPopupFactory.getInstance().createListPopupBuilder(list)
@@ -93,7 +132,7 @@ public class ShowUiRouterStatesNewDiagramAction extends ShowDiagram {
       .setItemChoosenCallback(() -> {
         final int index = list.getSelectedIndex();
         if (index >= 0) {
-          consumer.consume(builders.get(index).getSecond());
+          consumer.consume(keys.get(index));
         }
       })
       .createPopup().showCenteredInCurrentWindow(project);
@@ -0,0 +1,332 @@
+package org.angularjs.index;
+
+import com.intellij.ProjectTopics;
+import com.intellij.lang.javascript.index.JSImplicitElementsIndex;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.stubs.StubIndexKey;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.IdFilter;
+import com.intellij.util.messages.MessageBusConnection;
+import gnu.trove.TIntHashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Keeps the keys of Angular indices which have values in the project, see {@link AngularIndexUtil#getAllKeys(ID, Project)}.
+ * <p/>
+ * For every key the file it was found in is remembered. After changes, only keys found in changed files are checked
+ * again, and new keys are only looked for in changed files. Roots changes and dumb mode drop everything.
+ */
+public class AngularIndexKeys {
+  private static final int MAX_CHANGED_FILES = 100;
+  /**
+   * Stands for a key found in an element without a file, such keys are checked after every change.
+   */
+  private static final VirtualFile UNKNOWN_FILE = null;
+
+  private final Project myProject;
+  private final Map<String, IndexKeys> myIndexKeys = new HashMap<>();
+
+  public static AngularIndexKeys getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, AngularIndexKeys.class);
+  }
+
+  public AngularIndexKeys(@NotNull Project project) {
+    myProject = project;
+
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        psiChanged(event);
+      }
+    }, project);
+
+    final MessageBusConnection connection = project.getMessageBus().connect(project);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          final VirtualFile file = event instanceof VFileCopyEvent ? ((VFileCopyEvent)event).findCreatedFile() : event.getFile();
+          if (file == null || file.isDirectory()) {
+            dropAll();
+            return;
+          }
+          fileChanged(file);
+        }
+      }
+    });
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        dropAll();
+      }
+    });
+    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void enteredDumbMode() {
+        dropAll();
+      }
+
+      @Override
+      public void exitDumbMode() {
+        dropAll();
+      }
+    });
+  }
+
+  @NotNull
+  public Collection<String> getAllKeys(@NotNull ID<String, ?> index) {
+    final IndexKeys indexKeys;
+    synchronized (myIndexKeys) {
+      indexKeys = myIndexKeys.computeIfAbsent(index.getName(), name -> new IndexKeys(index));
+    }
+    return indexKeys.getKeys();
+  }
+
+  private void psiChanged(@NotNull PsiTreeChangeEvent event) {
+    PsiFile file = event.getFile();
+    if (file == null && event.getChild() instanceof PsiFile) {
+      file = (PsiFile)event.getChild();
+    }
+    if (file != null) {
+      final VirtualFile virtualFile = file.getViewProvider().getVirtualFile();
+      if (virtualFile instanceof VirtualFileWithId) {
+        fileChanged(virtualFile);
+      }
+    }
+  }
+
+  private void fileChanged(@NotNull VirtualFile file) {
+    synchronized (myIndexKeys) {
+      for (IndexKeys indexKeys : myIndexKeys.values()) {
+        indexKeys.fileChanged(file);
+      }
+    }
+  }
+
+  private void dropAll() {
+    synchronized (myIndexKeys) {
+      for (IndexKeys indexKeys : myIndexKeys.values()) {
+        indexKeys.drop();
+      }
+    }
+  }
+
+  private class IndexKeys {
+    private final ID<String, ?> myIndex;
+    // guarded by this
+    private Map<String, VirtualFile> myFilesByKey;
+    private Set<VirtualFile> myChangedFiles = new HashSet<>();
+    private boolean myAllChanged;
+    private Collection<String> myKeys;
+    private int myModificationCount;
+
+    private IndexKeys(@NotNull ID<String, ?> index) {
+      myIndex = index;
+    }
+
+    private synchronized void fileChanged(@NotNull VirtualFile file) {
+      if (!myAllChanged) {
+        myChangedFiles.add(file);
+        if (myChangedFiles.size() > MAX_CHANGED_FILES) {
+          myAllChanged = true;
+          myChangedFiles = new HashSet<>();
+        }
+      }
+      myKeys = null;
+      myModificationCount++;
+    }
+
+    private synchronized void drop() {
+      myAllChanged = true;
+      myChangedFiles = new HashSet<>();
+      myKeys = null;
+      myModificationCount++;
+    }
+
+    @NotNull
+    private Collection<String> getKeys() {
+      final Map<String, VirtualFile> filesByKey;
+      final Set<VirtualFile> changedFiles;
+      final int modificationCount;
+      synchronized (this) {
+        if (myKeys != null) return myKeys;
+        filesByKey = myAllChanged || myFilesByKey == null ? null : new HashMap<>(myFilesByKey);
+        changedFiles = new HashSet<>(myChangedFiles);
+        modificationCount = myModificationCount;
+      }
+
+      final Map<String, VirtualFile> newFilesByKey =
+        filesByKey == null ? findAllKeys() : updateKeys(filesByKey, ContainerUtil.filter(changedFiles, VirtualFile::isValid),
+                                                        changedFiles);
+      final Collection<String> keys = Collections.unmodifiableSet(new HashSet<>(newFilesByKey.keySet()));
+      synchronized (this) {
+        if (myModificationCount == modificationCount) {
+          myFilesByKey = newFilesByKey;
+          myChangedFiles = new HashSet<>();
+          myAllChanged = false;
+          myKeys = keys;
+        }
+      }
+      return keys;
+    }
+
+    @NotNull
+    private Map<String, VirtualFile> findAllKeys() {
+      final GlobalSearchScope scope = GlobalSearchScope.allScope(myProject);
+      final Collection<String> allKeys = myIndex instanceof StubIndexKey ?
+                                         StubIndex.getInstance().getAllKeys((StubIndexKey<String, ?>)myIndex, myProject) :
+                                         FileBasedIndex.getInstance().getAllKeys(myIndex, myProject);
+      final Map<String, VirtualFile> result = new HashMap<>();
+      for (String key : allKeys) {
+        findKey(key, scope, result);
+      }
+      if (myIndex == AngularDirectivesIndex.KEY) {
+        for (String key : FileBasedIndex.getInstance().getAllKeys(JSImplicitElementsIndex.INDEX_ID, myProject)) {
+          if (!result.containsKey(key)) {
+            findMetadataKey(key, scope, result);
+          }
+        }
+      }
+      return result;
+    }
+
+    @NotNull
+    private Map<String, VirtualFile> updateKeys(@NotNull Map<String, VirtualFile> filesByKey,
+                                                @NotNull List<VirtualFile> validChangedFiles,
+                                                @NotNull Set<VirtualFile> changedFiles) {
+      final GlobalSearchScope allScope = GlobalSearchScope.allScope(myProject);
+      final Map<String, VirtualFile> result = new HashMap<>();
+      for (Map.Entry<String, VirtualFile> entry : filesByKey.entrySet()) {
+        final VirtualFile file = entry.getValue();
+        if (file != UNKNOWN_FILE && !changedFiles.contains(file)) {
+          result.put(entry.getKey(), file);
+        }
+        else if (!findKey(entry.getKey(), allScope, result) && myIndex == AngularDirectivesIndex.KEY) {
+          findMetadataKey(entry.getKey(), allScope, result);
+        }
+      }
+      if (validChangedFiles.isEmpty()) {
+        return result;
+      }
+
+      final GlobalSearchScope changedScope = GlobalSearchScope.filesScope(myProject, validChangedFiles);
+      final IdFilter changedIds = createIdFilter(validChangedFiles);
+      final Processor<String> newKeysProcessor = key -> {
+        if (!result.containsKey(key)) {
+          findKey(key, changedScope, result);
+        }
+        return true;
+      };
+      if (myIndex instanceof StubIndexKey) {
+        StubIndex.getInstance().processAllKeys((StubIndexKey<String, ?>)myIndex, newKeysProcessor, changedScope, changedIds);
+      }
+      else {
+        FileBasedIndex.getInstance().processAllKeys(myIndex, newKeysProcessor, changedScope, changedIds);
+      }
+      if (myIndex == AngularDirectivesIndex.KEY) {
+        FileBasedIndex.getInstance().processAllKeys(JSImplicitElementsIndex.INDEX_ID, key -> {
+          if (!result.containsKey(key)) {
+            findMetadataKey(key, changedScope, result);
+          }
+          return true;
+        }, changedScope, changedIds);
+      }
+      return result;
+    }
+
+    private boolean findKey(@NotNull String key, @NotNull GlobalSearchScope scope, @NotNull Map<String, VirtualFile> result) {
+      final Ref<VirtualFile> file = new Ref<>();
+      final boolean found;
+      if (myIndex instanceof StubIndexKey) {
+        //noinspection unchecked
+        found = !StubIndex.getInstance().processElements((StubIndexKey<String, PsiElement>)myIndex, key, myProject, scope, PsiElement.class,
+                                                         element -> {
+                                                           file.set(getVirtualFile(element));
+                                                           return false;
+                                                         });
+      }
+      else {
+        found = !FileBasedIndex.getInstance().processValues(myIndex, key, null, (virtualFile, value) -> {
+          file.set(virtualFile);
+          return false;
+        }, scope);
+      }
+      if (found) {
+        result.put(key, file.get());
+      }
+      return found;
+    }
+
+    private void findMetadataKey(@NotNull String key, @NotNull GlobalSearchScope scope, @NotNull Map<String, VirtualFile> result) {
+      final Ref<VirtualFile> file = new Ref<>();
+      if (!AngularIndexUtil.processMetadata(myProject, key, element -> {
+        file.set(getVirtualFile(element));
+        return false;
+      }, scope)) {
+        result.put(key, file.get());
+      }
+    }
+  }
+
+  @Nullable
+  private static VirtualFile getVirtualFile(@NotNull PsiElement element) {
+    final PsiFile file = element.getContainingFile();
+    return file != null ? file.getViewProvider().getVirtualFile() : UNKNOWN_FILE;
+  }
+
+  @NotNull
+  private static IdFilter createIdFilter(@NotNull Collection<VirtualFile> files) {
+    final TIntHashSet ids = new TIntHashSet();
+    for (VirtualFile file : files) {
+      if (file instanceof VirtualFileWithId) {
+        ids.add(((VirtualFileWithId)file).getId());
+      }
+    }
+    return new IdFilter() {
+      @Override
+      public boolean containsFileId(int id) {
+        return ids.contains(id);
+      }
+    };
+  }
+}
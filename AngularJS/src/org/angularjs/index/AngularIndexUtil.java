@@ -16,8 +16,6 @@ import com.intellij.openapi.project.NoAccessDuringPsiEvents;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootModificationTracker;
 import com.intellij.openapi.util.Condition;
-import com.intellij.openapi.util.Key;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
@@ -30,30 +28,22 @@ import com.intellij.psi.stubs.StubIndex;
 import com.intellij.psi.stubs.StubIndexKey;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
-import com.intellij.psi.util.ParameterizedCachedValue;
-import com.intellij.psi.util.ParameterizedCachedValueProvider;
-import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Function;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.indexing.ID;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Dennis.Ushakov
  */
 public class AngularIndexUtil {
   public static final int BASE_VERSION = 59;
-  private static final ConcurrentMap<String, Key<ParameterizedCachedValue<Collection<String>, Pair<Project, ID<String, ?>>>>> ourCacheKeys =
-    ContainerUtil.newConcurrentMap();
-  private static final AngularKeysProvider PROVIDER = new AngularKeysProvider();
   public static final Function<JSImplicitElement, ResolveResult> JS_IMPLICIT_TO_RESOLVE_RESULT = JSResolveResult::new;
 
   public static JSImplicitElement resolve(final Project project, final StubIndexKey<String, JSImplicitElementProvider> index, final String lookupKey) {
@@ -71,10 +61,17 @@ public class AngularIndexUtil {
   }
 
   public static void multiResolve(Project project,
-                                   final StubIndexKey<String, JSImplicitElementProvider> index,
-                                   final String lookupKey,
-                                   final Processor<JSImplicitElement> processor) {
-    final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+                                  final StubIndexKey<String, JSImplicitElementProvider> index,
+                                  final String lookupKey,
+                                  final Processor<JSImplicitElement> processor) {
+    multiResolve(project, GlobalSearchScope.allScope(project), index, lookupKey, processor);
+  }
+
+  public static void multiResolve(Project project,
+                                  final GlobalSearchScope scope,
+                                  final StubIndexKey<String, JSImplicitElementProvider> index,
+                                  final String lookupKey,
+                                  final Processor<JSImplicitElement> processor) {
     StubIndex.getInstance().processElements(
       index, lookupKey, project, scope, JSImplicitElementProvider.class, provider -> {
         final JSElementIndexingData indexingData = provider.getIndexingData();
@@ -98,10 +95,10 @@ public class AngularIndexUtil {
     }
   }
 
-  private static boolean processMetadata(@NotNull Project project,
-                                         @NotNull String lookupKey,
-                                         @NotNull Processor<JSImplicitElement> processor,
-                                         @NotNull GlobalSearchScope scope) {
+  static boolean processMetadata(@NotNull Project project,
+                               @NotNull String lookupKey,
+                               @NotNull Processor<JSImplicitElement> processor,
+                               @NotNull GlobalSearchScope scope) {
     FileBasedIndex.ValueProcessor<Collection<JSImplicitElementsIndex.JSElementProxy>> implicitElementsProcessor =
       (virtualFile, value) -> {
         final PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
@@ -147,12 +144,12 @@ public class AngularIndexUtil {
     return list.toArray(ResolveResult.EMPTY_ARRAY);
   }
 
+  /**
+   * Returns the keys of the index which have values in the project. The result is maintained incrementally
+   * by {@link AngularIndexKeys} and must not be modified.
+   */
   public static Collection<String> getAllKeys(final ID<String, ?> index, final Project project) {
-    final String indexId = index.getName();
-    final Key<ParameterizedCachedValue<Collection<String>, Pair<Project, ID<String, ?>>>> key =
-      ConcurrencyUtil.cacheOrGet(ourCacheKeys, indexId, Key.create("angularjs.index." + indexId));
-    final Pair<Project, ID<String, ?>> pair = Pair.create(project, index);
-    return CachedValuesManager.getManager(project).getParameterizedCachedValue(project, key, PROVIDER, false, pair);
+    return AngularIndexKeys.getInstance(project).getAllKeys(index);
   }
 
   public static boolean hasAngularJS(final Project project) {
@@ -192,33 +189,4 @@ public class AngularIndexUtil {
     }
     return restrictions;
   }
-
-  private static class AngularKeysProvider implements ParameterizedCachedValueProvider<Collection<String>, Pair<Project, ID<String, ?>>> {
-    @Nullable
-    @Override
-    public CachedValueProvider.Result<Collection<String>> compute(final Pair<Project, ID<String, ?>> projectAndIndex) {
-      final Project project = projectAndIndex.first;
-      final ID<String, ?> id = projectAndIndex.second;
-      final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
-      final FileBasedIndex fileIndex = FileBasedIndex.getInstance();
-      final StubIndex stubIndex = StubIndex.getInstance();
-      Collection<String> allKeys =
-        id instanceof StubIndexKey ? stubIndex.getAllKeys((StubIndexKey<String, ?>)id, project) :
-        fileIndex.getAllKeys(id, project);
-
-      List<String> filteredKeys = ContainerUtil.filter(allKeys, key -> id instanceof StubIndexKey ?
-                                                                 !stubIndex.processElements((StubIndexKey<String, PsiElement>)id, key, project, scope, PsiElement.class, element -> false) :
-                                                                 !fileIndex.processValues(id, key, null, (FileBasedIndex.ValueProcessor)(file, value) -> false, scope));
-      if (id == AngularDirectivesIndex.KEY) {
-        allKeys = FileBasedIndex.getInstance().getAllKeys(JSImplicitElementsIndex.INDEX_ID, project);
-        List<String> filteredFromMeta = ContainerUtil.filter(allKeys, key -> !processMetadata(project, key, element -> false, scope));
-        if (filteredKeys.isEmpty()) {
-          filteredKeys = filteredFromMeta;
-        } else {
-          filteredKeys.addAll(filteredFromMeta);
-        }
-      }
-      return CachedValueProvider.Result.create(filteredKeys, PsiManager.getInstance(project).getModificationTracker());
-    }
-  }
 }
@@ -0,0 +1,36 @@
+package org.angularjs.codeInsight.metadata
+
+import com.intellij.testFramework.LightPlatformTestCase
+import junit.framework.TestCase
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class AngularMetadataReaderTest : LightPlatformTestCase() {
+  private val METADATA = "[{\"__symbolic\":\"module\",\"version\":3,\"metadata\":{" +
+                         "\"Base\":{\"__symbolic\":\"class\",\"members\":{" +
+                         "\"color\":[{\"__symbolic\":\"property\",\"decorators\":[{\"__symbolic\":\"call\",\"expression\":{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"Input\"}}]}]," +
+                         "\"ngOnInit\":[{\"__symbolic\":\"method\"}]}}," +
+                         "\"Button\":{\"__symbolic\":\"class\",\"extends\":{\"__symbolic\":\"reference\",\"name\":\"Base\"}," +
+                         "\"decorators\":[{\"__symbolic\":\"call\",\"expression\":{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"Component\"}," +
+                         "\"arguments\":[{\"selector\":\"button[my-button]\",\"inputs\":[\"disabled\"],\"outputs\":[\"clicked\"],\"template\":\"<ng-content></ng-content>\"}]}]," +
+                         "\"members\":{\"pressed\":[{\"__symbolic\":\"property\",\"decorators\":[{\"__symbolic\":\"call\",\"expression\":{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"Output\"}}]}]}}," +
+                         "\"VERSION\":{\"__symbolic\":\"new\",\"arguments\":[\"5.0.0\"]}}}]"
+
+  fun testRead() {
+    val classes = AngularMetadataReader.read(METADATA)
+    TestCase.assertEquals(listOf(AngularClassDeclaration("Base", listOf("color"), emptyList(), null, null, null, emptyList(), emptyList()),
+                                 AngularClassDeclaration("Button", emptyList(), listOf("pressed"), "Base", null, "button[my-button]",
+                                                         listOf("disabled"), listOf("clicked"))),
+                          classes)
+  }
+
+  fun testSaveAndLoad() {
+    val classes = AngularMetadataReader.read(METADATA)
+    val bytes = ByteArrayOutputStream()
+    DataOutputStream(bytes).use { AngularMetadataReader.save(it, classes) }
+    val loaded = DataInputStream(ByteArrayInputStream(bytes.toByteArray())).use { AngularMetadataReader.load(it) }
+    TestCase.assertEquals(classes, loaded)
+  }
+}
@@ -1,5 +1,8 @@
 package org.angularjs.index;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
 import org.angularjs.AngularTestUtil;
 import org.junit.Assert;
@@ -16,4 +19,21 @@ public class AngularIndexUtilTest extends LightPlatformCodeInsightFixtureTestCas
                               "{\"__symbolic\": \"module\",\"version\": 3,\"metadata\": {\"NgForOf\":{\"__symbolic\":\"class\",\"arity\":1,\"decorators\":[{\"__symbolic\":\"call\",\"expression\":{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"Directive\"},\"arguments\":[{\"selector\":\"[ngFor][ngForOf]\"}]}],\"members\":{\"ngForOf\":[{\"__symbolic\":\"property\",\"decorators\":[{\"__symbolic\":\"call\",\"expression\":{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"Input\"}}]}],\"ngForTrackBy\":[{\"__symbolic\":\"property\",\"decorators\":[{\"__symbolic\":\"call\",\"expression\":{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"Input\"}}]}],\"__ctor__\":[{\"__symbolic\":\"constructor\",\"parameters\":[{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"ViewContainerRef\"},{\"__symbolic\":\"reference\",\"name\":\"TemplateRef\",\"module\":\"@angular/core\",\"arguments\":[{\"__symbolic\":\"reference\",\"name\":\"NgForOfContext\"}]},{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"IterableDiffers\"}]}],\"ngForTemplate\":[{\"__symbolic\":\"property\",\"decorators\":[{\"__symbolic\":\"call\",\"expression\":{\"__symbolic\":\"reference\",\"module\":\"@angular/core\",\"name\":\"Input\"}}]}],\"ngOnChanges\":[{\"__symbolic\":\"method\"}],\"ngDoCheck\":[{\"__symbolic\":\"method\"}],\"_applyChanges\":[{\"__symbolic\":\"method\"}],\"_perViewChange\":[{\"__symbolic\":\"method\"}]}}}}");
     Assert.assertTrue(AngularIndexUtil.hasAngularJS2(myFixture.getProject()));
   }
+
+  public void testAllKeysFollowChanges() {
+    myFixture.configureByText("app.js", "var app = angular.module(\"app\", []);\napp.filter(\"first\", function () {});");
+    assertContainsElements(AngularIndexUtil.getAllKeys(AngularFilterIndex.KEY, getProject()), "first");
+
+    myFixture.addFileToProject("other.js", "var app = angular.module(\"app\");\napp.filter(\"second\", function () {});");
+    assertContainsElements(AngularIndexUtil.getAllKeys(AngularFilterIndex.KEY, getProject()), "first", "second");
+
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      final Document document = myFixture.getEditor().getDocument();
+      final int offset = document.getText().indexOf("first");
+      document.replaceString(offset, offset + "first".length(), "renamed");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+    assertContainsElements(AngularIndexUtil.getAllKeys(AngularFilterIndex.KEY, getProject()), "renamed", "second");
+    assertDoesntContain(AngularIndexUtil.getAllKeys(AngularFilterIndex.KEY, getProject()), "first");
+  }
 }
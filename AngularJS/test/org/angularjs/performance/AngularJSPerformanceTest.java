@@ -1,8 +1,16 @@
 package org.angularjs.performance;
 
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
 import org.angularjs.AngularTestUtil;
+import org.angularjs.codeInsight.router.AngularUiRouterDiagramBuilder;
+import org.angularjs.codeInsight.router.AngularUiRouterDiagramProvider;
+import org.angularjs.codeInsight.router.AngularUiRouterGraphBuilder;
+import org.angularjs.codeInsight.router.UiRouterState;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Konstantin.Ulitin
@@ -19,4 +27,36 @@ public class AngularJSPerformanceTest extends LightPlatformCodeInsightFixtureTes
     PlatformTestUtil.startPerformanceTest(getTestName(false), 100_000, () -> myFixture.checkHighlighting()).attempts(1).usesAllCPUCores().assertTiming();
   }
 
+  public void testManyUiRouterStatesDiagram() {
+    myFixture.configureByFiles("angular.js");
+    for (int i = 0; i < 10; i++) {
+      myFixture.addFileToProject("template" + i + ".html", "<div ui-view=\"content\"></div>");
+    }
+    for (int i = 0; i < 100; i++) {
+      final StringBuilder text = new StringBuilder("angular.module('module" + i + "', []).config(function($stateProvider) {\n" +
+                                                   "  $stateProvider");
+      for (int j = 0; j < 50; j++) {
+        text.append("\n    .state('state").append(i).append('_').append(j).append("', {url: '/").append(j)
+          .append("', templateUrl: 'template").append(j % 10).append(".html'})");
+      }
+      text.append(";\n});\n");
+      myFixture.addFileToProject("states" + i + ".js", text.toString());
+    }
+    final AngularUiRouterDiagramProvider provider = new AngularUiRouterDiagramProvider();
+    PlatformTestUtil.startPerformanceTest(getTestName(false), 20_000, () -> {
+      final List<VirtualFile> keys = new AngularUiRouterDiagramBuilder(getProject()).collectDiagramKeys();
+      assertEquals(100, keys.size());
+      for (VirtualFile key : keys) {
+        final AngularUiRouterDiagramBuilder builder = new AngularUiRouterDiagramBuilder(getProject());
+        builder.build(key);
+        final Map<String, UiRouterState> states = builder.getDefiningFiles2States().get(key);
+        assertEquals(50, states.size());
+        final AngularUiRouterGraphBuilder.GraphNodesBuilder model =
+          new AngularUiRouterGraphBuilder(getProject(), states, builder.getTemplatesMap(), null, key).createDataModel(provider);
+        // root node, states and the ten shared templates
+        assertEquals(61, model.getAllNodes().size());
+      }
+    }).attempts(1).assertTiming();
+  }
+
 }
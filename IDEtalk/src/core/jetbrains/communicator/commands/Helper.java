@@ -18,11 +18,15 @@ package jetbrains.communicator.commands;
 
 import jetbrains.communicator.core.Pico;
 import jetbrains.communicator.core.transport.GetProjectsDataXmlMessage;
+import jetbrains.communicator.core.transport.GetVFileChunkXmlMessage;
 import jetbrains.communicator.core.transport.GetVFileContentsXmlMessage;
 import jetbrains.communicator.core.transport.Transport;
+import jetbrains.communicator.core.transport.XmlMessage;
 import jetbrains.communicator.core.users.User;
 import jetbrains.communicator.core.vfs.ProjectsData;
 import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileChunks;
+import jetbrains.communicator.core.vfs.VFileContentsCache;
 import jetbrains.communicator.ide.CanceledException;
 import jetbrains.communicator.ide.IDEFacade;
 import jetbrains.communicator.util.StringUtil;
@@ -35,6 +39,7 @@ import java.util.concurrent.TimeUnit;
 
 public class Helper {
   private static final Logger LOG = Logger.getLogger(Helper.class);
+  private static final VFileContentsCache ourReceivedContents = new VFileContentsCache(32 * 1024 * 1024);
 
   private Helper() {
   }
@@ -78,23 +83,12 @@ public class Helper {
             new Runnable() {
               @Override
               public void run() {
+                GetVFileContentsXmlMessage message = new GetVFileContentsXmlMessage(vFile);
+                if (!sendAndWait(transport, user, message)) return;
 
-                final Semaphore semaphore = new Semaphore(1);
-                try {
-                  semaphore.acquire();
-
-                  transport.sendXmlMessage(user, new GetVFileContentsXmlMessage(vFile) {
-                    @Override
-                    public void processResponse(Element responseElement) {
-                      super.processResponse(responseElement);
-                      semaphore.release();
-                    }
-                  });
-
-                  semaphore.tryAcquire(getWaitTimeout(), TimeUnit.MILLISECONDS);
-
-                } catch (InterruptedException ignored) {
-                  // noop
+                String contentHash = message.getContentHash();
+                if (vFile.getContents() == null && contentHash != null) {
+                  vFile.setContents(getChunkedContents(transport, user, vFile, contentHash, message.getChunkCount()));
                 }
               }
             });
@@ -115,6 +109,74 @@ public class Helper {
     }
   }
 
+  /**
+   * Large files are downloaded by compressed chunks, each in its own message.
+   * Assembled contents are cached by hash, so that opening the same revision again costs a single small request.
+   */
+  private static String getChunkedContents(Transport transport, User user, VFile vFile, String contentHash, int chunkCount) {
+    String cached = ourReceivedContents.get(contentHash);
+    if (cached != null) return cached;
+
+    StringBuilder result = new StringBuilder(chunkCount * VFileChunks.CHUNK_SIZE);
+    for (int i = 0; i < chunkCount; i++) {
+      GetVFileChunkXmlMessage message = new GetVFileChunkXmlMessage(vFile, contentHash, i);
+      if (!sendAndWait(transport, user, message) || message.getChunk() == null) {
+        return null;
+      }
+      result.append(message.getChunk());
+    }
+
+    String contents = result.toString();
+    if (!contentHash.equals(VFileChunks.getContentHash(contents))) {
+      LOG.info("Content hash mismatch for downloaded " + vFile);
+      return null;
+    }
+    ourReceivedContents.put(contentHash, contents);
+    return contents;
+  }
+
+  private static boolean sendAndWait(Transport transport, User user, final XmlMessage message) {
+    final Semaphore semaphore = new Semaphore(0);
+    transport.sendXmlMessage(user, new XmlMessage() {
+      @Override
+      public String getTagName() {
+        return message.getTagName();
+      }
+
+      @Override
+      public String getTagNamespace() {
+        return message.getTagNamespace();
+      }
+
+      @Override
+      public boolean needsResponse() {
+        return true;
+      }
+
+      @Override
+      public void fillRequest(Element element) {
+        message.fillRequest(element);
+      }
+
+      @Override
+      public void processResponse(Element responseElement) {
+        try {
+          message.processResponse(responseElement);
+        }
+        finally {
+          semaphore.release();
+        }
+      }
+    });
+
+    try {
+      return semaphore.tryAcquire(getWaitTimeout(), TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException ignored) {
+      return false;
+    }
+  }
+
   private static int getWaitTimeout() {
     return Pico.isUnitTest() ? 2000 : 120 * 1000;
   }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.transport;
+
+import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileChunks;
+import org.apache.log4j.Logger;
+import org.jdom.Element;
+
+import java.io.IOException;
+
+/**
+ * Requests one compressed piece of a large file, whose hash was returned by {@link GetVFileContentsXmlMessage}.
+ */
+public class GetVFileChunkXmlMessage implements XmlMessage {
+  private static final Logger LOG = Logger.getLogger(GetVFileChunkXmlMessage.class);
+
+  public static final String TAG = "fillContentsChunk";
+  public static final String INDEX_ATTR = "chunkIndex";
+
+  private final VFile myFile;
+  private final String myContentHash;
+  private final int myIndex;
+  private String myChunk;
+
+  public GetVFileChunkXmlMessage(VFile file, String contentHash, int index) {
+    myFile = file;
+    myContentHash = contentHash;
+    myIndex = index;
+  }
+
+  public String getTagName() {
+    return TAG;
+  }
+
+  public String getTagNamespace() {
+    return Transport.NAMESPACE;
+  }
+
+  public boolean needsResponse() {
+    return true;
+  }
+
+  public void fillRequest(Element element) {
+    VFile file = (VFile)myFile.clone();
+    file.setContents(null);
+    file.saveTo(element);
+    element.setAttribute(GetVFileContentsXmlMessage.CONTENT_HASH_ATTR, myContentHash);
+    element.setAttribute(INDEX_ATTR, String.valueOf(myIndex));
+  }
+
+  public void processResponse(Element responseElement) {
+    if (!myContentHash.equals(responseElement.getAttributeValue(GetVFileContentsXmlMessage.CONTENT_HASH_ATTR)) ||
+        !String.valueOf(myIndex).equals(responseElement.getAttributeValue(INDEX_ATTR))) {
+      return;
+    }
+    try {
+      myChunk = VFileChunks.decodeChunk(responseElement.getText());
+    }
+    catch (IOException e) {
+      LOG.info("Cannot read chunk " + myIndex + " of " + myFile + ": " + e.getMessage());
+    }
+  }
+
+  /** @return decoded chunk text, or null if it was not received */
+  public String getChunk() {
+    return myChunk;
+  }
+}
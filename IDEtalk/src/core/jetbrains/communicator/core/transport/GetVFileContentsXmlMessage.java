@@ -18,13 +18,22 @@ package jetbrains.communicator.core.transport;
 
 import jetbrains.communicator.core.vfs.VFile;
 import org.jdom.Element;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Kir
  */
 public class GetVFileContentsXmlMessage implements XmlMessage {
   public static final String TAG = "fillContents";
+  /** Set in request by clients which can download large files by {@link GetVFileChunkXmlMessage} */
+  public static final String ACCEPTS_CHUNKS_ATTR = "acceptsChunks";
+  /** Set in response instead of contents when the file is large and should be downloaded by chunks */
+  public static final String CONTENT_HASH_ATTR = "contentHash";
+  public static final String CHUNKS_ATTR = "chunks";
+
   private final VFile myFile;
+  private String myContentHash;
+  private int myChunkCount;
 
   public GetVFileContentsXmlMessage(VFile file) {
     myFile = file;
@@ -44,6 +53,7 @@ public class GetVFileContentsXmlMessage implements XmlMessage {
 
   public void fillRequest(Element element) {
     myFile.saveTo(element);
+    element.setAttribute(ACCEPTS_CHUNKS_ATTR, "true");
   }
 
   public void processResponse(Element responseElement) {
@@ -51,5 +61,23 @@ public class GetVFileContentsXmlMessage implements XmlMessage {
     if (from != null) {
       myFile.setContents(from.getContents());
     }
+    myContentHash = responseElement.getAttributeValue(CONTENT_HASH_ATTR);
+    try {
+      String chunks = responseElement.getAttributeValue(CHUNKS_ATTR);
+      myChunkCount = chunks == null ? 0 : Integer.parseInt(chunks);
+    }
+    catch (NumberFormatException e) {
+      myChunkCount = 0;
+    }
+  }
+
+  /** @return hash of the file contents if they were not sent inline and should be downloaded by chunks */
+  @Nullable
+  public String getContentHash() {
+    return myChunkCount > 0 ? myContentHash : null;
+  }
+
+  public int getChunkCount() {
+    return myChunkCount;
   }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.vfs;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Splitting of large file contents into compressed pieces which are transferred by separate messages.
+ * Files up to {@link #INLINE_LIMIT} characters are still sent inline within {@link VFile}.
+ */
+public class VFileChunks {
+  public static final int INLINE_LIMIT = 256 * 1024;
+  public static final int CHUNK_SIZE = 64 * 1024;
+
+  private VFileChunks() {
+  }
+
+  public static boolean shouldSendInChunks(@Nullable String contents) {
+    return contents != null && contents.length() > INLINE_LIMIT;
+  }
+
+  public static int getChunkCount(@NotNull String contents) {
+    return (contents.length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+  }
+
+  @NotNull
+  public static String getContentHash(@NotNull String contents) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(contents.getBytes(StandardCharsets.UTF_8));
+      StringBuilder result = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return result.toString();
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Returns deflated and Base64-encoded chunk, which is safe to be put into XML */
+  @NotNull
+  public static String encodeChunk(@NotNull String contents, int index) {
+    int start = index * CHUNK_SIZE;
+    if (index < 0 || start >= contents.length()) {
+      throw new IllegalArgumentException("No chunk " + index + " in contents of length " + contents.length());
+    }
+    int end = Math.min(contents.length(), start + CHUNK_SIZE);
+    // chars are written as is, so a surrogate pair split between two chunks survives the transfer
+    byte[] bytes = new byte[(end - start) * 2];
+    for (int i = start; i < end; i++) {
+      char c = contents.charAt(i);
+      bytes[(i - start) * 2] = (byte)(c >> 8);
+      bytes[(i - start) * 2 + 1] = (byte)c;
+    }
+
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  @NotNull
+  public static String decodeChunk(@NotNull String encoded) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(Base64.getDecoder().decode(encoded.trim()));
+      ByteArrayOutputStream out = new ByteArrayOutputStream(CHUNK_SIZE * 2);
+      byte[] buffer = new byte[8192];
+      while (!inflater.finished()) {
+        int count = inflater.inflate(buffer);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated file chunk");
+        }
+        out.write(buffer, 0, count);
+      }
+      byte[] bytes = out.toByteArray();
+      char[] chars = new char[bytes.length / 2];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = (char)(((bytes[i * 2] & 0xFF) << 8) | (bytes[i * 2 + 1] & 0xFF));
+      }
+      return new String(chars);
+    }
+    catch (DataFormatException | IllegalArgumentException e) {
+      throw new IOException("Malformed file chunk: " + e.getMessage(), e);
+    }
+    finally {
+      inflater.end();
+    }
+  }
+}
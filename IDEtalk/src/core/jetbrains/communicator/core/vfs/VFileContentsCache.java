@@ -0,0 +1,58 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.vfs;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of file contents keyed by {@link VFileChunks#getContentHash(String) content hash},
+ * limited by the total number of cached characters.
+ */
+public class VFileContentsCache {
+  private final long myMaxChars;
+  private final Map<String, String> myContents = new LinkedHashMap<>(16, 0.75f, true);
+  private long myCachedChars;
+
+  public VFileContentsCache(long maxChars) {
+    myMaxChars = maxChars;
+  }
+
+  @Nullable
+  public synchronized String get(@NotNull String contentHash) {
+    return myContents.get(contentHash);
+  }
+
+  public synchronized void put(@NotNull String contentHash, @NotNull String contents) {
+    if (contents.length() > myMaxChars) return;
+
+    String old = myContents.put(contentHash, contents);
+    if (old != null) {
+      myCachedChars -= old.length();
+    }
+    myCachedChars += contents.length();
+
+    Iterator<String> it = myContents.values().iterator();
+    while (myCachedChars > myMaxChars && it.hasNext()) {
+      myCachedChars -= it.next().length();
+      it.remove();
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.impl.transport;
+
+import jetbrains.communicator.core.transport.GetVFileChunkXmlMessage;
+import jetbrains.communicator.core.transport.GetVFileContentsXmlMessage;
+import jetbrains.communicator.core.users.UserModel;
+import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileChunks;
+import jetbrains.communicator.ide.IDEFacade;
+import org.jdom.Element;
+
+public class GetVFileChunkProvider extends FileAccessProvider {
+
+  public GetVFileChunkProvider(IDEFacade ideFacade, UserModel userModel) {
+    super(ideFacade, userModel);
+  }
+
+  public String getTagName() {
+    return GetVFileChunkXmlMessage.TAG;
+  }
+
+  protected void doProcess(Element request, Element response) {
+    String hash = request.getAttributeValue(GetVFileContentsXmlMessage.CONTENT_HASH_ATTR);
+    if (hash == null) return;
+
+    int index;
+    try {
+      index = Integer.parseInt(request.getAttributeValue(GetVFileChunkXmlMessage.INDEX_ATTR));
+    }
+    catch (NumberFormatException e) {
+      return;
+    }
+
+    ServedContents.Snapshot snapshot = ServedContents.get(hash);
+    if (snapshot == null) {
+      // the snapshot has expired: read the file once more and serve the rest of the transfer from the new snapshot
+      VFile from = VFile.createFrom(request);
+      if (from == null) return;
+      myIdeFacade.fillFileContents(from);
+      if (from.getContents() == null) return;
+      snapshot = ServedContents.snapshot(from, from.getContents());
+      if (!hash.equals(snapshot.getHash())) return; // file was changed meanwhile
+    }
+    if (index < 0 || index >= snapshot.getChunkCount()) return;
+
+    response.setAttribute(GetVFileContentsXmlMessage.CONTENT_HASH_ATTR, hash);
+    response.setAttribute(GetVFileChunkXmlMessage.INDEX_ATTR, String.valueOf(index));
+    response.setText(VFileChunks.encodeChunk(snapshot.getContents(), index));
+  }
+}
@@ -18,6 +18,7 @@ package jetbrains.communicator.core.impl.transport;
 import jetbrains.communicator.core.transport.GetVFileContentsXmlMessage;
 import jetbrains.communicator.core.users.UserModel;
 import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileChunks;
 import jetbrains.communicator.ide.IDEFacade;
 import org.jdom.Element;
 
@@ -37,6 +38,19 @@ public class GetVFileContentsProvider extends FileAccessProvider {
   protected void doProcess(Element request, Element response) {
     VFile from = VFile.createFrom(request);
     myIdeFacade.fillFileContents(from);
-    from.saveTo(response);
+
+    String contents = from.getContents();
+    if ("true".equals(request.getAttributeValue(GetVFileContentsXmlMessage.ACCEPTS_CHUNKS_ATTR)) &&
+        VFileChunks.shouldSendInChunks(contents)) {
+      ServedContents.Snapshot snapshot = ServedContents.snapshot(from, contents);
+
+      from.setContents(null);
+      from.saveTo(response);
+      response.setAttribute(GetVFileContentsXmlMessage.CONTENT_HASH_ATTR, snapshot.getHash());
+      response.setAttribute(GetVFileContentsXmlMessage.CHUNKS_ATTR, String.valueOf(snapshot.getChunkCount()));
+    }
+    else {
+      from.saveTo(response);
+    }
   }
 }
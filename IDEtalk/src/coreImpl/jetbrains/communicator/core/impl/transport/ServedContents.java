@@ -0,0 +1,174 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.impl.transport;
+
+import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileChunks;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Snapshots of large files offered for chunked download.
+ * <p>
+ * A snapshot is taken once per served content hash, and all chunks of the transfer are cut from it,
+ * so the file is neither re-read nor re-hashed for every chunk. Snapshots are dropped after {@link #LIFETIME} ms
+ * without requests, and the least recently requested ones are dropped once all snapshots together exceed
+ * {@link #MAX_TOTAL_LENGTH} characters; a transfer whose snapshot was dropped reads the file again.
+ * Snapshots are also remembered by file path, so that requesting an unchanged file again does not hash it again.
+ */
+class ServedContents {
+  static final long LIFETIME = 5 * 60 * 1000;
+  static final long MAX_TOTAL_LENGTH = 16 * 1024 * 1024;
+
+  private static final Map<String, Snapshot> ourByHash = new LinkedHashMap<>(16, 0.75f, true);
+  private static final Map<String, Snapshot> ourByPath = new HashMap<>();
+  private static long ourTotalLength;
+  private static Timer ourTimer;
+
+  private ServedContents() {
+  }
+
+  @NotNull
+  static synchronized Snapshot snapshot(@NotNull VFile file, @NotNull String contents) {
+    dropExpired();
+
+    String path = getPathKey(file);
+    Snapshot snapshot = ourByPath.get(path);
+    if (snapshot == null || !snapshot.myContents.equals(contents)) {
+      String hash = VFileChunks.getContentHash(contents);
+      snapshot = ourByHash.get(hash);
+      if (snapshot == null) {
+        snapshot = new Snapshot(hash, contents);
+        ourByHash.put(hash, snapshot);
+        ourTotalLength += contents.length();
+        dropLeastRecentlyUsed();
+        scheduleExpiration();
+      }
+      ourByPath.put(path, snapshot);
+    }
+    else {
+      ourByHash.get(snapshot.myHash); // mark as recently used
+    }
+    snapshot.myLastAccess = System.currentTimeMillis();
+    return snapshot;
+  }
+
+  @Nullable
+  static synchronized Snapshot get(@NotNull String contentHash) {
+    dropExpired();
+
+    Snapshot snapshot = ourByHash.get(contentHash);
+    if (snapshot != null) {
+      snapshot.myLastAccess = System.currentTimeMillis();
+    }
+    return snapshot;
+  }
+
+  private static void dropExpired() {
+    long expired = System.currentTimeMillis() - LIFETIME;
+    boolean dropped = false;
+    for (Iterator<Snapshot> it = ourByHash.values().iterator(); it.hasNext(); ) {
+      Snapshot snapshot = it.next();
+      if (snapshot.myLastAccess < expired) {
+        it.remove();
+        drop(snapshot);
+        dropped = true;
+      }
+    }
+    if (dropped) {
+      dropStalePaths();
+    }
+  }
+
+  private static void dropLeastRecentlyUsed() {
+    boolean dropped = false;
+    // the snapshot being served is the most recently used one, it is kept even if it exceeds the limit alone
+    for (Iterator<Snapshot> it = ourByHash.values().iterator(); ourTotalLength > MAX_TOTAL_LENGTH && ourByHash.size() > 1; ) {
+      Snapshot snapshot = it.next();
+      it.remove();
+      drop(snapshot);
+      dropped = true;
+    }
+    if (dropped) {
+      dropStalePaths();
+    }
+  }
+
+  private static void drop(Snapshot snapshot) {
+    ourTotalLength -= snapshot.myContents.length();
+    snapshot.myDropped = true;
+  }
+
+  private static void dropStalePaths() {
+    for (Iterator<Snapshot> it = ourByPath.values().iterator(); it.hasNext(); ) {
+      if (it.next().myDropped) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Releases expired snapshots even when no more files are requested.
+   */
+  private static void scheduleExpiration() {
+    if (ourTimer != null) return;
+    ourTimer = new Timer("IDEtalk served contents expiration", true);
+    ourTimer.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        synchronized (ServedContents.class) {
+          dropExpired();
+          if (ourByHash.isEmpty() && ourTimer != null) {
+            ourTimer.cancel();
+            ourTimer = null;
+          }
+        }
+      }
+    }, LIFETIME, LIFETIME);
+  }
+
+  private static String getPathKey(VFile file) {
+    return file.getProjectName() + '\n' + file.getFullPath() + '\n' + file.getContentPath();
+  }
+
+  static class Snapshot {
+    private final String myHash;
+    private final String myContents;
+    private final int myChunkCount;
+    private long myLastAccess;
+    private boolean myDropped;
+
+    private Snapshot(String hash, String contents) {
+      myHash = hash;
+      myContents = contents;
+      myChunkCount = VFileChunks.getChunkCount(contents);
+    }
+
+    String getHash() {
+      return myHash;
+    }
+
+    String getContents() {
+      return myContents;
+    }
+
+    int getChunkCount() {
+      return myChunkCount;
+    }
+  }
+}
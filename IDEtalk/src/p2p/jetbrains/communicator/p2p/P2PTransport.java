@@ -56,6 +56,7 @@ import org.picocontainer.MutablePicoContainer;
 import javax.swing.*;
 import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Kir Maximov
@@ -67,12 +68,16 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
 
   static final int XML_RPC_PORT = MulticastPingThread.MULTICAST_PORT + 1;
 
+  /**
+   * In delta presence mode a peer is considered gone after it has not answered this number of heartbeat scans in a row
+   */
+  static final int MAX_MISSED_HEARTBEATS = 2;
+
   private final UserMonitorThread myUserMonitorThread;
+  private final boolean myDeltaPresence;
 
-  private final Object myLock = new Object();
-  private final Map<User, OnlineUserInfo> myUserToInfo = new THashMap<>();
-  private final Map<User, OnlineUserInfo> myUserToInfoNew = new THashMap<>();
-  private final Collection<User> myOnlineUsers = new THashSet<>();
+  private final PresenceTracker myOnlineUsers = new PresenceTracker();
+  private final Map<User, OnlineUserInfo> myUserToInfoNew = new ConcurrentHashMap<>();
 
   private final EventBroadcaster myEventBroadcaster;
   private final IDEtalkListener myUserAddedCallbackListener;
@@ -85,6 +90,15 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
   }
 
   public P2PTransport(AsyncMessageDispatcher asyncMessageDispatcher, UserModel userModel, long waitUserResponsesTimeout) {
+    this(asyncMessageDispatcher, userModel, waitUserResponsesTimeout, Boolean.getBoolean(UserMonitorThread.DELTA_PRESENCE_PROPERTY));
+  }
+
+  /**
+   * @param deltaPresence when set, presence changes are announced to online peers directly and responses are applied
+   *                      to the online users one by one, instead of replacing the whole list after each scan
+   */
+  public P2PTransport(AsyncMessageDispatcher asyncMessageDispatcher, UserModel userModel, long waitUserResponsesTimeout,
+                      boolean deltaPresence) {
     myEventBroadcaster = userModel.getBroadcaster();
     myAsyncMessageDispatcher = asyncMessageDispatcher;
     myUserModel = userModel;
@@ -102,6 +116,7 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
     };
 
     myOwnPresence = new UserPresence(true);
+    myDeltaPresence = deltaPresence;
     myUserMonitorThread = new UserMonitorThread(this, waitUserResponsesTimeout);
 
     Map<String, Object> handlers = CustomPortServerManager.EP_NAME.findExtension(P2PCustomPortServerManager.class).handlers;
@@ -188,6 +203,10 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
     return myAsyncMessageDispatcher.getIdeFacade();
   }
 
+  boolean isDeltaPresence() {
+    return myDeltaPresence;
+  }
+
   @Override
   public void dispose() {
     try {
@@ -254,7 +273,8 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
   public User[] findUsers(ProgressIndicator progressIndicator) {
     myUserMonitorThread.findNow(progressIndicator);
 
-    return myOnlineUsers.toArray(new User[0]);
+    Set<User> users = myOnlineUsers.getUsers();
+    return users.toArray(new User[0]);
   }
 
   @Override
@@ -269,14 +289,8 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
 
   @Override
   public UserPresence getUserPresence(User user) {
-    boolean online;
-    synchronized (myLock) {
-      online = myOnlineUsers.contains(user);
-      if (online) {
-        return getNotNullOnlineInfo(user).getPresence();
-      }
-    }
-    return new UserPresence(false);
+    OnlineUserInfo info = myOnlineUsers.get(user);
+    return info != null ? info.getPresence() : new UserPresence(false);
   }
 
   public InetAddress getAddress(User p2PUser) {
@@ -305,10 +319,7 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
 
   @NotNull
   private OnlineUserInfo getNotNullOnlineInfo(User user) {
-    OnlineUserInfo result;
-    synchronized (myLock) {
-      result = myUserToInfo.get(user);
-    }
+    OnlineUserInfo result = myOnlineUsers.get(user);
     if (result == null) {
       result = new OnlineUserInfo(null, -1, new THashSet<>(), new UserPresence(false));
     }
@@ -338,6 +349,11 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
 
   @Override
   public void setOwnPresence(UserPresence userPresence) {
+    boolean changed = !userPresence.equals(myOwnPresence);
+    if (myDeltaPresence && changed) {
+      announceSelfToOnlineUsers(userPresence);
+    }
+
     if (!myOwnPresence.isOnline() && userPresence.isOnline()) {
       startup();
     }
@@ -352,6 +368,37 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
     myOwnPresence = userPresence;
   }
 
+  private void announceSelfToOnlineUsers(UserPresence presence) {
+    final List<OnlineUserInfo> targets = new ArrayList<>();
+    for (User user : myOnlineUsers.getUsers()) {
+      OnlineUserInfo info = myOnlineUsers.get(user);
+      if (info != null && !isSelf(user)) {
+        targets.add(info);
+      }
+    }
+    if (targets.isEmpty()) return;
+
+    getIdeFacade().runOnPooledThread(() -> {
+      for (OnlineUserInfo target : targets) {
+        announceSelfTo(target, presence);
+      }
+    });
+  }
+
+  /**
+   * Sends own state straight to the given peer, so it does not have to wait for its next scan to notice the change
+   */
+  protected void announceSelfTo(@NotNull OnlineUserInfo target, @NotNull UserPresence presence) {
+    InetAddress targetAddress = target.getAddress();
+    if (targetAddress == null || target.getPort() <= 0) return;
+
+    Iterator<InetAddress> selfAddresses = NetworkUtil.getSelfAddresses().iterator();
+    if (!selfAddresses.hasNext()) return;
+
+    AddOnlineUserP2PCommand.addSelfTo(target.getPort(), targetAddress, selfAddresses.next(), getPort(),
+                                      Arrays.asList(getIdeFacade().getProjects()), presence);
+  }
+
   private boolean selfBecomeAvailable(UserPresence userPresence) {
     return
         myOwnPresence.getPresenceMode() != PresenceMode.AVAILABLE &&
@@ -368,47 +415,41 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
 
   @Override
   public void setOnlineUsers(@NotNull Collection<User> onlineUsers) {
+    if (myDeltaPresence) {
+      removeExpiredUsers(onlineUsers);
+      return;
+    }
+
     removeOfflineUsersAndUpdateOldOnlineUsers(onlineUsers);
     addNewOnlineUsers(onlineUsers);
-    synchronized (myLock) {
-      myUserToInfoNew.clear();
-    }
+    myUserToInfoNew.clear();
   }
 
   public void setAvailable(String remoteUser) {
     final User user = myUserModel.findUser(remoteUser, getName());
     if (user != null) {
-      UserPresence oldPresence = getNotNullOnlineInfo(user).getPresence();
-      UserPresence newPresence = new UserPresence(true);
-      myEventBroadcaster.doChange(new UserEvent.Updated(user, "presence", oldPresence, newPresence), new MySyncRunnable() {
-        @Override
-        protected void execute() {
+      myOnlineUsers.transition(user, () -> {
+        UserPresence oldPresence = getNotNullOnlineInfo(user).getPresence();
+        UserPresence newPresence = new UserPresence(true);
+        myEventBroadcaster.doChange(new UserEvent.Updated(user, "presence", oldPresence, newPresence), () -> {
           OnlineUserInfo onlineInfo = getNotNullOnlineInfo(user);
           onlineInfo.setPresence(new UserPresence(true));
-          myUserToInfo.put(user, onlineInfo);
-        }
+          myOnlineUsers.put(user, onlineInfo);
+        });
       });
     }
   }
 
-  private abstract class MySyncRunnable implements Runnable {
-    @Override
-    public final void run() {
-      synchronized (myLock) {
-        execute();
-      }
-    }
-
-    protected abstract void execute();
-  }
-
   @Override
   public User createUser(String remoteUsername, @NotNull OnlineUserInfo onlineUserInfo) {
-    synchronized (myLock) {
-      User user = myUserModel.createUser(remoteUsername, CODE);
+    User user = myUserModel.createUser(remoteUsername, CODE);
+    if (myDeltaPresence) {
+      applyPresenceDelta(user, onlineUserInfo);
+    }
+    else {
       myUserToInfoNew.put(user, onlineUserInfo);
-      return user;
     }
+    return user;
   }
 
   void flushCurrentUsers() {
@@ -430,17 +471,10 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
 
   private void addNewOnlineUsers(@NotNull Collection<User> onlineUsers) {
     List<Pair<IDEtalkEvent, Runnable>> events = new SmartList<>();
-    synchronized (myLock) {
-      for (final User user : onlineUsers) {
-        if (!myOnlineUsers.contains(user) && myUserToInfoNew.containsKey(user)) {
-          events.add(new Pair<>(new UserEvent.Online(user), new MySyncRunnable() {
-            @Override
-            protected void execute() {
-              myOnlineUsers.add(user);
-              myUserToInfo.put(user, myUserToInfoNew.get(user));
-            }
-          }));
-        }
+    for (final User user : onlineUsers) {
+      final OnlineUserInfo onlineUserInfo = myUserToInfoNew.get(user);
+      if (!myOnlineUsers.contains(user) && onlineUserInfo != null) {
+        events.add(new Pair<>(new UserEvent.Online(user), () -> myOnlineUsers.put(user, onlineUserInfo)));
       }
     }
 
@@ -449,38 +483,21 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
 
   private void removeOfflineUsersAndUpdateOldOnlineUsers(@NotNull Collection onlineUsers) {
     List<Pair<IDEtalkEvent, Runnable>> events = new SmartList<>();
-    synchronized (myLock) {
-      for (final User user : myOnlineUsers) {
-        if (!onlineUsers.contains(user)) {
-          // User was removed
-          events.add(new Pair<>(new UserEvent.Offline(user), new MySyncRunnable() {
-            @Override
-            protected void execute() {
-              myOnlineUsers.remove(user);
-              myUserToInfo.remove(user);
-            }
-          }));
+    for (final User user : myOnlineUsers.getUsers()) {
+      if (!onlineUsers.contains(user)) {
+        // User was removed
+        events.add(new Pair<>(new UserEvent.Offline(user), () -> myOnlineUsers.remove(user)));
+      }
+      else {
+        // User already exists
+        final OnlineUserInfo onlineUserInfo = myUserToInfoNew.get(user);
+        if (onlineUserInfo == null) {
+          continue;
         }
-        else {
-          // User already exists
-          UserPresence oldPresence = getNotNullOnlineInfo(user).getPresence();
-          final OnlineUserInfo onlineUserInfo = myUserToInfoNew.get(user);
-          if (onlineUserInfo == null) {
-            return;
-          }
 
-          UserPresence newPresence = onlineUserInfo.getPresence();
-          if (!newPresence.equals(oldPresence)) {
-            events.add(new Pair<>(new UserEvent.Updated(user, "presence", oldPresence, newPresence), new MySyncRunnable() {
-              @Override
-              protected void execute() {
-                myUserToInfo.put(user, onlineUserInfo);
-              }
-            }));
-          }
-          else {
-            myUserToInfo.put(user, onlineUserInfo);
-          }
+        Pair<IDEtalkEvent, Runnable> event = createUpdateEvent(user, onlineUserInfo);
+        if (event != null) {
+          events.add(event);
         }
       }
     }
@@ -488,14 +505,82 @@ public class P2PTransport implements Transport, UserMonitorClient, Disposable {
     dispatchEvents(events);
   }
 
-  private void dispatchEvents(List<Pair<IDEtalkEvent, Runnable>> events) {
-    for (Pair<IDEtalkEvent, Runnable> event : events) {
-      try {
-        myEventBroadcaster.doChange(event.first, event.second);
+  /**
+   * @return presence change event for already online user, or null if presence is the same and new info was stored silently
+   */
+  @Nullable
+  private Pair<IDEtalkEvent, Runnable> createUpdateEvent(final User user, final OnlineUserInfo onlineUserInfo) {
+    UserPresence oldPresence = getNotNullOnlineInfo(user).getPresence();
+    UserPresence newPresence = onlineUserInfo.getPresence();
+    if (!newPresence.equals(oldPresence)) {
+      return new Pair<>(new UserEvent.Updated(user, "presence", oldPresence, newPresence), () -> myOnlineUsers.put(user, onlineUserInfo));
+    }
+    myOnlineUsers.put(user, onlineUserInfo);
+    return null;
+  }
+
+  /**
+   * Delta presence mode: applies a single announcement or scan response to the online users immediately.
+   * A newly seen peer gets our own state in return, so both sides know about each other without waiting for a scan.
+   * <p>
+   * Deltas arrive on several threads, so the state of a user is checked and changed in a {@link PresenceTracker#transition}:
+   * listeners see the old state in beforeChange, each transition is reported once and no lock is held while they run.
+   */
+  private void applyPresenceDelta(final User user, final OnlineUserInfo onlineUserInfo) {
+    myOnlineUsers.transition(user, () -> {
+      OnlineUserInfo oldInfo = myOnlineUsers.get(user);
+      if (!onlineUserInfo.getPresence().isOnline()) {
+        if (oldInfo != null) {
+          dispatchEvent(new UserEvent.Offline(user), () -> myOnlineUsers.remove(user));
+        }
+        return;
+      }
+
+      if (oldInfo == null) {
+        dispatchEvent(new UserEvent.Online(user), () -> myOnlineUsers.put(user, onlineUserInfo));
+        if (myOwnPresence.isOnline()) {
+          getIdeFacade().runOnPooledThread(() -> announceSelfTo(onlineUserInfo, myOwnPresence));
+        }
+        return;
+      }
+
+      UserPresence oldPresence = oldInfo.getPresence();
+      UserPresence newPresence = onlineUserInfo.getPresence();
+      if (!newPresence.equals(oldPresence)) {
+        dispatchEvent(new UserEvent.Updated(user, "presence", oldPresence, newPresence), () -> myOnlineUsers.put(user, onlineUserInfo));
       }
-      catch (Throwable e) {
-        LOG.error(e);
+      else {
+        myOnlineUsers.put(user, onlineUserInfo);
       }
+    });
+  }
+
+  /**
+   * Delta presence mode: the heartbeat scan is over, peers that did not answer several scans in a row go offline
+   */
+  private void removeExpiredUsers(@NotNull Collection<User> respondedUsers) {
+    for (final User user : myOnlineUsers.heartbeat(respondedUsers, MAX_MISSED_HEARTBEATS)) {
+      myOnlineUsers.transition(user, () -> {
+        // the peer could go offline or announce itself again since the scan
+        if (myOnlineUsers.isExpired(user, MAX_MISSED_HEARTBEATS)) {
+          dispatchEvent(new UserEvent.Offline(user), () -> myOnlineUsers.remove(user));
+        }
+      });
+    }
+  }
+
+  private void dispatchEvent(IDEtalkEvent event, Runnable action) {
+    try {
+      myEventBroadcaster.doChange(event, action);
+    }
+    catch (Throwable e) {
+      LOG.error(e);
+    }
+  }
+
+  private void dispatchEvents(List<Pair<IDEtalkEvent, Runnable>> events) {
+    for (Pair<IDEtalkEvent, Runnable> event : events) {
+      dispatchEvent(event.first, event.second);
     }
   }
 
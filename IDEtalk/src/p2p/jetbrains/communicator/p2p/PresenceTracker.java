@@ -0,0 +1,128 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.p2p;
+
+import jetbrains.communicator.core.users.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Online users known to P2P transport together with the number of heartbeats each of them has missed.
+ * Single operations are thread-safe, callers which combine them run the combination as a {@link #transition}.
+ */
+final class PresenceTracker {
+  private final ConcurrentMap<User, Entry> myEntries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<User, Transitions> myTransitions = new ConcurrentHashMap<>();
+
+  boolean contains(User user) {
+    return myEntries.containsKey(user);
+  }
+
+  @Nullable
+  OnlineUserInfo get(User user) {
+    Entry entry = myEntries.get(user);
+    return entry == null ? null : entry.myInfo;
+  }
+
+  void put(@NotNull User user, @NotNull OnlineUserInfo info) {
+    myEntries.put(user, new Entry(info));
+  }
+
+  @Nullable
+  OnlineUserInfo remove(User user) {
+    Entry entry = myEntries.remove(user);
+    return entry == null ? null : entry.myInfo;
+  }
+
+  @NotNull
+  Set<User> getUsers() {
+    return new HashSet<>(myEntries.keySet());
+  }
+
+  void clear() {
+    myEntries.clear();
+  }
+
+  /**
+   * Registers a finished heartbeat round: users from {@code respondedUsers} are marked as alive,
+   * all others get one more missed heartbeat.
+   *
+   * @return users which have missed at least {@code maxMissedHeartbeats} heartbeats in a row
+   */
+  @NotNull
+  List<User> heartbeat(@NotNull Collection<User> respondedUsers, int maxMissedHeartbeats) {
+    List<User> expired = new ArrayList<>();
+    for (Map.Entry<User, Entry> entry : myEntries.entrySet()) {
+      Entry state = entry.getValue();
+      if (respondedUsers.contains(entry.getKey())) {
+        state.myMissedHeartbeats = 0;
+      }
+      else if (++state.myMissedHeartbeats >= maxMissedHeartbeats) {
+        expired.add(entry.getKey());
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * @return whether the user is online and has missed at least {@code maxMissedHeartbeats} heartbeats in a row
+   */
+  boolean isExpired(User user, int maxMissedHeartbeats) {
+    Entry entry = myEntries.get(user);
+    return entry != null && entry.myMissedHeartbeats >= maxMissedHeartbeats;
+  }
+
+  /**
+   * Runs a change of the user's state after the changes of that user queued before it: changes of one user never overlap,
+   * changes of different users run in parallel. No lock is held while the change runs, a thread which finds another one
+   * running the user's changes leaves its change to that thread, so the change may be done when this method returns.
+   */
+  void transition(@NotNull User user, @NotNull Runnable change) {
+    Transitions transitions = myTransitions.computeIfAbsent(user, u -> new Transitions());
+    transitions.myPending.add(change);
+    while (!transitions.myPending.isEmpty() && transitions.myRunning.compareAndSet(false, true)) {
+      try {
+        Runnable pending;
+        while ((pending = transitions.myPending.poll()) != null) {
+          pending.run();
+        }
+      }
+      finally {
+        transitions.myRunning.set(false);
+      }
+    }
+  }
+
+  private static final class Transitions {
+    private final Queue<Runnable> myPending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean myRunning = new AtomicBoolean();
+  }
+
+  private static final class Entry {
+    private final OnlineUserInfo myInfo;
+    private volatile int myMissedHeartbeats;
+
+    private Entry(OnlineUserInfo info) {
+      myInfo = info;
+    }
+  }
+}
@@ -44,11 +44,19 @@ public class UserMonitorThread extends Thread {
   static final long WAIT_USER_RESPONSES_TIMEOUT = 3000;
   static final String SCAN_TIMEOUT_PROPERTY = "ideTalk.scanTimeout";
   static final long TIMEOUT_BETWEEN_SCANS = 3 * Time.MINUTE;
+  static final String DELTA_PRESENCE_PROPERTY = "ideTalk.deltaPresence";
+  /**
+   * Scans of different hosts are spread over this fraction of the interval between scans, so that peers which were
+   * started together do not multicast (and get hundreds of responses) at the same moment
+   */
+  static final double HEARTBEAT_JITTER = 0.2;
 
   private final MulticastPingThread[] myMulticastThreads;
   private final UserMonitorClient myClient;
   private final long myWaitUserResponsesTimeout;
   private final long myScansTimeout;
+  private final long myScansJitter;
+  private final Random myRandom = new Random();
 
   private final Set<User> myAvailableUsers = Collections.synchronizedSet(new THashSet<User>());
 
@@ -58,10 +66,15 @@ public class UserMonitorThread extends Thread {
   private final Object myLock = new Object();
 
   public UserMonitorThread(P2PTransport client, long waitUserResponsesTimeout) {
-    this(createMulticastThreads(client), client, waitUserResponsesTimeout);
+    this(createMulticastThreads(client), client, waitUserResponsesTimeout, client.isDeltaPresence() ? HEARTBEAT_JITTER : 0);
   }
 
   UserMonitorThread(MulticastPingThread[] multicastPingThread, UserMonitorClient client, long waitUserResponsesTimeout) {
+    this(multicastPingThread, client, waitUserResponsesTimeout, 0);
+  }
+
+  UserMonitorThread(MulticastPingThread[] multicastPingThread, UserMonitorClient client, long waitUserResponsesTimeout,
+                    double scansJitter) {
     super("User Monitor Thread");
 
     setDaemon(true);
@@ -84,6 +97,7 @@ public class UserMonitorThread extends Thread {
         throw e;
       }
     }
+    myScansJitter = (long)(myScansTimeout * scansJitter);
   }
 
   private static MulticastPingThread[] createMulticastThreads(P2PTransport client) {
@@ -216,7 +230,7 @@ public class UserMonitorThread extends Thread {
     try {
       synchronized (myLock) {
         while (isRunning() && !isFinding()) {
-          myLock.wait(myScansTimeout);
+          myLock.wait(getNextScanTimeout());
           startFindingUsers();
         }
       }
@@ -226,6 +240,11 @@ public class UserMonitorThread extends Thread {
     }
   }
 
+  long getNextScanTimeout() {
+    if (myScansJitter <= 0) return myScansTimeout;
+    return myScansTimeout - myScansJitter / 2 + (long)(myRandom.nextDouble() * myScansJitter);
+  }
+
   public void addOnlineUser(String remoteAddress, String remoteUsername, Integer remotePort, Collection<String> projects, UserPresence presence) {
     try {
       if (LOG.isDebugEnabled()) {
@@ -23,6 +23,7 @@ import jetbrains.communicator.core.users.User;
 import jetbrains.communicator.core.users.UserPresence;
 import jetbrains.communicator.core.vfs.ProjectsData;
 import jetbrains.communicator.core.vfs.VFile;
+import jetbrains.communicator.core.vfs.VFileChunks;
 import jetbrains.communicator.mock.MockIDEFacade;
 import jetbrains.communicator.util.WaitFor;
 import jetbrains.communicator.util.WatchDog;
@@ -151,6 +152,29 @@ public abstract class AbstractTransportTestCase extends BaseTestCase {
     assertEquals("Should successfully return file text", new String(buf), vFile.getContents() );
   }
 
+  public void testGetFileContent_ChunkedFile() {
+    VFile vFile = VFile.create("a path");
+    myUserModel.addUser(mySelf);
+    mySelf.setCanAccessMyFiles(true, myUserModel);
+
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; text.length() <= VFileChunks.INLINE_LIMIT * 2; i++) {
+      text.append("line ").append(i).append(" \u0441\u0442\u0440\u043e\u043a\u0430 &<>\n");
+    }
+    myIdeFacade.setReturnedFileText(vFile, text.toString());
+    myIdeFacade.getAndClearFileReads();
+
+    WatchDog s = new WatchDog("get " + text.length() + " chars file by chunks");
+    mySelf.getVFile(vFile, myIdeFacade);
+    s.stop();
+    assertEquals("Should successfully return file text", text.toString(), vFile.getContents());
+    assertEquals("Chunks should be served from a single snapshot", 1, myIdeFacade.getAndClearFileReads());
+
+    VFile sameFile = VFile.create("a path");
+    mySelf.getVFile(sameFile, myIdeFacade);
+    assertEquals("Should return the same text again", text.toString(), sameFile.getContents());
+  }
+
   public void testGetFileContent_NoRights() {
     VFile vFile = VFile.create("a path");
     myUserModel.addUser(mySelf);
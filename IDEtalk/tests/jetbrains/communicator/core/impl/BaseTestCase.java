@@ -23,6 +23,7 @@ import jetbrains.communicator.LightTestCase;
 import jetbrains.communicator.core.*;
 import jetbrains.communicator.core.impl.transport.CodePointerEventProvider;
 import jetbrains.communicator.core.impl.transport.GetProjectsDataProvider;
+import jetbrains.communicator.core.impl.transport.GetVFileChunkProvider;
 import jetbrains.communicator.core.impl.transport.GetVFileContentsProvider;
 import jetbrains.communicator.core.transport.TextMessageEventProvider;
 import jetbrains.communicator.core.transport.XmlResponseProvider;
@@ -107,6 +108,7 @@ public abstract class BaseTestCase extends LightTestCase {
   protected void registerResponseProviders(UserModel userModel, IDEFacade ideFacade) {
     final XmlResponseProvider[] providers = {
         new GetVFileContentsProvider(ideFacade, userModel),
+        new GetVFileChunkProvider(ideFacade, userModel),
         new GetProjectsDataProvider(ideFacade, userModel),
         new CodePointerEventProvider(getBroadcaster()),
         new TextMessageEventProvider(getBroadcaster()),
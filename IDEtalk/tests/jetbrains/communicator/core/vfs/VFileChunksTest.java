@@ -0,0 +1,73 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.core.vfs;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+public class VFileChunksTest extends TestCase {
+
+  public void testSmallFileIsInline() {
+    assertFalse(VFileChunks.shouldSendInChunks(null));
+    assertFalse(VFileChunks.shouldSendInChunks("some text"));
+  }
+
+  public void testSplitAndJoin() throws IOException {
+    StringBuilder text = new StringBuilder();
+    while (text.length() < VFileChunks.CHUNK_SIZE * 3 - 1) {
+      // surrogate pairs will be split between chunks at some point
+      text.append("\ud83d\ude00 \u0441\u043e\u0434\u0435\u0440\u0436\u0430\u043d\u0438\u0435 <&>\u0000\n");
+    }
+    String contents = text.toString();
+
+    int chunkCount = VFileChunks.getChunkCount(contents);
+    assertEquals(3, chunkCount);
+
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < chunkCount; i++) {
+      String encoded = VFileChunks.encodeChunk(contents, i);
+      assertTrue("Chunk should be compressed", encoded.length() < VFileChunks.CHUNK_SIZE);
+      result.append(VFileChunks.decodeChunk(encoded));
+    }
+    assertEquals(contents, result.toString());
+    assertEquals(VFileChunks.getContentHash(contents), VFileChunks.getContentHash(result.toString()));
+  }
+
+  public void testMalformedChunk() {
+    try {
+      VFileChunks.decodeChunk("not a chunk");
+      fail("Exception expected");
+    }
+    catch (IOException ignored) {
+    }
+  }
+
+  public void testContentsCache() {
+    VFileContentsCache cache = new VFileContentsCache(10);
+    cache.put("a", "12345");
+    cache.put("b", "67890");
+    assertEquals("12345", cache.get("a"));
+
+    cache.put("c", "abc");
+    assertNull("Least recently used entry should be evicted", cache.get("b"));
+    assertEquals("12345", cache.get("a"));
+    assertEquals("abc", cache.get("c"));
+
+    cache.put("d", "too long for this cache");
+    assertNull(cache.get("d"));
+  }
+}
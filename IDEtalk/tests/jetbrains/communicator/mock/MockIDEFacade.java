@@ -51,6 +51,7 @@ public class MockIDEFacade implements IDEFacade {
   private LocalMessage myMessageToReturn;
   private String[] myProjects = ArrayUtil.EMPTY_STRING_ARRAY;
   private final Map<Cloneable,String> myFileText = new HashMap<>();
+  private int myFileReads;
   private String myMessage;
   private String myProjectId;
   private String myProjectName;
@@ -108,6 +109,7 @@ public class MockIDEFacade implements IDEFacade {
 
   @Override
   public void fillFileContents(VFile vFile) {
+    myFileReads ++;
     vFile.setContents(myFileText.get(vFile));
   }
 
@@ -248,6 +250,12 @@ public class MockIDEFacade implements IDEFacade {
     myFileText.put(vFile, s);
   }
 
+  public int getAndClearFileReads() {
+    int result = myFileReads;
+    myFileReads = 0;
+    return result;
+  }
+
   public void setReturnedProjectId(String s) {
     myProjectId = s;
   }
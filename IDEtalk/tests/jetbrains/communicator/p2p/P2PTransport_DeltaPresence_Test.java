@@ -0,0 +1,279 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.communicator.p2p;
+
+import jetbrains.communicator.core.IDEtalkAdapter;
+import jetbrains.communicator.core.IDEtalkEvent;
+import jetbrains.communicator.core.Pico;
+import jetbrains.communicator.core.impl.BaseTestCase;
+import jetbrains.communicator.core.impl.dispatcher.AsyncMessageDispatcherImpl;
+import jetbrains.communicator.core.impl.users.UserModelImpl;
+import jetbrains.communicator.core.users.PresenceMode;
+import jetbrains.communicator.core.users.User;
+import jetbrains.communicator.core.users.UserEvent;
+import jetbrains.communicator.core.users.UserPresence;
+import jetbrains.communicator.mock.MockIDEFacade;
+import jetbrains.communicator.util.WaitFor;
+
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulates a large LAN on the loopback interface: every peer is a distinct port on 127.0.0.1,
+ * announcements are fed to the transport the same way AddOnlineUser XML-RPC calls deliver them.
+ */
+public class P2PTransport_DeltaPresence_Test extends BaseTestCase {
+  private static final int PEERS = 300;
+  private static final int THREADS = 8;
+
+  private P2PTransport myTransport;
+  private UserModelImpl myUserModel;
+  private InetAddress myLoopback;
+  private final AtomicInteger myAnnouncements = new AtomicInteger();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myLoopback = InetAddress.getLoopbackAddress();
+    myUserModel = new UserModelImpl(getBroadcaster());
+    disposeOnTearDown(myUserModel);
+    MockIDEFacade ideFacade = new MockIDEFacade(getClass());
+    AsyncMessageDispatcherImpl dispatcher = new AsyncMessageDispatcherImpl(getBroadcaster(), ideFacade);
+    disposeOnTearDown(dispatcher);
+
+    myTransport = new P2PTransport(dispatcher, myUserModel, P2PTransportTest.WAIT_USER_RESPONSES_TIMEOUT, true) {
+      @Override
+      protected void announceSelfTo(OnlineUserInfo target, UserPresence presence) {
+        myAnnouncements.incrementAndGet();
+      }
+    };
+    Pico.getInstance().registerComponentInstance(myTransport);
+
+    // Wait until the initial scan is over, the next one is minutes away
+    new WaitFor(1000) {
+      @Override
+      protected boolean condition() {
+        return !myTransport.getUserMonitorThread().isFinding();
+      }
+    };
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (myTransport != null) {
+      myTransport.dispose();
+      Pico.getInstance().unregisterComponentByInstance(myTransport);
+    }
+    super.tearDown();
+  }
+
+  @Override
+  protected IDEtalkAdapter createListener() {
+    return new IDEtalkAdapter() {
+      @Override
+      public void afterChange(IDEtalkEvent event) {
+        synchronized (myEvents) {
+          myEvents.add(event);
+        }
+      }
+    };
+  }
+
+  public void testAnnouncementsFromManyPeers() throws Exception {
+    addEventListener();
+
+    announceAll(PresenceMode.AVAILABLE);
+
+    assertEquals("Every peer should get online once: " + myEvents.size(), PEERS, countEvents(UserEvent.Online.class));
+    for (int i = 0; i < PEERS; i ++) {
+      assertTrue(peer(i).isOnline());
+    }
+    new WaitFor(1000) {
+      @Override
+      protected boolean condition() {
+        return myAnnouncements.get() == PEERS;
+      }
+    };
+    assertEquals("Each new peer should get own state back", PEERS, myAnnouncements.get());
+  }
+
+  public void testRepeatedAnnouncementsProduceNoEvents() throws Exception {
+    announceAll(PresenceMode.AVAILABLE);
+    addEventListener();
+    myEvents.clear();
+
+    announceAll(PresenceMode.AVAILABLE);
+    assertEquals("Same presence, no events expected: " + myEvents, 0, myEvents.size());
+
+    announce(7, PresenceMode.AWAY);
+    UserEvent.Updated event = (UserEvent.Updated)checkEvent(true);
+    assertEquals("presence", event.getPropertyName());
+    assertEquals(PresenceMode.AWAY, myTransport.getUserPresence(peer(7)).getPresenceMode());
+  }
+
+  public void testOfflineAnnouncement() throws Exception {
+    announceAll(PresenceMode.AVAILABLE);
+    addEventListener();
+    myEvents.clear();
+
+    announce(3, PresenceMode.UNAVAILABLE);
+
+    assertEquals(1, countEvents(UserEvent.Offline.class));
+    assertFalse(peer(3).isOnline());
+    assertTrue(peer(4).isOnline());
+  }
+
+  public void testMissedHeartbeats() throws Exception {
+    announceAll(PresenceMode.AVAILABLE);
+    addEventListener();
+    myEvents.clear();
+
+    Set<User> alive = new HashSet<>();
+    for (int i = 0; i < PEERS; i ++) {
+      if (i % 10 != 0) alive.add(peer(i));
+    }
+
+    myTransport.setOnlineUsers(alive);
+    assertEquals("One missed heartbeat is tolerated: " + myEvents, 0, myEvents.size());
+
+    myTransport.setOnlineUsers(alive);
+    assertEquals(PEERS / 10, countEvents(UserEvent.Offline.class));
+    assertFalse(peer(0).isOnline());
+    assertTrue(peer(1).isOnline());
+  }
+
+  public void testListenersSeeOldStateBeforeChange() throws Exception {
+    final List<String> seen = Collections.synchronizedList(new ArrayList<>());
+    getBroadcaster().addListener(new IDEtalkAdapter() {
+      @Override
+      public void beforeChange(IDEtalkEvent event) {
+        if (event instanceof UserEvent.Online || event instanceof UserEvent.Offline) {
+          User user = ((UserEvent)event).getUser();
+          seen.add(event.getClass().getSimpleName() + ':' + myTransport.getUserPresence(user).isOnline());
+        }
+      }
+    });
+    markLastListenerForCleanup();
+
+    announce(5, PresenceMode.AVAILABLE);
+    announce(5, PresenceMode.UNAVAILABLE);
+
+    assertEquals(Arrays.asList("Online:false", "Offline:true"), seen);
+  }
+
+  public void testListenerWaitsForAnotherPeer() throws Exception {
+    final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    getBroadcaster().addListener(new IDEtalkAdapter() {
+      @Override
+      public void afterChange(IDEtalkEvent event) {
+        if (event instanceof UserEvent.Online && ((UserEvent)event).getUser().equals(peer(0))) {
+          // presence listeners run without a transport-wide lock, so they may wait for other peers' changes
+          Thread other = new Thread(() -> announce(1, PresenceMode.AVAILABLE), "Other peer");
+          other.start();
+          try {
+            other.join(5000);
+          }
+          catch (InterruptedException e) {
+            failures.add(e.toString());
+          }
+          if (other.isAlive()) failures.add("Other peer is blocked");
+        }
+      }
+    });
+    markLastListenerForCleanup();
+
+    announce(0, PresenceMode.AVAILABLE);
+
+    assertEquals(Collections.emptyList(), failures);
+    assertTrue(peer(1).isOnline());
+  }
+
+  public void testExpiryAndOfflineAnnouncementRace() throws Exception {
+    announceAll(PresenceMode.AVAILABLE);
+    addEventListener();
+    myEvents.clear();
+
+    final Set<User> alive = new HashSet<>();
+    myTransport.setOnlineUsers(alive);
+
+    final CountDownLatch done = new CountDownLatch(2);
+    new Thread("Heartbeat") {
+      @Override
+      public void run() {
+        myTransport.setOnlineUsers(alive);
+        done.countDown();
+      }
+    }.start();
+    new Thread("Offline announcements") {
+      @Override
+      public void run() {
+        for (int i = 0; i < PEERS; i ++) {
+          announce(i, PresenceMode.UNAVAILABLE);
+        }
+        done.countDown();
+      }
+    }.start();
+    done.await();
+
+    assertEquals("Each peer should go offline once: " + myEvents.size(), PEERS, countEvents(UserEvent.Offline.class));
+  }
+
+  private void announceAll(final PresenceMode mode) throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(THREADS);
+    for (int t = 0; t < THREADS; t ++) {
+      final int shard = t;
+      new Thread("Peer simulator " + t) {
+        @Override
+        public void run() {
+          try {
+            for (int i = shard; i < PEERS; i += THREADS) {
+              announce(i, mode);
+            }
+          }
+          finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    done.await();
+  }
+
+  private void announce(int peer, PresenceMode mode) {
+    myTransport.getUserMonitorThread().addOnlineUser(myLoopback.getHostAddress(), peerName(peer), 20000 + peer,
+                                                     Collections.singletonList("project"), new UserPresence(mode));
+  }
+
+  private User peer(int i) {
+    return myUserModel.createUser(peerName(i), P2PTransport.CODE);
+  }
+
+  private static String peerName(int i) {
+    return "peer" + i;
+  }
+
+  private int countEvents(Class<? extends IDEtalkEvent> eventClass) {
+    int result = 0;
+    synchronized (myEvents) {
+      for (IDEtalkEvent event : myEvents) {
+        if (eventClass.isInstance(event)) result ++;
+      }
+    }
+    return result;
+  }
+}
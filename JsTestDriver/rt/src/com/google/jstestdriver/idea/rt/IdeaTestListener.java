@@ -4,6 +4,7 @@ import com.google.jstestdriver.*;
 import com.google.jstestdriver.hooks.TestListener;
 import com.google.jstestdriver.idea.rt.execution.TestPath;
 import com.google.jstestdriver.idea.rt.execution.TestPathFactory;
+import com.google.jstestdriver.idea.rt.execution.tree.ConfigNode;
 import com.google.jstestdriver.idea.rt.execution.tree.TreeManager;
 import com.google.jstestdriver.idea.rt.util.TestFileScope;
 import org.jetbrains.annotations.NotNull;
@@ -21,21 +22,27 @@ public class IdeaTestListener implements TestListener {
   private static final String PREFIX = "/test/";
 
   private final TreeManager myTreeManager;
+  private final ConfigNode myConfigNode;
   private final File myBasePath;
   private final Object MONITOR = new Object();
-  private final boolean myDryRun;
+  private final boolean myFirstPass;
   private final TestFileScope myTestFileScope;
   private final TestPathFactory myTestPathFactory;
   private final Set<FileLoadError> myDryRunErrors = new HashSet<>();
 
+  /**
+   * @param firstPass true for a dry run or a single pass run; file load errors are only reported on the first pass over a config
+   */
   public IdeaTestListener(@NotNull TreeManager treeManager,
+                          @NotNull ConfigNode configNode,
                           @NotNull File jstdConfigFile,
                           @NotNull File singleBasePath,
-                          boolean dryRun,
+                          boolean firstPass,
                           @NotNull TestFileScope testFileScope) {
     myTreeManager = treeManager;
+    myConfigNode = configNode;
     myBasePath = singleBasePath;
-    myDryRun = dryRun;
+    myFirstPass = firstPass;
     myTestFileScope = testFileScope;
     myTestPathFactory = new TestPathFactory(jstdConfigFile);
   }
@@ -50,7 +57,7 @@ public class IdeaTestListener implements TestListener {
       String jsFilePath = jsFileSource != null ? jsFileSource.getBasePath() : null;
       FileLoadError error = new FileLoadError(browserInfo, jsFilePath, fileResult.getMessage());
       final boolean reportError;
-      if (myDryRun) {
+      if (myFirstPass) {
         myDryRunErrors.add(error);
         reportError = true;
       }
@@ -58,7 +65,7 @@ public class IdeaTestListener implements TestListener {
         reportError = myDryRunErrors.contains(error);
       }
       if (reportError) {
-        myTreeManager.onFileLoadError(browserInfo.toString(), jsFilePath, fileResult.getMessage());
+        myTreeManager.onFileLoadError(myConfigNode, browserInfo.toString(), jsFilePath, fileResult.getMessage());
       }
     }
   }
@@ -81,7 +88,7 @@ public class IdeaTestListener implements TestListener {
           testCase.getName(),
           testName
         );
-        myTreeManager.onTestRegistered(testPath);
+        myTreeManager.onTestRegistered(myConfigNode, testPath);
       }
     }
   }
@@ -90,7 +97,7 @@ public class IdeaTestListener implements TestListener {
   public void onTestComplete(TestResult testResult) {
     synchronized (MONITOR) {
       TestPath testPath = myTestPathFactory.createTestPath(testResult);
-      myTreeManager.onTestCompleted(testPath, testResult);
+      myTreeManager.onTestCompleted(myConfigNode, testPath, testResult);
     }
   }
 
@@ -25,6 +25,8 @@ public class JstdSettings {
   private final File myIdeCoverageFile;
   private final ImmutableList<String> myFilesExcludedFromCoverage;
   private final boolean myDebug;
+  private final boolean mySinglePass;
+  private final int myConcurrentConfigs;
 
   public JstdSettings(@NotNull String serverUrl,
                       @NotNull List<File> configFiles,
@@ -32,7 +34,9 @@ public class JstdSettings {
                       @NotNull TestFileScope testFileScope,
                       @Nullable File ideCoverageFile,
                       @NotNull List<String> filesExcludedFromCoverage,
-                      boolean debug)
+                      boolean debug,
+                      boolean singlePass,
+                      int concurrentConfigs)
   {
     myServerUrl = serverUrl;
     myConfigFiles = configFiles;
@@ -41,6 +45,8 @@ public class JstdSettings {
     myIdeCoverageFile = ideCoverageFile;
     myFilesExcludedFromCoverage = ImmutableList.copyOf(filesExcludedFromCoverage);
     myDebug = debug;
+    mySinglePass = singlePass;
+    myConcurrentConfigs = concurrentConfigs;
   }
 
   @NotNull
@@ -100,6 +106,20 @@ public class JstdSettings {
     return myDebug;
   }
 
+  /**
+   * @return true if tests of a config are discovered while they run, instead of a dry run before the real run
+   */
+  public boolean isSinglePass() {
+    return mySinglePass;
+  }
+
+  /**
+   * @return the number of config files which may run at the same time against the server
+   */
+  public int getConcurrentConfigs() {
+    return myConcurrentConfigs;
+  }
+
   @NotNull
   public static JstdSettings build(@NotNull Map<TestRunner.ParameterKey, String> parameters) {
     String serverUrl = parameters.get(TestRunner.ParameterKey.SERVER_URL);
@@ -145,6 +165,16 @@ public class JstdSettings {
       excludedPaths = EscapeUtils.split(joinedPaths, ',');
     }
     boolean debug = Boolean.TRUE.toString().equals(parameters.get(TestRunner.ParameterKey.DEBUG));
+    boolean singlePass = Boolean.TRUE.toString().equals(parameters.get(TestRunner.ParameterKey.SINGLE_PASS));
+    int concurrentConfigs = 1;
+    String concurrentConfigsStr = parameters.get(TestRunner.ParameterKey.CONCURRENT_CONFIGS);
+    if (singlePass && concurrentConfigsStr != null && ideCoverageFile == null && !debug) {
+      try {
+        concurrentConfigs = Math.max(1, Integer.parseInt(concurrentConfigsStr));
+      }
+      catch (NumberFormatException ignored) {
+      }
+    }
     return new JstdSettings(
       serverUrl,
       configFiles,
@@ -152,7 +182,9 @@ public class JstdSettings {
       testFileScope,
       ideCoverageFile,
       excludedPaths,
-      debug
+      debug,
+      singlePass,
+      concurrentConfigs
     );
   }
 
@@ -30,6 +30,7 @@ import com.google.jstestdriver.hooks.PluginInitializer;
 import com.google.jstestdriver.hooks.ResourcePreProcessor;
 import com.google.jstestdriver.hooks.TestListener;
 import com.google.jstestdriver.idea.rt.coverage.CoverageSession;
+import com.google.jstestdriver.idea.rt.execution.tree.ConfigNode;
 import com.google.jstestdriver.idea.rt.execution.tree.TreeManager;
 import com.google.jstestdriver.idea.rt.util.EscapeUtils;
 import com.google.jstestdriver.idea.rt.util.JstdConfigParsingUtils;
@@ -42,6 +43,10 @@ import org.joda.time.DateTime;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Main class of JsTestDriver test runner, that runs tests in a separate process and streams messages
@@ -60,12 +65,15 @@ public class TestRunner {
     TESTS,
     COVERAGE_OUTPUT_FILE,
     COVERAGE_EXCLUDED_PATHS,
-    DEBUG
+    DEBUG,
+    SINGLE_PASS,
+    CONCURRENT_CONFIGS
   }
 
   private final JstdSettings mySettings;
   private final TreeManager myTreeManager;
   private final CoverageSession myCoverageSession;
+  private volatile String myHaltErrorMessage;
 
   public TestRunner(@NotNull JstdSettings settings, @NotNull TreeManager treeManager) {
     mySettings = settings;
@@ -78,53 +86,133 @@ public class TestRunner {
     }
   }
 
-  public void executeAll() {
-    for (File config : mySettings.getConfigFiles()) {
-      executeTests(config);
+  /**
+   * @throws HaltException if testing can't go on (e.g. the server isn't running), after all configs have been reported
+   */
+  public void executeAll() throws InterruptedException, HaltException {
+    List<File> configFiles = mySettings.getConfigFiles();
+    int concurrentConfigs = Math.min(mySettings.getConcurrentConfigs(), configFiles.size());
+    PrintStream nullSystemOut = new PrintStream(new NullOutputStream());
+    HaltException haltException = null;
+    try {
+      System.setOut(nullSystemOut);
+      if (concurrentConfigs <= 1) {
+        for (File config : configFiles) {
+          try {
+            executeTests(config);
+          }
+          catch (HaltException e) {
+            haltException = e;
+          }
+        }
+      }
+      else {
+        haltException = executeConcurrently(configFiles, concurrentConfigs);
+      }
+    }
+    finally {
+      nullSystemOut.close();
+      System.setOut(myTreeManager.getSystemOutStream());
+    }
+    if (haltException != null) {
+      throw haltException;
     }
   }
 
-  private void executeTests(@NotNull File config) {
+  @Nullable
+  private HaltException executeConcurrently(@NotNull List<File> configFiles, int concurrentConfigs) throws InterruptedException {
+    HaltException haltException = null;
+    ExecutorService executor = Executors.newFixedThreadPool(concurrentConfigs);
+    try {
+      List<Future<?>> futures = Lists.newArrayListWithExpectedSize(configFiles.size());
+      for (File config : configFiles) {
+        futures.add(executor.submit(() -> {
+          executeTests(config);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        }
+        catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof HaltException) {
+            haltException = (HaltException)cause;
+          }
+          else {
+            myTreeManager.printThrowable("Unexpected crash!", cause);
+          }
+        }
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return haltException;
+  }
+
+  private void executeTests(@NotNull File config) throws HaltException {
+    ConfigNode configNode = myTreeManager.onJstdConfigRunningStarted(config);
+    String previousHaltErrorMessage = myHaltErrorMessage;
+    if (previousHaltErrorMessage != null) {
+      myTreeManager.onJstdConfigRunningFinished(configNode, "Tests were not run.\n" + previousHaltErrorMessage,
+                                                mySettings.getTestFileScope());
+      return;
+    }
     Exception exception = null;
-    PrintStream nullSystemOut = new PrintStream(new NullOutputStream());
+    String haltErrorMessage = null;
     try {
-      System.setOut(nullSystemOut);
-      myTreeManager.onJstdConfigRunningStarted(config);
       String runScope = mySettings.getTestFileScope().toJstdStr();
-      runTests(config, new String[]{"--dryRunFor", runScope}, true);
-      myTreeManager.reportTotalTestCount();
-      runTests(config, new String[]{"--tests", runScope}, false);
+      if (mySettings.isSinglePass()) {
+        runTests(configNode, config, new String[]{"--tests", runScope}, false);
+      }
+      else {
+        runTests(configNode, config, new String[]{"--dryRunFor", runScope}, true);
+        myTreeManager.reportTotalTestCount(configNode);
+        runTests(configNode, config, new String[]{"--tests", runScope}, false);
+      }
     }
     catch (ConfigurationException ce) {
       exception = ce;
     }
     catch (RuntimeException re) {
-      String haltErrorMessage = getErrorMessageIfNoServerRunning(re, mySettings);
+      haltErrorMessage = getErrorMessageIfNoServerRunning(re, mySettings);
       if (haltErrorMessage == null) {
         haltErrorMessage = getErrorMessageIfNoCapturedBrowsersFound(re, mySettings);
       }
       if (haltErrorMessage != null) {
-        myTreeManager.onJstdConfigRunningFinished(haltErrorMessage, mySettings.getTestFileScope());
-        System.exit(1);
+        // configs which haven't been started yet won't be run
+        myHaltErrorMessage = haltErrorMessage;
+      }
+      else {
+        exception = new Exception("Can't run tests.", re);
       }
-      exception = new Exception("Can't run tests.", re);
     }
     catch (Exception e) {
       exception = new Exception("Can't run tests.", e);
     }
     finally {
-      String errorMessage = null;
+      String errorMessage = haltErrorMessage;
       if (exception != null) {
         errorMessage = TreeManager.formatMessage(exception.getMessage(), exception.getCause());
       }
-      myTreeManager.onJstdConfigRunningFinished(errorMessage, mySettings.getTestFileScope());
-      nullSystemOut.close();
-      System.setOut(myTreeManager.getSystemOutStream());
+      if (errorMessage != null && mySettings.isSinglePass()) {
+        // tests aren't known in advance, so the ones which were not run can't be listed
+        errorMessage = "Tests without results were not run.\n" + errorMessage;
+      }
+      myTreeManager.onJstdConfigRunningFinished(configNode, errorMessage, mySettings.getTestFileScope());
+    }
+    if (haltErrorMessage != null) {
+      throw new HaltException(haltErrorMessage);
     }
   }
 
   @SuppressWarnings("deprecation")
-  private void runTests(@NotNull final File configFile, @NotNull String[] extraArgs, final boolean dryRun) throws ConfigurationException {
+  private void runTests(@NotNull final ConfigNode configNode,
+                        @NotNull final File configFile,
+                        @NotNull String[] extraArgs,
+                        final boolean dryRun) throws ConfigurationException {
     JsTestDriverBuilder builder = new JsTestDriverBuilder();
 
     final ParsedConfiguration parsedConfiguration;
@@ -136,7 +224,7 @@ public class TestRunner {
                                        "Details:", e);
     }
     final File singleBasePath = JstdConfigParsingUtils.getSingleBasePath(parsedConfiguration.getBasePaths(), configFile);
-    myTreeManager.setCurrentBasePath(singleBasePath.getAbsolutePath());
+    myTreeManager.setBasePath(configNode, singleBasePath.getAbsolutePath());
     JstdConfigParsingUtils.wipeCoveragePlugin(parsedConfiguration);
     builder.setDefaultConfiguration(parsedConfiguration);
     builder.withPluginInitializer(new PluginInitializer() {
@@ -149,9 +237,10 @@ public class TestRunner {
             testListeners.addBinding().to(TestResultHolder.class);
             testListeners.addBinding().toInstance(new IdeaTestListener(
               myTreeManager,
+              configNode,
               configFile,
               singleBasePath,
-              dryRun,
+              dryRun || mySettings.isSinglePass(),
               mySettings.getTestFileScope()
             ));
           }
@@ -272,13 +361,19 @@ public class TestRunner {
         }
       }
     }
+    boolean halted = false;
     try {
       new TestRunner(settings, treeManager).executeAll();
+    } catch (HaltException e) {
+      halted = true;
     } catch (Exception ex) {
       treeManager.printThrowable("Unexpected crash!", ex);
     } finally {
       treeManager.onTestingFinished();
     }
+    if (halted) {
+      System.exit(1);
+    }
   }
 
   @Nullable
@@ -376,4 +471,13 @@ public class TestRunner {
     }
   }
 
+  /**
+   * Thrown when a config can't be run because of the environment. The error is already reported to the tree.
+   */
+  public static class HaltException extends Exception {
+    private HaltException(@NotNull String message) {
+      super(message);
+    }
+  }
+
 }
@@ -60,6 +60,7 @@ public class JstdRunProfileState implements RunProfileState {
 
   private static final String JSTD_FRAMEWORK_NAME = "JsTestDriver";
   private static final Function<File, String> GET_ABSOLUTE_PATH = file -> file.getAbsolutePath();
+  private static final int MAX_CONCURRENT_CONFIGS = 4;
 
   private final ExecutionEnvironment myEnvironment;
   private final JstdRunSettings myRunSettings;
@@ -229,6 +230,11 @@ public class JstdRunProfileState implements RunProfileState {
     if (myDebug) {
       parameters.put(TestRunner.ParameterKey.DEBUG, Boolean.TRUE.toString());
     }
+    else if (myRunSettings.isRunConfigsConcurrently() && myCoverageFilePath == null && jstdConfigs.size() > 1) {
+      // discover tests while running them and don't wait for one config to finish before starting the next
+      parameters.put(TestRunner.ParameterKey.SINGLE_PASS, Boolean.TRUE.toString());
+      parameters.put(TestRunner.ParameterKey.CONCURRENT_CONFIGS, String.valueOf(Math.min(jstdConfigs.size(), MAX_CONCURRENT_CONFIGS)));
+    }
     return parameters;
   }
 
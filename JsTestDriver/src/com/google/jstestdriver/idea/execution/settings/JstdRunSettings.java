@@ -21,6 +21,7 @@ public class JstdRunSettings {
   private final String myTestMethodName;
   private final ImmutableList<String> myFilesExcludedFromCoverage;
   private final WebBrowser myPreferredDebugBrowser;
+  private final boolean myRunConfigsConcurrently;
 
   public JstdRunSettings(
     @NotNull TestType testType,
@@ -32,7 +33,8 @@ public class JstdRunSettings {
     @NotNull String testCaseName,
     @NotNull String testMethodName,
     @NotNull ImmutableList<String> filesExcludedFromCoverage,
-    @NotNull WebBrowser preferredDebugBrowser) {
+    @NotNull WebBrowser preferredDebugBrowser,
+    boolean runConfigsConcurrently) {
     myTestType = testType;
     myConfigFile = configFile;
     myDirectory = directory;
@@ -43,6 +45,7 @@ public class JstdRunSettings {
     myTestMethodName = testMethodName;
     myFilesExcludedFromCoverage = filesExcludedFromCoverage;
     myPreferredDebugBrowser = preferredDebugBrowser;
+    myRunConfigsConcurrently = runConfigsConcurrently;
   }
 
   @NotNull
@@ -99,6 +102,13 @@ public class JstdRunSettings {
     return myPreferredDebugBrowser;
   }
 
+  /**
+   * @return true if several configuration files may be run at the same time, each in a single pass
+   */
+  public boolean isRunConfigsConcurrently() {
+    return myRunConfigsConcurrently;
+  }
+
   public static class Builder {
 
     private TestType myTestType = TestType.CONFIG_FILE;
@@ -111,6 +121,7 @@ public class JstdRunSettings {
     private String myTestMethodName = "";
     private ImmutableList<String> myFilesExcludedFromCoverage = ImmutableList.of();
     private WebBrowser myPreferredDebugBrowser = WebBrowserManager.getInstance().getFirstBrowser(BrowserFamily.CHROME);
+    private boolean myRunConfigsConcurrently = false;
 
     public Builder() {
     }
@@ -124,6 +135,7 @@ public class JstdRunSettings {
       myServerType = runSettings.getServerType();
       myTestCaseName = runSettings.getTestCaseName();
       myTestMethodName = runSettings.getTestMethodName();
+      myRunConfigsConcurrently = runSettings.isRunConfigsConcurrently();
     }
 
     public Builder setTestType(@NotNull TestType testType) {
@@ -175,6 +187,11 @@ public class JstdRunSettings {
       myPreferredDebugBrowser = preferredDebugBrowser;
     }
 
+    public Builder setRunConfigsConcurrently(boolean runConfigsConcurrently) {
+      myRunConfigsConcurrently = runConfigsConcurrently;
+      return this;
+    }
+
     @NotNull
     public JstdRunSettings build() {
       return new JstdRunSettings(
@@ -187,7 +204,8 @@ public class JstdRunSettings {
         myTestCaseName,
         myTestMethodName,
         myFilesExcludedFromCoverage,
-        myPreferredDebugBrowser
+        myPreferredDebugBrowser,
+        myRunConfigsConcurrently
       );
     }
   }
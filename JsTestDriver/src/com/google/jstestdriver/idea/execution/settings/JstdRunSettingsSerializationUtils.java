@@ -20,6 +20,7 @@ public class JstdRunSettingsSerializationUtils {
     TEST_TYPE("configLocationType"),
     JSTD_CONFIG_FILE("settingsFile"),
     ALL_IN_DIRECTORY("allInDirectory"),
+    CONCURRENT_CONFIGS("concurrentConfigs"),
     CONFIG_TYPE("configType"),
     JS_FILE("jsFile"),
     TEST_CASE("testCase"),
@@ -52,6 +53,7 @@ public class JstdRunSettingsSerializationUtils {
     if (testType == TestType.ALL_CONFIGS_IN_DIRECTORY) {
       String directory = readString(element, Key.ALL_IN_DIRECTORY, "");
       builder.setDirectory(FileUtil.toSystemDependentName(directory));
+      builder.setRunConfigsConcurrently(Boolean.parseBoolean(readString(element, Key.CONCURRENT_CONFIGS, "")));
     } else if (testType == TestType.CONFIG_FILE) {
       String configFile = readString(element, Key.JSTD_CONFIG_FILE, "");
       builder.setConfigFile(FileUtil.toSystemDependentName(configFile));
@@ -149,6 +151,9 @@ public class JstdRunSettingsSerializationUtils {
     writeString(element, Key.TEST_TYPE, testType.name());
     if (testType == TestType.ALL_CONFIGS_IN_DIRECTORY) {
       writeString(element, Key.ALL_IN_DIRECTORY, FileUtil.toSystemIndependentName(runSettings.getDirectory()));
+      if (runSettings.isRunConfigsConcurrently()) {
+        writeString(element, Key.CONCURRENT_CONFIGS, Boolean.TRUE.toString());
+      }
     } else if (testType == TestType.CONFIG_FILE) {
       writeString(element, Key.JSTD_CONFIG_FILE, FileUtil.toSystemIndependentName(runSettings.getConfigFile()));
     } else if (testType == TestType.JS_FILE) {
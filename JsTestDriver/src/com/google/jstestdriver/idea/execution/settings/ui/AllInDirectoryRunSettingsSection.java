@@ -34,9 +34,12 @@ public class AllInDirectoryRunSettingsSection extends AbstractRunSettingsSection
 
   private final TextFieldWithBrowseButton myDirectoryTextFieldWithBrowseButton;
   private final JBLabel myLabel;
+  private final JCheckBox myRunConcurrentlyCheckBox;
 
   AllInDirectoryRunSettingsSection() {
     myDirectoryTextFieldWithBrowseButton = new TextFieldWithBrowseButton();
+    myRunConcurrentlyCheckBox = new JCheckBox("Run configuration files concurrently");
+    myRunConcurrentlyCheckBox.setToolTipText("Tests are discovered while running, not before. Not used for debug and coverage.");
     myLabel = new JBLabel("Directory:");
     setAnchor(myLabel);
   }
@@ -44,11 +47,13 @@ public class AllInDirectoryRunSettingsSection extends AbstractRunSettingsSection
   @Override
   public void resetFrom(@NotNull JstdRunSettings runSettings) {
     myDirectoryTextFieldWithBrowseButton.setText(runSettings.getDirectory());
+    myRunConcurrentlyCheckBox.setSelected(runSettings.isRunConfigsConcurrently());
   }
 
   @Override
   public void applyTo(@NotNull JstdRunSettings.Builder runSettingsBuilder) {
     runSettingsBuilder.setDirectory(ObjectUtils.notNull(myDirectoryTextFieldWithBrowseButton.getText(), ""));
+    runSettingsBuilder.setRunConfigsConcurrently(myRunConcurrentlyCheckBox.isSelected());
   }
 
   @NotNull
@@ -85,9 +90,19 @@ public class AllInDirectoryRunSettingsSection extends AbstractRunSettingsSection
       0, 0
     ));
 
+    panel.add(myRunConcurrentlyCheckBox, new GridBagConstraints(
+      1, 1,
+      1, 1,
+      1.0, 0.0,
+      GridBagConstraints.WEST,
+      GridBagConstraints.NONE,
+      new Insets(UIUtil.DEFAULT_VGAP, 0, 0, 0),
+      0, 0
+    ));
+
     JComponent infoComponent = createInfoComponent(creationContext.getProject(), myDirectoryTextFieldWithBrowseButton.getTextField());
     panel.add(infoComponent, new GridBagConstraints(
-      0, 1,
+      0, 2,
       2, 1,
       1.0, 1.0,
       GridBagConstraints.WEST,
@@ -0,0 +1,109 @@
+package com.google.jstestdriver.idea.rt.execution.tree;
+
+import com.google.jstestdriver.BrowserInfo;
+import com.google.jstestdriver.TestResult;
+import com.google.jstestdriver.idea.rt.execution.TestPath;
+import com.google.jstestdriver.idea.rt.util.TestFileScope;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TreeManagerTest extends TestCase {
+
+  private static final int TEST_COUNT = 50;
+  private static final Pattern COMMAND = Pattern.compile("^##teamcity\\[(\\w+)");
+  private static final Pattern ATTRIBUTE = Pattern.compile("(\\w+)='((?:[^'|]|\\|.)*)'");
+
+  public void testConfigsRunConcurrently() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TreeManager treeManager = new TreeManager(null, new PrintStream(out, true), new PrintStream(new ByteArrayOutputStream()));
+    BrowserInfo browser = new BrowserInfo();
+    browser.setId(1L);
+    browser.setName("Chrome");
+    browser.setVersion("1.0");
+    browser.setOs("Linux");
+
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    CountDownLatch finished = new CountDownLatch(2);
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    for (String configName : Arrays.asList("first.jstd", "second.jstd")) {
+      Thread thread = new Thread(() -> {
+        try {
+          File config = new File("configs", configName);
+          barrier.await();
+          ConfigNode configNode = treeManager.onJstdConfigRunningStarted(config);
+          treeManager.setBasePath(configNode, config.getParentFile().getAbsolutePath());
+          treeManager.onTestRegistered(configNode, new TestPath(config.getAbsolutePath(), browser, null, "NotRunTestCase", "testNotRun"));
+          for (int i = 0; i < TEST_COUNT; i++) {
+            String testCaseName = "TestCase" + i % 3;
+            String testName = "test" + i;
+            TestPath testPath = new TestPath(config.getAbsolutePath(), browser, null, testCaseName, testName);
+            treeManager.onTestCompleted(configNode, testPath, new TestResult(browser, "passed", "", "", testCaseName, testName, 1));
+          }
+          treeManager.onJstdConfigRunningFinished(configNode, null, TestFileScope.allScope());
+        }
+        catch (Throwable t) {
+          errors.add(t);
+        }
+        finally {
+          finished.countDown();
+        }
+      });
+      thread.start();
+    }
+    assertTrue(finished.await(1, TimeUnit.MINUTES));
+    assertEquals(Collections.emptyList(), errors);
+
+    Map<String, String> openNodeParents = new HashMap<>();
+    Set<String> seenNodes = new HashSet<>();
+    int configCount = 0;
+    int passedCount = 0;
+    int failedCount = 0;
+    for (String line : out.toString().split("\n")) {
+      Matcher commandMatcher = COMMAND.matcher(line);
+      assertTrue(line, commandMatcher.find());
+      String command = commandMatcher.group(1);
+      Map<String, String> attributes = new HashMap<>();
+      Matcher attributeMatcher = ATTRIBUTE.matcher(line);
+      while (attributeMatcher.find()) {
+        attributes.put(attributeMatcher.group(1), attributeMatcher.group(2));
+      }
+      String nodeId = attributes.get("nodeId");
+      assertNotNull(line, nodeId);
+      if (command.equals("testSuiteStarted") || command.equals("testStarted")) {
+        String parentNodeId = attributes.get("parentNodeId");
+        assertTrue("Unknown parent: " + line, "0".equals(parentNodeId) || openNodeParents.containsKey(parentNodeId));
+        assertTrue("Started twice: " + line, seenNodes.add(nodeId));
+        openNodeParents.put(nodeId, parentNodeId);
+        if ("0".equals(parentNodeId)) {
+          configCount++;
+        }
+      }
+      else {
+        assertTrue("Not started: " + line, openNodeParents.containsKey(nodeId));
+        if (command.equals("testSuiteFinished")) {
+          assertFalse("Children not finished: " + line, openNodeParents.containsValue(nodeId));
+        }
+        else if (command.equals("testFinished")) {
+          passedCount++;
+        }
+        else if (command.equals("testFailed")) {
+          failedCount++;
+        }
+        openNodeParents.remove(nodeId);
+      }
+    }
+    assertEquals(Collections.emptyMap(), openNodeParents);
+    assertEquals(2, configCount);
+    assertEquals(2 * TEST_COUNT, passedCount);
+    assertEquals(2, failedCount);
+  }
+}
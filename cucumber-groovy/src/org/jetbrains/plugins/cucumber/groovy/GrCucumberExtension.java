@@ -1,41 +1,47 @@
 package org.jetbrains.plugins.cucumber.groovy;
 
-import com.intellij.openapi.module.JavaModuleType;
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleManager;
-import com.intellij.openapi.module.ModuleType;
+import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolder;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.impl.file.PsiDirectoryFactory;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.PathUtil;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.cucumber.BDDFrameworkType;
 import org.jetbrains.plugins.cucumber.StepDefinitionCreator;
+import org.jetbrains.plugins.cucumber.groovy.steps.GrCucumberStepIndex;
 import org.jetbrains.plugins.cucumber.groovy.steps.GrStepDefinition;
 import org.jetbrains.plugins.cucumber.groovy.steps.GrStepDefinitionCreator;
 import org.jetbrains.plugins.cucumber.psi.GherkinFile;
+import org.jetbrains.plugins.cucumber.steps.AbstractCucumberExtension;
 import org.jetbrains.plugins.cucumber.steps.AbstractStepDefinition;
-import org.jetbrains.plugins.cucumber.steps.NotIndexedCucumberExtension;
 import org.jetbrains.plugins.groovy.GroovyFileType;
 import org.jetbrains.plugins.groovy.lang.psi.GroovyFile;
-import org.jetbrains.plugins.groovy.lang.psi.api.statements.GrStatement;
 import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.GrMethodCall;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author Max Medvedev
  */
-public class GrCucumberExtension extends NotIndexedCucumberExtension {
+public class GrCucumberExtension extends AbstractCucumberExtension {
+  private static final Key<StepDefinitions> STEP_DEFINITIONS_KEY = Key.create("GROOVY_CUCUMBER_STEP_DEFINITIONS");
+  private static final Key<CachedValue<List<AbstractStepDefinition>>> FILE_STEP_DEFINITIONS_KEY =
+    Key.create("GROOVY_CUCUMBER_FILE_STEP_DEFINITIONS");
+
   @Override
   public boolean isStepLikeFile(@NotNull PsiElement child, @NotNull PsiElement parent) {
     return child instanceof GroovyFile && ((GroovyFile)child).getName().endsWith(".groovy");
@@ -79,7 +85,9 @@ public class GrCucumberExtension extends NotIndexedCucumberExtension {
     }
     final Set<String> glues = gluesFromOtherFiles;
 
-    for (AbstractStepDefinition stepDefinition : getAllStepDefinitions(file.getProject())) {
+    final Module module = ModuleUtilCore.findModuleForPsiElement(file);
+    final List<AbstractStepDefinition> stepDefinitions = module != null ? loadStepsFor(file, module) : loadProjectSteps(file.getProject());
+    for (AbstractStepDefinition stepDefinition : stepDefinitions) {
       final PsiElement stepDefinitionElement = stepDefinition.getElement();
       final String glue = getGlue(stepDefinitionElement);
       if (glue != null) {
@@ -90,49 +98,108 @@ public class GrCucumberExtension extends NotIndexedCucumberExtension {
     return glues;
   }
 
+  /**
+   * Step definitions don't depend on a feature file, so they are kept per module together with the step definitions
+   * of each file they were built from. {@link GrCucumberStepIndex} is queried on each call, and step definitions of a file
+   * are cached in the file, so the kept list is returned as long as the same files have the same step definitions.
+   */
   @Override
-  protected void loadStepDefinitionRootsFromLibraries(Module module, List<PsiDirectory> roots, Set<String> directories) {
-
+  public List<AbstractStepDefinition> loadStepsFor(@Nullable PsiFile featureFile, @NotNull Module module) {
+    return loadSteps(module.getProject(), module.getModuleWithDependenciesScope(), module);
   }
 
   @NotNull
+  private static List<AbstractStepDefinition> loadProjectSteps(@NotNull Project project) {
+    return loadSteps(project, GlobalSearchScope.projectScope(project), project);
+  }
+
   @Override
-  public List<AbstractStepDefinition> getStepDefinitions(@NotNull PsiFile psiFile) {
-    final List<AbstractStepDefinition> newDefs = new ArrayList<>();
-    if (psiFile instanceof GroovyFile) {
-      GrStatement[] statements = ((GroovyFile)psiFile).getStatements();
-      for (GrStatement statement : statements) {
-        if (GrCucumberUtil.isStepDefinition(statement)) {
-          newDefs.add(GrStepDefinition.getStepDefinition((GrMethodCall)statement));
-        }
+  public Collection<? extends PsiFile> getStepDefinitionContainers(@NotNull GherkinFile featureFile) {
+    final Module module = ModuleUtilCore.findModuleForPsiElement(featureFile);
+    if (module == null) {
+      return Collections.emptySet();
+    }
+
+    final Set<PsiFile> result = ContainerUtil.newHashSet();
+    for (AbstractStepDefinition stepDefinition : loadStepsFor(featureFile, module)) {
+      final PsiElement element = stepDefinition.getElement();
+      if (element != null) {
+        result.add(element.getContainingFile());
       }
     }
-    return newDefs;
+    return result;
   }
 
-  @Override
-  protected void collectAllStepDefsProviders(@NotNull List<VirtualFile> providers, @NotNull Project project) {
-    final Module[] modules = ModuleManager.getInstance(project).getModules();
-    for (Module module : modules) {
-      if (ModuleType.get(module) instanceof JavaModuleType) {
-        final VirtualFile[] roots = ModuleRootManager.getInstance(module).getContentRoots();
-        ContainerUtil.addAll(providers, roots);
+  @NotNull
+  private static List<AbstractStepDefinition> loadSteps(@NotNull Project project,
+                                                        @NotNull GlobalSearchScope scope,
+                                                        @NotNull UserDataHolder holder) {
+    final GlobalSearchScope groovyFiles = GlobalSearchScope.getScopeRestrictedByFileTypes(scope, GroovyFileType.GROOVY_FILE_TYPE);
+    // the index is only queried here, PSI is built and resolved after the query is done
+    final List<VirtualFile> files = new ArrayList<>();
+    FileBasedIndex.getInstance().processValues(GrCucumberStepIndex.INDEX_ID, GrCucumberStepIndex.KEY, null, (file, offsets) -> {
+      files.add(file);
+      return true;
+    }, groovyFiles);
+
+    final List<List<AbstractStepDefinition>> fileSteps = new ArrayList<>(files.size());
+    final PsiManager psiManager = PsiManager.getInstance(project);
+    for (VirtualFile file : files) {
+      final PsiFile psiFile = psiManager.findFile(file);
+      if (psiFile instanceof GroovyFile) {
+        fileSteps.add(getFileSteps((GroovyFile)psiFile));
       }
     }
-  }
 
+    StepDefinitions stepDefinitions = holder.getUserData(STEP_DEFINITIONS_KEY);
+    if (stepDefinitions == null || !stepDefinitions.isUpToDate(fileSteps)) {
+      stepDefinitions = new StepDefinitions(fileSteps);
+      holder.putUserData(STEP_DEFINITIONS_KEY, stepDefinitions);
+    }
+    return stepDefinitions.mySteps;
+  }
 
-  @Override
-  public void findRelatedStepDefsRoots(@NotNull final Module module, @NotNull final PsiFile featureFile,
-                                       List<PsiDirectory> newStepDefinitionsRoots, Set<String> processedStepDirectories) {
-    // ToDo: check if inside test folder
-    for (VirtualFile sfDirectory : ModuleRootManager.getInstance(module).getSourceRoots()) {
-      if (sfDirectory.isDirectory()) {
-        PsiDirectory sourceRoot = PsiDirectoryFactory.getInstance(module.getProject()).createDirectory(sfDirectory);
-        if (!processedStepDirectories.contains(sourceRoot.getVirtualFile().getPath())) {
-          newStepDefinitionsRoots.add(sourceRoot);
+  /**
+   * Resolves the calls found by {@link GrCucumberStepIndex} in the file, the index answers for the current file content
+   */
+  @NotNull
+  private static List<AbstractStepDefinition> getFileSteps(@NotNull GroovyFile file) {
+    return CachedValuesManager.getCachedValue(file, FILE_STEP_DEFINITIONS_KEY, () -> {
+      final List<AbstractStepDefinition> result = new ArrayList<>();
+      final List<List<Integer>> offsets =
+        FileBasedIndex.getInstance().getValues(GrCucumberStepIndex.INDEX_ID, GrCucumberStepIndex.KEY, GlobalSearchScope.fileScope(file));
+      for (List<Integer> fileOffsets : offsets) {
+        for (Integer offset : fileOffsets) {
+          final GrMethodCall call = PsiTreeUtil.getParentOfType(file.findElementAt(offset), GrMethodCall.class);
+          if (call != null && call.getParent() == file && GrCucumberUtil.isStepDefinition(call)) {
+            result.add(GrStepDefinition.getStepDefinition(call));
+          }
         }
       }
+      return CachedValueProvider.Result.create(result, file, ProjectRootManager.getInstance(file.getProject()));
+    });
+  }
+
+  private static class StepDefinitions {
+    // step definitions of each file, as cached in the file
+    private final List<List<AbstractStepDefinition>> myFileSteps;
+    private final List<AbstractStepDefinition> mySteps;
+
+    private StepDefinitions(@NotNull List<List<AbstractStepDefinition>> fileSteps) {
+      myFileSteps = fileSteps;
+      final List<AbstractStepDefinition> steps = new ArrayList<>();
+      for (List<AbstractStepDefinition> definitions : fileSteps) {
+        steps.addAll(definitions);
+      }
+      mySteps = Collections.unmodifiableList(steps);
+    }
+
+    private boolean isUpToDate(@NotNull List<List<AbstractStepDefinition>> fileSteps) {
+      if (myFileSteps.size() != fileSteps.size()) return false;
+      for (int i = 0; i < fileSteps.size(); i++) {
+        if (myFileSteps.get(i) != fileSteps.get(i)) return false;
+      }
+      return true;
     }
   }
 }
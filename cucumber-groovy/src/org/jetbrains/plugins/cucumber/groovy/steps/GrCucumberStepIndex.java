@@ -0,0 +1,93 @@
+package org.jetbrains.plugins.cucumber.groovy.steps;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.indexing.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.cucumber.steps.CucumberStepIndex;
+import org.jetbrains.plugins.groovy.GroovyFileType;
+import org.jetbrains.plugins.groovy.lang.lexer.GroovyLexer;
+import org.jetbrains.plugins.groovy.lang.lexer.GroovyTokenTypes;
+import org.jetbrains.plugins.groovy.lang.lexer.TokenSets;
+
+import java.util.*;
+
+/**
+ * Maps {@link #KEY} to the offsets of calls in a Groovy script which might register a step ({@code Given(~'...') {}}):
+ * calls whose first argument is a pattern. Step keywords are localized, so the calls are only found lexically
+ * under a single key per file, and the offsets still have to be resolved.
+ */
+public class GrCucumberStepIndex extends CucumberStepIndex {
+  public static final ID<String, List<Integer>> INDEX_ID = ID.create("groovy.cucumber.step");
+  public static final String KEY = "step";
+  private static final int VERSION = 2;
+
+  private final DataIndexer<String, List<Integer>, FileContent> myDataIndexer = new MyDataIndexer();
+
+  @NotNull
+  @Override
+  public ID<String, List<Integer>> getName() {
+    return INDEX_ID;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, List<Integer>, FileContent> getIndexer() {
+    return myDataIndexer;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(GroovyFileType.GROOVY_FILE_TYPE);
+  }
+
+  private static class MyDataIndexer implements DataIndexer<String, List<Integer>, FileContent> {
+    private static final int IDENTIFIER = 1;
+    private static final int PARENTHESIS = 2;
+
+    @NotNull
+    @Override
+    public Map<String, List<Integer>> map(@NotNull FileContent inputData) {
+      final CharSequence text = inputData.getContentAsText();
+      if (!inputData.getFileName().endsWith(".groovy") || !StringUtil.contains(text, "~")) {
+        return Collections.emptyMap();
+      }
+
+      final List<Integer> offsets = new ArrayList<>();
+      final GroovyLexer lexer = new GroovyLexer();
+      lexer.start(text);
+      int nameOffset = 0;
+      int state = 0;
+      while (lexer.getTokenType() != null) {
+        final IElementType tokenType = lexer.getTokenType();
+        if (TokenSets.WHITE_SPACES_OR_COMMENTS.contains(tokenType)) {
+          lexer.advance();
+          continue;
+        }
+
+        if (state != 0 && tokenType == GroovyTokenTypes.mBNOT) {
+          offsets.add(nameOffset);
+          state = 0;
+        }
+        else if (state == IDENTIFIER && tokenType == GroovyTokenTypes.mLPAREN) {
+          state = PARENTHESIS;
+        }
+        else if (tokenType == GroovyTokenTypes.mIDENT) {
+          nameOffset = lexer.getTokenStart();
+          state = IDENTIFIER;
+        }
+        else {
+          state = 0;
+        }
+        lexer.advance();
+      }
+      return offsets.isEmpty() ? Collections.emptyMap() : Collections.singletonMap(KEY, offsets);
+    }
+  }
+}
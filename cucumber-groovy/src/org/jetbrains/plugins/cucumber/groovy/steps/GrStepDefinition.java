@@ -51,6 +51,11 @@ public class GrStepDefinition extends AbstractStepDefinition implements PomNamed
     return Collections.emptyList();
   }
 
+  @Override
+  public boolean isMatchedByPattern() {
+    return true;
+  }
+
   @Nullable
   @Override
   protected String getCucumberRegexFromElement(PsiElement element) {
@@ -0,0 +1,97 @@
+package org.jetbrains.plugins.cucumber.groovy.steps
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.util.indexing.FileBasedIndex
+import org.jetbrains.plugins.cucumber.groovy.GrCucumberExtension
+import org.jetbrains.plugins.cucumber.groovy.GrCucumberLightTestCase
+import org.jetbrains.plugins.cucumber.steps.CucumberStepsIndex
+
+class GrCucumberStepIndexTest extends GrCucumberLightTestCase {
+  private static final String STEPS = '''\
+this.metaClass.mixin(cucumber.runtime.groovy.Hooks)
+this.metaClass.mixin(cucumber.runtime.groovy.EN)
+
+Given(~'^I have a calculator$') {->
+  println "calculator"
+}
+'''
+
+  void testIndexedStepCalls() {
+    def file = myFixture.addFileToProject('steps.groovy', STEPS).virtualFile
+    def scope = GlobalSearchScope.allScope(project)
+
+    def offsets = FileBasedIndex.instance.getValues(GrCucumberStepIndex.INDEX_ID, GrCucumberStepIndex.KEY, scope)
+    assertSize(1, offsets)
+    assertEquals([STEPS.indexOf('Given')], offsets[0])
+    assertEmpty(FileBasedIndex.instance.getValues(GrCucumberStepIndex.INDEX_ID, 'Given', scope))
+    assertTrue(FileBasedIndex.instance.getContainingFiles(GrCucumberStepIndex.INDEX_ID, GrCucumberStepIndex.KEY, scope).contains(file))
+  }
+
+  void testStepsFollowResolveChangesOfFile() {
+    def psiFile = myFixture.addFileToProject('steps.groovy', STEPS)
+    def extension = new GrCucumberExtension()
+    assertSize(1, extension.loadStepsFor(null, myModule))
+
+    // the call stays where it was, but doesn't resolve to a step keyword anymore
+    def documentManager = PsiDocumentManager.getInstance(project)
+    def document = documentManager.getDocument(psiFile)
+    WriteCommandAction.runWriteCommandAction(project) {
+      document.replaceString(0, STEPS.indexOf('Given'), ' ' * STEPS.indexOf('Given'))
+    }
+    documentManager.commitDocument(document)
+
+    assertEmpty(extension.loadStepsFor(null, myModule))
+  }
+
+  void testCachedStepsAreUpdatedAfterEdit() {
+    def psiFile = myFixture.addFileToProject('steps.groovy', STEPS)
+    def extension = new GrCucumberExtension()
+
+    def steps = extension.loadStepsFor(null, myModule)
+    assertSize(1, steps)
+    assertSame(steps, extension.loadStepsFor(null, myModule))
+
+    def documentManager = PsiDocumentManager.getInstance(project)
+    def document = documentManager.getDocument(psiFile)
+    WriteCommandAction.runWriteCommandAction(project) {
+      document.insertString(document.textLength, "\nWhen(~'^I press divide\$') {->\n}\n")
+    }
+    documentManager.commitDocument(document)
+
+    def changedSteps = extension.loadStepsFor(null, myModule)
+    assertSize(2, changedSteps)
+    assertTrue(changedSteps.any { it.cucumberRegex == '^I press divide$' })
+  }
+
+  void testStepsAreKeptAfterUnrelatedEdit() {
+    myFixture.addFileToProject('steps.groovy', STEPS)
+    def featureFile = myFixture.addFileToProject('test.feature', 'Feature: Calculator\n')
+    def extension = new GrCucumberExtension()
+    def steps = extension.loadStepsFor(null, myModule)
+
+    def documentManager = PsiDocumentManager.getInstance(project)
+    def document = documentManager.getDocument(featureFile)
+    WriteCommandAction.runWriteCommandAction(project) {
+      document.insertString(document.textLength, "  Scenario: Divide\n")
+    }
+    documentManager.commitDocument(document)
+
+    assertSame(steps, extension.loadStepsFor(null, myModule))
+  }
+
+  void testResolveStepAddedToIndex() {
+    CucumberStepsIndex.getInstance(project).reset()
+    myFixture.addFileToProject('steps.groovy', STEPS)
+    myFixture.configureByText('test.feature', '''\
+Feature: Calculator
+  Scenario: Divide
+    Given I have a calc<caret>ulator
+''')
+
+    def ref = myFixture.file.findReferenceAt(myFixture.editor.caretModel.offset)
+    assertNotNull(ref)
+    assertNotNull(ref.resolve())
+  }
+}
@@ -15,12 +15,13 @@ package org.jetbrains.plugins.cucumber.java;
 
 import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.psi.search.PsiSearchHelper;
-import com.intellij.psi.search.TextOccurenceProcessor;
-import com.intellij.psi.search.UsageSearchContext;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.MultiMap;
+import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.cucumber.BDDFrameworkType;
@@ -30,10 +31,12 @@ import org.jetbrains.plugins.cucumber.java.steps.Java8StepDefinitionCreator;
 import org.jetbrains.plugins.cucumber.steps.AbstractStepDefinition;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class CucumberJava8Extension extends AbstractCucumberJavaExtension {
-  private static final String[] KEYWORDS = {"Given", "And", "Then", "But", "When"};
+  static final String[] KEYWORDS = {"Given", "And", "Then", "But", "When"};
   private static final String CUCUMBER_API_JAVA8_PACKAGE = "cucumber.api.java8";
 
   @NotNull
@@ -55,44 +58,49 @@ public class CucumberJava8Extension extends AbstractCucumberJavaExtension {
     final GlobalSearchScope dependenciesScope = module.getModuleWithDependenciesAndLibrariesScope(true);
     final GlobalSearchScope javaFiles = GlobalSearchScope.getScopeRestrictedByFileTypes(dependenciesScope, JavaFileType.INSTANCE);
 
+    // the index is only queried here, PSI is built and resolved after the queries are done
+    final MultiMap<VirtualFile, Integer> offsetsByFile = MultiMap.createLinked();
     for (String method : KEYWORDS) {
-      CucumberJava8TextOccurenceProcessor occurenceProcessor = new CucumberJava8TextOccurenceProcessor(result);
-      PsiSearchHelper.getInstance(module.getProject()).processElementsWithWord(occurenceProcessor, javaFiles, method,
-                                                                                       UsageSearchContext.IN_CODE, true);
+      FileBasedIndex.getInstance().processValues(CucumberJava8StepIndex.INDEX_ID, method, null, (file, offsets) -> {
+        offsetsByFile.putValues(file, offsets);
+        return true;
+      }, javaFiles);
+    }
+
+    final PsiManager psiManager = PsiManager.getInstance(module.getProject());
+    for (Map.Entry<VirtualFile, Collection<Integer>> entry : offsetsByFile.entrySet()) {
+      final PsiFile psiFile = psiManager.findFile(entry.getKey());
+      if (psiFile != null) {
+        for (Integer offset : entry.getValue()) {
+          final PsiElement element = psiFile.findElementAt(offset);
+          if (element != null && ArrayUtil.contains(element.getText(), KEYWORDS)) {
+            processStepCall(element, result);
+          }
+        }
+      }
     }
     return result;
   }
 
-  private static class CucumberJava8TextOccurenceProcessor implements TextOccurenceProcessor {
-    private final List<AbstractStepDefinition> myResult;
-
-    public CucumberJava8TextOccurenceProcessor(List<AbstractStepDefinition> result) {
-      myResult = result;
+  private static void processStepCall(@NotNull PsiElement element, @NotNull List<AbstractStepDefinition> result) {
+    PsiElement parent = element.getParent();
+    if (PsiTreeUtil.getParentOfType(element, PsiMethodCallExpression.class) == null || parent == null) {
+      return;
     }
 
-    @Override
-    public boolean execute(@NotNull PsiElement element, int offsetInElement) {
-      PsiElement parent = element.getParent();
-      if (PsiTreeUtil.getParentOfType(element, PsiMethodCallExpression.class) == null || parent == null) {
-        return true;
-      }
-
-      final PsiReference[] references = parent.getReferences();
-      for (PsiReference ref : references) {
-        PsiElement resolved = ref.resolve();
-        PsiClass psiClass = PsiTreeUtil.getParentOfType(resolved, PsiClass.class);
-        if (psiClass != null) {
-          final String fqn = psiClass.getQualifiedName();
-          if (fqn != null && fqn.startsWith(CUCUMBER_API_JAVA8_PACKAGE)) {
-            final PsiMethodCallExpression methodCallExpression = PsiTreeUtil.getParentOfType(element, PsiMethodCallExpression.class);
-            if (methodCallExpression != null) {
-              myResult.add(new Java8StepDefinition(methodCallExpression));
-            }
+    final PsiReference[] references = parent.getReferences();
+    for (PsiReference ref : references) {
+      PsiElement resolved = ref.resolve();
+      PsiClass psiClass = PsiTreeUtil.getParentOfType(resolved, PsiClass.class);
+      if (psiClass != null) {
+        final String fqn = psiClass.getQualifiedName();
+        if (fqn != null && fqn.startsWith(CUCUMBER_API_JAVA8_PACKAGE)) {
+          final PsiMethodCallExpression methodCallExpression = PsiTreeUtil.getParentOfType(element, PsiMethodCallExpression.class);
+          if (methodCallExpression != null) {
+            result.add(new Java8StepDefinition(methodCallExpression));
           }
         }
       }
-
-      return true;
     }
   }
 }
@@ -0,0 +1,112 @@
+// Copyright 2000-2018 JetBrains s.r.o.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package org.jetbrains.plugins.cucumber.java;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.lang.java.lexer.JavaLexer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.impl.source.tree.ElementType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.indexing.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.cucumber.steps.CucumberStepIndex;
+
+import java.util.*;
+
+/**
+ * Maps step keywords of Java 8 step definitions ({@code Given("...", () -> {})}) to the offsets of calls in a Java file
+ * which might register a step. The calls are only found lexically, they still have to be resolved.
+ */
+public class CucumberJava8StepIndex extends CucumberStepIndex {
+  public static final ID<String, List<Integer>> INDEX_ID = ID.create("java.cucumber.java8.step");
+  private static final int VERSION = 1;
+
+  private final DataIndexer<String, List<Integer>, FileContent> myDataIndexer = new MyDataIndexer();
+
+  @NotNull
+  @Override
+  public ID<String, List<Integer>> getName() {
+    return INDEX_ID;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, List<Integer>, FileContent> getIndexer() {
+    return myDataIndexer;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+  }
+
+  private static class MyDataIndexer implements DataIndexer<String, List<Integer>, FileContent> {
+    @NotNull
+    @Override
+    public Map<String, List<Integer>> map(@NotNull FileContent inputData) {
+      final CharSequence text = inputData.getContentAsText();
+      if (!containsKeyword(text)) {
+        return Collections.emptyMap();
+      }
+
+      final Map<String, List<Integer>> result = new HashMap<>();
+      final JavaLexer lexer = new JavaLexer(LanguageLevel.HIGHEST);
+      lexer.start(text);
+      String keyword = null;
+      int keywordOffset = 0;
+      while (lexer.getTokenType() != null) {
+        final IElementType tokenType = lexer.getTokenType();
+        if (keyword != null && tokenType == JavaTokenType.LPARENTH) {
+          result.computeIfAbsent(keyword, k -> new ArrayList<>()).add(keywordOffset);
+          keyword = null;
+        }
+        else if (tokenType == JavaTokenType.IDENTIFIER) {
+          keyword = getKeyword(text, lexer.getTokenStart(), lexer.getTokenEnd());
+          keywordOffset = lexer.getTokenStart();
+        }
+        else if (!ElementType.JAVA_COMMENT_OR_WHITESPACE_BIT_SET.contains(tokenType)) {
+          keyword = null;
+        }
+        lexer.advance();
+      }
+      return result;
+    }
+
+    private static boolean containsKeyword(CharSequence text) {
+      for (String keyword : CucumberJava8Extension.KEYWORDS) {
+        if (StringUtil.contains(text, keyword)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static String getKeyword(CharSequence text, int start, int end) {
+      for (String keyword : CucumberJava8Extension.KEYWORDS) {
+        if (StringUtil.equals(keyword, text.subSequence(start, end))) {
+          return keyword;
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -2,13 +2,23 @@ package org.jetbrains.plugins.cucumber.java;
 
 import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.openapi.module.Module;
-import com.intellij.psi.JavaPsiFacade;
-import com.intellij.psi.PsiClass;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiMethod;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.ProjectScope;
 import com.intellij.psi.search.searches.AnnotatedElementsSearch;
-import com.intellij.util.Query;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.cucumber.BDDFrameworkType;
@@ -17,14 +27,18 @@ import org.jetbrains.plugins.cucumber.java.steps.JavaStepDefinition;
 import org.jetbrains.plugins.cucumber.java.steps.JavaStepDefinitionCreator;
 import org.jetbrains.plugins.cucumber.steps.AbstractStepDefinition;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 public class CucumberJavaExtension extends AbstractCucumberJavaExtension {
   public static final String CUCUMBER_RUNTIME_JAVA_STEP_DEF_ANNOTATION = "cucumber.runtime.java.StepDefAnnotation";
   public static final String ZUCHINI_RUNTIME_JAVA_STEP_DEF_ANNOTATION = "org.zuchini.annotations.StepAnnotation";
 
+  private static final Key<CachedValue<Map<String, Set<String>>>> STEP_ANNOTATIONS_KEY = Key.create("CUCUMBER_JAVA_STEP_ANNOTATIONS");
+  private static final Key<CachedValue<List<AbstractStepDefinition>>> LIBRARY_STEP_DEFINITIONS_KEY =
+    Key.create("CUCUMBER_JAVA_LIBRARY_STEP_DEFINITIONS");
+  private static final Key<StepDefinitions> STEP_DEFINITIONS_KEY = Key.create("CUCUMBER_JAVA_STEP_DEFINITIONS");
+  private static final Key<FileSteps> FILE_STEPS_KEY = Key.create("CUCUMBER_JAVA_FILE_STEP_DEFINITIONS");
+
   @NotNull
   @Override
   public BDDFrameworkType getStepFileType() {
@@ -37,8 +51,141 @@ public class CucumberJavaExtension extends AbstractCucumberJavaExtension {
     return new JavaStepDefinitionCreator();
   }
 
+  /**
+   * Step definitions don't depend on a feature file, so they are kept per module together with the step definitions
+   * of each file they were built from. {@link CucumberJavaStepIndex} is queried on each call, and step definitions of a file
+   * are kept in the file (see {@link #getFileSteps}), so only files with changed step annotation usages are resolved again.
+   * Definitions read their patterns from PSI, so edits of the patterns don't require a new list.
+   */
   @Override
   public List<AbstractStepDefinition> loadStepsFor(@Nullable PsiFile featureFile, @NotNull Module module) {
+    final Map<String, Set<String>> annotationClassNames = getStepAnnotationClassNames(module);
+    if (annotationClassNames.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<AbstractStepDefinition> librarySteps = getLibrarySteps(module);
+
+    final GlobalSearchScope javaFiles =
+      GlobalSearchScope.getScopeRestrictedByFileTypes(module.getModuleWithDependenciesAndLibrariesScope(true), JavaFileType.INSTANCE);
+    // the index is only queried here, PSI is built and resolved after the queries are done
+    final Map<VirtualFile, Map<String, List<Integer>>> usages = new HashMap<>();
+    for (String shortName : annotationClassNames.keySet()) {
+      FileBasedIndex.getInstance().processValues(CucumberJavaStepIndex.INDEX_ID, shortName, null, (file, offsets) -> {
+        usages.computeIfAbsent(file, k -> new HashMap<>()).put(shortName, offsets);
+        return true;
+      }, javaFiles);
+    }
+
+    final Project project = module.getProject();
+    final long resolveStamp = PsiModificationTracker.SERVICE.getInstance(project).getJavaStructureModificationCount() +
+                              ProjectRootManager.getInstance(project).getModificationCount();
+    final Map<VirtualFile, FileSteps> fileSteps = new HashMap<>();
+    final PsiManager psiManager = PsiManager.getInstance(project);
+    for (Map.Entry<VirtualFile, Map<String, List<Integer>>> entry : usages.entrySet()) {
+      final PsiFile psiFile = psiManager.findFile(entry.getKey());
+      if (psiFile != null) {
+        fileSteps.put(entry.getKey(), getFileSteps(psiFile, entry.getValue(), resolveStamp));
+      }
+    }
+
+    StepDefinitions stepDefinitions = module.getUserData(STEP_DEFINITIONS_KEY);
+    if (stepDefinitions == null || !stepDefinitions.isUpToDate(annotationClassNames, librarySteps, fileSteps)) {
+      stepDefinitions = new StepDefinitions(annotationClassNames, librarySteps, fileSteps);
+      module.putUserData(STEP_DEFINITIONS_KEY, stepDefinitions);
+    }
+    return stepDefinitions.mySteps;
+  }
+
+  /**
+   * Returns step definitions of the annotations found by {@link CucumberJavaStepIndex} in the file. The kept definitions
+   * are returned while the index answers with the same offsets and the annotations there resolve to the same classes;
+   * the resolution depends on the imports of the file and on other classes, so it's checked again after changes of the file,
+   * of Java structure or of project roots.
+   */
+  @NotNull
+  private static FileSteps getFileSteps(@NotNull PsiFile file, @NotNull Map<String, List<Integer>> offsets, long resolveStamp) {
+    final FileSteps kept = file.getUserData(FILE_STEPS_KEY);
+    final long fileStamp = file.getModificationStamp();
+    final boolean sameOffsets = kept != null && kept.myOffsets.equals(offsets);
+    if (sameOffsets && kept.myFileStamp == fileStamp && kept.myResolveStamp == resolveStamp) {
+      return kept;
+    }
+
+    final List<Pair<PsiMethod, String>> annotatedMethods = findAnnotatedMethods(file, offsets);
+    final List<String> annotationClassNames = ContainerUtil.map(annotatedMethods, pair -> pair.second);
+    final List<AbstractStepDefinition> steps = sameOffsets && kept.myAnnotationClassNames.equals(annotationClassNames)
+                                               ? kept.mySteps
+                                               : ContainerUtil.map(annotatedMethods, pair -> new JavaStepDefinition(pair.first, pair.second));
+    final FileSteps fileSteps = new FileSteps(offsets, annotationClassNames, steps, fileStamp, resolveStamp);
+    file.putUserData(FILE_STEPS_KEY, fileSteps);
+    return fileSteps;
+  }
+
+  /**
+   * Methods annotated at the given offsets, with qualified names of the annotations
+   */
+  @NotNull
+  private static List<Pair<PsiMethod, String>> findAnnotatedMethods(@NotNull PsiFile file, @NotNull Map<String, List<Integer>> offsets) {
+    final List<Pair<PsiMethod, String>> result = new ArrayList<>();
+    for (List<Integer> annotationOffsets : offsets.values()) {
+      for (Integer offset : annotationOffsets) {
+        final PsiAnnotation annotation = PsiTreeUtil.getParentOfType(file.findElementAt(offset), PsiAnnotation.class);
+        if (annotation == null) continue;
+        final PsiAnnotationOwner owner = annotation.getOwner();
+        final PsiElement method = owner instanceof PsiModifierList ? ((PsiModifierList)owner).getParent() : null;
+        final String annotationClassName = annotation.getQualifiedName();
+        if (method instanceof PsiMethod && annotationClassName != null) {
+          result.add(Pair.create((PsiMethod)method, annotationClassName));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Short names of step annotations mapped to their qualified names. Step annotations may be declared in the project,
+   * so they are searched again after changes of Java structure.
+   */
+  @NotNull
+  private static Map<String, Set<String>> getStepAnnotationClassNames(@NotNull Module module) {
+    return CachedValuesManager.getManager(module.getProject()).getCachedValue(module, STEP_ANNOTATIONS_KEY, () -> {
+      final Map<String, Set<String>> result = new HashMap<>();
+      for (PsiClass annotationClass : findStepAnnotations(module, module.getModuleWithDependenciesAndLibrariesScope(true))) {
+        final String annotationClassName = annotationClass.getQualifiedName();
+        if (annotationClassName != null) {
+          result.computeIfAbsent(StringUtil.getShortName(annotationClassName), k -> new HashSet<>()).add(annotationClassName);
+        }
+      }
+      return CachedValueProvider.Result.create(result,
+                                               PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT,
+                                               ProjectRootManager.getInstance(module.getProject()));
+    }, false);
+  }
+
+  /**
+   * Step definitions compiled into libraries aren't indexed, they are searched once per change of project roots.
+   */
+  @NotNull
+  private static List<AbstractStepDefinition> getLibrarySteps(@NotNull Module module) {
+    return CachedValuesManager.getManager(module.getProject()).getCachedValue(module, LIBRARY_STEP_DEFINITIONS_KEY, () -> {
+      final GlobalSearchScope librariesScope = module.getModuleWithDependenciesAndLibrariesScope(true)
+        .intersectWith(ProjectScope.getLibrariesScope(module.getProject()));
+      final List<AbstractStepDefinition> result = new ArrayList<>();
+      for (PsiClass annotationClass : findStepAnnotations(module, librariesScope)) {
+        final String annotationClassName = annotationClass.getQualifiedName();
+        if (annotationClassName == null) continue;
+        for (PsiMethod stepDefMethod : AnnotatedElementsSearch.searchPsiMethods(annotationClass, librariesScope)) {
+          if (stepDefMethod instanceof PsiCompiledElement) {
+            result.add(new JavaStepDefinition(stepDefMethod, annotationClassName));
+          }
+        }
+      }
+      return CachedValueProvider.Result.create(result, ProjectRootManager.getInstance(module.getProject()));
+    }, false);
+  }
+
+  @NotNull
+  private static List<PsiClass> findStepAnnotations(@NotNull Module module, @NotNull GlobalSearchScope scope) {
     final GlobalSearchScope dependenciesScope = module.getModuleWithDependenciesAndLibrariesScope(true);
 
     PsiClass stepDefAnnotationClass = JavaPsiFacade.getInstance(module.getProject()).findClass(CUCUMBER_RUNTIME_JAVA_STEP_DEF_ANNOTATION,
@@ -51,17 +198,76 @@ public class CucumberJavaExtension extends AbstractCucumberJavaExtension {
       return Collections.emptyList();
     }
 
-    final List<AbstractStepDefinition> result = new ArrayList<>();
-    final Query<PsiClass> stepDefAnnotations = AnnotatedElementsSearch.searchPsiClasses(stepDefAnnotationClass, dependenciesScope);
-    for (PsiClass annotationClass : stepDefAnnotations) {
-      String annotationClassName = annotationClass.getQualifiedName();
-      if (annotationClass.isAnnotationType() && annotationClassName != null) {
-        final Query<PsiMethod> javaStepDefinitions = AnnotatedElementsSearch.searchPsiMethods(annotationClass, dependenciesScope);
-        for (PsiMethod stepDefMethod : javaStepDefinitions) {
-          result.add(new JavaStepDefinition(stepDefMethod, annotationClassName));
-        }
+    final List<PsiClass> result = new ArrayList<>();
+    for (PsiClass annotationClass : AnnotatedElementsSearch.searchPsiClasses(stepDefAnnotationClass, scope)) {
+      if (annotationClass.isAnnotationType()) {
+        result.add(annotationClass);
       }
     }
     return result;
   }
+
+  private static class FileSteps {
+    // annotation short name -> offsets, as answered by the index
+    private final Map<String, List<Integer>> myOffsets;
+    // qualified names of the annotations of the step definitions, in the same order
+    private final List<String> myAnnotationClassNames;
+    private final List<AbstractStepDefinition> mySteps;
+    private final long myFileStamp;
+    private final long myResolveStamp;
+
+    private FileSteps(@NotNull Map<String, List<Integer>> offsets,
+                      @NotNull List<String> annotationClassNames,
+                      @NotNull List<AbstractStepDefinition> steps,
+                      long fileStamp,
+                      long resolveStamp) {
+      myOffsets = offsets;
+      myAnnotationClassNames = annotationClassNames;
+      mySteps = steps;
+      myFileStamp = fileStamp;
+      myResolveStamp = resolveStamp;
+    }
+  }
+
+  private static class StepDefinitions {
+    private final Map<String, Set<String>> myAnnotationClassNames;
+    private final List<AbstractStepDefinition> myLibrarySteps;
+    // step definitions of each file, as kept in the file
+    private final Map<VirtualFile, List<AbstractStepDefinition>> myFileSteps = new HashMap<>();
+    private final List<AbstractStepDefinition> mySteps;
+
+    private StepDefinitions(@NotNull Map<String, Set<String>> annotationClassNames,
+                            @NotNull List<AbstractStepDefinition> librarySteps,
+                            @NotNull Map<VirtualFile, FileSteps> fileSteps) {
+      myAnnotationClassNames = annotationClassNames;
+      myLibrarySteps = librarySteps;
+
+      final Set<String> stepAnnotationClassNames = new HashSet<>();
+      for (Set<String> classNames : annotationClassNames.values()) {
+        stepAnnotationClassNames.addAll(classNames);
+      }
+      final List<AbstractStepDefinition> steps = new ArrayList<>(librarySteps);
+      for (Map.Entry<VirtualFile, FileSteps> entry : fileSteps.entrySet()) {
+        final FileSteps definitions = entry.getValue();
+        myFileSteps.put(entry.getKey(), definitions.mySteps);
+        for (int i = 0; i < definitions.mySteps.size(); i++) {
+          if (stepAnnotationClassNames.contains(definitions.myAnnotationClassNames.get(i))) {
+            steps.add(definitions.mySteps.get(i));
+          }
+        }
+      }
+      mySteps = Collections.unmodifiableList(steps);
+    }
+
+    private boolean isUpToDate(@NotNull Map<String, Set<String>> annotationClassNames,
+                               @NotNull List<AbstractStepDefinition> librarySteps,
+                               @NotNull Map<VirtualFile, FileSteps> fileSteps) {
+      if (myLibrarySteps != librarySteps || !myAnnotationClassNames.equals(annotationClassNames)) return false;
+      if (myFileSteps.size() != fileSteps.size()) return false;
+      for (Map.Entry<VirtualFile, FileSteps> entry : fileSteps.entrySet()) {
+        if (myFileSteps.get(entry.getKey()) != entry.getValue().mySteps) return false;
+      }
+      return true;
+    }
+  }
 }
@@ -0,0 +1,107 @@
+// Copyright 2000-2018 JetBrains s.r.o.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package org.jetbrains.plugins.cucumber.java;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.lang.java.lexer.JavaLexer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.impl.source.tree.ElementType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.indexing.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.cucumber.steps.CucumberStepIndex;
+
+import java.util.*;
+
+/**
+ * Maps short names of annotations with arguments ({@code @Given("...")}, {@code @cucumber.api.java.en.When("...")})
+ * to the offsets of their name identifiers in a Java file. Step annotations can't be told from other annotations
+ * lexically, so the offsets still have to be resolved against the step annotation classes.
+ */
+public class CucumberJavaStepIndex extends CucumberStepIndex {
+  public static final ID<String, List<Integer>> INDEX_ID = ID.create("java.cucumber.step");
+  private static final int VERSION = 1;
+
+  private final DataIndexer<String, List<Integer>, FileContent> myDataIndexer = new MyDataIndexer();
+
+  @NotNull
+  @Override
+  public ID<String, List<Integer>> getName() {
+    return INDEX_ID;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, List<Integer>, FileContent> getIndexer() {
+    return myDataIndexer;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+  }
+
+  private static class MyDataIndexer implements DataIndexer<String, List<Integer>, FileContent> {
+    @NotNull
+    @Override
+    public Map<String, List<Integer>> map(@NotNull FileContent inputData) {
+      final CharSequence text = inputData.getContentAsText();
+      if (StringUtil.indexOf(text, '@') < 0) {
+        return Collections.emptyMap();
+      }
+
+      final Map<String, List<Integer>> result = new HashMap<>();
+      final JavaLexer lexer = new JavaLexer(LanguageLevel.HIGHEST);
+      lexer.start(text);
+      // the annotation name is the last identifier of a qualified reference after '@'
+      boolean inAnnotation = false;
+      boolean expectIdentifier = false;
+      int nameStart = -1;
+      int nameEnd = -1;
+      while (lexer.getTokenType() != null) {
+        final IElementType tokenType = lexer.getTokenType();
+        if (tokenType == JavaTokenType.AT) {
+          inAnnotation = true;
+          expectIdentifier = true;
+          nameStart = -1;
+        }
+        else if (inAnnotation && expectIdentifier && tokenType == JavaTokenType.IDENTIFIER) {
+          nameStart = lexer.getTokenStart();
+          nameEnd = lexer.getTokenEnd();
+          expectIdentifier = false;
+        }
+        else if (inAnnotation && !expectIdentifier && tokenType == JavaTokenType.DOT) {
+          expectIdentifier = true;
+        }
+        else if (inAnnotation && !expectIdentifier && tokenType == JavaTokenType.LPARENTH) {
+          result.computeIfAbsent(text.subSequence(nameStart, nameEnd).toString(), k -> new ArrayList<>()).add(nameStart);
+          inAnnotation = false;
+        }
+        else if (!ElementType.JAVA_COMMENT_OR_WHITESPACE_BIT_SET.contains(tokenType)) {
+          inAnnotation = false;
+        }
+        lexer.advance();
+      }
+      return result;
+    }
+  }
+}
@@ -40,4 +40,10 @@ public abstract class AbstractJavaStepDefinition extends AbstractStepDefinition
     }
     return false;
   }
+
+  @Override
+  public boolean isMatchedByPattern() {
+    // a full match of the pattern is still a match
+    return true;
+  }
 }
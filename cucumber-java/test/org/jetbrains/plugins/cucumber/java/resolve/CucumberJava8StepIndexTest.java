@@ -0,0 +1,66 @@
+package org.jetbrains.plugins.cucumber.java.resolve;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.plugins.cucumber.java.CucumberJava8Extension;
+import org.jetbrains.plugins.cucumber.java.CucumberJava8StepIndex;
+import org.jetbrains.plugins.cucumber.java.CucumberJavaTestUtil;
+import org.jetbrains.plugins.cucumber.steps.AbstractStepDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CucumberJava8StepIndexTest extends BaseCucumberJavaResolveTest {
+  public void testIndexedStepCalls() {
+    init("stepResolve_java8");
+    final PsiFile stepDefFile = findPsiFileInTempDirBy("ShoppingStepdefs.java");
+
+    final List<List<Integer>> values = FileBasedIndex.getInstance()
+      .getValues(CucumberJava8StepIndex.INDEX_ID, "Given", GlobalSearchScope.fileScope(stepDefFile));
+    assertSize(1, values);
+
+    final String text = stepDefFile.getText();
+    final List<Integer> offsets = values.get(0);
+    assertSize(2, offsets);
+    for (Integer offset : offsets) {
+      assertTrue(text.startsWith("Given(", offset));
+    }
+
+    assertEmpty(FileBasedIndex.getInstance()
+                  .getValues(CucumberJava8StepIndex.INDEX_ID, "When", GlobalSearchScope.fileScope(stepDefFile)));
+  }
+
+  public void testResolveStepAddedToIndex() {
+    init("stepResolve_java8");
+    assertSameElements(getStepRegexes(), "I have cukes in my belly", "one two");
+
+    final PsiFile stepDefFile = findPsiFileInTempDirBy("ShoppingStepdefs.java");
+    final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(stepDefFile);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      final int offset = document.getText().indexOf("Given(\"one \"");
+      document.insertString(offset, "When(\"I pay (\\\\d+)\", (Integer amount) -> {});\n    ");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+
+    assertSameElements(getStepRegexes(), "I have cukes in my belly", "one two", "I pay (\\d+)");
+  }
+
+  private List<String> getStepRegexes() {
+    final List<String> result = new ArrayList<>();
+    for (AbstractStepDefinition definition : new CucumberJava8Extension().loadStepsFor(null, myModule)) {
+      result.add(definition.getCucumberRegex());
+    }
+    return result;
+  }
+
+  @Override
+  protected LightProjectDescriptor getProjectDescriptor() {
+    return CucumberJavaTestUtil.createCucumberJava8ProjectDescriptor();
+  }
+}
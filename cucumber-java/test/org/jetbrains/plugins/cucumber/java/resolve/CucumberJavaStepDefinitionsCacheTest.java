@@ -0,0 +1,125 @@
+package org.jetbrains.plugins.cucumber.java.resolve;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElementFactory;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.plugins.cucumber.psi.GherkinStep;
+import org.jetbrains.plugins.cucumber.steps.CucumberStepsIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.cucumber.java.CucumberJavaExtension;
+import org.jetbrains.plugins.cucumber.steps.AbstractStepDefinition;
+
+import java.util.List;
+
+public class CucumberJavaStepDefinitionsCacheTest extends BaseCucumberJavaResolveTest {
+  public void testCachedAcrossUnrelatedEdits() {
+    init("treeListener");
+    final List<AbstractStepDefinition> stepDefinitions = loadSteps();
+    assertSize(1, stepDefinitions);
+
+    final PsiClass unrelatedClass = myFixture.addClass("public class Unrelated {}");
+    assertSame(stepDefinitions, loadSteps());
+
+    addMethod(unrelatedClass, "public void foo() {}");
+    assertSame(stepDefinitions, loadSteps());
+  }
+
+  public void testInvalidatedByStepDefinitionEdits() {
+    init("treeListener");
+    final List<AbstractStepDefinition> stepDefinitions = loadSteps();
+    assertSize(1, stepDefinitions);
+
+    final PsiJavaFile stepDefFile = (PsiJavaFile)findPsiFileInTempDirBy("ShoppingStepdefs.java");
+    final PsiClass stepDefClass = PsiTreeUtil.getChildOfType(stepDefFile, PsiClass.class);
+    assertNotNull(stepDefClass);
+    addMethod(stepDefClass, "@cucumber.api.java.en.When(\"^I pay (\\\\d+)$\")\npublic void i_pay(int amount) {}");
+
+    final List<AbstractStepDefinition> changedStepDefinitions = loadSteps();
+    assertNotSame(stepDefinitions, changedStepDefinitions);
+    assertSize(2, changedStepDefinitions);
+  }
+
+  public void testInvalidatedByRemovalOfStepDefinitionsInCommittedDocument() {
+    init("treeListener");
+    final List<AbstractStepDefinition> stepDefinitions = loadSteps();
+    assertSize(1, stepDefinitions);
+
+    // the committed document has no mention of Cucumber anymore, only the previous text of the file had
+    final PsiJavaFile stepDefFile = (PsiJavaFile)findPsiFileInTempDirBy("ShoppingStepdefs.java");
+    final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(stepDefFile);
+    assertNotNull(document);
+    WriteCommandAction.writeCommandAction(getProject(), stepDefFile).run(() -> {
+      document.setText("public class ShoppingStepdefs {}");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+
+    final List<AbstractStepDefinition> changedStepDefinitions = loadSteps();
+    assertNotSame(stepDefinitions, changedStepDefinitions);
+    assertEmpty(changedStepDefinitions);
+  }
+
+  public void testInvalidatedByImportOfOtherAnnotationInSamePlace() {
+    init("treeListener");
+    myFixture.addClass("package cucumber.api.java.ex;\n" +
+                       "public @interface Then { String value(); }");
+    final List<AbstractStepDefinition> stepDefinitions = loadSteps();
+    assertSize(1, stepDefinitions);
+
+    // the import has the same length, so the index answers with the same offsets
+    final PsiJavaFile stepDefFile = (PsiJavaFile)findPsiFileInTempDirBy("ShoppingStepdefs.java");
+    final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(stepDefFile);
+    assertNotNull(document);
+    WriteCommandAction.writeCommandAction(getProject(), stepDefFile).run(() -> {
+      final int offset = document.getText().indexOf("cucumber.api.java.en");
+      document.replaceString(offset, offset + "cucumber.api.java.en".length(), "cucumber.api.java.ex");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+
+    assertEmpty(loadSteps());
+  }
+
+  public void testMatcherFollowsPatternConstantInAnotherFile() {
+    init("treeListener");
+    final PsiClass patterns = myFixture.addClass("public class Patterns {\n" +
+                                                 "  public static final String PAY = \"^I pay (\\\\d+)$\";\n" +
+                                                 "}");
+    myFixture.addFileToProject("PayStepdefs.java",
+                               "public class PayStepdefs {\n" +
+                               "  @cucumber.api.java.en.When(Patterns.PAY)\n" +
+                               "  public void i_pay(int amount) {}\n" +
+                               "}");
+    final PsiFile featureFile = myFixture.configureByText("pay.feature", "Feature: Pay\n  Scenario: Pay\n    When I pay 5\n");
+    final GherkinStep step = PsiTreeUtil.findChildOfType(featureFile, GherkinStep.class);
+    assertNotNull(step);
+
+    final CucumberStepsIndex index = CucumberStepsIndex.getInstance(getProject());
+    assertSize(1, index.findStepDefinitions(featureFile, step));
+
+    final Document document = PsiDocumentManager.getInstance(getProject()).getDocument(patterns.getContainingFile());
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      final int offset = document.getText().indexOf("pay");
+      document.replaceString(offset, offset + "pay".length(), "spend");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+
+    assertEmpty(index.findStepDefinitions(featureFile, step));
+  }
+
+  private List<AbstractStepDefinition> loadSteps() {
+    return new CucumberJavaExtension().loadStepsFor(null, myModule);
+  }
+
+  private void addMethod(@NotNull final PsiClass psiClass, @NotNull final String methodText) {
+    WriteCommandAction.writeCommandAction(getProject(), psiClass.getContainingFile()).run(() -> {
+      final PsiElementFactory factory = JavaPsiFacade.getInstance(getProject()).getElementFactory();
+      psiClass.add(factory.createMethodFromText(methodText, psiClass));
+    });
+  }
+}
@@ -0,0 +1,57 @@
+package org.jetbrains.plugins.cucumber.java.resolve;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.plugins.cucumber.java.CucumberJavaExtension;
+import org.jetbrains.plugins.cucumber.java.CucumberJavaStepIndex;
+import org.jetbrains.plugins.cucumber.steps.AbstractStepDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CucumberJavaStepIndexTest extends BaseCucumberJavaResolveTest {
+  public void testIndexedStepAnnotations() {
+    init("treeListener");
+    final PsiFile file = myFixture.addFileToProject("PayStepdefs.java",
+                                                    "import cucumber.api.java.en.Then;\n" +
+                                                    "public class PayStepdefs {\n" +
+                                                    "  @cucumber.api.java.en.When(\"^I pay (\\\\d+)$\")\n" +
+                                                    "  public void i_pay(int amount) {}\n" +
+                                                    "  @Then (\"^I'm done$\")\n" +
+                                                    "  public void done() {}\n" +
+                                                    "  @Override\n" +
+                                                    "  public String toString() { return \"\"; }\n" +
+                                                    "}");
+    final String text = file.getText();
+    assertOffsets(file, "When", text.indexOf("When("));
+    assertOffsets(file, "Then", text.indexOf("Then ("));
+    assertEmpty(getValues(file, "Override"));
+    assertEmpty(getValues(file, "cucumber"));
+  }
+
+  public void testStepsOfFullyQualifiedAnnotations() {
+    init("treeListener");
+    myFixture.addFileToProject("PayStepdefs.java",
+                               "public class PayStepdefs {\n" +
+                               "  @cucumber.api.java.en.When(\"^I pay (\\\\d+)$\")\n" +
+                               "  public void i_pay(int amount) {}\n" +
+                               "}");
+
+    final List<String> regexes = new ArrayList<>();
+    for (AbstractStepDefinition definition : new CucumberJavaExtension().loadStepsFor(null, myModule)) {
+      regexes.add(definition.getCucumberRegex());
+    }
+    assertSameElements(regexes, "^my change should be (\\d+)$", "^I pay (\\d+)$");
+  }
+
+  private static void assertOffsets(PsiFile file, String name, int offset) {
+    final List<List<Integer>> values = getValues(file, name);
+    assertSize(1, values);
+    assertOrderedEquals(values.get(0), offset);
+  }
+
+  private static List<List<Integer>> getValues(PsiFile file, String name) {
+    return FileBasedIndex.getInstance().getValues(CucumberJavaStepIndex.INDEX_ID, name, GlobalSearchScope.fileScope(file));
+  }
+}
@@ -0,0 +1,53 @@
+package org.jetbrains.plugins.cucumber.java.resolve;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.plugins.cucumber.java.CucumberJavaCodeInsightTestCase;
+import org.jetbrains.plugins.cucumber.psi.GherkinStep;
+import org.jetbrains.plugins.cucumber.steps.CucumberStepsIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Resolves steps of a large feature file against a large number of step definitions.
+ */
+public class CucumberJavaStepMatchingPerformanceTest extends CucumberJavaCodeInsightTestCase {
+  private static final int DEFINITIONS = 2000;
+  private static final int STEPS = 2000;
+
+  public void testFindStepDefinitions() {
+    StringBuilder stepDefinitions = new StringBuilder("public class ShoppingStepdefs {\n");
+    for (int i = 0; i < DEFINITIONS; i++) {
+      stepDefinitions.append("  @cucumber.api.java.en.Given(\"^I have (\\\\d+) apples? in basket ").append(i).append("$\")\n")
+        .append("  public void apples").append(i).append("(int count) {}\n");
+    }
+    stepDefinitions.append("  @cucumber.api.java.en.Then(\"^(.*) is left$\")\n")
+      .append("  public void isLeft(String what) {}\n")
+      .append("}\n");
+    myFixture.addFileToProject("ShoppingStepdefs.java", stepDefinitions.toString());
+
+    StringBuilder feature = new StringBuilder("Feature: Shopping\n  Scenario: Many baskets\n");
+    for (int i = 0; i < STEPS; i++) {
+      feature.append("    Given I have ").append(i % 7).append(" apples in basket ").append(i % DEFINITIONS).append('\n');
+    }
+    feature.append("    Then nothing is left\n");
+    PsiFile featureFile = myFixture.configureByText("shopping.feature", feature.toString());
+
+    List<GherkinStep> steps = new ArrayList<>(PsiTreeUtil.findChildrenOfType(featureFile, GherkinStep.class));
+    assertEquals(STEPS + 1, steps.size());
+
+    CucumberStepsIndex index = CucumberStepsIndex.getInstance(getProject());
+    Collection<?> definitions = index.findStepDefinitions(featureFile, steps.get(42));
+    assertSize(1, definitions);
+    assertSize(1, index.findStepDefinitions(featureFile, steps.get(STEPS)));
+
+    PlatformTestUtil.startPerformanceTest("Cucumber step definitions lookup", 2_000, () -> {
+      for (GherkinStep step : steps) {
+        assertSize(1, index.findStepDefinitions(featureFile, step));
+      }
+    }).attempts(3).assertTiming();
+  }
+}
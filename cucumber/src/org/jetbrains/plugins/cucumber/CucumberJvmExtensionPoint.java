@@ -4,9 +4,11 @@ import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.cucumber.psi.GherkinFile;
@@ -70,6 +72,15 @@ public interface CucumberJvmExtensionPoint {
    */
   List<AbstractStepDefinition> loadStepsFor(@Nullable PsiFile featureFile, @NotNull Module module);
 
+  /**
+   * Tracks changes of the step definitions loaded by {@link #loadStepsFor(PsiFile, Module)}, apart from changes of project roots.
+   * Any PSI change by default; extensions tracking their step definition files may return a more specific tracker.
+   */
+  @NotNull
+  default ModificationTracker getStepDefinitionsModificationTracker(@NotNull Project project) {
+    return PsiManager.getInstance(project).getModificationTracker();
+  }
+
   void flush(@NotNull Project project);
 
   void reset(@NotNull Project project);
@@ -45,6 +45,19 @@ public abstract class AbstractStepDefinition {
     return pattern != null && pattern.matcher(stepName).find();
   }
 
+  /**
+   * Tells if {@link #matches(String)} accepts only step names in which {@link #getPattern()} finds a match.
+   * Step definitions which are matched by their pattern may be skipped without calling {@link #matches(String)}
+   * when a step name doesn't contain a text required by the pattern.
+   * <p/>
+   * False by default, so that definitions with their own matching logic are always checked; implementations which
+   * use {@link #matches(String)} as is, or override it in a way which still requires a pattern match (e.g. a full match),
+   * should return true.
+   */
+  public boolean isMatchedByPattern() {
+    return false;
+  }
+
   @Nullable
   public PsiElement getElement() {
     return myElementPointer.getElement();
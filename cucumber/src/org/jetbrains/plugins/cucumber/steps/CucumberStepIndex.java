@@ -0,0 +1,62 @@
+package org.jetbrains.plugins.cucumber.steps;
+
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of indices which map step keywords or method names to the offsets of calls which might register a step,
+ * for step definitions which are registered by calls rather than declared by annotations.
+ * Offsets of a file are stored in ascending order as deltas.
+ */
+public abstract class CucumberStepIndex extends FileBasedIndexExtension<String, List<Integer>> {
+  private static final DataExternalizer<List<Integer>> OFFSETS_EXTERNALIZER = new DataExternalizer<List<Integer>>() {
+    @Override
+    public void save(@NotNull DataOutput out, List<Integer> value) throws IOException {
+      DataInputOutputUtil.writeINT(out, value.size());
+      int previous = 0;
+      for (Integer offset : value) {
+        DataInputOutputUtil.writeINT(out, offset - previous);
+        previous = offset;
+      }
+    }
+
+    @Override
+    public List<Integer> read(@NotNull DataInput in) throws IOException {
+      final int size = DataInputOutputUtil.readINT(in);
+      final List<Integer> result = new ArrayList<>(size);
+      int offset = 0;
+      for (int i = 0; i < size; i++) {
+        offset += DataInputOutputUtil.readINT(in);
+        result.add(offset);
+      }
+      return result;
+    }
+  };
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<List<Integer>> getValueExternalizer() {
+    return OFFSETS_EXTERNALIZER;
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+}
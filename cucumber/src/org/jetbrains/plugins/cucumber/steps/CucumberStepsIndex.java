@@ -5,7 +5,12 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.openapi.util.UserDataHolder;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiElement;
@@ -28,9 +33,11 @@ import java.util.regex.Pattern;
  */
 public class CucumberStepsIndex {
   private static final Logger LOG = Logger.getInstance(CucumberStepsIndex.class.getName());
+  private static final Key<StepDefinitionMatcher> MATCHER_KEY = Key.create("CUCUMBER_STEP_DEFINITION_MATCHER");
 
   private final Map<BDDFrameworkType, CucumberJvmExtensionPoint> myExtensionMap;
   private final Map<CucumberJvmExtensionPoint, Object> myExtensionData;
+  private final SimpleModificationTracker myExtensionsTracker = new SimpleModificationTracker();
   private Project myProject;
 
   public static CucumberStepsIndex getInstance(Project project) {
@@ -118,10 +125,10 @@ public class CucumberStepsIndex {
 
     Map<Class<? extends AbstractStepDefinition>, AbstractStepDefinition> definitionsByClass =
       new HashMap<>();
-    List<AbstractStepDefinition> allSteps = loadStepsFor(featureFile, module);
+    StepDefinitionMatcher matcher = getMatcher(featureFile, module);
 
-    for (AbstractStepDefinition stepDefinition : allSteps) {
-      if (stepDefinition.matches(substitutedName) && stepDefinition.supportsStep(step)) {
+    for (AbstractStepDefinition stepDefinition : matcher.findMatching(substitutedName)) {
+      if (stepDefinition.supportsStep(step)) {
         final Pattern currentLongestPattern = getPatternByDefinition(definitionsByClass.get(stepDefinition.getClass()));
         final Pattern newPattern = getPatternByDefinition(stepDefinition);
         final int newPatternLength = ((newPattern != null) ? newPattern.pattern().length() : -1);
@@ -147,17 +154,41 @@ public class CucumberStepsIndex {
     return definition.getPattern();
   }
 
-  // ToDo: use binary search here
   public List<AbstractStepDefinition> findStepDefinitionsByPattern(@NotNull final String pattern, @NotNull final Module module) {
-    final List<AbstractStepDefinition> allSteps = loadStepsFor(null, module);
-    final List<AbstractStepDefinition> result = new ArrayList<>();
-    for (AbstractStepDefinition stepDefinition : allSteps) {
-      final String elementText = stepDefinition.getCucumberRegex();
-      if (elementText != null && elementText.equals(pattern)) {
-        result.add(stepDefinition);
-      }
+    return getMatcher(null, module).findByRegex(pattern);
+  }
+
+  /**
+   * Returns a matcher for the step definitions available in the feature file (or the module, if there is no file).
+   * Extensions load definitions from PSI and project roots, so the matcher is reused without asking them again
+   * as long as neither the step definitions tracked by the extensions nor the roots have changed
+   * (and the extensions were not flushed or reset).
+   */
+  @NotNull
+  private StepDefinitionMatcher getMatcher(@Nullable final PsiFile featureFile, @NotNull final Module module) {
+    final long modificationCount = getStepsModificationCount(module.getProject());
+
+    final UserDataHolder holder = featureFile != null ? featureFile : module;
+    StepDefinitionMatcher matcher = holder.getUserData(MATCHER_KEY);
+    if (matcher == null || !matcher.isUpToDate(modificationCount)) {
+      matcher = new StepDefinitionMatcher(loadStepsFor(featureFile, module), modificationCount);
+      holder.putUserData(MATCHER_KEY, matcher);
     }
-    return result;
+    return matcher;
+  }
+
+  /**
+   * The sum of monotonic counters, so that it changes whenever any of them changes.
+   */
+  private long getStepsModificationCount(@NotNull final Project project) {
+    long count = 0;
+    for (CucumberJvmExtensionPoint extension : myExtensionMap.values()) {
+      count += extension.getStepDefinitionsModificationTracker(project).getModificationCount();
+    }
+    return count +
+           ProjectRootManager.getInstance(project).getModificationCount() +
+           DumbService.getInstance(project).getModificationTracker().getModificationCount() +
+           myExtensionsTracker.getModificationCount();
   }
 
   public List<AbstractStepDefinition> getAllStepDefinitions(@NotNull final PsiFile featureFile) {
@@ -216,12 +247,14 @@ public class CucumberStepsIndex {
     for (CucumberJvmExtensionPoint e : myExtensionMap.values()) {
       e.reset(myProject);
     }
+    myExtensionsTracker.incModificationCount();
   }
 
   public void flush() {
     for (CucumberJvmExtensionPoint e : myExtensionMap.values()) {
       e.flush(myProject);
     }
+    myExtensionsTracker.incModificationCount();
   }
 
   public Map<BDDFrameworkType, CucumberJvmExtensionPoint> getExtensionMap() {
@@ -24,6 +24,12 @@ import org.jetbrains.plugins.cucumber.psi.GherkinFile;
 
 import java.util.*;
 
+/**
+ * @deprecated keeps the step definitions of all files under step definition roots in memory and follows their changes
+ * through PSI listeners. Find step definitions through a file-based index instead, like {@code CucumberJava8Extension}
+ * or {@code GrCucumberExtension} do.
+ */
+@Deprecated
 public abstract class NotIndexedCucumberExtension extends AbstractCucumberExtension {
   public Object getDataObject(@NotNull final Project project) {
     final DataObject result = new DataObject();
@@ -0,0 +1,239 @@
+package org.jetbrains.plugins.cucumber.steps;
+
+import com.intellij.util.containers.MultiMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Matches step names against a fixed list of step definitions.
+ * <p/>
+ * For every definition the longest literal fragment which any matching step has to contain is extracted from its regex,
+ * and the definition is indexed by the rarest trigram of that fragment. A step is then only checked against definitions
+ * whose trigram occurs in the step name (and against definitions without a usable fragment), so usually just a handful
+ * of regexes are evaluated. Definitions are reported in their original order.
+ * <p/>
+ * Only definitions which are {@link AbstractStepDefinition#isMatchedByPattern() matched by their pattern} are skipped this way,
+ * the others are always checked.
+ * <p/>
+ * Definitions read their patterns from PSI, so a matcher is only valid for the modification count it was built at
+ * (see {@link CucumberStepsIndex}).
+ */
+class StepDefinitionMatcher {
+  private static final int GRAM_LENGTH = 3;
+
+  private final List<AbstractStepDefinition> myDefinitions;
+  private final long myModificationCount;
+  private final String[] myLiterals;
+  private final Map<String, int[]> myIndex = new HashMap<>();
+  private final BitSet myUnindexed = new BitSet();
+  private final MultiMap<String, AbstractStepDefinition> myDefinitionsByRegex = new MultiMap<>();
+
+  StepDefinitionMatcher(@NotNull List<AbstractStepDefinition> definitions, long modificationCount) {
+    myDefinitions = new ArrayList<>(definitions);
+    myModificationCount = modificationCount;
+    myLiterals = new String[myDefinitions.size()];
+
+    Map<String, Integer> gramCounts = new HashMap<>();
+    for (int i = 0; i < myDefinitions.size(); i++) {
+      AbstractStepDefinition definition = myDefinitions.get(i);
+      String regex = definition.getCucumberRegex();
+      if (regex != null) {
+        myDefinitionsByRegex.putValue(regex, definition);
+      }
+
+      // definitions with their own matching logic are always checked
+      Pattern pattern = definition.isMatchedByPattern() ? definition.getPattern() : null;
+      String literal = pattern != null ? getRequiredLiteral(pattern.pattern()) : null;
+      if (literal == null || literal.length() < GRAM_LENGTH) {
+        myUnindexed.set(i);
+        continue;
+      }
+      myLiterals[i] = literal;
+      for (String gram : getGrams(literal)) {
+        gramCounts.merge(gram, 1, Integer::sum);
+      }
+    }
+
+    MultiMap<String, Integer> index = new MultiMap<>();
+    for (int i = 0; i < myLiterals.length; i++) {
+      if (myLiterals[i] == null) continue;
+      String rarest = null;
+      for (String gram : getGrams(myLiterals[i])) {
+        if (rarest == null || gramCounts.get(gram).intValue() < gramCounts.get(rarest).intValue()) {
+          rarest = gram;
+        }
+      }
+      index.putValue(rarest, i);
+    }
+    for (Map.Entry<String, Collection<Integer>> entry : index.entrySet()) {
+      int[] ordinals = new int[entry.getValue().size()];
+      int j = 0;
+      for (Integer ordinal : entry.getValue()) {
+        ordinals[j++] = ordinal;
+      }
+      myIndex.put(entry.getKey(), ordinals);
+    }
+  }
+
+  boolean isUpToDate(long modificationCount) {
+    return myModificationCount == modificationCount;
+  }
+
+  /**
+   * @return all definitions matching the step name, in the order they were passed to the constructor
+   */
+  @NotNull
+  List<AbstractStepDefinition> findMatching(@NotNull String stepName) {
+    String normalizedName = normalize(stepName);
+    BitSet candidates = (BitSet)myUnindexed.clone();
+    for (int i = 0; i + GRAM_LENGTH <= normalizedName.length(); i++) {
+      int[] ordinals = myIndex.get(normalizedName.substring(i, i + GRAM_LENGTH));
+      if (ordinals != null) {
+        for (int ordinal : ordinals) {
+          candidates.set(ordinal);
+        }
+      }
+    }
+
+    List<AbstractStepDefinition> result = new ArrayList<>();
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if (myLiterals[i] != null && !normalizedName.contains(myLiterals[i])) continue;
+      AbstractStepDefinition definition = myDefinitions.get(i);
+      if (definition.matches(stepName)) {
+        result.add(definition);
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  List<AbstractStepDefinition> findByRegex(@NotNull String regex) {
+    return new ArrayList<>(myDefinitionsByRegex.get(regex));
+  }
+
+  private static Set<String> getGrams(String literal) {
+    Set<String> result = new HashSet<>();
+    for (int i = 0; i + GRAM_LENGTH <= literal.length(); i++) {
+      result.add(literal.substring(i, i + GRAM_LENGTH));
+    }
+    return result;
+  }
+
+  /**
+   * Step patterns are case-insensitive for ASCII letters only, so only those are folded.
+   */
+  private static String normalize(String text) {
+    StringBuilder result = null;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= 'A' && c <= 'Z') {
+        if (result == null) {
+          result = new StringBuilder(text);
+        }
+        result.setCharAt(i, (char)(c + ('a' - 'A')));
+      }
+    }
+    return result != null ? result.toString() : text;
+  }
+
+  /**
+   * Returns the longest (normalized) literal fragment contained in every string the regex finds, or {@code null} if
+   * the regex can't be analyzed. Only the top level of the regex is considered: groups and character classes end
+   * a fragment, as does everything which isn't a plain or escaped character.
+   */
+  @Nullable
+  static String getRequiredLiteral(@NotNull String regex) {
+    String longest = "";
+    StringBuilder current = new StringBuilder();
+    int depth = 0;
+    boolean lastWasLiteral = false;
+
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      boolean literal = false;
+      if (c == '\\') {
+        if (++i == regex.length()) return null;
+        char escaped = regex.charAt(i);
+        if (Character.isLetterOrDigit(escaped)) {
+          // escapes with arguments (\x41, \p{L}, \Q..\E, back references) aren't worth parsing
+          if ("dDwWsSbBAGzZRhHvVXntrfae".indexOf(escaped) < 0) return null;
+        }
+        else if (depth == 0) {
+          current.append(escaped);
+          literal = true;
+        }
+      }
+      else if (c == '[') {
+        i = skipCharacterClass(regex, i);
+        if (i < 0) return null;
+      }
+      else if (c == '(') {
+        if (regex.startsWith("(?", i) && i + 2 < regex.length() &&
+            (Character.isLetter(regex.charAt(i + 2)) || regex.charAt(i + 2) == '-') &&
+            !regex.startsWith("(?<", i)) {
+          return null; // inline flags might change how literals match
+        }
+        depth++;
+      }
+      else if (c == ')') {
+        depth--;
+      }
+      else if (c == '|') {
+        if (depth == 0) return null;
+      }
+      else if (c == '?' || c == '*' || c == '{') {
+        // the preceding character is optional
+        if (lastWasLiteral && depth == 0) {
+          current.setLength(current.length() - 1);
+        }
+        if (c == '{') {
+          int end = regex.indexOf('}', i);
+          if (end < 0) return null;
+          i = end;
+        }
+      }
+      else if (c == '+' || c == '.' || c == '^' || c == '$') {
+        // ends the fragment
+      }
+      else if (depth == 0) {
+        current.append(c);
+        literal = true;
+      }
+
+      if (!literal) {
+        if (current.length() > longest.length()) {
+          longest = current.toString();
+        }
+        current.setLength(0);
+      }
+      lastWasLiteral = literal;
+    }
+    if (current.length() > longest.length()) {
+      longest = current.toString();
+    }
+    return normalize(longest);
+  }
+
+  private static int skipCharacterClass(String regex, int start) {
+    int i = start + 1;
+    if (i < regex.length() && regex.charAt(i) == '^') i++;
+    if (i < regex.length() && regex.charAt(i) == ']') i++;
+    int depth = 1;
+    for (; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      }
+      else if (c == '[') {
+        depth++;
+      }
+      else if (c == ']' && --depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
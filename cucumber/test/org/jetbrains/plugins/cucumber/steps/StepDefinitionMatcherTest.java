@@ -0,0 +1,32 @@
+package org.jetbrains.plugins.cucumber.steps;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StepDefinitionMatcherTest {
+  @Test
+  public void testRequiredLiteral() {
+    assertEquals(" cukes in my ", StepDefinitionMatcher.getRequiredLiteral("^I have (\\d+) cukes in my (.*)$"));
+    assertEquals("i pay ", StepDefinitionMatcher.getRequiredLiteral("^I pay (\\d+)$"));
+    assertEquals("my change should be ", StepDefinitionMatcher.getRequiredLiteral("^my change should be (.*)$"));
+  }
+
+  @Test
+  public void testOptionalCharacters() {
+    assertEquals("apple", StepDefinitionMatcher.getRequiredLiteral("^apples?$"));
+    assertEquals(" cucumber", StepDefinitionMatcher.getRequiredLiteral("^a{1,2} cucumbers*$"));
+    assertEquals("i eat ", StepDefinitionMatcher.getRequiredLiteral("^I eat (?:an?|the) \\d+ (apple|pear)$"));
+    assertEquals("file.txt", StepDefinitionMatcher.getRequiredLiteral("^file\\.txt$"));
+    assertEquals(" or ", StepDefinitionMatcher.getRequiredLiteral("[abc]+ or [^]x]+"));
+  }
+
+  @Test
+  public void testUnsupportedRegex() {
+    assertNull(StepDefinitionMatcher.getRequiredLiteral("^I pay|I spend$"));
+    assertNull(StepDefinitionMatcher.getRequiredLiteral("(?x)I pay"));
+    assertNull(StepDefinitionMatcher.getRequiredLiteral("^\\QI pay\\E$"));
+    assertNull(StepDefinitionMatcher.getRequiredLiteral("^\\p{L}+ pays$"));
+  }
+}
@@ -55,7 +55,8 @@ public class HbFileViewProvider extends MultiplePsiFilesPerDocumentFileViewProvi
 
   @Override
   public boolean supportsIncrementalReparse(@NotNull Language rootLanguage) {
-    return false;
+    // Handlebars blocks are reparseable on their own, the template data is still reparsed as a whole
+    return rootLanguage.is(myBaseLanguage);
   }
 
   @NotNull
@@ -0,0 +1,111 @@
+package com.dmarcotte.handlebars.parsing;
+
+import com.dmarcotte.handlebars.HbLanguage;
+import com.intellij.lang.*;
+import com.intellij.lexer.Lexer;
+import com.intellij.lexer.LexerPosition;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.impl.source.tree.LazyParseableElement;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IReparseableElementType;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import static com.dmarcotte.handlebars.parsing.HbTokenTypes.*;
+
+/**
+ * Element type of {@link HbTokenTypes#BLOCK_WRAPPER}: blocks are parsed eagerly with the file,
+ * but an edit inside a block only reparses the innermost block whose text is still a single, balanced block.
+ */
+class HbBlockWrapperElementType extends IReparseableElementType {
+  public HbBlockWrapperElementType(@NotNull @NonNls String debugName) {
+    super(debugName, HbLanguage.INSTANCE);
+  }
+
+  @Override
+  public ASTNode createNode(CharSequence text) {
+    return new LazyParseableElement(this, text);
+  }
+
+  @Override
+  protected ASTNode doParseContents(@NotNull ASTNode chameleon, @NotNull PsiElement psi) {
+    Project project = psi.getProject();
+    ParserDefinition parserDefinition = LanguageParserDefinitions.INSTANCE.forLanguage(HbLanguage.INSTANCE);
+    PsiBuilder builder = PsiBuilderFactory.getInstance()
+      .createBuilder(project, chameleon, parserDefinition.createLexer(project), HbLanguage.INSTANCE, chameleon.getChars());
+    PsiParser parser = parserDefinition.createParser(project);
+    HbParsing parsing = parser instanceof HbParser ? ((HbParser)parser).getParsing(builder) : new HbParsing(builder);
+
+    PsiBuilder.Marker blockMarker = builder.mark();
+    parsing.parseBlockWrapperContents();
+    blockMarker.done(this);
+    return builder.getTreeBuilt().getFirstChildNode();
+  }
+
+  @Override
+  public boolean isParsable(CharSequence buffer, Language fileLanguage, Project project) {
+    return isSingleBlock(buffer, new HbLexer());
+  }
+
+  /**
+   * @return true if the text starts with a block open stache and ends with its close stache,
+   * so that parsing it alone gives the same block as parsing it within the file
+   */
+  static boolean isSingleBlock(@NotNull CharSequence buffer, @NotNull Lexer lexer) {
+    lexer.start(buffer);
+    if (!isBlockStart(lexer)) {
+      return false;
+    }
+
+    int depth = 0;
+    boolean closed = false;
+    while (lexer.getTokenType() != null) {
+      IElementType tokenType = lexer.getTokenType();
+      if (closed) {
+        // only the rest of the outermost close stache may follow
+        if (tokenType == CLOSE || tokenType == CLOSE_RAW_BLOCK) {
+          lexer.advance();
+          return lexer.getTokenType() == null;
+        }
+        if (tokenType != ID && tokenType != SEP && tokenType != WHITE_SPACE) {
+          return false;
+        }
+      }
+      else if (tokenType == UNCLOSED_COMMENT) {
+        return false;
+      }
+      else if (isBlockStart(lexer)) {
+        depth++;
+      }
+      else if (tokenType == OPEN_ENDBLOCK || tokenType == END_RAW_BLOCK) {
+        depth--;
+        closed = depth == 0;
+      }
+      lexer.advance();
+    }
+    return false;
+  }
+
+  private static boolean isBlockStart(@NotNull Lexer lexer) {
+    IElementType tokenType = lexer.getTokenType();
+    if (tokenType == OPEN_BLOCK || tokenType == OPEN_PARTIAL_BLOCK || tokenType == OPEN_RAW_BLOCK) {
+      return true;
+    }
+    if (tokenType != OPEN_INVERSE) {
+      return false;
+    }
+    // `{{^}}` is a simple inverse rather than an inverse block
+    LexerPosition position = lexer.getCurrentPosition();
+    try {
+      lexer.advance();
+      while (lexer.getTokenType() == WHITE_SPACE) {
+        lexer.advance();
+      }
+      return lexer.getTokenType() != CLOSE;
+    }
+    finally {
+      lexer.restore(position);
+    }
+  }
+}
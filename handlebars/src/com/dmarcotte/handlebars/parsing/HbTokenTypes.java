@@ -14,8 +14,9 @@ public class HbTokenTypes {
   private HbTokenTypes() {
   }
 
-  public static final IElementType BLOCK_WRAPPER = new HbCompositeElementType("BLOCK_WRAPPER");
+  public static final IElementType BLOCK_WRAPPER = new HbBlockWrapperElementType("BLOCK_WRAPPER");
     // used to delineate blocks in the PSI tree. The formatter requires this extra structure.
+    // Blocks are reparsed on their own when edited, see HbBlockWrapperElementType.
   public static final IElementType OPEN_BLOCK_STACHE = new HbCompositeElementType("OPEN_BLOCK_STACHE");
   public static final IElementType OPEN_PARTIAL_BLOCK_STACHE = new HbCompositeElementType("OPEN_PARTIAL_BLOCK_STACHE");
   public static final IElementType OPEN_INVERSE_BLOCK_STACHE = new HbCompositeElementType("OPEN_INVERSE_BLOCK_STACHE");
@@ -0,0 +1,168 @@
+package com.dmarcotte.handlebars.parsing;
+
+import com.dmarcotte.handlebars.HbLanguage;
+import com.dmarcotte.handlebars.file.HbFileType;
+import com.dmarcotte.handlebars.psi.HbBlockWrapper;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.lang.PsiBuilder;
+import com.intellij.lang.PsiParser;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.DebugUtil;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HbBlockReparseTest extends LightPlatformCodeInsightFixtureTestCase {
+  private static final int BLOCKS = 3000;
+
+  public void testSingleBlock() {
+    assertTrue(isSingleBlock("{{#each items}}<li>{{name}}</li>{{/each}}"));
+    assertTrue(isSingleBlock("{{#if a}}{{#if b}}x{{else}}y{{/if}}{{^}}z{{/if}}"));
+    assertTrue(isSingleBlock("{{^if a}}x{{/if}}"));
+    assertTrue(isSingleBlock("{{#> layout}}x{{/layout}}"));
+    assertTrue(isSingleBlock("{{{{raw}}}}{{#if}}{{{{/raw}}}}"));
+
+    assertFalse(isSingleBlock("{{^}}x"));
+    assertFalse(isSingleBlock("{{name}}"));
+    assertFalse(isSingleBlock("{{#if a}}x"));
+    assertFalse(isSingleBlock("{{#if a}}{{#if b}}x{{/if}}"));
+    assertFalse(isSingleBlock("{{#if a}}x{{/if}}y"));
+    assertFalse(isSingleBlock("{{#if a}}x{{/if}}{{#if b}}y{{/if}}"));
+    assertFalse(isSingleBlock("{{#if a}}{{!-- x{{/if}}"));
+  }
+
+  public void testEditInsideBlockKeepsOtherBlocks() {
+    PsiFile file = myFixture.configureByText("test.hbs", createTemplate(20));
+    List<HbBlockWrapper> blocks = getTopLevelBlocks(file);
+    HbBlockWrapper edited = blocks.get(5);
+    HbBlockWrapper other = blocks.get(15);
+    CountingParseDefinition parseDefinition = countParses();
+
+    Document document = myFixture.getEditor().getDocument();
+    int offset = edited.getTextRange().getStartOffset() + edited.getText().indexOf("</li>");
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(offset, " {{#if selected}}*{{/if}}"));
+    PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+
+    // a full reparse merged into the old tree keeps the other blocks too, so the file must not have been parsed
+    assertEquals(0, parseDefinition.myFileParses);
+    assertTrue(parseDefinition.getBlockParses() > 0);
+    assertTrue(other.isValid());
+    assertSame(other, getTopLevelBlocks(file).get(15));
+    assertEquals(parse(document.getText()), DebugUtil.psiToString(file, false));
+  }
+
+  public void testUnbalancedEditReparsesFile() {
+    PsiFile file = myFixture.configureByText("test.hbs", createTemplate(3));
+    HbBlockWrapper edited = getTopLevelBlocks(file).get(0);
+    CountingParseDefinition parseDefinition = countParses();
+
+    Document document = myFixture.getEditor().getDocument();
+    int offset = edited.getTextRange().getStartOffset() + edited.getText().indexOf("</li>");
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(offset, "{{/each}}"));
+    PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+
+    assertTrue(parseDefinition.myFileParses > 0);
+    assertEquals(parse(document.getText()), DebugUtil.psiToString(file, false));
+  }
+
+  public void testTypingInLargeTemplate() {
+    PsiFile file = myFixture.configureByText("test.hbs", createTemplate(BLOCKS));
+    HbBlockWrapper edited = getTopLevelBlocks(file).get(BLOCKS / 2);
+    Document document = myFixture.getEditor().getDocument();
+    int start = edited.getTextRange().getStartOffset() + edited.getText().indexOf("</li>");
+    String typed = " {{item.description}}";
+
+    PlatformTestUtil.startPerformanceTest("Handlebars reparse per keystroke", 2_000, () -> {
+      for (int i = 0; i < typed.length(); i++) {
+        int offset = start + i;
+        String c = typed.substring(i, i + 1);
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(offset, c));
+        PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+      }
+      WriteCommandAction.runWriteCommandAction(getProject(), () -> document.deleteString(start, start + typed.length()));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    }).attempts(3).assertTiming();
+  }
+
+  private CountingParseDefinition countParses() {
+    CountingParseDefinition definition = new CountingParseDefinition();
+    LanguageParserDefinitions.INSTANCE.addExplicitExtension(HbLanguage.INSTANCE, definition);
+    Disposer.register(getTestRootDisposable(),
+                      () -> LanguageParserDefinitions.INSTANCE.removeExplicitExtension(HbLanguage.INSTANCE, definition));
+    return definition;
+  }
+
+  private static boolean isSingleBlock(String text) {
+    return HbBlockWrapperElementType.isSingleBlock(text, new HbLexer());
+  }
+
+  private static String createTemplate(int blocks) {
+    StringBuilder text = new StringBuilder("<ul>\n");
+    for (int i = 0; i < blocks; i++) {
+      text.append("{{#each list").append(i).append(" as |item|}}\n")
+        .append("  <li class=\"{{item.kind}}\">{{item.name}}</li>\n")
+        .append("{{else}}\n")
+        .append("  <li>Nothing in ").append(i).append("</li>\n")
+        .append("{{/each}}\n");
+    }
+    return text.append("</ul>\n").toString();
+  }
+
+  private static List<HbBlockWrapper> getTopLevelBlocks(PsiFile file) {
+    PsiFile hbFile = file.getViewProvider().getPsi(HbLanguage.INSTANCE);
+    List<HbBlockWrapper> blocks = new ArrayList<>();
+    for (HbBlockWrapper block : PsiTreeUtil.findChildrenOfType(hbFile, HbBlockWrapper.class)) {
+      if (PsiTreeUtil.getParentOfType(block, HbBlockWrapper.class) == null) {
+        blocks.add(block);
+      }
+    }
+    return blocks;
+  }
+
+  private String parse(String text) {
+    PsiFile file = PsiFileFactory.getInstance(getProject()).createFileFromText("test.hbs", HbFileType.INSTANCE, text);
+    return DebugUtil.psiToString(file, false);
+  }
+
+  /**
+   * Counts parses of the whole file and of single blocks, the latter are done by {@link HbBlockWrapperElementType} alone
+   */
+  private static class CountingParseDefinition extends HbParseDefinition {
+    private int myFileParses;
+    private int myParsings;
+
+    private int getBlockParses() {
+      return myParsings - myFileParses;
+    }
+
+    @Override
+    public PsiParser createParser(Project project) {
+      return new HbParser() {
+        @NotNull
+        @Override
+        public ASTNode parse(IElementType root, PsiBuilder builder) {
+          myFileParses++;
+          return super.parse(root, builder);
+        }
+
+        @Override
+        protected HbParsing getParsing(PsiBuilder builder) {
+          myParsings++;
+          return super.getParsing(builder);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,232 @@
+package com.intellij.javascript.karma.server;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the last {@code capacity} chars of process output in a ring buffer, along with the output type of each run of chars.
+ * <p>
+ * The ring consists of fixed-size char chunks. A chunk is filled only past the published end, and when the ring wraps around
+ * the oldest chunk is replaced with a new one instead of being overwritten, so chars below the published end never change.
+ * Output types are kept in an append-only segment array. Appending isn't thread-safe and has to be serialized by callers,
+ * readers don't lock: they read the chunk and segment arrays published before the last text they were given.
+ */
+class KarmaOutputArchive {
+  private static final int MAX_CHUNK_SIZE = 8192;
+  private static final int INITIAL_SEGMENTS = 16;
+
+  private final int myCapacity;
+  private final int myChunkSize;
+  private long myLastId = 0;
+  private long myEnd = 0;
+  /**
+   * Replaced by a copy whenever a new chunk is started, readers get chars from the copy they have read
+   */
+  private volatile Chunk[] myChunks;
+  private volatile Segments mySegments = new Segments(INITIAL_SEGMENTS);
+  private volatile Text myLast;
+
+  KarmaOutputArchive(int capacity) {
+    myCapacity = capacity;
+    myChunkSize = Math.min(capacity, MAX_CHUNK_SIZE);
+    // the kept chars span one chunk more than the capacity takes, if they don't start at a chunk boundary
+    myChunks = new Chunk[(capacity + myChunkSize - 1) / myChunkSize + 1];
+  }
+
+  /**
+   * @return the archived text, or null if the text is empty
+   */
+  @Nullable
+  Text append(@NotNull String text, @NotNull Key outputType) {
+    if (text.isEmpty()) return null;
+    // only the tail of a text longer than the archive is kept
+    if (text.length() > myCapacity) {
+      myEnd += text.length() - myCapacity;
+      text = text.substring(text.length() - myCapacity);
+    }
+    final long start = myEnd;
+    int srcBegin = 0;
+    while (srcBegin < text.length()) {
+      final long position = start + srcBegin;
+      final char[] chunk = getChunkForWriting(position / myChunkSize);
+      final int offset = (int)(position % myChunkSize);
+      final int count = Math.min(text.length() - srcBegin, myChunkSize - offset);
+      text.getChars(srcBegin, srcBegin + count, chunk, offset);
+      srcBegin += count;
+    }
+    final Segments segments = mySegments;
+    if (segments.mySize == 0 || !segments.myArray[segments.mySize - 1].myOutputType.equals(outputType)) {
+      addSegment(new Segment(start, outputType));
+    }
+    myEnd = start + text.length();
+
+    final Text added = new Text(++myLastId, text, outputType, myEnd);
+    myLast = added;
+    return added;
+  }
+
+  @NotNull
+  private char[] getChunkForWriting(long index) {
+    final Chunk[] chunks = myChunks;
+    final int slot = (int)(index % chunks.length);
+    final Chunk chunk = chunks[slot];
+    if (chunk != null && chunk.myIndex == index) {
+      return chunk.myChars;
+    }
+    // readers may still hold the replaced chunk, so it's not reused
+    final Chunk[] copy = chunks.clone();
+    copy[slot] = new Chunk(index, new char[myChunkSize]);
+    myChunks = copy;
+    return copy[slot].myChars;
+  }
+
+  private void addSegment(@NotNull Segment segment) {
+    Segments segments = mySegments;
+    if (segments.mySize == segments.myArray.length) {
+      // segments which ended before the kept chars are dropped, readers may still hold the full array
+      final long keptStart = segment.myStart - myCapacity;
+      int first = 0;
+      while (first + 1 < segments.mySize && segments.myArray[first + 1].myStart <= keptStart) {
+        first++;
+      }
+      final int live = segments.mySize - first;
+      final Segments compacted = new Segments(Math.max(INITIAL_SEGMENTS, live * 2));
+      System.arraycopy(segments.myArray, first, compacted.myArray, 0, live);
+      compacted.mySize = live;
+      mySegments = segments = compacted;
+    }
+    segments.myArray[segments.mySize] = segment;
+    segments.mySize++;
+  }
+
+  boolean isTruncated() {
+    final Text last = myLast;
+    return last != null && last.myEnd > myCapacity;
+  }
+
+  /**
+   * @return the last archived text, or null if nothing has been archived yet
+   */
+  @Nullable
+  Text getLast() {
+    return myLast;
+  }
+
+  @NotNull
+  List<Pair<String, Key>> getTexts() {
+    return getTexts(getLast());
+  }
+
+  /**
+   * @param last the last text to return, as returned by {@link #getLast()}
+   * @return the kept output up to {@code last} inclusive, consecutive texts of the same type are joined
+   */
+  @NotNull
+  List<Pair<String, Key>> getTexts(@Nullable Text last) {
+    if (last == null) return Collections.emptyList();
+    final long end = last.myEnd;
+    final long keptEnd = myLast.myEnd;
+    final Chunk[] chunks = myChunks;
+    final Segments segments = mySegments;
+    final int size = segments.mySize;
+
+    long start = Math.max(0, keptEnd - myCapacity);
+    // chunks started after the latest text was archived have replaced the oldest ones
+    while (start < end) {
+      final long index = start / myChunkSize;
+      final Chunk chunk = chunks[(int)(index % chunks.length)];
+      if (chunk != null && chunk.myIndex == index) break;
+      start = (index + 1) * myChunkSize;
+    }
+
+    final List<Pair<String, Key>> result = new ArrayList<>();
+    for (int i = 0; i < size && segments.myArray[i].myStart < end; i++) {
+      final Segment segment = segments.myArray[i];
+      final long segmentStart = Math.max(segment.myStart, start);
+      final long segmentEnd = i + 1 < size ? Math.min(segments.myArray[i + 1].myStart, end) : end;
+      if (segmentStart < segmentEnd) {
+        result.add(Pair.create(readChars(chunks, segmentStart, segmentEnd), segment.myOutputType));
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  private String readChars(@NotNull Chunk[] chunks, long start, long end) {
+    final StringBuilder result = new StringBuilder((int)(end - start));
+    while (start < end) {
+      final long index = start / myChunkSize;
+      final int offset = (int)(start % myChunkSize);
+      final int count = (int)Math.min(end - start, myChunkSize - offset);
+      result.append(chunks[(int)(index % chunks.length)].myChars, offset, count);
+      start += count;
+    }
+    return result.toString();
+  }
+
+  private static class Chunk {
+    private final long myIndex;
+    private final char[] myChars;
+
+    private Chunk(long index, @NotNull char[] chars) {
+      myIndex = index;
+      myChars = chars;
+    }
+  }
+
+  private static class Segment {
+    private final long myStart;
+    private final Key myOutputType;
+
+    private Segment(long start, @NotNull Key outputType) {
+      myStart = start;
+      myOutputType = outputType;
+    }
+  }
+
+  /**
+   * Elements below the size never change, a full array is replaced rather than rewritten
+   */
+  private static class Segments {
+    private final Segment[] myArray;
+    private volatile int mySize;
+
+    private Segments(int capacity) {
+      myArray = new Segment[capacity];
+    }
+  }
+
+  static class Text {
+    private final long myId;
+    private final String myText;
+    private final Key myOutputType;
+    private final long myEnd;
+
+    private Text(long id, @NotNull String text, @NotNull Key outputType, long end) {
+      myId = id;
+      myText = text;
+      myOutputType = outputType;
+      myEnd = end;
+    }
+
+    long getId() {
+      return myId;
+    }
+
+    @NotNull
+    String getText() {
+      return myText;
+    }
+
+    @NotNull
+    Key getOutputType() {
+      return myOutputType;
+    }
+  }
+}
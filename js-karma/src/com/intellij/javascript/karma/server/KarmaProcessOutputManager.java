@@ -9,11 +9,13 @@ import com.intellij.openapi.util.Pair;
 import com.intellij.util.Consumer;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class KarmaProcessOutputManager {
 
@@ -24,10 +26,17 @@ public class KarmaProcessOutputManager {
   private static final String SUFFIX = "]\n";
 
   private final ProcessHandler myProcessHandler;
-  private final Deque<Pair<String, Key>> myArchivedTexts = new ArrayDeque<>();
-  private int myArchivedTextsLength = 0;
-  private boolean myArchiveTextsTruncated = false;
-  private final List<ArchivedOutputListener> myOutputListeners = new CopyOnWriteArrayList<>();
+  /**
+   * Serializes appending to the archive, reading it doesn't need the lock
+   */
+  private final Object myArchiveLock = new Object();
+  private final KarmaOutputArchive myArchive = new KarmaOutputArchive(MAX_ARCHIVED_TEXTS_LENGTH);
+  /**
+   * Archived texts not yet reported to listeners, in the archive order
+   */
+  private final Queue<KarmaOutputArchive.Text> myPendingTexts = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock myDispatchLock = new ReentrantLock();
+  private final List<OutputListenerWrapper> myOutputListeners = new CopyOnWriteArrayList<>();
   private final List<StreamEventListener> myStdOutStreamEventListeners = new CopyOnWriteArrayList<>();
   private final List<Pair<String, Key>> myStdOutCurrentLineChunks = ContainerUtil.newArrayList();
   private final Consumer<String> myStdOutLineConsumer;
@@ -52,30 +61,47 @@ public class KarmaProcessOutputManager {
     myProcessHandler.startNotify();
   }
 
+  /**
+   * Lines which aren't events are archived in runs, events are parsed right from the text.
+   */
   private void processStandardOutput(@NotNull String text, @NotNull Key type) {
+    int plainTextStartInd = 0;
     int lineStartInd = 0;
     int newLineInd = text.indexOf(NEW_LINE, lineStartInd);
     while (newLineInd != -1) {
-      String line = text.substring(lineStartInd, newLineInd + 1); // always not empty
+      int lineEndInd = newLineInd + 1;
       if (!myStdOutCurrentLineChunks.isEmpty()) {
-        myStdOutCurrentLineChunks.add(Pair.create(line, type));
-        line = concatCurrentLineChunks();
-      }
-      if (!handleLineAsEvent(line)) {
-        onStandardOutputLineAvailable(line);
-        if (!myStdOutCurrentLineChunks.isEmpty()) {
+        myStdOutCurrentLineChunks.add(Pair.create(text.substring(lineStartInd, lineEndInd), type));
+        String line = concatCurrentLineChunks();
+        Pair<String, String> event = parseEvent(line, 0, line.length());
+        if (event != null) {
+          fireEvent(event);
+        }
+        else {
+          onStandardOutputLineAvailable(line);
           for (Pair<String, Key> chunk : myStdOutCurrentLineChunks) {
             addText(chunk.getFirst(), chunk.getSecond());
           }
         }
+        myStdOutCurrentLineChunks.clear();
+        plainTextStartInd = lineEndInd;
+      }
+      else {
+        Pair<String, String> event = parseEvent(text, lineStartInd, lineEndInd);
+        if (event != null) {
+          // the output preceding the event is archived before listeners handle it
+          addText(text, plainTextStartInd, lineStartInd, type);
+          plainTextStartInd = lineEndInd;
+          fireEvent(event);
+        }
         else {
-          addText(line, type);
+          onStandardOutputLineAvailable(text.substring(lineStartInd, lineEndInd));
         }
       }
-      myStdOutCurrentLineChunks.clear();
-      lineStartInd = newLineInd + 1;
+      lineStartInd = lineEndInd;
       newLineInd = text.indexOf(NEW_LINE, lineStartInd);
     }
+    addText(text, plainTextStartInd, lineStartInd, type);
     if (lineStartInd < text.length()) {
       myStdOutCurrentLineChunks.add(Pair.create(text.substring(lineStartInd), type));
     }
@@ -94,17 +120,37 @@ public class KarmaProcessOutputManager {
     return result.toString();
   }
 
+  private void addText(@NotNull String text, int startInd, int endInd, @NotNull Key outputType) {
+    if (startInd < endInd) {
+      addText(startInd == 0 && endInd == text.length() ? text : text.substring(startInd, endInd), outputType);
+    }
+  }
+
   private void addText(@NotNull String text, @NotNull Key outputType) {
-    synchronized (myArchivedTexts) {
-      myArchivedTexts.addLast(Pair.create(text, outputType));
-      myArchivedTextsLength += text.length();
-      while (myArchivedTextsLength > MAX_ARCHIVED_TEXTS_LENGTH) {
-        Pair<String, Key> pair = myArchivedTexts.removeFirst();
-        myArchivedTextsLength -= pair.getFirst().length();
-        myArchiveTextsTruncated = true;
+    synchronized (myArchiveLock) {
+      KarmaOutputArchive.Text archived = myArchive.append(text, outputType);
+      if (archived == null) return;
+      myPendingTexts.add(archived);
+    }
+    dispatchPendingTexts();
+  }
+
+  /**
+   * Listeners are notified outside of the archive lock. Only one thread reports texts at a time, so listeners get them
+   * in the archive order; texts added meanwhile by other threads are reported by that thread too.
+   */
+  private void dispatchPendingTexts() {
+    while (!myPendingTexts.isEmpty() && myDispatchLock.tryLock()) {
+      try {
+        KarmaOutputArchive.Text text;
+        while ((text = myPendingTexts.poll()) != null) {
+          for (OutputListenerWrapper listener : myOutputListeners) {
+            listener.onOutputAvailable(text);
+          }
+        }
       }
-      for (ArchivedOutputListener listener : myOutputListeners) {
-        listener.onOutputAvailable(text, outputType, false);
+      finally {
+        myDispatchLock.unlock();
       }
     }
   }
@@ -113,20 +159,30 @@ public class KarmaProcessOutputManager {
     myStdOutLineConsumer.consume(line);
   }
 
-  private boolean handleLineAsEvent(@NotNull String line) {
-    if (line.startsWith(PREFIX) && line.endsWith(SUFFIX)) {
-      int colonInd = line.indexOf(':');
-      if (colonInd == -1) {
-        return false;
-      }
-      String eventType = line.substring(PREFIX.length(), colonInd);
-      String eventBody = line.substring(colonInd + 1, line.length() - SUFFIX.length());
-      for (StreamEventListener listener : myStdOutStreamEventListeners) {
-        listener.on(eventType, eventBody);
+  /**
+   * @param endInd the line end, after the new line char
+   * @return the event type and body, or null if the line isn't an event
+   */
+  @Nullable
+  private static Pair<String, String> parseEvent(@NotNull String text, int startInd, int endInd) {
+    if (endInd - startInd >= PREFIX.length() + SUFFIX.length() &&
+        text.startsWith(PREFIX, startInd) &&
+        text.startsWith(SUFFIX, endInd - SUFFIX.length())) {
+      int colonInd = text.indexOf(':', startInd + PREFIX.length());
+      if (colonInd == -1 || colonInd >= endInd - SUFFIX.length()) {
+        return null;
       }
-      return true;
+      String eventType = text.substring(startInd + PREFIX.length(), colonInd);
+      String eventBody = text.substring(colonInd + 1, endInd - SUFFIX.length());
+      return Pair.create(eventType, eventBody);
+    }
+    return null;
+  }
+
+  private void fireEvent(@NotNull Pair<String, String> event) {
+    for (StreamEventListener listener : myStdOutStreamEventListeners) {
+      listener.on(event.getFirst(), event.getSecond());
     }
-    return false;
   }
 
   @NotNull
@@ -136,24 +192,46 @@ public class KarmaProcessOutputManager {
 
   public void addOutputListener(@NotNull final ArchivedOutputListener outputListener) {
     ApplicationManager.getApplication().executeOnPooledThread(() -> {
-      synchronized (myArchivedTexts) {
-        if (myArchiveTextsTruncated) {
+      OutputListenerWrapper wrapper = new OutputListenerWrapper(outputListener);
+      // new texts wait for the archived ones to be reported
+      synchronized (wrapper) {
+        // registered before the archive is read, so every text past the last archived one is reported by dispatching
+        myOutputListeners.add(wrapper);
+        KarmaOutputArchive.Text last = myArchive.getLast();
+        wrapper.myLastArchivedTextId = last != null ? last.getId() : 0;
+        List<Pair<String, Key>> archivedTexts = myArchive.getTexts(last);
+        if (myArchive.isTruncated()) {
           outputListener.onOutputAvailable("... too much output to process, truncated\n", ProcessOutputTypes.SYSTEM, true);
         }
-        for (Pair<String, Key> text : myArchivedTexts) {
+        for (Pair<String, Key> text : archivedTexts) {
           outputListener.onOutputAvailable(text.getFirst(), text.getSecond(), true);
         }
-        myOutputListeners.add(outputListener);
       }
     });
   }
 
   public void removeOutputListener(@NotNull ArchivedOutputListener outputListener) {
-    myOutputListeners.remove(outputListener);
+    myOutputListeners.removeIf(wrapper -> wrapper.myListener.equals(outputListener));
   }
 
   void addStreamEventListener(@NotNull StreamEventListener listener) {
     myStdOutStreamEventListeners.add(listener);
   }
 
+  private static class OutputListenerWrapper {
+    private final ArchivedOutputListener myListener;
+    // guarded by this
+    private long myLastArchivedTextId;
+
+    private OutputListenerWrapper(@NotNull ArchivedOutputListener listener) {
+      myListener = listener;
+    }
+
+    private synchronized void onOutputAvailable(@NotNull KarmaOutputArchive.Text text) {
+      // texts which were already in the archive when the listener was added are reported from there
+      if (text.getId() > myLastArchivedTextId) {
+        myListener.onOutputAvailable(text.getText(), text.getOutputType(), false);
+      }
+    }
+  }
 }
@@ -0,0 +1,160 @@
+package com.intellij.javascript.karma.server;
+
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class KarmaProcessOutputManagerTest {
+  @Test
+  public void testArchiveKeepsTail() {
+    KarmaOutputArchive archive = new KarmaOutputArchive(10);
+    archive.append("hello", ProcessOutputTypes.STDOUT);
+    Assert.assertFalse(archive.isTruncated());
+    archive.append("world!", ProcessOutputTypes.STDERR);
+    Assert.assertTrue(archive.isTruncated());
+    archive.append("xyz", ProcessOutputTypes.STDOUT);
+    Assert.assertTrue(archive.isTruncated());
+    Assert.assertEquals(Arrays.asList(Pair.create("o", ProcessOutputTypes.STDOUT),
+                                      Pair.create("world!", ProcessOutputTypes.STDERR),
+                                      Pair.create("xyz", ProcessOutputTypes.STDOUT)), archive.getTexts());
+
+    archive.append("abcdefghijklmnopqrstuvwxy", ProcessOutputTypes.STDOUT);
+    Assert.assertEquals(Arrays.asList(Pair.create("pqrstuvwxy", ProcessOutputTypes.STDOUT)), archive.getTexts());
+  }
+
+  @Test
+  public void testArchiveReadUpToGivenText() {
+    KarmaOutputArchive archive = new KarmaOutputArchive(10);
+    archive.append("ab", ProcessOutputTypes.STDOUT);
+    archive.append("cd", ProcessOutputTypes.STDOUT);
+    KarmaOutputArchive.Text last = archive.getLast();
+    archive.append("ef", ProcessOutputTypes.STDERR);
+    Assert.assertEquals(Arrays.asList(Pair.create("abcd", ProcessOutputTypes.STDOUT)), archive.getTexts(last));
+    archive.append("ghijklmn", ProcessOutputTypes.STDOUT);
+    Assert.assertEquals(Collections.emptyList(), archive.getTexts(last));
+  }
+
+  @Test
+  public void testEventsSplitAcrossChunks() {
+    String log = "karma started\n" +
+                 "##intellij-event[browserConnected:{\"id\":1}]\n" +
+                 "plain ##intellij-event[notAnEvent:{}]\n" +
+                 "##intellij-event[noColon]\n" +
+                 "##intellij-event[specResult:{\"name\":\"a:b\"}]\n" +
+                 "done\n";
+    for (int chunkSize = 1; chunkSize <= log.length(); chunkSize++) {
+      Replay replay = new Replay();
+      for (int i = 0; i < log.length(); i += chunkSize) {
+        replay.myHandler.notifyTextAvailable(log.substring(i, Math.min(log.length(), i + chunkSize)), ProcessOutputTypes.STDOUT);
+      }
+      Assert.assertEquals(Arrays.asList("browserConnected {\"id\":1}", "specResult {\"name\":\"a:b\"}"), replay.myEvents);
+      Assert.assertEquals(Arrays.asList("karma started\n", "plain ##intellij-event[notAnEvent:{}]\n", "##intellij-event[noColon]\n",
+                                        "done\n"), replay.myLines);
+    }
+  }
+
+  @Test
+  public void testConcurrentReadsSeeKeptTail() throws Exception {
+    KarmaOutputArchive archive = new KarmaOutputArchive(1000);
+    int lineCount = 200_000;
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < lineCount; i++) {
+        archive.append(String.format("%08d\n", i), i % 7 == 0 ? ProcessOutputTypes.STDERR : ProcessOutputTypes.STDOUT);
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      KarmaOutputArchive.Text last = archive.getLast();
+      if (last == null) continue;
+      StringBuilder kept = new StringBuilder();
+      for (Pair<String, Key> text : archive.getTexts(last)) {
+        kept.append(text.getFirst());
+      }
+      Assert.assertTrue(kept.length() <= 1000);
+      Assert.assertTrue(kept.toString().endsWith(last.getText()));
+      // the kept chars are a contiguous part of the output, the first line may be cut
+      String[] lines = kept.substring(kept.indexOf("\n") + 1).split("\n");
+      for (int i = 1; i < lines.length; i++) {
+        Assert.assertEquals(Integer.parseInt(lines[i - 1]) + 1, Integer.parseInt(lines[i]));
+      }
+    }
+    writer.join();
+  }
+
+  /**
+   * Measures the throughput of the output scanning and archiving. The log is generated to resemble the output of Karma
+   * running a large suite with the IntelliJ reporter: a spec result event per spec, with console output of every third spec.
+   */
+  @Test
+  public void testReplayGeneratedLog() {
+    StringBuilder log = new StringBuilder();
+    int eventCount = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (i % 3 == 0) {
+        log.append("LOG: 'spec ").append(i).append(" output'\n");
+      }
+      else {
+        log.append("##intellij-event[specResult:{\"suite\":[\"Suite ").append(i / 100)
+          .append("\"],\"name\":\"spec ").append(i).append("\",\"result\":\"passed\"}]\n");
+        eventCount++;
+      }
+    }
+    Random random = new Random(42);
+    Replay replay = new Replay();
+    long start = System.nanoTime();
+    int offset = 0;
+    while (offset < log.length()) {
+      int end = Math.min(log.length(), offset + 1 + random.nextInt(8192));
+      replay.myHandler.notifyTextAvailable(log.substring(offset, end), ProcessOutputTypes.STDOUT);
+      offset = end;
+    }
+    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+    Assert.assertEquals(eventCount, replay.myEvents.size());
+    Assert.assertEquals(100_000 - eventCount, replay.myLines.size());
+    Assert.assertTrue("Replaying " + log.length() + " chars took " + elapsedMs + " ms", elapsedMs < 10_000);
+  }
+
+  private static class Replay {
+    private final List<String> myEvents = new ArrayList<>();
+    private final List<String> myLines = new ArrayList<>();
+    private final ProcessHandler myHandler = new ProcessHandler() {
+      @Override
+      protected void destroyProcessImpl() {
+        notifyProcessTerminated(0);
+      }
+
+      @Override
+      protected void detachProcessImpl() {
+        notifyProcessDetached();
+      }
+
+      @Override
+      public boolean detachIsDefault() {
+        return false;
+      }
+
+      @Nullable
+      @Override
+      public OutputStream getProcessInput() {
+        return null;
+      }
+    };
+
+    private Replay() {
+      KarmaProcessOutputManager manager = new KarmaProcessOutputManager(myHandler, myLines::add);
+      manager.addStreamEventListener((eventType, eventBody) -> myEvents.add(eventType + " " + eventBody));
+      manager.startNotify();
+    }
+  }
+}
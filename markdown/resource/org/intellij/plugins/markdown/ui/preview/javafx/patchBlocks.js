@@ -0,0 +1,89 @@
+if (window.__IntelliJTools === undefined) {
+  window.__IntelliJTools = {}
+}
+
+window.__IntelliJTools.patchBlocks = (function () {
+  var attributeName;
+
+  var getSrcFromTo = function (node) {
+    if (!node || !('getAttribute' in node)) {
+      return null
+    }
+    var attrValue = node.getAttribute(attributeName);
+
+    if (attrValue) {
+      return attrValue.split('..').map(Number)
+    }
+    return null
+  }
+
+  var shiftSrcPositions = function (element, delta) {
+    var elements = [element].concat(Array.prototype.slice.call(element.querySelectorAll('[' + attributeName + ']')))
+    for (var i = 0; i < elements.length; i++) {
+      var fromTo = getSrcFromTo(elements[i])
+      if (fromTo !== null) {
+        elements[i].setAttribute(attributeName, (fromTo[0] + delta) + '..' + (fromTo[1] + delta))
+      }
+    }
+  }
+
+  // Replaces top-level elements which start in [changedStart, oldChangedEnd) with the html,
+  // returns false if the page can't be patched and has to be loaded again
+  var patchBlocks = function (newAttributeName, changedStart, oldChangedEnd, delta, length, html) {
+    attributeName = newAttributeName;
+
+    var body = document.body;
+    if (!body || getSrcFromTo(body) === null) {
+      return false
+    }
+
+    var toRemove = [];
+    var suffix = [];
+    for (var child = body.firstChild; child !== null; child = child.nextSibling) {
+      var fromTo = getSrcFromTo(child);
+      if (fromTo === null) {
+        if (child.nodeType === Node.ELEMENT_NODE) {
+          return false
+        }
+        if (suffix.length === 0 && toRemove.length > 0) {
+          toRemove.push(child)
+        }
+      }
+      else if (fromTo[0] < changedStart) {
+        if (toRemove.length > 0) {
+          return false
+        }
+      }
+      else if (fromTo[0] < oldChangedEnd) {
+        if (suffix.length > 0) {
+          return false
+        }
+        toRemove.push(child)
+      }
+      else {
+        suffix.push(child)
+      }
+    }
+
+    var anchor = suffix.length > 0 ? suffix[0] : null;
+    for (var i = 0; i < toRemove.length; i++) {
+      body.removeChild(toRemove[i])
+    }
+
+    var container = document.createElement('div');
+    container.innerHTML = html;
+    while (container.firstChild !== null) {
+      body.insertBefore(container.firstChild, anchor)
+    }
+
+    if (delta !== 0) {
+      for (var j = 0; j < suffix.length; j++) {
+        shiftSrcPositions(suffix[j], delta)
+      }
+    }
+    body.setAttribute(attributeName, '0..' + length);
+    return true
+  }
+
+  return patchBlocks
+})()
@@ -1,5 +1,11 @@
 package org.intellij.plugins.markdown.lang.parser;
 
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.reference.SoftReference;
 import org.intellij.markdown.MarkdownElementTypes;
 import org.intellij.markdown.ast.ASTNode;
 import org.intellij.markdown.flavours.gfm.GFMFlavourDescriptor;
@@ -7,34 +13,148 @@ import org.intellij.markdown.parser.MarkdownParser;
 import org.intellij.plugins.markdown.extensions.CodeFencePluginFlavourDescriptor;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class MarkdownParserManager {
   public static final GFMFlavourDescriptor FLAVOUR = new GFMFlavourDescriptor();
   public static final CodeFencePluginFlavourDescriptor CODE_FENCE_PLUGIN_FLAVOUR = new CodeFencePluginFlavourDescriptor();
 
-  private static final ThreadLocal<ParsingInfo> ourLastParsingResult = new ThreadLocal<>();
+  private static final int MAX_CACHED_TEXTS = 16;
+
+  private static final Key<DocumentParsingInfo> DOCUMENT_PARSING_INFO = Key.create("markdown.document.parsing.info");
+
+  /**
+   * Trees of recently parsed texts, shared by the lexer, the PSI parser and the preview, which run on different threads.
+   * Both trees of a text, with and without inlines, are kept in one entry. Access order, the least recently used text
+   * is dropped first, and all of them may be dropped on low memory.
+   */
+  private static final Map<ParsingKey, SoftReference<ParsingInfo>> ourParsingResults =
+    new LinkedHashMap<ParsingKey, SoftReference<ParsingInfo>>(MAX_CACHED_TEXTS, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ParsingKey, SoftReference<ParsingInfo>> eldest) {
+        return size() > MAX_CACHED_TEXTS;
+      }
+    };
 
   public static ASTNode parseContent(@NotNull CharSequence buffer) {
-    final ParsingInfo info = ourLastParsingResult.get();
-    if (info != null && info.myBufferHash == buffer.hashCode() && info.myBuffer.equals(buffer)) {
-      return info.myParseResult;
+    return parseContent(buffer, false);
+  }
+
+  /**
+   * @param parseInlines whether inline elements are parsed too, as needed for html generation
+   */
+  @NotNull
+  public static ASTNode parseContent(@NotNull CharSequence buffer, boolean parseInlines) {
+    final ParsingKey key = new ParsingKey(StringUtil.stringHashCode(buffer), buffer.length());
+    ParsingInfo info;
+    synchronized (ourParsingResults) {
+      info = SoftReference.dereference(ourParsingResults.get(key));
+      if (info == null || info.myBuffer != buffer && !StringUtil.equals(info.myBuffer, buffer)) {
+        info = new ParsingInfo(buffer);
+        ourParsingResults.put(key, new SoftReference<>(info));
+      }
+    }
+    return info.getParseResult(parseInlines);
+  }
+
+  /**
+   * Parses the current text of the document with inlines. The tree is kept by the document until it is modified,
+   * so the document text isn't even compared.
+   *
+   * @return the parsed text with its tree
+   */
+  @NotNull
+  public static Pair<CharSequence, ASTNode> parseDocument(@NotNull Document document) {
+    final Pair<CharSequence, Long> textAndStamp =
+      ReadAction.compute(() -> Pair.create(document.getImmutableCharSequence(), document.getModificationStamp()));
+    final CharSequence text = textAndStamp.first;
+    final DocumentParsingInfo info = document.getUserData(DOCUMENT_PARSING_INFO);
+    if (info != null && info.myModificationStamp == textAndStamp.second) {
+      return Pair.create(info.myBuffer, info.myParseResult);
+    }
+
+    final ASTNode parseResult = parseContent(text, true);
+    document.putUserData(DOCUMENT_PARSING_INFO, new DocumentParsingInfo(text, textAndStamp.second, parseResult));
+    return Pair.create(text, parseResult);
+  }
+
+  @NotNull
+  private static ASTNode parse(@NotNull CharSequence buffer, boolean parseInlines) {
+    return new MarkdownParser(FLAVOUR).parse(MarkdownElementTypes.MARKDOWN_FILE, buffer.toString(), parseInlines);
+  }
+
+  /**
+   * Content fingerprint, which has to be checked against the text.
+   */
+  private static class ParsingKey {
+    final int myHash;
+    final int myLength;
+
+    ParsingKey(int hash, int length) {
+      myHash = hash;
+      myLength = length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      ParsingKey key = (ParsingKey)o;
+      return myHash == key.myHash && myLength == key.myLength;
     }
 
-    final ASTNode parseResult = new MarkdownParser(FLAVOUR)
-      .parse(MarkdownElementTypes.MARKDOWN_FILE, buffer.toString(), false);
-    ourLastParsingResult.set(new ParsingInfo(buffer, parseResult));
-    return parseResult;
+    @Override
+    public int hashCode() {
+      return 31 * myHash + myLength;
+    }
   }
 
+  /**
+   * Trees of one text. The parser builds inline elements while building the tree, so the two trees can't be derived
+   * from one another; each of them is built on the first request.
+   */
   private static class ParsingInfo {
     @NotNull
     final CharSequence myBuffer;
-    final int myBufferHash;
+    private volatile ASTNode myParseResult;
+    private volatile ASTNode myParseResultWithInlines;
+
+    ParsingInfo(@NotNull CharSequence buffer) {
+      myBuffer = buffer;
+    }
+
+    @NotNull
+    ASTNode getParseResult(boolean parseInlines) {
+      ASTNode result = parseInlines ? myParseResultWithInlines : myParseResult;
+      if (result == null) {
+        // parsed outside of any lock; if two threads parse the same text, one of the trees wins
+        result = parse(myBuffer, parseInlines);
+        synchronized (this) {
+          final ASTNode existing = parseInlines ? myParseResultWithInlines : myParseResult;
+          if (existing != null) return existing;
+          if (parseInlines) {
+            myParseResultWithInlines = result;
+          }
+          else {
+            myParseResult = result;
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  private static class DocumentParsingInfo {
+    @NotNull
+    final CharSequence myBuffer;
+    final long myModificationStamp;
     @NotNull
     final ASTNode myParseResult;
 
-    public ParsingInfo(@NotNull CharSequence buffer, @NotNull ASTNode parseResult) {
+    DocumentParsingInfo(@NotNull CharSequence buffer, long modificationStamp, @NotNull ASTNode parseResult) {
       myBuffer = buffer;
-      myBufferHash = myBuffer.hashCode();
+      myModificationStamp = modificationStamp;
       myParseResult = parseResult;
     }
   }
@@ -0,0 +1,300 @@
+package org.intellij.plugins.markdown.ui.preview;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import org.intellij.markdown.MarkdownElementTypes;
+import org.intellij.markdown.ast.ASTNode;
+import org.intellij.markdown.html.HtmlGenerator;
+import org.intellij.plugins.markdown.lang.parser.MarkdownParserManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sanitized html of a Markdown document, split by its top-level blocks.
+ * <p/>
+ * The document is parsed as a whole on every update, since link definitions can change the html of any block.
+ * Html is generated again only for blocks whose text changed, for code fences (their plugins collect cached files on
+ * generation) and for all blocks when link definitions change. Source offsets in the html of a block are kept relative
+ * to the block start, so a block keeps its html when the text before it is edited. Only blocks whose html changed are
+ * sanitized again, and {@link #getPatch(MarkdownHtmlBlocks)} tells the preview which part of the previously shown page
+ * has to be replaced.
+ * <p/>
+ * Raw html may open an element in one block and close it in another. Sanitizing such blocks separately would close the
+ * element too early, so if the html of some block is not balanced, the whole page is generated and sanitized at once
+ * and the preview loads it as a whole.
+ */
+public class MarkdownHtmlBlocks {
+  private static final String SRC_ATTRIBUTE_NAME = HtmlGenerator.Companion.getSRC_ATTRIBUTE_NAME();
+  private static final Pattern SRC_POSITION = Pattern.compile(SRC_ATTRIBUTE_NAME + "=\"(\\d+)\\.\\.(\\d+)\"");
+  private static final Pattern TAG = Pattern.compile("<(/?)([a-zA-Z][a-zA-Z0-9-]*)[^>]*>");
+  private static final Set<String> VOID_ELEMENTS = ContainerUtil.newHashSet(
+    "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr");
+
+  private final int myLength;
+  private final int[] myStarts;
+  private final int[] myEnds;
+  private final String[] myTexts;
+  private final String[] myRawHtml;
+  private final String[] mySanitizedHtml;
+  @NotNull private final String myLinkDefinitions;
+  /**
+   * Sanitized html of the whole body, if blocks can't be sanitized separately
+   */
+  @Nullable private final String myWholeHtml;
+
+  private MarkdownHtmlBlocks(int length,
+                             int[] starts,
+                             int[] ends,
+                             String[] texts,
+                             String[] rawHtml,
+                             String[] sanitizedHtml,
+                             @NotNull String linkDefinitions,
+                             @Nullable String wholeHtml) {
+    myLength = length;
+    myStarts = starts;
+    myEnds = ends;
+    myTexts = texts;
+    myRawHtml = rawHtml;
+    mySanitizedHtml = sanitizedHtml;
+    myLinkDefinitions = linkDefinitions;
+    myWholeHtml = wholeHtml;
+  }
+
+  @NotNull
+  public static MarkdownHtmlBlocks generate(@NotNull VirtualFile file, @NotNull String text, @Nullable MarkdownHtmlBlocks previous) {
+    return generate(file, text, MarkdownParserManager.parseContent(text, true), previous);
+  }
+
+  /**
+   * @param parsedTree the text parsed with inlines
+   * @param previous   blocks of an earlier version of the document, their html is reused for unchanged blocks
+   */
+  @NotNull
+  public static MarkdownHtmlBlocks generate(@NotNull VirtualFile file,
+                                            @NotNull String text,
+                                            @NotNull ASTNode parsedTree,
+                                            @Nullable MarkdownHtmlBlocks previous) {
+    final List<ASTNode> blocks = parsedTree.getChildren();
+    final String linkDefinitions = getLinkDefinitions(text, parsedTree);
+
+    final Map<String, String> rawByText = new HashMap<>();
+    final Map<String, String> sanitizedByRaw = new HashMap<>();
+    if (previous != null) {
+      final boolean sameLinks = linkDefinitions.equals(previous.myLinkDefinitions);
+      for (int i = 0; i < previous.myRawHtml.length; i++) {
+        if (sameLinks) {
+          rawByText.put(previous.myTexts[i], previous.myRawHtml[i]);
+        }
+        if (previous.mySanitizedHtml[i] != null) {
+          sanitizedByRaw.put(previous.myRawHtml[i], previous.mySanitizedHtml[i]);
+        }
+      }
+    }
+
+    final int size = blocks.size();
+    final int[] starts = new int[size];
+    final int[] ends = new int[size];
+    final String[] texts = new String[size];
+    final String[] rawHtml = new String[size];
+    final List<ASTNode> changedBlocks = new ArrayList<>();
+    final List<Integer> changedIndices = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      final ASTNode block = blocks.get(i);
+      starts[i] = block.getStartOffset();
+      ends[i] = block.getEndOffset();
+      texts[i] = text.substring(starts[i], ends[i]);
+      rawHtml[i] = block.getType() == MarkdownElementTypes.CODE_FENCE ? null : rawByText.get(texts[i]);
+      if (rawHtml[i] == null) {
+        changedBlocks.add(block);
+        changedIndices.add(i);
+      }
+    }
+
+    if (!changedBlocks.isEmpty()) {
+      final List<String> html = MarkdownUtil.generateMarkdownHtml(file, text, parsedTree, changedBlocks);
+      for (int j = 0; j < changedBlocks.size(); j++) {
+        final int i = changedIndices.get(j);
+        String blockHtml = html.get(j);
+        if (changedBlocks.get(j).getType() == MarkdownElementTypes.HTML_BLOCK) {
+          // raw html carries no source positions, the preview needs them to tell blocks apart
+          blockHtml = "<div " + SRC_ATTRIBUTE_NAME + "=\"" + starts[i] + ".." + ends[i] + "\">" + blockHtml + "</div>";
+        }
+        rawHtml[i] = shiftSrcPositions(blockHtml, -starts[i]);
+      }
+    }
+
+    final String[] sanitizedHtml = new String[size];
+    boolean balanced = true;
+    for (int i = 0; i < size && balanced; i++) {
+      balanced = isBalanced(rawHtml[i]);
+    }
+    if (!balanced) {
+      final String wholeHtml = MarkdownUtil.generateMarkdownHtml(file, text, parsedTree, Collections.singletonList(parsedTree)).get(0);
+      return new MarkdownHtmlBlocks(text.length(), starts, ends, texts, rawHtml, sanitizedHtml, linkDefinitions,
+                                    MarkdownPreviewFileEditor.SANITIZER_VALUE.getValue().sanitize(wholeHtml));
+    }
+
+    for (int i = 0; i < size; i++) {
+      sanitizedHtml[i] = sanitizedByRaw.get(rawHtml[i]);
+      if (sanitizedHtml[i] == null) {
+        sanitizedHtml[i] = MarkdownPreviewFileEditor.SANITIZER_VALUE.getValue().sanitize(rawHtml[i]);
+      }
+    }
+    return new MarkdownHtmlBlocks(text.length(), starts, ends, texts, rawHtml, sanitizedHtml, linkDefinitions, null);
+  }
+
+  /**
+   * @return the whole page, as shown by {@link MarkdownHtmlPanel#setHtml(String)}
+   */
+  @NotNull
+  public String getHtml() {
+    if (myWholeHtml != null) {
+      return "<html><head></head>" + myWholeHtml + "</html>";
+    }
+    final StringBuilder result = new StringBuilder("<html><head></head>");
+    result.append("<body ").append(SRC_ATTRIBUTE_NAME).append("=\"0..").append(myLength).append("\">");
+    appendBlocks(result, 0, myStarts.length);
+    return result.append("</body></html>").toString();
+  }
+
+  /**
+   * @return how the page of previous blocks differs from this one, or {@code null} if there are no previous blocks
+   * or one of the pages can't be split by blocks
+   */
+  @Nullable
+  public Patch getPatch(@Nullable MarkdownHtmlBlocks previous) {
+    if (previous == null || myWholeHtml != null || previous.myWholeHtml != null) return null;
+
+    final int commonSize = Math.min(myStarts.length, previous.myStarts.length);
+    int prefix = 0;
+    while (prefix < commonSize &&
+           myStarts[prefix] == previous.myStarts[prefix] &&
+           myEnds[prefix] == previous.myEnds[prefix] &&
+           myRawHtml[prefix].equals(previous.myRawHtml[prefix])) {
+      prefix++;
+    }
+    int suffix = 0;
+    while (suffix < commonSize - prefix) {
+      final int index = myStarts.length - 1 - suffix;
+      final int previousIndex = previous.myStarts.length - 1 - suffix;
+      if (myLength - myStarts[index] != previous.myLength - previous.myStarts[previousIndex] ||
+          myLength - myEnds[index] != previous.myLength - previous.myEnds[previousIndex] ||
+          !myRawHtml[index].equals(previous.myRawHtml[previousIndex])) {
+        break;
+      }
+      suffix++;
+    }
+
+    final StringBuilder html = new StringBuilder();
+    appendBlocks(html, prefix, myStarts.length - suffix);
+    return new Patch(prefix == 0 ? 0 : myEnds[prefix - 1],
+                     suffix == 0 ? previous.myLength : previous.myStarts[previous.myStarts.length - suffix],
+                     myLength - previous.myLength,
+                     myLength,
+                     html.toString());
+  }
+
+  private void appendBlocks(@NotNull StringBuilder result, int from, int to) {
+    for (int i = from; i < to; i++) {
+      result.append(shiftSrcPositions(mySanitizedHtml[i], myStarts[i]));
+    }
+  }
+
+  @NotNull
+  private static String getLinkDefinitions(@NotNull String text, @NotNull ASTNode node) {
+    if (node.getType() == MarkdownElementTypes.LINK_DEFINITION) {
+      return text.substring(node.getStartOffset(), node.getEndOffset()) + "\n";
+    }
+    final StringBuilder result = new StringBuilder();
+    for (ASTNode child : node.getChildren()) {
+      result.append(getLinkDefinitions(text, child));
+    }
+    return result.toString();
+  }
+
+  /**
+   * @return whether every element opened in the html is closed in it, and in the right order
+   */
+  static boolean isBalanced(@NotNull String html) {
+    final int commentStart = html.lastIndexOf("<!--");
+    if (commentStart >= 0 && html.indexOf("-->", commentStart) < 0) return false;
+
+    final Deque<String> openElements = new ArrayDeque<>();
+    final Matcher matcher = TAG.matcher(html);
+    while (matcher.find()) {
+      final String name = StringUtil.toLowerCase(matcher.group(2));
+      if (VOID_ELEMENTS.contains(name) || matcher.group().endsWith("/>")) continue;
+      if (matcher.group(1).isEmpty()) {
+        openElements.push(name);
+      }
+      else if (openElements.isEmpty() || !openElements.pop().equals(name)) {
+        return false;
+      }
+    }
+    return openElements.isEmpty();
+  }
+
+  @NotNull
+  private static String shiftSrcPositions(@NotNull String html, int shift) {
+    if (shift == 0) return html;
+    final Matcher matcher = SRC_POSITION.matcher(html);
+    final StringBuffer result = new StringBuffer(html.length());
+    while (matcher.find()) {
+      final int start = Integer.parseInt(matcher.group(1)) + shift;
+      final int end = Integer.parseInt(matcher.group(2)) + shift;
+      matcher.appendReplacement(result, SRC_ATTRIBUTE_NAME + "=\"" + start + ".." + end + "\"");
+    }
+    matcher.appendTail(result);
+    return result.toString();
+  }
+
+  /**
+   * Describes the change of a page in terms of source offsets: elements of the old page starting before
+   * {@link #getChangedStart()} stay, elements starting at or after {@link #getOldChangedEnd()} stay with their offsets
+   * shifted by {@link #getDelta()}, and everything in between is replaced by {@link #getHtml()}.
+   */
+  public static class Patch {
+    private final int myChangedStart;
+    private final int myOldChangedEnd;
+    private final int myDelta;
+    private final int myLength;
+    @NotNull private final String myHtml;
+
+    private Patch(int changedStart, int oldChangedEnd, int delta, int length, @NotNull String html) {
+      myChangedStart = changedStart;
+      myOldChangedEnd = oldChangedEnd;
+      myDelta = delta;
+      myLength = length;
+      myHtml = html;
+    }
+
+    public int getChangedStart() {
+      return myChangedStart;
+    }
+
+    public int getOldChangedEnd() {
+      return myOldChangedEnd;
+    }
+
+    public int getDelta() {
+      return myDelta;
+    }
+
+    /**
+     * @return length of the new document
+     */
+    public int getLength() {
+      return myLength;
+    }
+
+    @NotNull
+    public String getHtml() {
+      return myHtml;
+    }
+  }
+}
@@ -14,7 +14,7 @@ import java.util.Arrays;
 import java.util.List;
 
 public abstract class MarkdownHtmlPanel implements Disposable {
-  protected static final List<String> SCRIPTS = Arrays.asList("processLinks.js", "scrollToElement.js");
+  protected static final List<String> SCRIPTS = Arrays.asList("processLinks.js", "scrollToElement.js", "patchBlocks.js");
 
   protected static final List<String> STYLES = Arrays.asList("default.css", "darcula.css", PreviewStaticServer.INLINE_CSS_FILENAME);
 
@@ -23,6 +23,15 @@ public abstract class MarkdownHtmlPanel implements Disposable {
 
   public abstract void setHtml(@NotNull String html);
 
+  /**
+   * Shows the page which differs from the currently shown one as described by the patch.
+   * Panels which can't replace a part of the page just show the whole one.
+   */
+  public void setHtml(@NotNull String html, @NotNull MarkdownHtmlBlocks.Patch patch) {
+    setHtml(html);
+    render();
+  }
+
   public abstract void setCSS(@Nullable String inlineCss, @NotNull String... fileUris);
 
   public abstract void render();
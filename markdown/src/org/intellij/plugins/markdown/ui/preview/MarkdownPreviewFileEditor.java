@@ -14,12 +14,15 @@ import com.intellij.openapi.fileEditor.FileEditorState;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.NotNullLazyValue;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.UserDataHolderBase;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Alarm;
 import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.UIUtil;
+import org.intellij.markdown.ast.ASTNode;
 import org.intellij.markdown.html.HtmlGenerator;
+import org.intellij.plugins.markdown.lang.parser.MarkdownParserManager;
 import org.intellij.plugins.markdown.settings.MarkdownApplicationSettings;
 import org.intellij.plugins.markdown.settings.MarkdownCssSettings;
 import org.intellij.plugins.markdown.settings.MarkdownPreviewSettings;
@@ -88,6 +91,11 @@ public class MarkdownPreviewFileEditor extends UserDataHolderBase implements Fil
   private volatile int myLastScrollOffset;
   @NotNull
   private String myLastRenderedHtml = "";
+  /**
+   * Blocks of the page shown in the panel, accessed from the pooled thread to reuse their sanitized html
+   */
+  @Nullable
+  private volatile MarkdownHtmlBlocks myLastRenderedBlocks = null;
 
   public MarkdownPreviewFileEditor(@NotNull VirtualFile file) {
     myFile = file;
@@ -220,7 +228,9 @@ public class MarkdownPreviewFileEditor extends UserDataHolderBase implements Fil
       return;
     }
 
-    final String html = MarkdownUtil.generateMarkdownHtml(myFile, myDocument.getText());
+    final Pair<CharSequence, ASTNode> parsedDocument = MarkdownParserManager.parseDocument(myDocument);
+    final MarkdownHtmlBlocks blocks =
+      MarkdownHtmlBlocks.generate(myFile, parsedDocument.first.toString(), parsedDocument.second, myLastRenderedBlocks);
 
     // EA-75860: The lines to the top may be processed slowly; Since we're in pooled thread, we can be disposed already.
     if (!myFile.isValid() || Disposer.isDisposed(this)) {
@@ -232,17 +242,29 @@ public class MarkdownPreviewFileEditor extends UserDataHolderBase implements Fil
         mySwingAlarm.cancelRequest(myLastHtmlOrRefreshRequest);
       }
       myLastHtmlOrRefreshRequest = () -> {
-        final String currentHtml = "<html><head></head>" + SANITIZER_VALUE.getValue().sanitize(html) + "</html>";
+        final String currentHtml = blocks.getHtml();
+        boolean patched = false;
         if (!currentHtml.equals(myLastRenderedHtml)) {
+          // the patch is taken against the page which is actually shown, previous requests might have been cancelled
+          final MarkdownHtmlBlocks.Patch patch = blocks.getPatch(myLastRenderedBlocks);
           myLastRenderedHtml = currentHtml;
-          myPanel.setHtml(myLastRenderedHtml);
+          myLastRenderedBlocks = blocks;
+          if (patch != null) {
+            myPanel.setHtml(myLastRenderedHtml, patch);
+            patched = true;
+          }
+          else {
+            myPanel.setHtml(myLastRenderedHtml);
+          }
 
           if (preserveScrollOffset) {
             scrollToSrcOffset(myLastScrollOffset);
           }
         }
 
-        myPanel.render();
+        if (!patched) {
+          myPanel.render();
+        }
         synchronized (REQUESTS_LOCK) {
           myLastHtmlOrRefreshRequest = null;
         }
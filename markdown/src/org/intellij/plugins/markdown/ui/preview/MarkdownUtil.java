@@ -8,7 +8,6 @@ import org.intellij.markdown.ast.ASTNode;
 import org.intellij.markdown.html.GeneratingProvider;
 import org.intellij.markdown.html.HtmlGenerator;
 import org.intellij.markdown.parser.LinkMap;
-import org.intellij.markdown.parser.MarkdownParser;
 import org.intellij.plugins.markdown.lang.parser.MarkdownParserManager;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -19,6 +18,8 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -42,17 +43,28 @@ public class MarkdownUtil {
 
   @NotNull
   public static String generateMarkdownHtml(@NotNull VirtualFile file, @NotNull String text) {
+    final ASTNode parsedTree = MarkdownParserManager.parseContent(text, true);
+    return generateMarkdownHtml(file, text, parsedTree, Collections.singletonList(parsedTree)).get(0);
+  }
+
+  /**
+   * Generates html of the given nodes of a parsed document, e.g. of its top-level blocks, one string per node.
+   */
+  @NotNull
+  static List<String> generateMarkdownHtml(@NotNull VirtualFile file,
+                                           @NotNull String text,
+                                           @NotNull ASTNode parsedTree,
+                                           @NotNull List<ASTNode> nodes) {
     final VirtualFile parent = file.getParent();
     final URI baseUri = parent != null ? new File(parent.getPath()).toURI() : null;
 
-    final ASTNode parsedTree = new MarkdownParser(MarkdownParserManager.FLAVOUR).buildMarkdownTreeFromString(text);
     MarkdownCodeFencePluginCacheCollector cacheCollector = new MarkdownCodeFencePluginCacheCollector(file);
 
     Map<IElementType, GeneratingProvider> map = ContainerUtil.newHashMap(
       MarkdownParserManager.FLAVOUR.createHtmlGeneratingProviders(LinkMap.Builder.buildLinkMap(parsedTree, text), baseUri));
     map.putAll(MarkdownParserManager.CODE_FENCE_PLUGIN_FLAVOUR.createHtmlGeneratingProviders(cacheCollector));
 
-    String html = new HtmlGenerator(text, parsedTree, map, true).generateHtml();
+    List<String> html = ContainerUtil.map(nodes, node -> new HtmlGenerator(text, node, map, true).generateHtml());
 
     MarkdownCodeFencePluginCache.getInstance().registerCacheProvider(cacheCollector);
 
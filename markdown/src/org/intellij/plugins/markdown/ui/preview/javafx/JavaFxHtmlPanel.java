@@ -47,6 +47,7 @@ import org.intellij.markdown.html.HtmlGenerator;
 import org.intellij.plugins.markdown.MarkdownBundle;
 import org.intellij.plugins.markdown.lang.references.MarkdownAnchorReference;
 import org.intellij.plugins.markdown.settings.MarkdownApplicationSettings;
+import org.intellij.plugins.markdown.ui.preview.MarkdownHtmlBlocks;
 import org.intellij.plugins.markdown.ui.preview.MarkdownHtmlPanel;
 import org.intellij.plugins.markdown.ui.preview.MarkdownSplitEditor;
 import org.intellij.plugins.markdown.ui.preview.PreviewStaticServer;
@@ -186,6 +187,27 @@ public class JavaFxHtmlPanel extends MarkdownHtmlPanel {
     runInPlatformWhenAvailable(() -> getWebViewGuaranteed().getEngine().loadContent(htmlToRender));
   }
 
+  @Override
+  public void setHtml(@NotNull String html, @NotNull MarkdownHtmlBlocks.Patch patch) {
+    myLastRawHtml = html;
+    final String htmlToRender = prepareHtml(html);
+    final String patchHtml = ImageRefreshFix.setStamps(patch.getHtml());
+
+    runInPlatformWhenAvailable(() -> {
+      final WebEngine engine = getWebViewGuaranteed().getEngine();
+      if (engine.getLoadWorker().getState() == State.SUCCEEDED) {
+        final Object tools = engine.executeScript("window.__IntelliJTools");
+        if (tools instanceof JSObject &&
+            Boolean.TRUE.equals(((JSObject)tools).call("patchBlocks", HtmlGenerator.Companion.getSRC_ATTRIBUTE_NAME(),
+                                                       patch.getChangedStart(), patch.getOldChangedEnd(), patch.getDelta(),
+                                                       patch.getLength(), patchHtml))) {
+          return;
+        }
+      }
+      engine.loadContent(htmlToRender);
+    });
+  }
+
   @NotNull
   private String prepareHtml(@NotNull String html) {
     return ImageRefreshFix.setStamps(html
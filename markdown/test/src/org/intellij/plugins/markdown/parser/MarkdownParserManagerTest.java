@@ -0,0 +1,45 @@
+package org.intellij.plugins.markdown.parser;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import com.intellij.testFramework.LightPlatformTestCase;
+import org.intellij.markdown.ast.ASTNode;
+import org.intellij.plugins.markdown.lang.parser.MarkdownParserManager;
+
+public class MarkdownParserManagerTest extends LightPlatformTestCase {
+  private static final String TEXT = "# Header\n\nSome *text* with [a link](http://example.com)\n";
+
+  public void testSameContentIsParsedOnce() {
+    final ASTNode tree = MarkdownParserManager.parseContent(new StringBuilder(TEXT));
+    assertSame(tree, MarkdownParserManager.parseContent(new StringBuilder(TEXT)));
+    assertNotSame(tree, MarkdownParserManager.parseContent(TEXT, true));
+  }
+
+  public void testBothVariantsAreKept() {
+    final String text = TEXT + "Both variants\n";
+    final ASTNode tree = MarkdownParserManager.parseContent(text);
+    final ASTNode treeWithInlines = MarkdownParserManager.parseContent(text, true);
+    assertSame(tree, MarkdownParserManager.parseContent(new StringBuilder(text)));
+    assertSame(treeWithInlines, MarkdownParserManager.parseContent(new StringBuilder(text), true));
+  }
+
+  public void testChangedContentIsParsedAgain() {
+    final ASTNode tree = MarkdownParserManager.parseContent(TEXT, true);
+    final ASTNode changedTree = MarkdownParserManager.parseContent(TEXT + "More text\n", true);
+    assertNotSame(tree, changedTree);
+    assertEquals(TEXT.length() + "More text\n".length(), changedTree.getEndOffset());
+  }
+
+  public void testDocumentIsParsedUntilModified() {
+    final Document document = new DocumentImpl(TEXT);
+    final ASTNode tree = MarkdownParserManager.parseDocument(document).second;
+    assertSame(tree, MarkdownParserManager.parseDocument(document).second);
+    assertSame(tree, MarkdownParserManager.parseContent(TEXT, true));
+
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(0, "Intro\n\n"));
+    final ASTNode changedTree = MarkdownParserManager.parseDocument(document).second;
+    assertNotSame(tree, changedTree);
+    assertEquals(document.getTextLength(), changedTree.getEndOffset());
+  }
+}
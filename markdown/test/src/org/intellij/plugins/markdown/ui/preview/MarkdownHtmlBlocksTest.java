@@ -0,0 +1,98 @@
+package org.intellij.plugins.markdown.ui.preview;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+public class MarkdownHtmlBlocksTest extends LightPlatformCodeInsightFixtureTestCase {
+  private static final String TEXT = "# Header\n\nFirst paragraph\n\nSecond paragraph\n";
+
+  public void testWholePage() {
+    final MarkdownHtmlBlocks blocks = MarkdownHtmlBlocks.generate(getFile(), TEXT, null);
+    final String html = blocks.getHtml();
+    assertTrue(html.startsWith("<html><head></head><body md-src-pos=\"0.." + TEXT.length() + "\">"));
+    assertTrue(html.contains("First paragraph"));
+    assertTrue(html.contains("Second paragraph"));
+    assertNull(blocks.getPatch(null));
+  }
+
+  public void testChangedBlockOnly() {
+    final VirtualFile file = getFile();
+    final MarkdownHtmlBlocks before = MarkdownHtmlBlocks.generate(file, TEXT, null);
+    final String text = TEXT.replace("First paragraph", "First changed paragraph");
+    final MarkdownHtmlBlocks after = MarkdownHtmlBlocks.generate(file, text, before);
+
+    final MarkdownHtmlBlocks.Patch patch = after.getPatch(before);
+    assertNotNull(patch);
+    assertTrue(patch.getHtml().contains("First changed paragraph"));
+    assertFalse(patch.getHtml().contains("Header"));
+    assertFalse(patch.getHtml().contains("Second paragraph"));
+    assertTrue(patch.getChangedStart() <= TEXT.indexOf("First"));
+    assertTrue(patch.getOldChangedEnd() <= TEXT.indexOf("Second"));
+    assertEquals("changed ".length(), patch.getDelta());
+    assertEquals(text.length(), patch.getLength());
+    assertEquals(MarkdownHtmlBlocks.generate(file, text, null).getHtml(), after.getHtml());
+  }
+
+  public void testShiftedBlockKeepsHtml() {
+    final VirtualFile file = getFile();
+    final MarkdownHtmlBlocks before = MarkdownHtmlBlocks.generate(file, TEXT, null);
+    final String text = "Intro\n\n" + TEXT;
+    final MarkdownHtmlBlocks after = MarkdownHtmlBlocks.generate(file, text, before);
+
+    final MarkdownHtmlBlocks.Patch patch = after.getPatch(before);
+    assertNotNull(patch);
+    assertEquals(0, patch.getChangedStart());
+    assertTrue(patch.getHtml().contains("Intro"));
+    assertFalse(patch.getHtml().contains("paragraph"));
+    final int secondStart = text.indexOf("Second");
+    assertTrue(after.getHtml().contains("md-src-pos=\"" + secondStart + ".."));
+  }
+
+  public void testHtmlSpanningBlocks() {
+    final VirtualFile file = getFile();
+    final String text = "<div class=\"note\">\n\nFirst paragraph\n\n</div>\n";
+    final MarkdownHtmlBlocks before = MarkdownHtmlBlocks.generate(file, text, null);
+    final String changedText = text.replace("First", "Changed");
+    final MarkdownHtmlBlocks after = MarkdownHtmlBlocks.generate(file, changedText, before);
+
+    assertNull(after.getPatch(before));
+    final String html = after.getHtml();
+    assertTrue(html.contains("Changed paragraph"));
+    assertTrue(html.indexOf("Changed paragraph") < html.lastIndexOf("</div>"));
+  }
+
+  public void testBalancedHtmlBlock() {
+    final VirtualFile file = getFile();
+    final String text = "<div>note</div>\n\nFirst paragraph\n";
+    final MarkdownHtmlBlocks before = MarkdownHtmlBlocks.generate(file, text, null);
+    final MarkdownHtmlBlocks after = MarkdownHtmlBlocks.generate(file, text.replace("First", "Changed"), before);
+
+    final MarkdownHtmlBlocks.Patch patch = after.getPatch(before);
+    assertNotNull(patch);
+    assertTrue(patch.getHtml().contains("Changed paragraph"));
+    assertFalse(patch.getHtml().contains("note"));
+  }
+
+  public void testLinkDefinitionChangesOtherBlocks() {
+    final VirtualFile file = getFile();
+    final String text = "See [docs][d]\n\n[d]: http://first.org\n";
+    final MarkdownHtmlBlocks before = MarkdownHtmlBlocks.generate(file, text, null);
+    final String changedText = text.replace("first", "second");
+    final MarkdownHtmlBlocks after = MarkdownHtmlBlocks.generate(file, changedText, before);
+
+    assertTrue(after.getHtml().contains("http://second.org"));
+    assertEquals(MarkdownHtmlBlocks.generate(file, changedText, null).getHtml(), after.getHtml());
+  }
+
+  public void testBalance() {
+    assertTrue(MarkdownHtmlBlocks.isBalanced("<div><p>text<br>more<img src=\"a.png\"/></p></div>"));
+    assertFalse(MarkdownHtmlBlocks.isBalanced("<div class=\"note\">"));
+    assertFalse(MarkdownHtmlBlocks.isBalanced("</div>"));
+    assertFalse(MarkdownHtmlBlocks.isBalanced("<b><i>text</b></i>"));
+    assertFalse(MarkdownHtmlBlocks.isBalanced("<!-- comment"));
+  }
+
+  private VirtualFile getFile() {
+    return myFixture.configureByText("test.md", "").getVirtualFile();
+  }
+}
@@ -30,6 +30,7 @@ import aQute.bnd.build.Workspace;
 import aQute.bnd.osgi.*;
 import aQute.service.reporter.Report;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.containers.ContainerUtil;
@@ -40,7 +41,22 @@ import org.jetbrains.osgi.jps.util.OrderedProperties;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -53,6 +69,23 @@ import java.util.stream.Collectors;
  * @author <a href="mailto:janthomae@janthomae.de">Jan Thomä</a>
  */
 public class BndWrapper {
+  private static final Logger LOG = Logger.getInstance(BndWrapper.class);
+
+  private static final Pattern CACHE_KEY_PATTERN = Pattern.compile("[0-9a-f]{40}");
+  private static final int MAX_CACHED_BUNDLES = 500;
+  private static final long MAX_UNUSED_TIME = TimeUnit.DAYS.toMillis(30);
+  private static final long MIN_UNUSED_TIME = TimeUnit.HOURS.toMillis(1);
+  private static final String CACHE_LOCK_FILE = ".bundles.lock";
+  private static final int MAX_CONTENT_HASHES = 2 * MAX_CACHED_BUNDLES;
+
+  // library path -> its time stamp and SHA-1 of the contents
+  private static final Map<String, Pair<String, String>> ourContentHashes = new LinkedHashMap<String, Pair<String, String>>(64, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Pair<String, String>> eldest) {
+      return size() > MAX_CONTENT_HASHES;
+    }
+  };
+
   private final Reporter myReporter;
 
   public BndWrapper(Reporter reporter) {
@@ -61,75 +94,250 @@ public class BndWrapper {
 
   /**
    * Wraps .jar files using Bnd analyzer. Uses bundlification rules defined in Settings/OSGi/Library Bundling.
+   * Wrapped bundles are kept in the cache directory (see {@link #getCacheDir(File)}) under a key calculated from the contents
+   * of a library and the applied rules, so unchanged libraries are not wrapped again. Independent libraries are wrapped in parallel.
+   * Cached bundles which were not used for a while are removed (see {@link #removeOutdatedBundles(File, Set)}).
    */
   @NotNull
   public List<String> bundlifyLibraries(@NotNull Collection<File> dependencies,
-                                        @NotNull File outputDir,
-                                        @NotNull List<LibraryBundlificationRule> rules) {
-    List<String> result = ContainerUtil.newArrayListWithCapacity(dependencies.size());
+                                        @NotNull File cacheDir,
+                                        @NotNull List<LibraryBundlificationRule> rules) throws OsgiBuildException {
+    String[] paths = new String[dependencies.size()];
+    Map<Integer, File> toWrap = new LinkedHashMap<>();
 
+    int index = 0;
     for (File dependency : dependencies) {
       String path = dependency.getPath();
       if (CachingBundleInfoProvider.canBeBundlified(path)) {
-        myReporter.progress(path);
-        try {
-          File bundledDependency = wrap(dependency, outputDir, rules);
-          if (bundledDependency != null) {
-            result.add(bundledDependency.getPath());
-          }
+        toWrap.put(index, dependency);
+      }
+      else if (CachingBundleInfoProvider.isBundle(path)) {
+        paths[index] = path;
+      }
+      index++;
+    }
+
+    if (!toWrap.isEmpty()) {
+      AtomicInteger reused = new AtomicInteger(), wrapped = new AtomicInteger();
+      Set<File> usedCacheDirs = ContainerUtil.newConcurrentSet();
+      int threads = Math.min(toWrap.size(), Runtime.getRuntime().availableProcessors());
+      ExecutorService executor = Executors.newFixedThreadPool(threads, r -> new Thread(r, "OSGi library bundling"));
+      try {
+        Map<Integer, Future<File>> results = new LinkedHashMap<>();
+        for (Map.Entry<Integer, File> entry : toWrap.entrySet()) {
+          results.put(entry.getKey(), executor.submit(() -> wrap(entry.getValue(), cacheDir, rules, reused, wrapped, usedCacheDirs)));
         }
-        catch (OsgiBuildException e) {
-          myReporter.warning(e.getMessage(), e.getCause(), e.getSourcePath(), -1);
+
+        for (Map.Entry<Integer, Future<File>> entry : results.entrySet()) {
+          try {
+            File bundledDependency = waitFor(entry.getValue());
+            if (bundledDependency != null) {
+              paths[entry.getKey()] = bundledDependency.getPath();
+            }
+          }
+          catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OsgiBuildException) {
+              myReporter.warning(cause.getMessage(), cause.getCause(), ((OsgiBuildException)cause).getSourcePath(), -1);
+            }
+            else {
+              myReporter.warning("Can't bundlify '" + toWrap.get(entry.getKey()) + "'", cause, null, -1);
+            }
+          }
         }
       }
-      else if (CachingBundleInfoProvider.isBundle(path)) {
-        result.add(path);
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OsgiBuildException("Bundling of libraries was interrupted");
+      }
+      finally {
+        executor.shutdownNow();
       }
+
+      int removed = removeOutdatedBundles(cacheDir, usedCacheDirs);
+      myReporter.info("Bundled libraries: " + reused.get() + " reused, " + wrapped.get() + " wrapped, " + removed + " outdated removed");
     }
 
+    List<String> result = ContainerUtil.newArrayListWithCapacity(paths.length);
+    for (String path : paths) {
+      if (path != null) {
+        result.add(path);
+      }
+    }
     return result;
   }
 
   @Nullable
-  private File wrap(@NotNull File sourceFile, @NotNull File outputDir, @NotNull List<LibraryBundlificationRule> rules) throws OsgiBuildException {
+  private File wrap(@NotNull File sourceFile,
+                    @NotNull File cacheDir,
+                    @NotNull List<LibraryBundlificationRule> rules,
+                    @NotNull AtomicInteger reused,
+                    @NotNull AtomicInteger wrapped,
+                    @NotNull Set<File> usedCacheDirs) throws OsgiBuildException {
+    if (myReporter.isCanceled()) {
+      throw new OsgiBuildException("Bundling of libraries was canceled");
+    }
     if (!sourceFile.isFile()) {
       throw new OsgiBuildException("The library '" + sourceFile + "' does not exist - please check module dependencies.");
     }
 
-    File targetFile = new File(outputDir, sourceFile.getName());
     Map<String, String> additionalProperties = ContainerUtil.newHashMap();
 
-    long lastModified = Long.MIN_VALUE;
     for (LibraryBundlificationRule bundlificationRule : rules) {
       if (bundlificationRule.appliesTo(sourceFile.getName())) {
         if (bundlificationRule.isDoNotBundle()) {
           return null;
         }
         additionalProperties.putAll(bundlificationRule.getAdditionalPropertiesMap());
-        lastModified = Math.max(lastModified, bundlificationRule.getLastModified());
         if (bundlificationRule.isStopAfterThisRule()) {
           break;
         }
       }
     }
 
-    if (targetFile.exists() && targetFile.lastModified() >= sourceFile.lastModified() && targetFile.lastModified() >= lastModified) {
+    File bundleDir = new File(cacheDir, getCacheKey(sourceFile, additionalProperties));
+    usedCacheDirs.add(bundleDir);
+    File targetFile = new File(bundleDir, sourceFile.getName());
+    if (targetFile.isFile()) {
+      // the time stamp of the directory tells when the bundle was used last
+      if (!bundleDir.setLastModified(System.currentTimeMillis())) {
+        LOG.debug("Can't touch " + bundleDir);
+      }
+      reused.incrementAndGet();
       return targetFile;
     }
 
-    doWrap(sourceFile, targetFile, additionalProperties);
+    myReporter.progress(sourceFile.getPath());
+    // the bundle appears under its final name only when complete, so a broken run doesn't leave a stale cache entry;
+    // the temp file name is unique in the directory, so concurrent wraps of the same library don't write to the same file
+    File tempFile;
+    try {
+      tempFile = FileUtil.createTempFile(bundleDir, sourceFile.getName(), ".tmp", true, false);
+    }
+    catch (IOException e) {
+      throw new OsgiBuildException("Can't create bundle '" + targetFile + "'", e, null);
+    }
+    try {
+      doWrap(sourceFile, tempFile, additionalProperties);
+      FileUtil.rename(tempFile, targetFile);
+    }
+    catch (IOException e) {
+      throw new OsgiBuildException("Can't create bundle '" + targetFile + "'", e, null);
+    }
+    finally {
+      FileUtil.delete(tempFile);
+    }
+    wrapped.incrementAndGet();
     return targetFile;
   }
 
-  // internal function which does the actual wrapping. 90% borrowed from the Bnd source code.
-  private void doWrap(@NotNull File inputJar, @NotNull File outputJar, @NotNull Map<String, String> properties) throws OsgiBuildException {
-    if (!FileUtil.delete(outputJar)) {
-      throw new OsgiBuildException("Can't delete outdated bundle '" + outputJar + "'");
+  @Nullable
+  private File waitFor(@NotNull Future<File> future) throws ExecutionException, InterruptedException, OsgiBuildException {
+    while (true) {
+      if (myReporter.isCanceled()) {
+        throw new OsgiBuildException("Bundling of libraries was canceled");
+      }
+      try {
+        return future.get(100, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) { }
     }
-    if (!FileUtil.createParentDirs(outputJar)) {
-      throw new OsgiBuildException("Can't create output directory for '" + outputJar + "'");
+  }
+
+  /**
+   * Removes cached bundles which were not used by this call and either were not used for {@link #MAX_UNUSED_TIME}
+   * or exceed {@link #MAX_CACHED_BUNDLES} (least recently used first). Returns the number of removed bundles.
+   * <p>
+   * The cache directory is shared by the modules of a project, so a bundle not used by this call may still be needed
+   * by another module; such bundles are only removed when they are old enough or the cache is too large.
+   * Run configurations started at the same time share the directory as well: only one of them removes bundles at a time
+   * (the others skip removal), and bundles used within {@link #MIN_UNUSED_TIME} are never removed.
+   */
+  private static int removeOutdatedBundles(@NotNull File cacheDir, @NotNull Set<File> usedBundleDirs) {
+    // file locks are held per JVM, so calls within this one are serialized separately
+    synchronized (BndWrapper.class) {
+      File lockFile = new File(cacheDir, CACHE_LOCK_FILE);
+      try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+           FileLock lock = channel.tryLock()) {
+        return lock != null ? doRemoveOutdatedBundles(cacheDir, usedBundleDirs) : 0;
+      }
+      catch (IOException e) {
+        LOG.warn("Can't lock " + cacheDir, e);
+        return 0;
+      }
+    }
+  }
+
+  private static int doRemoveOutdatedBundles(@NotNull File cacheDir, @NotNull Set<File> usedBundleDirs) {
+    File[] bundleDirs = cacheDir.listFiles(file -> file.isDirectory() && CACHE_KEY_PATTERN.matcher(file.getName()).matches());
+    if (bundleDirs == null) {
+      return 0;
+    }
+
+    List<File> unused = new ArrayList<>();
+    for (File bundleDir : bundleDirs) {
+      if (!usedBundleDirs.contains(bundleDir)) {
+        unused.add(bundleDir);
+      }
+    }
+    unused.sort(Comparator.comparingLong(File::lastModified));
+
+    long expired = System.currentTimeMillis() - MAX_UNUSED_TIME;
+    int excess = bundleDirs.length - MAX_CACHED_BUNDLES;
+    int removed = 0;
+    for (File bundleDir : unused) {
+      if (removed >= excess && bundleDir.lastModified() >= expired) {
+        break;
+      }
+      // the time stamp is read again, another process may have just reused the bundle
+      if (System.currentTimeMillis() - bundleDir.lastModified() < MIN_UNUSED_TIME) {
+        continue;
+      }
+      if (FileUtil.delete(bundleDir)) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  private static String getCacheKey(File sourceFile, Map<String, String> properties) throws OsgiBuildException {
+    try {
+      String path = sourceFile.getPath(), stamp = sourceFile.length() + ":" + sourceFile.lastModified();
+      Pair<String, String> cached;
+      synchronized (ourContentHashes) {
+        cached = ourContentHashes.get(path);
+      }
+      String contentHash = cached != null && cached.first.equals(stamp) ? cached.second : null;
+      if (contentHash == null) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        try (InputStream stream = new FileInputStream(sourceFile)) {
+          byte[] buffer = new byte[65536];
+          int read;
+          while ((read = stream.read(buffer)) > 0) {
+            digest.update(buffer, 0, read);
+          }
+        }
+        contentHash = StringUtil.toHexString(digest.digest());
+        synchronized (ourContentHashes) {
+          ourContentHashes.put(path, Pair.create(stamp, contentHash));
+        }
+      }
+
+      if (properties.isEmpty()) {
+        return contentHash;
+      }
+
+      StringBuilder key = new StringBuilder(contentHash);
+      new TreeMap<>(properties).forEach((name, value) -> key.append('\n').append(name).append('=').append(value));
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(key.toString().getBytes(StandardCharsets.UTF_8)));
     }
+    catch (IOException | NoSuchAlgorithmException e) {
+      throw new OsgiBuildException("Can't read library '" + sourceFile + "'", e, null);
+    }
+  }
 
+  // internal function which does the actual wrapping. 90% borrowed from the Bnd source code.
+  private void doWrap(@NotNull File inputJar, @NotNull File outputJar, @NotNull Map<String, String> properties) throws OsgiBuildException {
     try (Analyzer analyzer = new ReportingAnalyzer(myReporter)) {
       analyzer.setPedantic(false);
       analyzer.setJar(inputJar);
@@ -286,15 +494,16 @@ public class BndWrapper {
   }
 
   /**
-   * Creates an output dir relative to a module's one.
+   * Creates a directory for wrapped libraries in the given build system directory of a project,
+   * so the bundles survive cleaning of the module output.
    */
   @NotNull
-  public static File getOutputDir(@NotNull File moduleOutputDir) throws OsgiBuildException {
-    File outputDir = new File(moduleOutputDir.getParent(), "bundles");
-    if (!outputDir.exists() && !outputDir.mkdirs()) {
-      throw new OsgiBuildException("Can't create output directory '" + outputDir + "'. Please check file permissions.");
+  public static File getCacheDir(@NotNull File systemDir) throws OsgiBuildException {
+    File cacheDir = new File(systemDir, "osgi/bundles");
+    if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+      throw new OsgiBuildException("Can't create bundle cache directory '" + cacheDir + "'. Please check file permissions.");
     }
-    return outputDir;
+    return cacheDir;
   }
 
   @NotNull
@@ -308,7 +517,7 @@ public class BndWrapper {
       }
     }
     catch (Exception e) {
-      Logger.getInstance(BndWrapper.class).warn(e);
+      LOG.warn(e);
     }
 
     return Collections.emptyList();
@@ -26,25 +26,43 @@ package org.jetbrains.osgi.jps.build;
 
 import aQute.bnd.osgi.Constants;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.io.IOUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
 /**
  * This is a helper class which helps providing information about bundles (that do not necessarily belong to the project).
+ * <p/>
+ * Main manifest attributes are cached by path and checked against the length and modification time of the .jar file
+ * (or the manifest file of an exploded bundle). The build process keeps the cache in its data directory between builds
+ * (see {@link #loadCache(File)} and {@link #saveCache(File)}).
+ * Lookups don't lock; when the cache grows over its limit, the least recently used tenth of it is evicted.
  *
  * @author <a href="mailto:janthomae@janthomae.de">Jan Thomä</a>
  */
 public class CachingBundleInfoProvider {
-  private static final Map<String, Pair<Long, Manifest>> ourCache = new WeakHashMap<String, Pair<Long, Manifest>>();
+  private static final Logger LOG = Logger.getInstance(CachingBundleInfoProvider.class);
+
+  private static final int MAX_CACHE_SIZE = 10000;
+  private static final int EVICTION_BATCH_SIZE = MAX_CACHE_SIZE / 10;
+  private static final int CACHE_FORMAT_VERSION = 1;
+
+  private static final ConcurrentMap<String, BundleInfo> ourCache = new ConcurrentHashMap<>(256);
+  private static final Lock ourEvictionLock = new ReentrantLock();
+  private static volatile boolean ourCacheModified = false;
 
   /**
    * True for .jar files or exploded directories with Bundle-SymbolicName in their manifests.
@@ -83,51 +101,173 @@ public class CachingBundleInfoProvider {
   }
 
   @Nullable
-  public synchronized static String getBundleAttribute(@NotNull String path, @NotNull String attribute) {
-    Pair<Long, Manifest> pair = ourCache.remove(path);
+  public static String getBundleAttribute(@NotNull String path, @NotNull String attribute) {
+    File bundleFile = new File(path);
+    File stampFile = bundleFile.isDirectory() ? new File(bundleFile, JarFile.MANIFEST_NAME) : bundleFile;
+    long length = stampFile.length(), lastModified = stampFile.lastModified();
+
+    BundleInfo info = ourCache.get(path);
+    if (info == null || info.myLength != length || info.myLastModified != lastModified) {
+      // concurrent readers of the same file just repeat the work
+      info = readBundleInfo(bundleFile, length, lastModified);
+      if (info == null) {
+        ourCache.remove(path);
+        return null;
+      }
+      ourCache.put(path, info);
+      ourCacheModified = true;
+      evictIfNeeded();
+    }
+    else {
+      info.myLastAccess = System.nanoTime();
+    }
 
+    return info.myAttributes.get(StringUtil.toLowerCase(attribute));
+  }
+
+  @Nullable
+  private static BundleInfo readBundleInfo(File bundleFile, long length, long lastModified) {
     try {
-      File bundleFile = new File(path);
+      Manifest manifest;
       if (bundleFile.isDirectory()) {
         File manifestFile = new File(bundleFile, JarFile.MANIFEST_NAME);
-        if (pair == null || pair.first != manifestFile.lastModified()) {
-          pair = null;
-          FileInputStream stream = new FileInputStream(manifestFile);
-          try {
-            Manifest manifest = new Manifest(stream);
-            pair = Pair.create(manifestFile.lastModified(), manifest);
-          }
-          finally {
-            stream.close();
-          }
+        if (!manifestFile.isFile()) return null;
+        try (FileInputStream stream = new FileInputStream(manifestFile)) {
+          manifest = new Manifest(stream);
         }
       }
       else if (bundleFile.isFile()) {
-        if (pair == null || pair.first != bundleFile.lastModified()) {
-          pair = null;
-          JarFile jar = new JarFile(bundleFile);
-          try {
-            Manifest manifest = jar.getManifest();
-            if (manifest != null) {
-              pair = Pair.create(bundleFile.lastModified(), manifest);
-            }
-          }
-          finally {
-            jar.close();
-          }
+        try (JarFile jar = new JarFile(bundleFile)) {
+          manifest = jar.getManifest();
+        }
+      }
+      else {
+        return null;
+      }
+
+      // a library without a manifest is remembered as well, so it isn't re-opened on each request
+      Map<String, String> attributes = new HashMap<>();
+      if (manifest != null) {
+        Attributes mainAttributes = manifest.getMainAttributes();
+        for (Object key : mainAttributes.keySet()) {
+          String name = key.toString();
+          attributes.put(StringUtil.toLowerCase(name), mainAttributes.getValue(name));
         }
       }
+      return new BundleInfo(length, lastModified, attributes);
     }
     catch (IOException e) {
-      Logger.getInstance(CachingBundleInfoProvider.class).debug(e);
+      LOG.debug(e);
+      return null;
     }
+  }
+
+  /**
+   * Fills the cache from a file written by {@link #saveCache(File)}; entries already in memory are kept.
+   */
+  public static void loadCache(@NotNull File cacheFile) {
+    if (!cacheFile.isFile()) return;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      if (in.readInt() != CACHE_FORMAT_VERSION) return;
+
+      int size = in.readInt();
+      Map<String, BundleInfo> loaded = new HashMap<>();
+      for (int i = 0; i < size; i++) {
+        String path = IOUtil.readUTF(in);
+        long length = in.readLong(), lastModified = in.readLong();
+        int attributeCount = in.readInt();
+        Map<String, String> attributes = new HashMap<>(attributeCount);
+        for (int j = 0; j < attributeCount; j++) {
+          attributes.put(IOUtil.readUTF(in), IOUtil.readUTF(in));
+        }
+        loaded.put(path, new BundleInfo(length, lastModified, attributes));
+      }
 
-    if (pair != null) {
-      ourCache.put(path, pair);
-      return pair.second.getMainAttributes().getValue(attribute);
+      for (Map.Entry<String, BundleInfo> entry : loaded.entrySet()) {
+        ourCache.putIfAbsent(entry.getKey(), entry.getValue());
+      }
+      evictIfNeeded();
     }
-    else {
-      return null;
+    catch (IOException e) {
+      LOG.info("Cannot load bundle info cache from " + cacheFile, e);
+    }
+  }
+
+  /**
+   * Writes the cache to the given file if it was changed since the last save.
+   */
+  public static void saveCache(@NotNull File cacheFile) {
+    if (!ourCacheModified) return;
+
+    // entries changed while the snapshot is taken mark the cache as modified again
+    ourCacheModified = false;
+    Map<String, BundleInfo> snapshot = new HashMap<>(ourCache);
+
+    if (!FileUtil.createParentDirs(cacheFile)) {
+      LOG.info("Cannot create a directory for " + cacheFile);
+      return;
+    }
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+      out.writeInt(CACHE_FORMAT_VERSION);
+      out.writeInt(snapshot.size());
+      for (Map.Entry<String, BundleInfo> entry : snapshot.entrySet()) {
+        BundleInfo info = entry.getValue();
+        IOUtil.writeUTF(out, entry.getKey());
+        out.writeLong(info.myLength);
+        out.writeLong(info.myLastModified);
+        out.writeInt(info.myAttributes.size());
+        for (Map.Entry<String, String> attribute : info.myAttributes.entrySet()) {
+          IOUtil.writeUTF(out, attribute.getKey());
+          IOUtil.writeUTF(out, attribute.getValue());
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save bundle info cache to " + cacheFile, e);
+      FileUtil.delete(cacheFile);
+    }
+  }
+
+  /**
+   * Approximate LRU: removes the entries which were not requested for the longest time.
+   * Only one thread evicts at a time, others go on without waiting for it.
+   */
+  private static void evictIfNeeded() {
+    if (ourCache.size() <= MAX_CACHE_SIZE || !ourEvictionLock.tryLock()) return;
+    try {
+      if (ourCache.size() <= MAX_CACHE_SIZE) return;
+
+      int toEvict = ourCache.size() - MAX_CACHE_SIZE + EVICTION_BATCH_SIZE;
+      List<Map.Entry<String, BundleInfo>> entries = new ArrayList<>(ourCache.entrySet());
+      entries.sort(Comparator.comparingLong(entry -> entry.getValue().myLastAccess));
+      for (int i = 0; i < toEvict && i < entries.size(); i++) {
+        Map.Entry<String, BundleInfo> entry = entries.get(i);
+        ourCache.remove(entry.getKey(), entry.getValue());
+      }
+    }
+    finally {
+      ourEvictionLock.unlock();
+    }
+  }
+
+  @TestOnly
+  public static void clearCache() {
+    ourCache.clear();
+    ourCacheModified = false;
+  }
+
+  private static class BundleInfo {
+    private final long myLength;
+    private final long myLastModified;
+    private final Map<String, String> myAttributes;
+    private volatile long myLastAccess = System.nanoTime();
+
+    private BundleInfo(long length, long lastModified, Map<String, String> attributes) {
+      myLength = length;
+      myLastModified = lastModified;
+      myAttributes = attributes;
     }
   }
 }
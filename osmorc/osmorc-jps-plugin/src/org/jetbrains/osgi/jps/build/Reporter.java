@@ -21,6 +21,13 @@ import org.jetbrains.annotations.Nullable;
 public interface Reporter {
   void progress(@NotNull String message);
 
+  /**
+   * Reports a summary worth keeping in the build log; shown as a progress message unless the reporter has a log of its own.
+   */
+  default void info(@NotNull String message) {
+    progress(message);
+  }
+
   void warning(@NotNull String message, @Nullable Throwable t, @Nullable String sourcePath, int lineNum);
 
   void error(@NotNull String message, @Nullable Throwable t, @Nullable String sourcePath, int lineNum);
@@ -30,4 +37,8 @@ public interface Reporter {
   void debug(@NotNull String message);
 
   String setReportSource(String source);
+
+  default boolean isCanceled() {
+    return false;
+  }
 }
\ No newline at end of file
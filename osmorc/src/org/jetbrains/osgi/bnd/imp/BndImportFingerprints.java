@@ -0,0 +1,69 @@
+/*
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.osgi.bnd.imp;
+
+import com.intellij.openapi.components.*;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Fingerprints of the imported bnd projects (keyed by project directory), which let an incremental import
+ * skip projects that haven't changed, also after the IDE restart. They depend on file time stamps, so they're kept in the workspace file.
+ */
+@State(name = "BndImportFingerprints", storages = @Storage(StoragePathMacros.WORKSPACE_FILE))
+public class BndImportFingerprints implements PersistentStateComponent<BndImportFingerprints.FingerprintsState> {
+  public static class FingerprintsState {
+    public Map<String, String> fingerprints = ContainerUtil.newTreeMap();
+  }
+
+  private FingerprintsState myState = new FingerprintsState();
+
+  @NotNull
+  public static BndImportFingerprints getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, BndImportFingerprints.class);
+  }
+
+  @Nullable
+  public synchronized String get(@NotNull String path) {
+    return myState.fingerprints.get(path);
+  }
+
+  public synchronized void set(@NotNull String path, @Nullable String fingerprint) {
+    if (fingerprint != null) {
+      myState.fingerprints.put(path, fingerprint);
+    }
+    else {
+      myState.fingerprints.remove(path);
+    }
+  }
+
+  @NotNull
+  @Override
+  public synchronized FingerprintsState getState() {
+    FingerprintsState state = new FingerprintsState();
+    state.fingerprints.putAll(myState.fingerprints);
+    return state;
+  }
+
+  @Override
+  public synchronized void loadState(@NotNull FingerprintsState state) {
+    myState = state;
+  }
+}
@@ -23,6 +23,7 @@ import aQute.bnd.service.Refreshable;
 import aQute.bnd.service.RepositoryPlugin;
 import com.intellij.compiler.CompilerConfiguration;
 import com.intellij.compiler.impl.javaCompiler.javac.JavacConfiguration;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.facet.impl.FacetUtil;
 import com.intellij.ide.highlighter.ModuleFileType;
 import com.intellij.notification.NotificationDisplayType;
@@ -68,6 +69,8 @@ import org.osmorc.facet.OsmorcFacetType;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -112,14 +115,31 @@ public class BndProjectImporter {
   private final com.intellij.openapi.project.Project myProject;
   private final Workspace myWorkspace;
   private final Collection<Project> myProjects;
-  private final Map<String, String> mySourcesMap = ContainerUtil.newTroveMap(FileUtil.PATH_HASHING_STRATEGY);
+  private final boolean myIncremental;
+  // jar path -> relative path of the source root inside the jar, or an empty string when there is none
+  private final Map<String, String> mySourcesMap = ContainerUtil.newConcurrentMap(FileUtil.PATH_HASHING_STRATEGY);
+  private final Map<Project, String> myFingerprints = ContainerUtil.newConcurrentMap();
+  private Collection<Project> myProjectsToUpdate;
 
   public BndProjectImporter(@NotNull com.intellij.openapi.project.Project project,
                             @NotNull Workspace workspace,
                             @NotNull Collection<Project> toImport) {
+    this(project, workspace, toImport, false);
+  }
+
+  /**
+   * @param incremental when set, only projects which have changed since the last import are written into the project model
+   *                    (a project is considered changed when its .bnd files, the workspace ones, or its classpath have changed).
+   */
+  public BndProjectImporter(@NotNull com.intellij.openapi.project.Project project,
+                            @NotNull Workspace workspace,
+                            @NotNull Collection<Project> toImport,
+                            boolean incremental) {
     myProject = project;
     myWorkspace = workspace;
     myProjects = toImport;
+    myIncremental = incremental;
+    myProjectsToUpdate = toImport;
   }
 
   @NotNull
@@ -192,66 +212,151 @@ public class BndProjectImporter {
       checkWarnings(project, project.getErrors(), true);
       checkWarnings(project, project.getWarnings(), false);
 
-      findSources(project);
-
       if (indicator != null) {
         indicator.setFraction((double)(++progress) / myProjects.size());
       }
     }
 
-    return true;
+    // project preparation is left sequential: bnd projects prepare the projects they depend on through the shared workspace,
+    // whose project cache and repository plugins aren't thread-safe. Once prepared, the classpath is only read,
+    // so fingerprinting the projects and looking into the libraries is done concurrently.
+    List<Project> projects = ContainerUtil.newArrayList(myProjects);
+    boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(projects, indicator, true, project -> {
+      ContainerUtil.putIfNotNull(project, getFingerprint(project), myFingerprints);
+      return true;
+    });
+    if (!completed) {
+      return false;
+    }
+
+    if (myIncremental) {
+      BndImportFingerprints previous = BndImportFingerprints.getInstance(myProject);
+      ModuleManager moduleManager = ModuleManager.getInstance(myProject);
+      myProjectsToUpdate = ContainerUtil.filter(myProjects, project -> {
+        String fingerprint = myFingerprints.get(project);
+        return fingerprint == null ||
+               !fingerprint.equals(previous.get(project.getBase().getPath())) ||
+               moduleManager.findModuleByName(project.getName()) == null;
+      });
+      LOG.info("changed projects: " + myProjectsToUpdate.size() + " of " + myProjects.size());
+    }
+
+    Set<File> jars = ContainerUtil.newLinkedHashSet();
+    for (Project project : myProjectsToUpdate) {
+      collectJars(project, jars);
+    }
+    if (indicator != null) {
+      indicator.setText(message("bnd.import.sources.task"));
+    }
+    return JobLauncher.getInstance().invokeConcurrentlyUnderProgress(ContainerUtil.newArrayList(jars), indicator, true, file -> {
+      findSources(file);
+      return true;
+    });
   }
 
-  private void findSources(Project project) {
+  private static void collectJars(Project project, Set<File> jars) {
     try {
-      findSources(project.getBootclasspath());
-      findSources(project.getBuildpath());
-      findSources(project.getTestpath());
+      collectJars(project.getBootclasspath(), jars);
+      collectJars(project.getBuildpath(), jars);
+      collectJars(project.getTestpath(), jars);
     }
     catch (Exception ignored) { }
   }
 
-  private void findSources(Collection<Container> classpath) {
+  private static void collectJars(Collection<Container> classpath, Set<File> jars) {
     for (Container dependency : classpath) {
       Container.TYPE type = dependency.getType();
       if (type == Container.TYPE.REPO || type == Container.TYPE.EXTERNAL) {
         File file = dependency.getFile();
         if (file.isFile() && FileUtilRt.extensionEquals(file.getName(), "jar")) {
-          String path = file.getPath();
-          if (!mySourcesMap.containsKey(path)) {
-            try {
-              ZipFile zipFile = new ZipFile(file);
-              try {
-                ZipEntry srcRoot = zipFile.getEntry(SRC_ROOT);
-                if (srcRoot != null) {
-                  mySourcesMap.put(path, SRC_ROOT);
-                }
-              }
-              finally {
-                zipFile.close();
-              }
-            }
-            catch (IOException e) {
-              mySourcesMap.put(path, null);
-            }
-          }
+          jars.add(file);
         }
       }
     }
   }
 
+  private void findSources(File file) {
+    String path = file.getPath();
+    if (!mySourcesMap.containsKey(path)) {
+      String srcRoot = "";
+      try (ZipFile zipFile = new ZipFile(file)) {
+        ZipEntry entry = zipFile.getEntry(SRC_ROOT);
+        if (entry != null) {
+          srcRoot = SRC_ROOT;
+        }
+      }
+      catch (IOException ignored) { }
+      mySourcesMap.put(path, srcRoot);
+    }
+  }
+
+  @Nullable
+  private String getSourceRoot(String path) {
+    return StringUtil.nullize(mySourcesMap.get(path));
+  }
+
+  /**
+   * Describes everything the project model of a bnd project is built from: the contents of its and the workspace .bnd files,
+   * and the resolved classpath. Returns the digest of all that, or {@code null} when the classpath cannot be resolved.
+   */
+  @Nullable
+  private String getFingerprint(Project project) {
+    StringBuilder builder = new StringBuilder();
+    try {
+      appendFiles(builder, myWorkspace.getPropertiesFile(), myWorkspace.getIncluded());
+      appendFiles(builder, project.getPropertiesFile(), project.getIncluded());
+      appendClasspath(builder, project.getBootclasspath());
+      appendClasspath(builder, project.getBuildpath());
+      appendClasspath(builder, project.getTestpath());
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+      return StringUtil.toHexString(digest);
+    }
+    catch (Exception e) {
+      LOG.debug(e);
+      return null;
+    }
+  }
+
+  private static void appendFiles(StringBuilder builder, @Nullable File propertiesFile, @Nullable Collection<File> included) throws IOException {
+    List<File> files = ContainerUtil.newSmartList();
+    ContainerUtil.addIfNotNull(files, propertiesFile);
+    if (included != null) files.addAll(included);
+    for (File file : files) {
+      builder.append(file.getPath()).append('\n');
+      if (file.isFile()) {
+        builder.append(FileUtil.loadFile(file)).append('\n');
+      }
+    }
+  }
+
+  private static void appendClasspath(StringBuilder builder, Collection<Container> classpath) {
+    for (Container dependency : classpath) {
+      builder.append(dependency.getType()).append(':').append(dependency.getBundleSymbolicName()).append(':').append(dependency.getVersion());
+      if (dependency.getType() != Container.TYPE.PROJECT) {
+        // outputs of other projects are rebuilt all the time, and do not affect the model
+        File file = dependency.getFile();
+        builder.append(':').append(file.getPath()).append(':').append(file.length()).append(':').append(file.lastModified());
+      }
+      builder.append('\n');
+    }
+  }
+
   private void createProjectStructure() {
     if (myProject.isDisposed()) {
       return;
     }
 
+    if (myProjectsToUpdate.isEmpty()) {
+      return;
+    }
+
     ApplicationManager.getApplication().runWriteAction(() -> {
       LanguageLevel projectLevel = LanguageLevelProjectExtension.getInstance(myProject).getLanguageLevel();
       Map<Project, ModifiableRootModel> rootModels = ContainerUtil.newHashMap();
       ModifiableModuleModel moduleModel = ModuleManager.getInstance(myProject).getModifiableModel();
       LibraryTable.ModifiableModel libraryModel = ProjectLibraryTable.getInstance(myProject).getModifiableModel();
       try {
-        for (Project project : myProjects) {
+        for (Project project : myProjectsToUpdate) {
           try {
             rootModels.put(project, createModule(moduleModel, project, projectLevel));
           }
@@ -259,7 +364,7 @@ public class BndProjectImporter {
             LOG.error(e);  // should not happen, since project.prepare() is already called
           }
         }
-        for (Project project : myProjects) {
+        for (Project project : myProjectsToUpdate) {
           try {
             setDependencies(moduleModel, libraryModel, rootModels.get(project), project);
           }
@@ -273,6 +378,11 @@ public class BndProjectImporter {
         ModifiableModelCommitter.multiCommit(rootModels.values(), moduleModel);
       }
     });
+
+    BndImportFingerprints fingerprints = BndImportFingerprints.getInstance(myProject);
+    for (Project project : myProjectsToUpdate) {
+      fingerprints.set(project.getBase().getPath(), myFingerprints.get(project));
+    }
   }
 
   private ModifiableRootModel createModule(ModifiableModuleModel moduleModel, Project project, LanguageLevel projectLevel) throws Exception {
@@ -459,7 +569,7 @@ public class BndProjectImporter {
         for (String url : model.getUrls(OrderRootType.CLASSES)) model.removeRoot(url, OrderRootType.CLASSES);
         for (String url : model.getUrls(OrderRootType.SOURCES)) model.removeRoot(url, OrderRootType.SOURCES);
         model.addRoot(url(file), OrderRootType.CLASSES);
-        String srcRoot = mySourcesMap.get(path);
+        String srcRoot = getSourceRoot(path);
         if (srcRoot != null) {
           model.addRoot(url(file) + srcRoot, OrderRootType.SOURCES);
         }
@@ -473,7 +583,7 @@ public class BndProjectImporter {
         Library library = rootModel.getModuleLibraryTable().createLibrary(file.getName());
         Library.ModifiableModel model = library.getModifiableModel();
         model.addRoot(url(file), OrderRootType.CLASSES);
-        String srcRoot = mySourcesMap.get(path);
+        String srcRoot = getSourceRoot(path);
         if (srcRoot != null) {
           model.addRoot(url(file) + srcRoot, OrderRootType.SOURCES);
         }
@@ -596,7 +706,7 @@ public class BndProjectImporter {
     }
 
     Runnable task = () -> {
-      BndProjectImporter importer = new BndProjectImporter(project, workspace, projects);
+      BndProjectImporter importer = new BndProjectImporter(project, workspace, projects, true);
       importer.setupProject();
       importer.resolve(true);
     };
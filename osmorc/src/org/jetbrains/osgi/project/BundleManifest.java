@@ -20,12 +20,13 @@ import aQute.bnd.osgi.Constants;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiNameHelper;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,6 +37,8 @@ import java.util.Set;
 public class BundleManifest {
   private final Map<String, String> myMap;
   private final PsiFile mySource;
+  private final Map<String, Set<String>> myValues = ContainerUtil.newConcurrentMap();
+  private final Map<String, PackageTrie> myPackages = ContainerUtil.newConcurrentMap();
 
   public BundleManifest(@NotNull Map<String, String> map) {
     this(map, null);
@@ -68,48 +71,37 @@ public class BundleManifest {
 
   @Nullable
   public String getExportedPackage(@NotNull String packageName) {
-    for (String exported : getValues(Constants.EXPORT_PACKAGE)) {
-      exported = StringUtil.trimEnd(exported, ".*");
-      if (PsiNameHelper.isSubpackageOf(packageName, exported)) {
-        return exported;
-      }
-    }
-
-    return null;
+    return getPackages(Constants.EXPORT_PACKAGE).find(packageName);
   }
 
   public boolean isPackageImported(@NotNull String packageName) {
-    for (String imported : getValues(Constants.IMPORT_PACKAGE)) {
-      if (PsiNameHelper.isSubpackageOf(packageName, imported)) {
-        return true;
-      }
-    }
-
-    return false;
+    return getPackages(Constants.IMPORT_PACKAGE).contains(packageName);
   }
 
   public boolean isBundleRequired(@NotNull String bsn) {
-    for (String bundleName : getValues(Constants.REQUIRE_BUNDLE)) {
-      if (bsn.equals(bundleName)) {
-        return true;
-      }
-    }
-
-    return false;
+    return getValues(Constants.REQUIRE_BUNDLE).contains(bsn);
   }
 
   public boolean isPrivatePackage(@NotNull String packageName) {
-    for (String privatePkg : getValues(Constants.PRIVATE_PACKAGE)) {
-      if (PsiNameHelper.isSubpackageOf(packageName, privatePkg)) {
-        return true;
-      }
-    }
+    return getPackages(Constants.PRIVATE_PACKAGE).contains(packageName);
+  }
 
-    return false;
+  // headers are parsed on first access; the manifest is immutable, so are the results
+  private PackageTrie getPackages(String header) {
+    PackageTrie packages = myPackages.get(header);
+    if (packages == null) {
+      packages = ConcurrencyUtil.cacheOrGet(myPackages, header, PackageTrie.create(getValues(header)));
+    }
+    return packages;
   }
 
   private Set<String> getValues(String header) {
-    String value = get(header);
-    return StringUtil.isEmptyOrSpaces(value) ? Collections.emptySet() : new Parameters(value).keySet();
+    Set<String> values = myValues.get(header);
+    if (values == null) {
+      String value = get(header);
+      values = StringUtil.isEmptyOrSpaces(value) ? Collections.emptySet() : new LinkedHashSet<>(new Parameters(value).keySet());
+      values = ConcurrencyUtil.cacheOrGet(myValues, header, values);
+    }
+    return values;
   }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2000-2018 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.osgi.project;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable lookup structure for package names of a manifest header (e.g. {@code Export-Package}).
+ * An entry matches the package itself and all its subpackages; a trailing {@code .*} is ignored, and a single {@code *}
+ * matches any package. If several entries match, the one listed first in the header wins; a bnd-style negation
+ * ({@code !pkg}) winning that way excludes the package.
+ */
+class PackageTrie {
+  static final PackageTrie EMPTY = new PackageTrie(new Node());
+
+  private final Node myRoot;
+
+  private PackageTrie(Node root) {
+    myRoot = root;
+  }
+
+  @NotNull
+  static PackageTrie create(@NotNull Collection<String> entries) {
+    if (entries.isEmpty()) return EMPTY;
+
+    Node root = new Node();
+    int ordinal = 0;
+    for (String entry : entries) {
+      String name = StringUtil.trimEnd(entry.trim(), ".*");
+      boolean negated = StringUtil.startsWithChar(name, '!');
+      if (negated) name = name.substring(1);
+      if (name.isEmpty()) continue;
+
+      Node node = root;
+      if (!name.equals("*")) {
+        for (String segment : StringUtil.split(name, ".")) {
+          node = node.myChildren.computeIfAbsent(segment, s -> new Node());
+        }
+      }
+      if (node.myEntry == null) {
+        node.myEntry = name;
+        node.myOrdinal = ordinal;
+        node.myNegated = negated;
+      }
+      ordinal++;
+    }
+    return new PackageTrie(root);
+  }
+
+  /**
+   * Returns the first entry which covers the given package, or {@code null}.
+   */
+  @Nullable
+  String find(@NotNull String packageName) {
+    Node node = myRoot;
+    Node found = node.myEntry != null ? node : null;
+
+    int start = 0;
+    while (start <= packageName.length()) {
+      int end = packageName.indexOf('.', start);
+      if (end < 0) end = packageName.length();
+
+      node = node.myChildren.get(packageName.substring(start, end));
+      if (node == null) break;
+      if (node.myEntry != null && (found == null || node.myOrdinal < found.myOrdinal)) {
+        found = node;
+      }
+
+      start = end + 1;
+    }
+
+    return found != null && !found.myNegated ? found.myEntry : null;
+  }
+
+  boolean contains(@NotNull String packageName) {
+    return find(packageName) != null;
+  }
+
+  private static class Node {
+    private final Map<String, Node> myChildren = new HashMap<>();
+    private String myEntry;
+    private int myOrdinal;
+    private boolean myNegated;
+  }
+}
@@ -24,12 +24,11 @@
  */
 package org.osmorc.make;
 
+import com.intellij.compiler.server.BuildManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.roots.CompilerModuleExtension;
 import com.intellij.openapi.roots.OrderEnumerator;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -52,6 +51,7 @@ public class BundleCompiler implements Reporter {
   private static final Logger LOG = Logger.getInstance(BundleCompiler.class);
 
   private final ProgressIndicator myIndicator;
+  private final List<String> mySummaries = ContainerUtil.newArrayList();
 
   public BundleCompiler(@NotNull ProgressIndicator indicator) {
     myIndicator = indicator;
@@ -59,14 +59,15 @@ public class BundleCompiler implements Reporter {
 
   /**
    * Bundlifies all libraries that belong to the given module and that are not bundles.
-   * The bundles are cached, so if the source library does not change, it will not be bundlified again.
+   * The bundles are cached in the build system directory of the project, so if the source library does not change,
+   * it will not be bundlified again.
    * Returns a string array containing paths of the bundlified libraries.
    */
   @NotNull
   public List<String> bundlifyLibraries(@NotNull Module module) throws OsgiBuildException {
     myIndicator.setText("Bundling non-OSGi libraries for module '" + module.getName() + "'");
 
-    File outputDir = BndWrapper.getOutputDir(getModuleOutputDir(module));
+    File cacheDir = BndWrapper.getCacheDir(getProjectSystemDir(module));
     List<LibraryBundlificationRule> libRules = ApplicationSettings.getInstance().getLibraryBundlificationRules();
 
     List<String> paths = OrderEnumerator.orderEntries(module)
@@ -82,18 +83,23 @@ public class BundleCompiler implements Reporter {
 
     List<File> files = ContainerUtil.map(paths, path -> new File(path));
 
-    return new BndWrapper(this).bundlifyLibraries(files, outputDir, libRules);
+    return new BndWrapper(this).bundlifyLibraries(files, cacheDir, libRules);
   }
 
-  private static File getModuleOutputDir(@NotNull Module module) throws OsgiBuildException {
-    CompilerModuleExtension extension = CompilerModuleExtension.getInstance(module);
-    if (extension != null) {
-      String url = extension.getCompilerOutputUrl();
-      if (url != null) {
-        return new File(VfsUtilCore.urlToPath(url));
-      }
+  /**
+   * Returns the summaries reported while bundlifying libraries, so they can be shown to the user after the progress is gone.
+   */
+  @NotNull
+  public List<String> getSummaries() {
+    return mySummaries;
+  }
+
+  private static File getProjectSystemDir(@NotNull Module module) throws OsgiBuildException {
+    File systemDir = BuildManager.getInstance().getProjectSystemDirectory(module.getProject());
+    if (systemDir == null) {
+      throw new OsgiBuildException("Unable to determine the build system directory for the module '" + module.getName() + "'");
     }
-    throw new OsgiBuildException("Unable to determine the compiler output path for the module '" + module.getName() + "'");
+    return systemDir;
   }
 
   @Override
@@ -102,6 +108,13 @@ public class BundleCompiler implements Reporter {
     myIndicator.setText2(message);
   }
 
+  @Override
+  public void info(@NotNull String message) {
+    LOG.info(message);
+    myIndicator.setText2(message);
+    mySummaries.add(message);
+  }
+
   @Override
   public void warning(@NotNull String message, @Nullable Throwable t, @Nullable String sourcePath, int lineNum) {
     LOG.warn(message, t);
@@ -126,4 +139,9 @@ public class BundleCompiler implements Reporter {
   public String setReportSource(String source) {
     return null;
   }
+
+  @Override
+  public boolean isCanceled() {
+    return myIndicator.isCanceled();
+  }
 }
\ No newline at end of file
@@ -26,9 +26,15 @@ package org.osmorc.run;
 
 import com.intellij.execution.CantRunException;
 import com.intellij.execution.ExecutionException;
+import com.intellij.execution.ExecutionResult;
+import com.intellij.execution.Executor;
 import com.intellij.execution.configurations.JavaCommandLineState;
 import com.intellij.execution.configurations.JavaParameters;
 import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.runners.ProgramRunner;
+import com.intellij.execution.ui.ConsoleView;
+import com.intellij.execution.ui.ConsoleViewContentType;
+import com.intellij.execution.ui.ExecutionConsole;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
@@ -62,6 +68,7 @@ public class OsgiRunState extends JavaCommandLineState {
 
   private final OsgiRunConfiguration myRunConfiguration;
   private final FrameworkRunner myRunner;
+  private List<String> myBundlingSummaries = Collections.emptyList();
 
   public OsgiRunState(@NotNull ExecutionEnvironment environment, @NotNull OsgiRunConfiguration configuration) throws ExecutionException {
     super(environment);
@@ -78,6 +85,20 @@ public class OsgiRunState extends JavaCommandLineState {
     myRunner = integrator.createFrameworkRunner();
   }
 
+  @NotNull
+  @Override
+  public ExecutionResult execute(@NotNull Executor executor, @NotNull ProgramRunner runner) throws ExecutionException {
+    ExecutionResult result = super.execute(executor, runner);
+    // the bundles are prepared when the process is started, so the summaries are known by now
+    ExecutionConsole console = result.getExecutionConsole();
+    if (console instanceof ConsoleView) {
+      for (String summary : myBundlingSummaries) {
+        ((ConsoleView)console).print(summary + '\n', ConsoleViewContentType.SYSTEM_OUTPUT);
+      }
+    }
+    return result;
+  }
+
   @Override
   protected JavaParameters createJavaParameters() throws ExecutionException {
     return myRunner.createJavaParameters(myRunConfiguration, getSelectedBundles());
@@ -152,6 +173,7 @@ public class OsgiRunState extends JavaCommandLineState {
             List<SelectedBundle> sortedBundles = ContainerUtil.newArrayList(filteredBundles.values());
             Collections.sort(sortedBundles, START_LEVEL_COMPARATOR);
             result.set(sortedBundles);
+            myBundlingSummaries = bundleCompiler.getSummaries();
           }
           catch (CantRunException e) {
             error.set(e);
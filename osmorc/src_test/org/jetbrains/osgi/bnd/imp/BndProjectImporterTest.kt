@@ -172,6 +172,26 @@ class BndProjectImporterTest : IdeaTestCase() {
     assertNotNull(OsmorcFacet.getInstance(module))
   }
 
+  fun testIncrementalReimport() {
+    assertNotNull(BndProjectImporter.findWorkspace(myProject))
+    BndProjectImporter.reimportWorkspace(myProject)
+
+    val provider = ModuleManager.getInstance(myProject).findModuleByName("hello.provider")!!
+    val consumer = ModuleManager.getInstance(myProject).findModuleByName("hello.consumer")!!
+    ModuleRootModificationUtil.addModuleLibrary(provider, "file://$myProjectDir/provider-lib")
+    ModuleRootModificationUtil.addModuleLibrary(consumer, "file://$myProjectDir/consumer-lib")
+    assertEquals(3, getDependencies(provider).size)
+    assertEquals(4, getDependencies(consumer).size)
+
+    File(myProjectDir, "hello.consumer/bnd.bnd").writeText("-buildpath: hello.provider\njavac.source: 1.7")
+    BndProjectImporter.reimportWorkspace(myProject)
+
+    assertEquals("an unchanged project must be left alone", 3, getDependencies(provider).size)
+    assertThat(getDependencies(consumer)).containsExactly("<jdk>", "<src>", "hello.provider")
+    val sourceLevel = ModuleRootManager.getInstance(consumer).getModuleExtension(LanguageLevelModuleExtension::class.java).languageLevel
+    assertEquals(LanguageLevel.JDK_1_7, sourceLevel)
+  }
+
 
   private fun getDependencies(it: Module): List<String> {
     val dependencies: MutableList<String> = arrayListOf()
@@ -67,4 +67,29 @@ class BundleManifestTest {
     assertTrue(manifest.isPrivatePackage("org.apache.felix.framework.impl"))
     assertFalse(manifest.isPrivatePackage("org.apache.felix"))
   }
-}
\ No newline at end of file
+
+  @Test fun firstMatchingExportWins() {
+    val manifest = BundleManifest(mapOf("Export-Package" to "foo.bar.baz,foo.bar,foo"))
+    assertEquals("foo.bar.baz", manifest.getExportedPackage("foo.bar.baz.impl"))
+    assertEquals("foo.bar", manifest.getExportedPackage("foo.bar.bam"))
+    assertEquals("foo", manifest.getExportedPackage("foo.baz"))
+    assertNull(manifest.getExportedPackage("foobar"))
+  }
+
+  @Test fun privatePackageWildcards() {
+    val manifest = BundleManifest(mapOf("Private-Package" to "!org.apache.felix.framework.util,org.apache.felix.framework.*"))
+    assertTrue(manifest.isPrivatePackage("org.apache.felix.framework"))
+    assertFalse(manifest.isPrivatePackage("org.apache.felix.framework.util"))
+    assertFalse(manifest.isPrivatePackage("org.apache.felix.framework.util.impl"))
+    assertFalse(manifest.isPrivatePackage("org.apache.felix"))
+    assertTrue(BundleManifest(mapOf("Private-Package" to "*")).isPrivatePackage("any.pkg"))
+  }
+
+  @Test fun largeImportHeader() {
+    val manifest = BundleManifest(mapOf("Import-Package" to (0 until 300).joinToString(",") { "pkg$it.api;version=\"[1.$it,2)\"" }))
+    assertTrue(manifest.isPackageImported("pkg0.api"))
+    assertTrue(manifest.isPackageImported("pkg299.api"))
+    assertFalse(manifest.isPackageImported("pkg299"))
+    assertFalse(manifest.isPackageImported("pkg300.api"))
+  }
+}
@@ -32,6 +32,7 @@ import org.junit.Test;
 import org.osmorc.OsgiTestUtil;
 
 import java.io.File;
+import java.io.IOException;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -56,6 +57,7 @@ public class CachingBundleInfoProviderTest {
 
   @After
   public void tearDown() {
+    CachingBundleInfoProvider.clearCache();
     FileUtil.delete(myTempDir);
   }
 
@@ -86,4 +88,40 @@ public class CachingBundleInfoProviderTest {
     assertThat(CachingBundleInfoProvider.isFragmentBundle(myJarBundle), equalTo(false));
     assertThat(CachingBundleInfoProvider.isFragmentBundle(myInvalidDirBundle), equalTo(false));
   }
+
+  @Test
+  public void testModifiedBundle() throws IOException {
+    assertThat(CachingBundleInfoProvider.getBundleVersion(myDirBundle), equalTo("1.0.0"));
+
+    File manifest = new File(myDirBundle, "META-INF/MANIFEST.MF");
+    long lastModified = manifest.lastModified();
+    FileUtil.writeToFile(manifest, "Manifest-Version: 1.0\nBundle-SymbolicName: dirbundle\nBundle-Version: 1.1.0\n");
+    assertThat(manifest.setLastModified(lastModified + 2000), equalTo(true));
+
+    assertThat(CachingBundleInfoProvider.getBundleVersion(myDirBundle), equalTo("1.1.0"));
+    assertThat(CachingBundleInfoProvider.isFragmentBundle(myDirBundle), equalTo(false));
+  }
+
+  @Test
+  public void testPersistentCache() throws IOException {
+    assertThat(CachingBundleInfoProvider.getBundleSymbolicName(myJarBundle), equalTo("jarbundle"));
+
+    File cacheFile = new File(myTempDir, "cache/bundle-info.dat");
+    CachingBundleInfoProvider.saveCache(cacheFile);
+    assertThat(cacheFile.isFile(), equalTo(true));
+
+    // corrupt the jar keeping its length and timestamp: only the persisted entry can answer now
+    File jar = new File(myJarBundle);
+    long length = jar.length(), lastModified = jar.lastModified();
+    FileUtil.writeToFile(jar, new byte[(int)length]);
+    assertThat(jar.setLastModified(lastModified), equalTo(true));
+
+    CachingBundleInfoProvider.clearCache();
+    assertThat(CachingBundleInfoProvider.getBundleSymbolicName(myJarBundle), equalTo(null));
+
+    CachingBundleInfoProvider.clearCache();
+    CachingBundleInfoProvider.loadCache(cacheFile);
+    assertThat(CachingBundleInfoProvider.getBundleSymbolicName(myJarBundle), equalTo("jarbundle"));
+    assertThat(CachingBundleInfoProvider.getBundleVersion(myJarBundle), equalTo("1.0.0"));
+  }
 }
@@ -17,6 +17,7 @@ package org.osmorc.inspection;
 
 import com.intellij.codeInsight.intention.IntentionAction;
 import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.PlatformTestUtil;
 import org.jetbrains.osgi.jps.model.ManifestGenerationMode;
 import org.osmorc.LightOsgiFixtureTestCase;
 import org.osmorc.i18n.OsmorcBundle;
@@ -132,6 +133,28 @@ public class PackageAccessibilityInspectionTest extends LightOsgiFixtureTestCase
       " javax.swing\n");
   }
 
+  public void testPerformanceWithLargeManifest() {
+    StringBuilder manifest = new StringBuilder("Import-Package: ");
+    for (int i = 0; i < 300; i++) {
+      manifest.append("com.acme.pkg").append(i).append(";version=\"[1.").append(i).append(",2)\",\n ");
+    }
+    manifest.append("org.osgi.framework;version=\"[1.5,2)\"\n");
+
+    StringBuilder text = new StringBuilder("package pkg;\nimport org.osgi.framework.*;\npublic class C {\n");
+    String[] classes = {"Bundle", "BundleContext", "BundleActivator", "ServiceReference", "ServiceRegistration", "Filter", "Version"};
+    for (int i = 0; i < 500; i++) {
+      text.append("  ").append(classes[i % classes.length]).append(" f").append(i).append(";\n");
+    }
+    text.append("}");
+
+    myFixture.enableInspections(new PackageAccessibilityInspection());
+    myFixture.addFileToProject("META-INF/MANIFEST.MF", manifest.toString());
+    myFixture.configureByText("C.java", text.toString());
+
+    PlatformTestUtil.startPerformanceTest("Package accessibility with 300 imports", 3000,
+                                          () -> myFixture.checkHighlighting(true, false, true)).attempts(3).assertTiming();
+  }
+
   private void doTest(String classText) {
     doTest(classText, "");
   }
@@ -4,7 +4,7 @@ import com.intellij.codeInsight.completion.*;
 import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.navigation.ItemPresentation;
-import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.patterns.ElementPattern;
 import com.intellij.patterns.PsiElementPattern;
@@ -15,11 +15,10 @@ import com.intellij.psi.css.impl.util.CssUtil;
 import com.intellij.psi.css.impl.util.completion.provider.PseudoSelectorsCompletionProvider;
 import com.intellij.psi.css.util.CssCompletionUtil;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.psi.stubs.StubIndex;
 import com.intellij.util.ObjectUtils;
 import org.intellij.plugins.postcss.psi.PostCssCustomMedia;
 import org.intellij.plugins.postcss.psi.PostCssPsiUtil;
-import org.intellij.plugins.postcss.psi.stubs.PostCssCustomMediaIndex;
+import org.intellij.plugins.postcss.psi.stubs.PostCssCustomDefinitionsTable;
 import org.intellij.plugins.postcss.references.PostCssCustomMediaReference;
 import org.intellij.plugins.postcss.references.PostCssCustomSelectorReference;
 import org.jetbrains.annotations.NotNull;
@@ -53,15 +52,11 @@ public class PostCssCompletionContributor extends CompletionContributor {
   private static void addVariantsForCustomMedia(@NotNull final CompletionParameters parameters,
                                                 @NotNull final CompletionResultSet result) {
     final PsiElement position = parameters.getPosition();
-    Project project = position.getProject();
     final GlobalSearchScope scope = CssUtil.getCompletionAndResolvingScopeForElement(position);
     final Set<VirtualFile> importedFiles = CssUtil.getImportedFiles(parameters.getOriginalFile(), position, false);
-    for (String name : StubIndex.getInstance().getAllKeys(PostCssCustomMediaIndex.KEY, project)) {
-      if (name.isEmpty()) continue;
-      for (PostCssCustomMedia element : StubIndex
-        .getElements(PostCssCustomMediaIndex.KEY, name, project, scope, PostCssCustomMedia.class)) {
-        result.addElement(createCustomElementLookup(element, importedFiles));
-      }
+    for (PostCssCustomMedia element : PostCssCustomDefinitionsTable.getInstance(position.getProject()).getAllCustomMedia(scope)) {
+      if (StringUtil.isEmpty(element.getName())) continue;
+      result.addElement(createCustomElementLookup(element, importedFiles));
     }
   }
 
@@ -9,8 +9,8 @@ import com.intellij.psi.css.descriptor.CssPseudoSelectorDescriptor;
 import com.intellij.psi.css.descriptor.CssPseudoSelectorDescriptorStub;
 import com.intellij.psi.css.impl.util.CssUtil;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.psi.stubs.StubIndex;
 import org.intellij.plugins.postcss.psi.*;
+import org.intellij.plugins.postcss.psi.stubs.PostCssCustomDefinitionsTable;
 import org.intellij.plugins.postcss.psi.stubs.PostCssCustomMediaIndex;
 import org.intellij.plugins.postcss.psi.stubs.PostCssCustomSelectorIndex;
 import org.jetbrains.annotations.NotNull;
@@ -72,20 +72,12 @@ public class PostCssElementDescriptorProvider extends CssElementDescriptorProvid
     final Collection<CssPseudoSelectorDescriptor> result = new ArrayList<>();
     final GlobalSearchScope scope = CssUtil.getCompletionAndResolvingScopeForElement(context);
 
-    final Collection<String> selectorNames = StubIndex.getInstance().getAllKeys(PostCssCustomSelectorIndex.KEY, context.getProject());
-    for (String name : selectorNames) {
-      if (name.isEmpty()) continue;
-
-      StubIndex.getInstance()
-        .processElements(PostCssCustomSelectorIndex.KEY, name, context.getProject(), scope, PostCssCustomSelector.class,
-                         selector -> {
-                           for (CssElementDescriptor descriptor : selector.getDescriptors()) {
-                             if (descriptor instanceof CssPseudoSelectorDescriptor) {
-                               result.add((CssPseudoSelectorDescriptor)descriptor);
-                             }
-                           }
-                           return true;
-                         });
+    for (PostCssCustomSelector selector : PostCssCustomDefinitionsTable.getInstance(context.getProject()).getAllCustomSelectors(scope)) {
+      for (CssElementDescriptor descriptor : selector.getDescriptors()) {
+        if (descriptor instanceof CssPseudoSelectorDescriptor) {
+          result.add((CssPseudoSelectorDescriptor)descriptor);
+        }
+      }
     }
 
     return result;
@@ -0,0 +1,395 @@
+package org.intellij.plugins.postcss.psi.stubs;
+
+import com.intellij.ProjectTopics;
+import com.intellij.lang.css.CSSLanguage;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.stubs.StubIndexKey;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.MultiMap;
+import com.intellij.util.messages.MessageBusConnection;
+import org.intellij.plugins.postcss.psi.PostCssCustomMedia;
+import org.intellij.plugins.postcss.psi.PostCssCustomSelector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Custom selectors and custom media of the project, grouped by the file defining them.
+ * <p>
+ * The table is filled from {@link PostCssCustomSelectorIndex} and {@link PostCssCustomMediaIndex} once,
+ * then only the stylesheets changed since the last lookup are scanned again. Created, deleted and moved stylesheets
+ * (also the ones in created, deleted and moved directories) are handled the same way, only changes of roots
+ * refill the whole table.
+ * Definitions are kept as smart pointers, so the table doesn't hold PSI of files which aren't used otherwise.
+ * <p>
+ * Lookups don't lock: an outdated table is updated into a new snapshot by the looking up thread and published
+ * if no other thread has published one meanwhile.
+ */
+public class PostCssCustomDefinitionsTable {
+  private static final String DEFINITION_PREFIX = "@custom-";
+
+  @NotNull private final Project myProject;
+  private final AtomicReference<Snapshot> mySnapshot = new AtomicReference<>(new Snapshot(Collections.emptyMap(), -1, 0));
+  /**
+   * Changed files and directories along with the number of the change, so that a file changed again during a scan
+   * stays marked as changed
+   */
+  private final ConcurrentMap<VirtualFile, Long> myChangedFiles = ContainerUtil.newConcurrentMap();
+  private final AtomicLong myChangeCount = new AtomicLong();
+  private final AtomicInteger myRefills = new AtomicInteger();
+  /**
+   * Incremented when a directory is deleted or moved: the files of the table which aren't valid or indexed anymore
+   * are dropped on the next lookup
+   */
+  private final AtomicInteger myValidityChecks = new AtomicInteger();
+
+  public PostCssCustomDefinitionsTable(@NotNull Project project) {
+    myProject = project;
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile(), event.getChild());
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile(), event.getChild());
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile(), event.getNewChild());
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile(), event.getChild());
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile(), event.getParent());
+      }
+
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        fileChanged(event.getFile(), event.getElement());
+      }
+    }, project);
+    MessageBusConnection connection = project.getMessageBus().connect(project);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        myRefills.incrementAndGet();
+      }
+    });
+    // changes made outside of the IDE reach PSI only for loaded files
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void before(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          VirtualFile file = event.getFile();
+          if (!(event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent || isRename(event)) || !isIndexed(file)) continue;
+          if (file.isDirectory()) {
+            if (!isRename(event)) {
+              myValidityChecks.incrementAndGet();
+            }
+          }
+          else if (isStylesheet(file)) {
+            // a renamed file might not be a stylesheet anymore
+            markChanged(file);
+          }
+        }
+      }
+
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          VirtualFile file = event instanceof VFileCopyEvent ? ((VFileCopyEvent)event).findCreatedFile() : event.getFile();
+          if (!isIndexed(file)) continue;
+          if (event instanceof VFileContentChangeEvent || event instanceof VFileCreateEvent || event instanceof VFileCopyEvent ||
+              event instanceof VFileMoveEvent || isRename(event)) {
+            if (file.isDirectory()) {
+              if (!isRename(event)) {
+                // its stylesheets are looked up on the next lookup
+                markChanged(file);
+              }
+            }
+            else if (isStylesheet(file)) {
+              markChanged(file);
+            }
+          }
+        }
+      }
+    });
+  }
+
+  private static boolean isRename(@NotNull VFileEvent event) {
+    return event instanceof VFilePropertyChangeEvent &&
+           VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent)event).getPropertyName());
+  }
+
+  private static boolean isStylesheet(@NotNull VirtualFile file) {
+    FileType fileType = file.getFileType();
+    return fileType instanceof LanguageFileType && ((LanguageFileType)fileType).getLanguage().isKindOf(CSSLanguage.INSTANCE);
+  }
+
+  /**
+   * Collects the stylesheets of a created or moved directory
+   */
+  private static void addStylesheets(@NotNull VirtualFile directory, @NotNull Collection<VirtualFile> stylesheets) {
+    VfsUtilCore.visitChildrenRecursively(directory, new VirtualFileVisitor() {
+      @Override
+      public boolean visitFile(@NotNull VirtualFile file) {
+        if (!file.isDirectory() && isStylesheet(file)) {
+          stylesheets.add(file);
+        }
+        return true;
+      }
+    });
+  }
+
+  private boolean isIndexed(@Nullable VirtualFile file) {
+    if (file == null || !file.isValid() || myProject.isDisposed()) return false;
+    ProjectFileIndex fileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+    return fileIndex.isInContent(file) || fileIndex.isInLibrarySource(file) || fileIndex.isInLibraryClasses(file);
+  }
+
+  @NotNull
+  public static PostCssCustomDefinitionsTable getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, PostCssCustomDefinitionsTable.class);
+  }
+
+  @NotNull
+  public Collection<PostCssCustomSelector> getCustomSelectors(@NotNull String name, @NotNull GlobalSearchScope scope) {
+    List<PostCssCustomSelector> result = new ArrayList<>();
+    for (FileDefinitions definitions : getFileDefinitions(scope)) {
+      result.addAll(dereference(definitions.mySelectors.get(name)));
+    }
+    return result;
+  }
+
+  @NotNull
+  public Collection<PostCssCustomSelector> getAllCustomSelectors(@NotNull GlobalSearchScope scope) {
+    List<PostCssCustomSelector> result = new ArrayList<>();
+    for (FileDefinitions definitions : getFileDefinitions(scope)) {
+      result.addAll(dereference(definitions.mySelectors.values()));
+    }
+    return result;
+  }
+
+  @NotNull
+  public Collection<PostCssCustomMedia> getCustomMedia(@NotNull String name, @NotNull GlobalSearchScope scope) {
+    List<PostCssCustomMedia> result = new ArrayList<>();
+    for (FileDefinitions definitions : getFileDefinitions(scope)) {
+      result.addAll(dereference(definitions.myMedia.get(name)));
+    }
+    return result;
+  }
+
+  @NotNull
+  public Collection<PostCssCustomMedia> getAllCustomMedia(@NotNull GlobalSearchScope scope) {
+    List<PostCssCustomMedia> result = new ArrayList<>();
+    for (FileDefinitions definitions : getFileDefinitions(scope)) {
+      result.addAll(dereference(definitions.myMedia.values()));
+    }
+    return result;
+  }
+
+  private void fileChanged(@Nullable PsiFile file, @Nullable PsiElement child) {
+    if (file == null && child instanceof PsiFile) {
+      file = (PsiFile)child;
+    }
+    VirtualFile virtualFile = file != null ? file.getViewProvider().getVirtualFile() : null;
+    // directories are handled by the VFS listener
+    if (virtualFile == null || file instanceof PsiCodeFragment || !file.isPhysical()) return;
+    markChanged(virtualFile);
+  }
+
+  private void markChanged(@NotNull VirtualFile file) {
+    myChangedFiles.put(file, myChangeCount.incrementAndGet());
+  }
+
+  @NotNull
+  private List<FileDefinitions> getFileDefinitions(@NotNull GlobalSearchScope scope) {
+    Snapshot snapshot = mySnapshot.get();
+    if (snapshot.myRefills != myRefills.get() || snapshot.myValidityChecks != myValidityChecks.get() || !myChangedFiles.isEmpty()) {
+      snapshot = update(snapshot);
+    }
+
+    List<FileDefinitions> result = new ArrayList<>();
+    for (Map.Entry<VirtualFile, FileDefinitions> entry : snapshot.myFiles.entrySet()) {
+      if (scope.contains(entry.getKey())) {
+        result.add(entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Builds the updated table without changing the given one. If the update is cancelled or another thread has published
+   * a table meanwhile, the changes stay marked and are scanned again on the next lookup.
+   */
+  @NotNull
+  private Snapshot update(@NotNull Snapshot base) {
+    ProgressManager.checkCanceled();
+    int refills = myRefills.get();
+    int validityChecks = myValidityChecks.get();
+    // taken before the scan: files changed during the scan get a new change number and are rescanned next time
+    Map<VirtualFile, Long> changedFiles = new HashMap<>(myChangedFiles);
+
+    Map<VirtualFile, FileDefinitions> files;
+    if (base.myRefills != refills) {
+      files = collectFromIndex();
+    }
+    else {
+      files = new HashMap<>(base.myFiles);
+      if (base.myValidityChecks != validityChecks) {
+        files.keySet().removeIf(file -> !isIndexed(file));
+      }
+      Set<VirtualFile> stylesheets = new LinkedHashSet<>();
+      for (VirtualFile file : changedFiles.keySet()) {
+        if (file.isValid() && file.isDirectory()) {
+          addStylesheets(file, stylesheets);
+        }
+        else {
+          stylesheets.add(file);
+        }
+      }
+      for (VirtualFile file : stylesheets) {
+        ProgressManager.checkCanceled();
+        FileDefinitions definitions = scanFile(file);
+        if (definitions != null) {
+          files.put(file, definitions);
+        }
+        else {
+          files.remove(file);
+        }
+      }
+    }
+
+    Snapshot updated = new Snapshot(files, refills, validityChecks);
+    if (mySnapshot.compareAndSet(base, updated)) {
+      for (Map.Entry<VirtualFile, Long> entry : changedFiles.entrySet()) {
+        myChangedFiles.remove(entry.getKey(), entry.getValue());
+      }
+    }
+    return updated;
+  }
+
+  @NotNull
+  private Map<VirtualFile, FileDefinitions> collectFromIndex() {
+    Map<VirtualFile, FileDefinitions> files = new HashMap<>();
+    GlobalSearchScope allScope = GlobalSearchScope.allScope(myProject);
+    collectFromIndex(PostCssCustomSelectorIndex.KEY, PostCssCustomSelector.class, allScope, files,
+                     (definitions, selector) -> definitions.mySelectors.putValue(selector.getName(), createPointer(selector)));
+    collectFromIndex(PostCssCustomMediaIndex.KEY, PostCssCustomMedia.class, allScope, files,
+                     (definitions, media) -> definitions.myMedia.putValue(media.getName(), createPointer(media)));
+    return files;
+  }
+
+  private <T extends PsiElement> void collectFromIndex(@NotNull StubIndexKey<String, T> key,
+                                                       @NotNull Class<T> elementClass,
+                                                       @NotNull GlobalSearchScope scope,
+                                                       @NotNull Map<VirtualFile, FileDefinitions> files,
+                                                       @NotNull DefinitionConsumer<T> consumer) {
+    StubIndex index = StubIndex.getInstance();
+    for (String name : index.getAllKeys(key, myProject)) {
+      if (name.isEmpty()) continue;
+      ProgressManager.checkCanceled();
+      index.processElements(key, name, myProject, scope, elementClass, element -> {
+        VirtualFile file = element.getContainingFile().getViewProvider().getVirtualFile();
+        consumer.consume(files.computeIfAbsent(file, f -> new FileDefinitions()), element);
+        return true;
+      });
+    }
+  }
+
+  /**
+   * @return the definitions of the file, or null if it doesn't define anything
+   */
+  @Nullable
+  private FileDefinitions scanFile(@NotNull VirtualFile virtualFile) {
+    PsiFile file = isIndexed(virtualFile) ? PsiManager.getInstance(myProject).findFile(virtualFile) : null;
+    if (file == null || !StringUtil.contains(file.getViewProvider().getContents(), DEFINITION_PREFIX)) {
+      return null;
+    }
+
+    FileDefinitions definitions = new FileDefinitions();
+    for (PsiFile root : file.getViewProvider().getAllFiles()) {
+      for (PsiElement element : PsiTreeUtil.findChildrenOfAnyType(root, PostCssCustomSelector.class, PostCssCustomMedia.class)) {
+        if (element instanceof PostCssCustomSelector) {
+          definitions.mySelectors.putValue(((PostCssCustomSelector)element).getName(), createPointer((PostCssCustomSelector)element));
+        }
+        else {
+          definitions.myMedia.putValue(((PostCssCustomMedia)element).getName(), createPointer((PostCssCustomMedia)element));
+        }
+      }
+    }
+    return !definitions.mySelectors.isEmpty() || !definitions.myMedia.isEmpty() ? definitions : null;
+  }
+
+  @TestOnly
+  public boolean isUpToDate() {
+    return mySnapshot.get().myRefills == myRefills.get();
+  }
+
+  @NotNull
+  private <T extends PsiElement> SmartPsiElementPointer<T> createPointer(@NotNull T element) {
+    return SmartPointerManager.getInstance(myProject).createSmartPsiElementPointer(element);
+  }
+
+  @NotNull
+  private static <T extends PsiElement> Collection<T> dereference(@NotNull Collection<SmartPsiElementPointer<T>> pointers) {
+    return ContainerUtil.mapNotNull(pointers, SmartPsiElementPointer::getElement);
+  }
+
+  private interface DefinitionConsumer<T> {
+    void consume(@NotNull FileDefinitions definitions, @NotNull T element);
+  }
+
+  /**
+   * Isn't changed once published
+   */
+  private static class Snapshot {
+    private final Map<VirtualFile, FileDefinitions> myFiles;
+    private final int myRefills;
+    private final int myValidityChecks;
+
+    private Snapshot(@NotNull Map<VirtualFile, FileDefinitions> files, int refills, int validityChecks) {
+      myFiles = files;
+      myRefills = refills;
+      myValidityChecks = validityChecks;
+    }
+  }
+
+  private static class FileDefinitions {
+    private final MultiMap<String, SmartPsiElementPointer<PostCssCustomSelector>> mySelectors = new MultiMap<>();
+    private final MultiMap<String, SmartPsiElementPointer<PostCssCustomMedia>> myMedia = new MultiMap<>();
+  }
+}
@@ -4,7 +4,6 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.css.impl.util.CssUtil;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StringStubIndexExtension;
-import com.intellij.psi.stubs.StubIndex;
 import com.intellij.psi.stubs.StubIndexKey;
 import org.intellij.plugins.postcss.psi.PostCssCustomMedia;
 import org.jetbrains.annotations.NotNull;
@@ -22,6 +21,6 @@ public class PostCssCustomMediaIndex extends StringStubIndexExtension<PostCssCus
 
   public static Collection<PostCssCustomMedia> getCustomMediaFeatures(@NotNull final String name, @NotNull final PsiElement context) {
     GlobalSearchScope scope = CssUtil.getCompletionAndResolvingScopeForElement(context);
-    return StubIndex.getElements(KEY, name, context.getProject(), scope, PostCssCustomMedia.class);
+    return PostCssCustomDefinitionsTable.getInstance(context.getProject()).getCustomMedia(name, scope);
   }
 }
\ No newline at end of file
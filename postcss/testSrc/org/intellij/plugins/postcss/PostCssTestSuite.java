@@ -16,6 +16,7 @@ import org.intellij.plugins.postcss.lexer.PostCssLexerTest;
 import org.intellij.plugins.postcss.lexer.highlighting.PostCssHighlightingLexerTest;
 import org.intellij.plugins.postcss.parser.*;
 import org.intellij.plugins.postcss.rename.PostCssRenameTest;
+import org.intellij.plugins.postcss.resolve.PostCssCustomDefinitionsTableTest;
 import org.intellij.plugins.postcss.resolve.PostCssCustomMediaResolveTest;
 import org.intellij.plugins.postcss.resolve.PostCssCustomPropertySetResolveTest;
 import org.intellij.plugins.postcss.resolve.PostCssCustomSelectorResolveTest;
@@ -94,6 +95,7 @@ public class PostCssTestSuite extends TestCase {
       suite.addTestSuite(PostCssCustomMediaResolveTest.class);
       suite.addTestSuite(PostCssCustomPropertySetResolveTest.class);
       suite.addTestSuite(PostCssFindUsagesTest.class);
+      suite.addTestSuite(PostCssCustomDefinitionsTableTest.class);
       return suite;
     }
   }
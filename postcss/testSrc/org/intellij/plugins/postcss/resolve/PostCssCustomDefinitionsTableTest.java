@@ -0,0 +1,112 @@
+package org.intellij.plugins.postcss.resolve;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.intellij.plugins.postcss.PostCssFixtureTestCase;
+import org.intellij.plugins.postcss.psi.stubs.PostCssCustomDefinitionsTable;
+
+import java.io.IOException;
+
+public class PostCssCustomDefinitionsTableTest extends PostCssFixtureTestCase {
+
+  public void testDefinitionsFromIndex() {
+    myFixture.addFileToProject("a.pcss", "@custom-selector :--heading h1, h2;\n@custom-media --small (max-width: 30em);");
+    myFixture.addFileToProject("b.pcss", "@custom-selector :--heading h3;");
+    assertSize(2, getTable().getCustomSelectors("heading", getScope()));
+    assertSize(1, getTable().getCustomMedia("small", getScope()));
+    assertSize(2, getTable().getAllCustomSelectors(getScope()));
+    assertEmpty(getTable().getCustomSelectors("small", getScope()));
+  }
+
+  public void testAllCustomMedia() {
+    PsiFile file = myFixture.addFileToProject("a.pcss", "@custom-media --small (max-width: 30em);\n@custom-media --large (min-width: 60em);");
+    myFixture.addFileToProject("b.pcss", "@custom-media --small (max-width: 20em);\n@custom-selector :--heading h1;");
+    assertSize(3, getTable().getAllCustomMedia(getScope()));
+    assertSize(2, getTable().getAllCustomMedia(GlobalSearchScope.fileScope(file)));
+
+    replaceText(file, "@custom-selector :--title h1;");
+    assertSize(1, getTable().getAllCustomMedia(getScope()));
+  }
+
+  public void testEditedFileIsRescanned() {
+    PsiFile file = myFixture.addFileToProject("a.pcss", "@custom-selector :--heading h1;");
+    myFixture.addFileToProject("b.pcss", "@custom-selector :--button button;");
+    assertSize(1, getTable().getCustomSelectors("heading", getScope()));
+
+    replaceText(file, "@custom-selector :--title h1;\n@custom-media --small (max-width: 30em);");
+    assertEmpty(getTable().getCustomSelectors("heading", getScope()));
+    assertSize(1, getTable().getCustomSelectors("title", getScope()));
+    assertSize(1, getTable().getCustomSelectors("button", getScope()));
+    assertSize(1, getTable().getCustomMedia("small", getScope()));
+
+    replaceText(file, "");
+    assertEmpty(getTable().getCustomSelectors("title", getScope()));
+    assertSize(1, getTable().getAllCustomSelectors(getScope()));
+  }
+
+  public void testDefinitionAddedToNewFile() {
+    myFixture.addFileToProject("a.pcss", "@custom-selector :--heading h1;");
+    assertSize(1, getTable().getAllCustomSelectors(getScope()));
+
+    myFixture.addFileToProject("b.pcss", "@custom-selector :--button button;");
+    assertSize(2, getTable().getAllCustomSelectors(getScope()));
+  }
+
+  public void testFileChangedOnDisk() throws IOException {
+    VirtualFile file = myFixture.addFileToProject("a.pcss", "@custom-selector :--heading h1;").getVirtualFile();
+    assertSize(1, getTable().getCustomSelectors("heading", getScope()));
+
+    WriteAction.run(() -> VfsUtil.saveText(file, "@custom-selector :--title h1;"));
+    assertEmpty(getTable().getCustomSelectors("heading", getScope()));
+    assertSize(1, getTable().getCustomSelectors("title", getScope()));
+
+    WriteAction.run(() -> file.delete(this));
+    assertEmpty(getTable().getAllCustomSelectors(getScope()));
+  }
+
+  public void testFilesOfOtherTypesDontRefillTable() throws IOException {
+    myFixture.addFileToProject("a.pcss", "@custom-selector :--heading h1;");
+    assertSize(1, getTable().getAllCustomSelectors(getScope()));
+
+    VirtualFile textFile = myFixture.addFileToProject("notes.txt", "@custom-selector :--button button;").getVirtualFile();
+    WriteAction.run(() -> VfsUtil.saveText(textFile, "@custom-selector :--title h1;"));
+    WriteAction.run(() -> textFile.delete(this));
+    assertTrue(getTable().isUpToDate());
+    assertSize(1, getTable().getAllCustomSelectors(getScope()));
+  }
+
+  public void testDirectoryChanges() throws IOException {
+    myFixture.addFileToProject("a.pcss", "@custom-selector :--heading h1;");
+    VirtualFile directory = myFixture.addFileToProject("styles/b.pcss", "@custom-selector :--button button;").getVirtualFile().getParent();
+    assertSize(2, getTable().getAllCustomSelectors(getScope()));
+
+    WriteAction.run(() -> VfsUtil.copyDirectory(this, directory, directory.getParent().createChildDirectory(this, "copy"), null));
+    assertSize(3, getTable().getAllCustomSelectors(getScope()));
+
+    WriteAction.run(() -> directory.delete(this));
+    assertTrue(getTable().isUpToDate());
+    assertSize(2, getTable().getAllCustomSelectors(getScope()));
+  }
+
+  private void replaceText(PsiFile file, String text) {
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(file);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.setText(text));
+    documentManager.commitDocument(document);
+  }
+
+  private PostCssCustomDefinitionsTable getTable() {
+    return PostCssCustomDefinitionsTable.getInstance(getProject());
+  }
+
+  private GlobalSearchScope getScope() {
+    return GlobalSearchScope.allScope(getProject());
+  }
+}
@@ -28,6 +28,8 @@ import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.command.UndoConfirmationPolicy;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
@@ -37,6 +39,7 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.ReadonlyStatusHandler;
@@ -50,7 +53,8 @@ import com.intellij.ui.HyperlinkAdapter;
 import com.intellij.ui.LightweightHint;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.NullableFunction;
-import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
 import com.intellij.util.text.SemVer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -63,6 +67,14 @@ import java.util.concurrent.Future;
 
 public class ReformatWithPrettierAction extends AnAction implements DumbAware {
   private static final int REQUEST_TIMEOUT = 3000;
+  /**
+   * Format requests sent ahead while waiting for a result, so that the service doesn't wait for the next file
+   */
+  private static final int MAX_PENDING_REQUESTS = 8;
+  /**
+   * Formatted files are applied to documents in batches of this size, each batch in its own write action
+   */
+  private static final int APPLY_BATCH_SIZE = 50;
   private final ErrorHandler myErrorHandler;
 
   public ReformatWithPrettierAction(@NotNull ErrorHandler errorHandler) {
@@ -186,7 +198,7 @@ public class ReformatWithPrettierAction extends AnAction implements DumbAware {
     }
     else {
       if (!StringUtil.equals(textBefore, result.result)) {
-        runWriteCommandAction(project, () -> document.setText(result.result));
+        runWriteCommandAction(project, () -> applyFormattedText(document, result.result));
         caretVisualPositionKeeper.restoreOriginalLocation(true);
       }
       showHintLater(editor, buildNotificationMessage(document, textBefore), false, null);
@@ -230,54 +242,177 @@ public class ReformatWithPrettierAction extends AnAction implements DumbAware {
                                    @NotNull NodePackage nodePackage, 
                                    boolean reportUnsupported) {
     PrettierLanguageService service = PrettierLanguageService.getInstance(project);
-    Map<PsiFile, PrettierLanguageService.FormatResult> results = executeUnderProgress(project, indicator -> {
-      Map<PsiFile, PrettierLanguageService.FormatResult> reformattedResults = new HashMap<>();
+    List<String> errors = executeUnderProgress(project, indicator -> {
+      List<String> reformatErrors = new ArrayList<>();
+      Deque<PendingFile> pending = new ArrayDeque<>();
+      // at most one batch of formatted files is kept, it's applied as soon as it's full
+      List<FormattedDocument> batch = new ArrayList<>();
+      // the batches share a command group, so they are undone at once
+      Object groupId = new Object();
 
       while (fileIterator.hasNext()) {
         PsiFile currentFile = ReadAction.compute(() -> fileIterator.next());
         if (!isAcceptableFile(currentFile, nodePackage)) {
           if (reportUnsupported) {
-            reformattedResults.put(currentFile,
-                                   PrettierLanguageService.FormatResult.error(PrettierBundle.message("not.supported.file", currentFile.getName())));
+            reformatErrors.add(PrettierBundle.message("not.supported.file", currentFile.getName()));
           }
           continue;
         }
+        indicator.checkCanceled();
         indicator.setText("Processing " + currentFile.getName());
-        String filePath = ReadAction.compute(() -> currentFile.getVirtualFile().getPath());
-        String text = ReadAction.compute(() -> currentFile.getText());
-        PrettierLanguageService.FormatResult result = awaitFuture(service.format(filePath, text, nodePackage, null));
-        // timed out. show notification?
-        if (result == null) {
+        VirtualFile virtualFile = currentFile.getVirtualFile();
+        Document document = ReadAction.compute(() -> FileDocumentManager.getInstance().getDocument(virtualFile));
+        if (document == null) {
           continue;
         }
-        reformattedResults.put(currentFile, result);
-      }
-      return reformattedResults;
-    });
-
-    runWriteCommandAction(project, () -> {
-      for (Map.Entry<PsiFile, PrettierLanguageService.FormatResult> entry : results.entrySet()) {
-        VirtualFile virtualFile = entry.getKey().getVirtualFile();
-        if (virtualFile == null) {
-          continue;
-        }
-        Document document = FileDocumentManager.getInstance().getDocument(virtualFile);
-        if (document != null && StringUtil.isEmpty(entry.getValue().error)) {
-          CharSequence textBefore = document.getCharsSequence();
-          if (!StringUtil.equals(textBefore, entry.getValue().result)) {
-            document.setText(entry.getValue().result);
+        // the document text is sent rather than the PSI text, which may be behind it
+        Pair<String, Long> textAndStamp = ReadAction.compute(() -> Pair.create(document.getText(), document.getModificationStamp()));
+        Future<PrettierLanguageService.FormatResult> future = service.format(virtualFile.getPath(), textAndStamp.first, nodePackage, null);
+        pending.addLast(new PendingFile(document, virtualFile.getName(), textAndStamp.second, future));
+        if (pending.size() >= MAX_PENDING_REQUESTS) {
+          awaitFirstPending(pending, batch, reformatErrors);
+          if (batch.size() >= APPLY_BATCH_SIZE) {
+            applyFormattedDocuments(project, batch, groupId, reformatErrors, indicator);
           }
         }
       }
+      while (!pending.isEmpty()) {
+        indicator.checkCanceled();
+        awaitFirstPending(pending, batch, reformatErrors);
+        if (batch.size() >= APPLY_BATCH_SIZE) {
+          applyFormattedDocuments(project, batch, groupId, reformatErrors, indicator);
+        }
+      }
+      applyFormattedDocuments(project, batch, groupId, reformatErrors, indicator);
+      return reformatErrors;
     });
-    List<String> errors = ContainerUtil.mapNotNull(results.entrySet(), t -> t.getValue().error);
-    if (errors.size() > 0) {
+
+    if (errors != null && errors.size() > 0) {
       myErrorHandler.showErrorWithDetails(project, null,
                                           "Failed to reformat " + errors.size() + " files<br><a href=''>Details</a>",
                                           StringUtil.join(errors, "\n"));
     }
   }
 
+  private static void awaitFirstPending(@NotNull Deque<PendingFile> pending,
+                                        @NotNull List<FormattedDocument> batch,
+                                        @NotNull List<String> errors) {
+    PendingFile first = pending.removeFirst();
+    PrettierLanguageService.FormatResult result = awaitFuture(first.myFuture);
+    // timed out. show notification?
+    if (result == null) {
+      return;
+    }
+    if (!StringUtil.isEmpty(result.error)) {
+      errors.add(result.error);
+      return;
+    }
+    // the diff is computed here rather than under the write lock
+    FormattedDocument formattedDocument = ReadAction.compute(() -> {
+      if (first.myDocument.getModificationStamp() != first.myModificationStamp) {
+        errors.add(PrettierBundle.message("file.changed.while.reformatting", first.myFileName));
+        return null;
+      }
+      List<Replacement> replacements = computeReplacements(first.myDocument.getImmutableCharSequence(), result.result);
+      return replacements.isEmpty() ? null : new FormattedDocument(first, replacements);
+    });
+    if (formattedDocument != null) {
+      batch.add(formattedDocument);
+    }
+  }
+
+  /**
+   * Applies the batch in one write action and clears it. Documents changed since they were sent to Prettier are skipped.
+   */
+  private static void applyFormattedDocuments(@NotNull Project project,
+                                              @NotNull List<FormattedDocument> batch,
+                                              @NotNull Object groupId,
+                                              @NotNull List<String> errors,
+                                              @NotNull ProgressIndicator indicator) {
+    indicator.checkCanceled();
+    if (batch.isEmpty()) {
+      return;
+    }
+    ApplicationManager.getApplication().invokeAndWait(() -> CommandProcessor.getInstance().executeCommand(project, () -> {
+      ApplicationManager.getApplication().runWriteAction(() -> {
+        for (FormattedDocument formattedDocument : batch) {
+          if (formattedDocument.myDocument.getModificationStamp() != formattedDocument.myModificationStamp) {
+            errors.add(PrettierBundle.message("file.changed.while.reformatting", formattedDocument.myFileName));
+            continue;
+          }
+          applyReplacements(formattedDocument.myDocument, formattedDocument.myReplacements);
+        }
+      });
+    }, PrettierBundle.message("command.name"), groupId, UndoConfirmationPolicy.REQUEST_CONFIRMATION), indicator.getModalityState());
+    batch.clear();
+  }
+
+  /**
+   * Replaces only the changed lines of the document, so that markers, folding and caret positions in unchanged lines are kept
+   */
+  static void applyFormattedText(@NotNull Document document, @NotNull String formattedText) {
+    applyReplacements(document, computeReplacements(document.getImmutableCharSequence(), formattedText));
+  }
+
+  private static void applyReplacements(@NotNull Document document, @NotNull List<Replacement> replacements) {
+    for (Replacement replacement : replacements) {
+      document.replaceString(replacement.myStart, replacement.myEnd, replacement.myText);
+    }
+  }
+
+  /**
+   * @return replacements of the changed lines, from the end of the text, so that the offsets of the preceding ones stay valid
+   */
+  @NotNull
+  private static List<Replacement> computeReplacements(@NotNull CharSequence textBefore, @NotNull String formattedText) {
+    if (StringUtil.equals(textBefore, formattedText)) {
+      return Collections.emptyList();
+    }
+    List<String> linesBefore = splitLinesKeepSeparators(textBefore);
+    List<String> linesAfter = splitLinesKeepSeparators(formattedText);
+    Diff.Change change;
+    try {
+      change = Diff.buildChanges(ArrayUtil.toStringArray(linesBefore), ArrayUtil.toStringArray(linesAfter));
+    }
+    catch (FilesTooBigForDiffException e) {
+      return Collections.singletonList(new Replacement(0, textBefore.length(), formattedText));
+    }
+    int[] offsetsBefore = getLineStartOffsets(linesBefore);
+    int[] offsetsAfter = getLineStartOffsets(linesAfter);
+    List<Replacement> replacements = new ArrayList<>();
+    for (; change != null; change = change.link) {
+      replacements.add(new Replacement(offsetsBefore[change.line0], offsetsBefore[change.line0 + change.deleted],
+                                       formattedText.substring(offsetsAfter[change.line1], offsetsAfter[change.line1 + change.inserted])));
+    }
+    Collections.reverse(replacements);
+    return replacements;
+  }
+
+  @NotNull
+  private static List<String> splitLinesKeepSeparators(@NotNull CharSequence text) {
+    List<String> lines = new ArrayList<>();
+    int lineStart = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        lines.add(text.subSequence(lineStart, i + 1).toString());
+        lineStart = i + 1;
+      }
+    }
+    if (lineStart < text.length()) {
+      lines.add(text.subSequence(lineStart, text.length()).toString());
+    }
+    return lines;
+  }
+
+  @NotNull
+  private static int[] getLineStartOffsets(@NotNull List<String> lines) {
+    int[] offsets = new int[lines.size() + 1];
+    for (int i = 0; i < lines.size(); i++) {
+      offsets[i + 1] = offsets[i] + lines.get(i).length();
+    }
+    return offsets;
+  }
+
   @Nullable
   private static PrettierLanguageService.FormatResult awaitFuture(@Nullable Future<PrettierLanguageService.FormatResult> future) {
     return JSLanguageServiceUtil.awaitFuture(future, REQUEST_TIMEOUT);
@@ -367,6 +502,52 @@ public class ReformatWithPrettierAction extends AnAction implements DumbAware {
 
   
 
+  private static class Replacement {
+    private final int myStart;
+    private final int myEnd;
+    @NotNull private final String myText;
+
+    private Replacement(int start, int end, @NotNull String text) {
+      myStart = start;
+      myEnd = end;
+      myText = text;
+    }
+  }
+
+  private static class PendingFile {
+    @NotNull private final Document myDocument;
+    @NotNull private final String myFileName;
+    /**
+     * Stamp of the document text sent to Prettier
+     */
+    private final long myModificationStamp;
+    @Nullable private final Future<PrettierLanguageService.FormatResult> myFuture;
+
+    private PendingFile(@NotNull Document document,
+                        @NotNull String fileName,
+                        long modificationStamp,
+                        @Nullable Future<PrettierLanguageService.FormatResult> future) {
+      myDocument = document;
+      myFileName = fileName;
+      myModificationStamp = modificationStamp;
+      myFuture = future;
+    }
+  }
+
+  private static class FormattedDocument {
+    @NotNull private final Document myDocument;
+    @NotNull private final String myFileName;
+    private final long myModificationStamp;
+    @NotNull private final List<Replacement> myReplacements;
+
+    private FormattedDocument(@NotNull PendingFile pendingFile, @NotNull List<Replacement> replacements) {
+      myDocument = pendingFile.myDocument;
+      myFileName = pendingFile.myFileName;
+      myModificationStamp = pendingFile.myModificationStamp;
+      myReplacements = replacements;
+    }
+  }
+
   public interface ErrorHandler {
     ErrorHandler DEFAULT = new DefaultErrorHandler();
 
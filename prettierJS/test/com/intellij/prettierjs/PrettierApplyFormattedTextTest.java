@@ -0,0 +1,41 @@
+package com.intellij.prettierjs;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+public class PrettierApplyFormattedTextTest extends LightPlatformCodeInsightFixtureTestCase {
+
+  public void testUnchangedLinesAreKept() {
+    Document document = new DocumentImpl("const a = 1\nfunction  f ( ) {}\nconst b = 2\n");
+    RangeMarker first = document.createRangeMarker(0, "const a = 1".length());
+    int lastStart = document.getLineStartOffset(2);
+    RangeMarker last = document.createRangeMarker(lastStart, lastStart + "const b = 2".length());
+
+    apply(document, "const a = 1\nfunction f() {}\nconst b = 2\n");
+    assertEquals("const a = 1\nfunction f() {}\nconst b = 2\n", document.getText());
+    assertTrue(first.isValid());
+    assertTrue(last.isValid());
+    assertEquals("const b = 2", document.getText().substring(last.getStartOffset(), last.getEndOffset()));
+  }
+
+  public void testLineSeparatorsChanged() {
+    doTest("a\nb", "a");
+    doTest("a", "a\n");
+    doTest("a\n\n\nb\n", "a\n\nb\n");
+    doTest("", "a\n");
+    doTest("a\n", "");
+  }
+
+  private void doTest(String before, String after) {
+    Document document = new DocumentImpl(before);
+    apply(document, after);
+    assertEquals(after, document.getText());
+  }
+
+  private void apply(Document document, String formattedText) {
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> ReformatWithPrettierAction.applyFormattedText(document, formattedText));
+  }
+}
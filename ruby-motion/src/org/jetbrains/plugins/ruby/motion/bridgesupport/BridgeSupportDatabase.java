@@ -0,0 +1,425 @@
+/*
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.plugins.ruby.motion.bridgesupport;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.NullableFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Symbols of all BridgeSupport files of one SDK, converted once into a binary file in the system directory.
+ * <p>
+ * The file is a string table followed by one section per framework, and it is memory-mapped:
+ * a framework is only decoded when it is requested. Until the conversion is done, frameworks are read from XML.
+ */
+public class BridgeSupportDatabase {
+  private static final Logger LOG = Logger.getInstance(BridgeSupportDatabase.class);
+  private static final int MAGIC = 0x42534442;
+  private static final int FORMAT_VERSION = 1;
+
+  private static final byte CONSTANT = 0;
+  private static final byte STRING_CONSTANT = 1;
+  private static final byte ENUM = 2;
+
+  private static final byte VARIADIC = 1;
+  private static final byte CLASS_METHOD = 2;
+
+  @NotNull private final String myVersion;
+  private final boolean myOSX;
+  @NotNull private final Map<String, String> myPaths = new LinkedHashMap<>();
+  @NotNull private final File myFile;
+  private final long myStamp;
+
+  private Contents myContents;
+  private boolean myOpened;
+  private boolean myConversionStarted;
+
+  public BridgeSupportDatabase(@NotNull String version, boolean osx, @NotNull String sdkPath, @NotNull List<VirtualFile> files) {
+    myVersion = version;
+    myOSX = osx;
+    long stamp = FORMAT_VERSION;
+    for (VirtualFile file : files) {
+      myPaths.put(file.getNameWithoutExtension(), file.getPath());
+      stamp = 31 * stamp + file.getPath().hashCode();
+      stamp = 31 * stamp + file.getLength();
+      stamp = 31 * stamp + file.getTimeStamp();
+    }
+    myStamp = stamp;
+    myFile = new File(PathManager.getSystemPath(), "rubymotion/bridgesupport/" + version + "-" + Integer.toHexString(sdkPath.hashCode()) + ".db");
+  }
+
+  /**
+   * @return the framework decoded from the database or null if the database is not converted yet
+   */
+  @Nullable
+  public synchronized Framework readFramework(@NotNull String name) {
+    if (!myOpened) {
+      myOpened = true;
+      myContents = open(myFile, myStamp);
+    }
+    if (myContents == null) {
+      startConversion();
+      return null;
+    }
+    return myContents.readFramework(name, myVersion, myOSX);
+  }
+
+  private void startConversion() {
+    if (myConversionStarted) return;
+    myConversionStarted = true;
+
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        // frameworks which can't be read completely keep being read from XML
+        if (!write(myFile, myStamp, myPaths.keySet(), this::readXml)) return;
+      }
+      catch (IOException e) {
+        LOG.warn("Failed to write BridgeSupport database " + myFile, e);
+        return;
+      }
+      synchronized (this) {
+        myOpened = false;
+      }
+    });
+  }
+
+  @Nullable
+  private Framework readXml(@NotNull String name) {
+    final String path = myPaths.get(name);
+    final Framework framework = new Framework(name, myVersion, myOSX);
+    try {
+      if (BridgeSupportReader.readInto(framework, new FileInputStream(path))) {
+        return framework;
+      }
+      LOG.info("BridgeSupport database is not written, failed to read " + path);
+    }
+    catch (FileNotFoundException e) {
+      LOG.info("BridgeSupport file disappeared: " + path);
+    }
+    return null;
+  }
+
+  /**
+   * Frameworks are read one at a time and released once their section is written.
+   *
+   * @param reader returns null if the framework can't be read, nothing is written then
+   * @return whether the database is written
+   */
+  static boolean write(@NotNull File file, long stamp, @NotNull Collection<String> names,
+                       @NotNull NullableFunction<String, Framework> reader) throws IOException {
+    final StringTable strings = new StringTable();
+    final ByteArrayOutputStream sections = new ByteArrayOutputStream();
+    final DataOutputStream sectionsOut = new DataOutputStream(sections);
+    final List<Pair<Integer, Integer>> frameworkOffsets = new ArrayList<>(names.size());
+    for (String name : names) {
+      final Framework framework = reader.fun(name);
+      if (framework == null) return false;
+      frameworkOffsets.add(Pair.create(strings.indexOf(framework.getName()), sectionsOut.size()));
+      writeFramework(sectionsOut, strings, framework);
+    }
+    sectionsOut.flush();
+
+    final File tempFile = new File(file.getPath() + ".tmp");
+    FileUtil.createParentDirs(tempFile);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(stamp);
+      out.writeInt(frameworkOffsets.size());
+      for (Pair<Integer, Integer> offset : frameworkOffsets) {
+        out.writeInt(offset.first);
+        out.writeInt(offset.second);
+      }
+      strings.write(out);
+      sections.writeTo(out);
+    }
+    FileUtil.rename(tempFile, file);
+    return true;
+  }
+
+  @Nullable
+  static Contents open(@NotNull File file, long stamp) {
+    if (!file.isFile()) return null;
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getLong(8) != stamp) {
+        return null;
+      }
+      return new Contents(buffer);
+    }
+    catch (IOException | IndexOutOfBoundsException e) {
+      LOG.info("Cannot open BridgeSupport database " + file, e);
+      return null;
+    }
+  }
+
+  private static void writeFramework(DataOutputStream out, StringTable strings, Framework framework) throws IOException {
+    final Collection<Class> classes = framework.getClasses();
+    out.writeInt(classes.size());
+    for (Class clazz : classes) {
+      writeClass(out, strings, clazz);
+    }
+    final Collection<Class> protocols = framework.getProtocols();
+    out.writeInt(protocols.size());
+    for (Class protocol : protocols) {
+      writeClass(out, strings, protocol);
+    }
+    writeFunctions(out, strings, framework);
+
+    final Collection<Constant> constants = framework.getConstants();
+    out.writeInt(constants.size());
+    for (Constant constant : constants) {
+      if (constant instanceof StringConstant) {
+        out.writeByte(STRING_CONSTANT);
+        out.writeInt(strings.indexOf(constant.getName()));
+        out.writeInt(strings.indexOf(((StringConstant)constant).getValue()));
+        out.writeBoolean(((StringConstant)constant).isNsString());
+      }
+      else if (constant instanceof Enum) {
+        out.writeByte(ENUM);
+        out.writeInt(strings.indexOf(constant.getName()));
+        out.writeInt(strings.indexOf(((Enum)constant).getValue()));
+      }
+      else {
+        out.writeByte(CONSTANT);
+        out.writeInt(strings.indexOf(constant.getName()));
+        out.writeInt(strings.indexOf(constant.getDeclaredType()));
+      }
+    }
+
+    final Collection<Struct> structs = framework.getStructs();
+    out.writeInt(structs.size());
+    for (Struct struct : structs) {
+      out.writeInt(strings.indexOf(struct.getName()));
+      final Collection<String> fields = struct.getFields();
+      out.writeInt(fields.size());
+      for (String field : fields) {
+        out.writeInt(strings.indexOf(field));
+        out.writeInt(strings.indexOf(struct.getFieldType(field)));
+      }
+    }
+
+    final Map<String, String> aliases = framework.getFunctionAliases();
+    out.writeInt(aliases.size());
+    for (Map.Entry<String, String> alias : aliases.entrySet()) {
+      out.writeInt(strings.indexOf(alias.getKey()));
+      out.writeInt(strings.indexOf(alias.getValue()));
+    }
+  }
+
+  private static void writeClass(DataOutputStream out, StringTable strings, Class clazz) throws IOException {
+    out.writeInt(strings.indexOf(clazz.getName()));
+    writeFunctions(out, strings, clazz);
+    final Collection<Class> subClasses = clazz.getSubClasses();
+    out.writeInt(subClasses.size());
+    for (Class subClass : subClasses) {
+      writeClass(out, strings, subClass);
+    }
+  }
+
+  private static void writeFunctions(DataOutputStream out, StringTable strings, FunctionHolder holder) throws IOException {
+    final Collection<Function> functions = holder.getFunctions();
+    out.writeInt(functions.size());
+    for (Function function : functions) {
+      out.writeInt(strings.indexOf(function.getName()));
+      out.writeByte((function.isVariadic() ? VARIADIC : 0) | (function.isClassMethod() ? CLASS_METHOD : 0));
+      out.writeInt(strings.indexOf(function.getReturnValue()));
+      final List<Pair<String, String>> arguments = function.getArguments();
+      out.writeInt(arguments.size());
+      for (Pair<String, String> argument : arguments) {
+        out.writeInt(strings.indexOf(argument.first));
+        out.writeInt(strings.indexOf(argument.second));
+      }
+    }
+  }
+
+  private static class StringTable {
+    private final Map<String, Integer> myIndices = new HashMap<>();
+    private final List<byte[]> myBytes = new ArrayList<>();
+
+    int indexOf(@Nullable String s) {
+      if (s == null) return -1;
+      Integer index = myIndices.get(s);
+      if (index == null) {
+        index = myBytes.size();
+        myIndices.put(s, index);
+        myBytes.add(s.getBytes(StandardCharsets.UTF_8));
+      }
+      return index;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(myBytes.size());
+      int offset = 0;
+      for (byte[] bytes : myBytes) {
+        out.writeInt(offset);
+        offset += bytes.length;
+      }
+      out.writeInt(offset);
+      for (byte[] bytes : myBytes) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  static class Contents {
+    private final ByteBuffer myBuffer;
+    private final Map<String, Integer> myFrameworkOffsets = new HashMap<>();
+    private final int myStringOffsetsStart;
+    private final int myStringsStart;
+    private final int mySectionsStart;
+    private final String[] myStrings;
+
+    private Contents(ByteBuffer buffer) {
+      myBuffer = buffer;
+      final int frameworkCount = buffer.getInt(16);
+      final int frameworksStart = 20;
+      final int stringCountPosition = frameworksStart + frameworkCount * 8;
+      final int stringCount = buffer.getInt(stringCountPosition);
+      myStringOffsetsStart = stringCountPosition + 4;
+      myStringsStart = myStringOffsetsStart + (stringCount + 1) * 4;
+      mySectionsStart = myStringsStart + buffer.getInt(myStringsStart - 4);
+      myStrings = new String[stringCount];
+      for (int i = 0; i < frameworkCount; i++) {
+        final int position = frameworksStart + i * 8;
+        myFrameworkOffsets.put(getString(buffer.getInt(position)), buffer.getInt(position + 4));
+      }
+    }
+
+    Set<String> getFrameworkNames() {
+      return myFrameworkOffsets.keySet();
+    }
+
+    @Nullable
+    Framework readFramework(@NotNull String name, @NotNull String version, boolean osx) {
+      final Integer offset = myFrameworkOffsets.get(name);
+      if (offset == null) return null;
+
+      final Cursor cursor = new Cursor(mySectionsStart + offset);
+      final Framework framework = new Framework(name, version, osx);
+      for (int i = cursor.readInt(); i > 0; i--) {
+        framework.addClass(readClass(cursor));
+      }
+      for (int i = cursor.readInt(); i > 0; i--) {
+        framework.addProtocol(readClass(cursor));
+      }
+      readFunctions(cursor, framework);
+      for (int i = cursor.readInt(); i > 0; i--) {
+        final byte kind = cursor.readByte();
+        final String constantName = cursor.readString();
+        final String value = cursor.readString();
+        if (kind == STRING_CONSTANT) {
+          framework.addConstant(new StringConstant(constantName, value, cursor.readByte() != 0));
+        }
+        else if (kind == ENUM) {
+          framework.addConstant(new Enum(constantName, value));
+        }
+        else {
+          framework.addConstant(new Constant(constantName, value));
+        }
+      }
+      for (int i = cursor.readInt(); i > 0; i--) {
+        final Struct struct = new Struct(cursor.readString());
+        for (int j = cursor.readInt(); j > 0; j--) {
+          struct.addField(cursor.readString(), cursor.readString());
+        }
+        struct.seal();
+        framework.addStruct(struct);
+      }
+      for (int i = cursor.readInt(); i > 0; i--) {
+        framework.addFunctionAlias(cursor.readString(), cursor.readString());
+      }
+      framework.seal();
+      return framework;
+    }
+
+    private Class readClass(Cursor cursor) {
+      final Class clazz = new Class(cursor.readString());
+      readFunctions(cursor, clazz);
+      for (int i = cursor.readInt(); i > 0; i--) {
+        clazz.addSubClass(readClass(cursor));
+      }
+      clazz.seal();
+      return clazz;
+    }
+
+    private static void readFunctions(Cursor cursor, FunctionHolder holder) {
+      for (int i = cursor.readInt(); i > 0; i--) {
+        final String name = cursor.readString();
+        final byte flags = cursor.readByte();
+        final Function function = new Function(name, (flags & VARIADIC) != 0, (flags & CLASS_METHOD) != 0);
+        function.setReturnValue(cursor.readString());
+        for (int j = cursor.readInt(); j > 0; j--) {
+          function.addArgument(cursor.readString(), cursor.readString());
+        }
+        holder.addFunction(function);
+      }
+    }
+
+    @Nullable
+    private String getString(int index) {
+      if (index < 0) return null;
+      String result = myStrings[index];
+      if (result == null) {
+        final int start = myBuffer.getInt(myStringOffsetsStart + index * 4);
+        final int end = myBuffer.getInt(myStringOffsetsStart + (index + 1) * 4);
+        final byte[] bytes = new byte[end - start];
+        final ByteBuffer buffer = myBuffer.duplicate();
+        buffer.position(myStringsStart + start);
+        buffer.get(bytes);
+        result = new String(bytes, StandardCharsets.UTF_8);
+        myStrings[index] = result;
+      }
+      return result;
+    }
+
+    private class Cursor {
+      private int myPosition;
+
+      private Cursor(int position) {
+        myPosition = position;
+      }
+
+      int readInt() {
+        final int result = myBuffer.getInt(myPosition);
+        myPosition += 4;
+        return result;
+      }
+
+      byte readByte() {
+        return myBuffer.get(myPosition++);
+      }
+
+      String readString() {
+        return getString(readInt());
+      }
+    }
+  }
+}
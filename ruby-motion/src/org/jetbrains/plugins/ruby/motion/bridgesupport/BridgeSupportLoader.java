@@ -89,15 +89,21 @@ public class BridgeSupportLoader {
 
   private void ensureFrameworkLoaded(final VirtualFile bridgeSupport) {
     String version = bridgeSupport.getParent().getName();
-    List<FrameworkInfo> frameworkInfos = ContainerUtil.newArrayList();
+    boolean isOSX = "osx".equals(bridgeSupport.getParent().getParent().getName());
+    List<VirtualFile> files = ContainerUtil.newArrayList();
     for (VirtualFile file : bridgeSupport.getChildren()) {
       final String name = file.getNameWithoutExtension();
       if (RubyMotionUtil.getInstance().isIgnoredFrameworkName(name)) continue;
       if ("bridgesupport".equals(file.getExtension()) && file.getLength() > 0) {
-        boolean isOSX = "osx".equals(file.getParent().getParent().getParent().getName());
-        frameworkInfos.add(new FrameworkInfo(name, version, isOSX, file.getPath()));
+        files.add(file);
       }
     }
+
+    BridgeSupportDatabase database = new BridgeSupportDatabase(version, isOSX, bridgeSupport.getPath(), files);
+    List<FrameworkInfo> frameworkInfos = ContainerUtil.newArrayList();
+    for (VirtualFile file : files) {
+      frameworkInfos.add(new FrameworkInfo(file.getNameWithoutExtension(), version, isOSX, file.getPath(), database));
+    }
     myFrameworks.put(version, frameworkInfos);
   }
 
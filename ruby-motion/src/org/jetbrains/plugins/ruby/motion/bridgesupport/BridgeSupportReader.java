@@ -40,18 +40,30 @@ public class BridgeSupportReader {
 
   public static Framework read(final String name, final String version, final InputStream text, final boolean osx) {
     final Framework framework = new Framework(name, version, osx);
+    readInto(framework, text);
+    return framework;
+  }
+
+  /**
+   * Reads the symbols into the framework and seals it.
+   *
+   * @return false if the file can't be parsed, the framework then contains the symbols read before the error
+   */
+  static boolean readInto(final Framework framework, final InputStream text) {
+    boolean result = true;
     try {
       final Element root = new SAXBuilder().build(text).getRootElement();
       readFramework(root, framework);
       framework.mergeClasses();
     } catch (Exception e) {
-      LOG.error("Can't load framework", e, name, version, osx ? "osx" : "");
+      LOG.error("Can't load framework", e, framework.getName(), framework.getVersion(), framework.isOSX() ? "osx" : "");
+      result = false;
     }
     finally {
       StreamUtil.closeStream(text);
     }
     framework.seal();
-    return framework;
+    return result;
   }
 
   private static void readFramework(Element root, Framework framework) {
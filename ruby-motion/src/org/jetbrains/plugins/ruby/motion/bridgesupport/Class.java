@@ -45,6 +45,10 @@ public class Class extends FunctionHolder {
     return mySubClasses.get(name);
   }
 
+  void addSubClass(Class clazz) {
+    mySubClasses.put(clazz.getName(), clazz);
+  }
+
   public static Map<String, Class> mergeClasses(Collection<Class> classes) {
     final Map<String, Class> result = new HashMap<>();
     for (Class clazz : classes) {
@@ -34,13 +34,16 @@ public class FrameworkInfo {
   @NotNull private final String myName;
   @NotNull private final String myVersion;
   private final boolean myOSX;
+  @Nullable private final BridgeSupportDatabase myDatabase;
 
   private SoftReference<Framework> myFramework = null;
   private SoftReference<Set<String>> myIdSelectorNames = null;
   private SoftReference<Set<String>> mySelectorNames = null;
 
-  public FrameworkInfo(@NotNull String name, @NotNull String version, boolean isOSX, @NotNull String bridgeSupportFilePath) {
+  public FrameworkInfo(@NotNull String name, @NotNull String version, boolean isOSX, @NotNull String bridgeSupportFilePath,
+                       @Nullable BridgeSupportDatabase database) {
     myBridgeSupportPath = bridgeSupportFilePath;
+    myDatabase = database;
     myName = name;
     myOSX = isOSX;
     myVersion = version;
@@ -70,14 +73,15 @@ public class FrameworkInfo {
   }
 
   private Trinity<Framework, Set<String>, Set<String>> reloadFramework() {
-    VirtualFile file = LocalFileSystem.getInstance().findFileByPath(myBridgeSupportPath);
-    if (file == null) return Trinity.create(null, null, null);
-
     Set<String> idSelectorNames = null;
     Set<String> selectorNames = null;
-    Framework framework = null;
+    Framework framework = myDatabase != null ? myDatabase.readFramework(myName) : null;
     try {
-      framework = BridgeSupportReader.read(myName, myVersion, file.getInputStream(), myOSX);
+      if (framework == null) {
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(myBridgeSupportPath);
+        if (file == null) return Trinity.create(null, null, null);
+        framework = BridgeSupportReader.read(myName, myVersion, file.getInputStream(), myOSX);
+      }
       idSelectorNames = ContainerUtil.newHashSet();
       selectorNames = ContainerUtil.newHashSet();
       for (Class clazz : framework.getClasses()) {
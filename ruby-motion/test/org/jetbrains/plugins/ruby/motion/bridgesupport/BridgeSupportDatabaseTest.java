@@ -0,0 +1,132 @@
+/*
+ * Copyright 2000-2017 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.plugins.ruby.motion.bridgesupport;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.UsefulTestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BridgeSupportDatabaseTest extends UsefulTestCase {
+  private static final List<String> FRAMEWORKS = Arrays.asList("QuartzCore", "MapKit", "AudioToolbox", "CoreGraphics", "SystemConfiguration",
+                                                               "OpenGLES", "android");
+  private static final long STAMP = 42;
+
+  private BridgeSupportDatabase.Contents myContents;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    final Map<String, Framework> frameworks = new LinkedHashMap<>();
+    for (String name : FRAMEWORKS) {
+      frameworks.put(name, readXml(name));
+    }
+    final File file = new File(FileUtil.createTempDirectory("bridgesupport", null), "test.db");
+    assertFalse(BridgeSupportDatabase.write(file, STAMP, FRAMEWORKS, name -> name.equals("android") ? null : frameworks.get(name)));
+    assertFalse(file.exists());
+    assertTrue(BridgeSupportDatabase.write(file, STAMP, FRAMEWORKS, frameworks::get));
+    assertNull(BridgeSupportDatabase.open(file, STAMP + 1));
+    myContents = BridgeSupportDatabase.open(file, STAMP);
+    assertNotNull(myContents);
+  }
+
+  public void testFrameworkNames() {
+    assertSameElements(myContents.getFrameworkNames(), FRAMEWORKS);
+    assertNull(myContents.readFramework("UIKit", "666", false));
+  }
+
+  public void testSameAsXml() throws Exception {
+    for (String name : FRAMEWORKS) {
+      final Framework expected = readXml(name);
+      final Framework actual = myContents.readFramework(name, "666", false);
+      assertNotNull(name, actual);
+      assertEquals(dump(expected), dump(actual));
+    }
+  }
+
+  public void testAndroidClassContents() {
+    final Framework framework = myContents.readFramework("android", "666", false);
+    assertNotNull(framework);
+    final Class activity = framework.getClass("Android::App::Activity");
+    assertNotNull(activity);
+    final Function function = activity.getFunction("managedQuery");
+    assertNotNull(function);
+    assertEquals("Android::Database::Cursor", function.getReturnValue());
+    assertEquals("Array<Java::Lang::String>", function.getArguments().get(1).second);
+  }
+
+  private static String dump(Framework framework) {
+    final StringBuilder builder = new StringBuilder();
+    for (Class clazz : framework.getClasses()) {
+      dump(builder, "class ", clazz);
+    }
+    for (Class protocol : framework.getProtocols()) {
+      dump(builder, "protocol ", protocol);
+    }
+    dump(builder, "", framework);
+    for (Constant constant : framework.getConstants()) {
+      builder.append("constant ").append(constant.getClass().getSimpleName()).append(" ").append(constant.getName())
+        .append(" ").append(constant.getDeclaredType());
+      if (constant instanceof StringConstant) {
+        builder.append(" ").append(((StringConstant)constant).getValue()).append(" ").append(((StringConstant)constant).isNsString());
+      }
+      if (constant instanceof Enum) {
+        builder.append(" ").append(((Enum)constant).getValue());
+      }
+      builder.append("\n");
+    }
+    for (Struct struct : framework.getStructs()) {
+      builder.append("struct ").append(struct.getName());
+      for (String field : struct.getFields()) {
+        builder.append(" ").append(field).append(":").append(struct.getFieldType(field));
+      }
+      builder.append("\n");
+    }
+    builder.append(framework.getFunctionAliases()).append("\n");
+    final String[] lines = builder.toString().split("\n");
+    Arrays.sort(lines);
+    return String.join("\n", lines);
+  }
+
+  private static void dump(StringBuilder builder, String prefix, Class clazz) {
+    builder.append(prefix).append(clazz.getName()).append("\n");
+    dump(builder, prefix + clazz.getName() + ".", (FunctionHolder)clazz);
+    for (Class subClass : clazz.getSubClasses()) {
+      dump(builder, prefix + clazz.getName() + "::", subClass);
+    }
+  }
+
+  private static void dump(StringBuilder builder, String prefix, FunctionHolder holder) {
+    for (Function function : holder.getFunctions()) {
+      builder.append(prefix).append(function.getName()).append("(").append(function.getArguments()).append(") ")
+        .append(function.getReturnValue()).append(" ").append(function.isVariadic()).append(" ").append(function.isClassMethod())
+        .append("\n");
+    }
+  }
+
+  private static Framework readXml(final String name) throws Exception {
+    final String path = PathManager.getHomePath() + "/contrib/ruby-motion/test/org/jetbrains/plugins/ruby/motion/bridgesupport/data/" + name + ".bridgesupport";
+    final File file = new File(path);
+    assertTrue(path, file.exists());
+    return BridgeSupportReader.read(name, "666", new FileInputStream(file), false);
+  }
+}
@@ -161,12 +161,7 @@ public abstract class BasicLightHighlightingTestCase extends LightCodeInsightFix
    * @param strutsXmlPaths Paths to files.
    */
   protected void createStrutsFileSet(@NonNls final String... strutsXmlPaths) {
-    final StrutsFacet strutsFacet = StrutsFacet.getInstance(myModule);
-    assertNotNull(strutsFacet);
-    final StrutsFacetConfiguration facetConfiguration = strutsFacet.getConfiguration();
-
-    final StrutsFileSet fileSet = new StrutsFileSet("test", "test", facetConfiguration);
-    myStrutsFileSets.add(fileSet);
+    final List<VirtualFile> files = new ArrayList<>(strutsXmlPaths.length);
     for (final String fileName : strutsXmlPaths) {
       final VirtualFile file;
       final String path;
@@ -180,6 +175,24 @@ public abstract class BasicLightHighlightingTestCase extends LightCodeInsightFix
       }
 
       assertNotNull("could not find file: '" + path + "'", file);
+      files.add(file);
+    }
+    createStrutsFileSet(files);
+  }
+
+  /**
+   * Adds a file set with already existing files.
+   *
+   * @param files Files to add.
+   */
+  protected void createStrutsFileSet(@NotNull final List<VirtualFile> files) {
+    final StrutsFacet strutsFacet = StrutsFacet.getInstance(myModule);
+    assertNotNull(strutsFacet);
+    final StrutsFacetConfiguration facetConfiguration = strutsFacet.getConfiguration();
+
+    final StrutsFileSet fileSet = new StrutsFileSet("test", "test", facetConfiguration);
+    myStrutsFileSets.add(fileSet);
+    for (final VirtualFile file : files) {
       fileSet.addFile(file);
     }
     final Set<StrutsFileSet> strutsFileSetSet = facetConfiguration.getFileSets();
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 The authors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.struts2.model;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.struts2.BasicLightHighlightingTestCase;
+import com.intellij.struts2.dom.struts.action.Action;
+import com.intellij.struts2.dom.struts.model.StrutsManager;
+import com.intellij.struts2.dom.struts.model.StrutsModel;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Action lookups in a synthetic configuration with 2,500 actions, as done by references in JSP/FreeMarker files.
+ */
+public class StrutsActionLookupPerformanceTest extends BasicLightHighlightingTestCase {
+
+  private static final int FILES = 10;
+  private static final int NAMESPACES_PER_FILE = 5;
+  private static final int ACTIONS_PER_NAMESPACE = 50;
+  private static final int ACTION_CLASSES = 50;
+
+  @NotNull
+  @Override
+  protected String getTestDataLocation() {
+    return "model/actionIndex";
+  }
+
+  public void testFindActionsByName() {
+    final StrutsModel model = createLargeModel();
+
+    final List<Action> all = model.findActionsByName("action7", null);
+    assertEquals(FILES * NAMESPACES_PER_FILE, all.size());
+    assertEquals(1, model.findActionsByName("action7", "/ns3_2").size());
+    assertEquals("wildcard mapping", 1, model.findActionsByName("wild9_edit", "/ns3_2").size());
+    assertEquals("bang notation", 1, model.findActionsByName("action7!input", "/ns3_2").size());
+    assertEmpty(model.findActionsByName("unknown", "/ns3_2"));
+
+    PlatformTestUtil.startPerformanceTest("Struts action lookup by name", 1_000, () -> {
+      for (int file = 0; file < FILES; file++) {
+        for (int ns = 0; ns < NAMESPACES_PER_FILE; ns++) {
+          final String namespace = getNamespace(file, ns);
+          for (int i = 0; i < ACTIONS_PER_NAMESPACE; i++) {
+            model.findActionsByName(getActionName(i), namespace);
+            model.findActionsByName("wild" + i + "_view", namespace);
+          }
+        }
+      }
+    }).attempts(3).assertTiming();
+  }
+
+  public void testFindActionsByClass() {
+    final StrutsModel model = createLargeModel();
+    final PsiClass actionClass = myFixture.findClass(getActionClassName(3));
+
+    assertTrue(model.isActionClass(actionClass));
+    assertEquals(FILES * NAMESPACES_PER_FILE * ACTIONS_PER_NAMESPACE / ACTION_CLASSES,
+                 model.findActionsByClass(actionClass).size());
+
+    final List<PsiClass> classes = new ArrayList<>(ACTION_CLASSES);
+    for (int i = 0; i < ACTION_CLASSES; i++) {
+      classes.add(myFixture.findClass(getActionClassName(i)));
+    }
+    PlatformTestUtil.startPerformanceTest("Struts action lookup by class", 500, () -> {
+      for (int i = 0; i < 20; i++) {
+        for (PsiClass psiClass : classes) {
+          model.isActionClass(psiClass);
+          model.findActionsByClass(psiClass);
+        }
+      }
+    }).attempts(3).assertTiming();
+  }
+
+  private StrutsModel createLargeModel() {
+    for (int i = 0; i < ACTION_CLASSES; i++) {
+      myFixture.addClass("package com.acme; public class Action" + i + " { public String execute() { return null; } }");
+    }
+
+    final List<VirtualFile> files = new ArrayList<>(FILES);
+    for (int file = 0; file < FILES; file++) {
+      final StringBuilder text = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+                                                   "<!DOCTYPE struts PUBLIC\n" +
+                                                   "  \"-//Apache Software Foundation//DTD Struts Configuration 2.0//EN\"\n" +
+                                                   "  \"http://struts.apache.org/dtds/struts-2.0.dtd\">\n" +
+                                                   "<struts>\n");
+      for (int ns = 0; ns < NAMESPACES_PER_FILE; ns++) {
+        text.append("<package name=\"p").append(file).append('_').append(ns)
+          .append("\" namespace=\"").append(getNamespace(file, ns)).append("\">\n");
+        for (int i = 0; i < ACTIONS_PER_NAMESPACE; i++) {
+          // every 10th action is a wildcard mapping
+          final String name = i % 10 == 9 ? "wild" + i + "_*" : getActionName(i);
+          text.append("  <action name=\"").append(name)
+            .append("\" class=\"").append(getActionClassName(i % ACTION_CLASSES)).append("\"/>\n");
+        }
+        text.append("</package>\n");
+      }
+      text.append("</struts>\n");
+      files.add(myFixture.addFileToProject("struts-" + file + ".xml", text.toString()).getVirtualFile());
+    }
+    createStrutsFileSet(files);
+
+    final StrutsModel model = StrutsManager.getInstance(getProject()).getCombinedModel(myModule);
+    assertNotNull(model);
+    return model;
+  }
+
+  private static String getNamespace(final int file, final int ns) {
+    return "/ns" + file + "_" + ns;
+  }
+
+  private static String getActionName(final int i) {
+    return "action" + i;
+  }
+
+  private static String getActionClassName(final int i) {
+    return "com.acme.Action" + i;
+  }
+}
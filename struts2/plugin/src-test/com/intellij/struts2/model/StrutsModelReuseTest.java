@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 The authors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.struts2.model;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.struts2.BasicLightHighlightingTestCase;
+import com.intellij.struts2.dom.struts.model.StrutsManager;
+import com.intellij.struts2.dom.struts.model.StrutsManagerImpl;
+import com.intellij.struts2.dom.struts.model.StrutsModel;
+import com.intellij.struts2.dom.struts.model.StrutsModelStatistics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Models of file sets must only be rebuilt if one of their files has changed.
+ */
+public class StrutsModelReuseTest extends BasicLightHighlightingTestCase {
+
+  @NotNull
+  @Override
+  protected String getTestDataLocation() {
+    return "model/reuse";
+  }
+
+  public void testModelReusedAfterUnrelatedChange() {
+    final VirtualFile strutsXml = myFixture.addFileToProject("struts.xml", createStrutsXml("action1")).getVirtualFile();
+    createStrutsFileSet(Collections.singletonList(strutsXml));
+
+    final StrutsModel model = getSingleModel();
+    assertSize(1, model.findActionsByName("action1", "/"));
+    final StrutsModel combinedModel = StrutsManager.getInstance(getProject()).getCombinedModel(myModule);
+    assertNotNull(combinedModel);
+
+    final StrutsModelStatistics before = getStatistics();
+    myFixture.addClass("package com.acme; public class Unrelated {}");
+    assertSame(model, getSingleModel());
+    assertSame(combinedModel, StrutsManager.getInstance(getProject()).getCombinedModel(myModule));
+
+    final StrutsModelStatistics afterUnrelatedChange = getStatistics();
+    assertEquals(before.getModelsBuilt(), afterUnrelatedChange.getModelsBuilt());
+    assertTrue(afterUnrelatedChange.getModelsReused() > before.getModelsReused());
+    assertEquals(before.getCombinedModelsBuilt(), afterUnrelatedChange.getCombinedModelsBuilt());
+    assertTrue(afterUnrelatedChange.getCombinedModelsReused() > before.getCombinedModelsReused());
+
+    myFixture.openFileInEditor(strutsXml);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      final Document document = myFixture.getEditor().getDocument();
+      document.setText(createStrutsXml("action2"));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+
+    final StrutsModel changedModel = getSingleModel();
+    assertNotSame(model, changedModel);
+    assertEmpty(changedModel.findActionsByName("action1", "/"));
+    assertSize(1, changedModel.findActionsByName("action2", "/"));
+    assertEquals(afterUnrelatedChange.getModelsBuilt() + 1, getStatistics().getModelsBuilt());
+
+    final StrutsModel changedCombinedModel = StrutsManager.getInstance(getProject()).getCombinedModel(myModule);
+    assertNotNull(changedCombinedModel);
+    assertNotSame(combinedModel, changedCombinedModel);
+    assertSize(1, changedCombinedModel.findActionsByName("action2", "/"));
+  }
+
+  private StrutsModelStatistics getStatistics() {
+    return ((StrutsManagerImpl)StrutsManager.getInstance(getProject())).getModelStatistics();
+  }
+
+  private StrutsModel getSingleModel() {
+    final List<StrutsModel> models = StrutsManager.getInstance(getProject()).getAllModels(myModule);
+    assertSize(1, models);
+    return models.get(0);
+  }
+
+  private static String createStrutsXml(final String actionName) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+           "<!DOCTYPE struts PUBLIC\n" +
+           "  \"-//Apache Software Foundation//DTD Struts Configuration 2.0//EN\"\n" +
+           "  \"http://struts.apache.org/dtds/struts-2.0.dtd\">\n" +
+           "<struts>\n" +
+           "  <package name=\"p\" namespace=\"/\">\n" +
+           "    <action name=\"" + actionName + "\"/>\n" +
+           "  </package>\n" +
+           "</struts>\n";
+  }
+}
@@ -15,7 +15,10 @@
 
 package com.intellij.struts2.model.constant;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.struts2.model.constant.contributor.StrutsCoreConstantContributor;
 import org.jetbrains.annotations.NotNull;
 
@@ -45,4 +48,35 @@ public class StrutsConstantManagerWithStrutsPropertiesTest extends StrutsConstan
     final VirtualFile strutsXmlFile = myFixture.findFileInTempDir(STRUTS_XML);
     performResolveTest(strutsXmlFile, StrutsCoreConstantContributor.ACTION_EXTENSION, Arrays.asList("foo"));
   }
+
+  /**
+   * A {@code struts.properties} without the key must not hide the one defining it.
+   */
+  public void testStrutsPropertiesWithoutKey() {
+    myFixture.copyFileToProject("other/struts.properties");
+    myFixture.copyFileToProject("struts.properties");
+    createStrutsFileSet(STRUTS_XML);
+
+    final VirtualFile strutsXmlFile = myFixture.findFileInTempDir(STRUTS_XML);
+    performResolveTest(strutsXmlFile, StrutsCoreConstantContributor.ACTION_EXTENSION, Arrays.asList("foo"));
+  }
+
+  /**
+   * Cached constant table must be dropped after {@code struts.properties} is modified.
+   */
+  public void testStrutsPropertiesModified() {
+    final VirtualFile strutsProperties = myFixture.copyFileToProject("struts.properties");
+    createStrutsFileSet(STRUTS_XML);
+
+    final VirtualFile strutsXmlFile = myFixture.findFileInTempDir(STRUTS_XML);
+    performResolveTest(strutsXmlFile, StrutsCoreConstantContributor.ACTION_EXTENSION, Arrays.asList("foo"));
+
+    myFixture.openFileInEditor(strutsProperties);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      final Document document = myFixture.getEditor().getDocument();
+      document.setText(document.getText().replace("foo", "changed"));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+    performResolveTest(strutsXmlFile, StrutsCoreConstantContributor.ACTION_EXTENSION, Arrays.asList("changed"));
+  }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 The authors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.struts2.dom.struts.model;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.struts2.dom.struts.action.Action;
+import com.intellij.struts2.dom.struts.strutspackage.StrutsPackage;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.MultiMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Lookup structure for actions of one {@link StrutsModel}: exact action names are hashed per namespace,
+ * wildcard mappings are compiled once and pre-filtered by their literal prefix.
+ * <p/>
+ * Matching is the same as in {@link Action#matchesPath(String)}, results keep the declaration order.
+ */
+class StrutsActionIndex {
+
+  private static final String REGEX_META_CHARS = "*.?+[](){}\\^$|";
+
+  private final Map<String, NamespaceActions> myNamespaces = new HashMap<>();
+  private final NamespaceActions myAllActions = new NamespaceActions();
+
+  StrutsActionIndex(@NotNull final List<StrutsPackage> strutsPackages) {
+    int ordinal = 0;
+    for (final StrutsPackage strutsPackage : strutsPackages) {
+      final NamespaceActions namespaceActions =
+        myNamespaces.computeIfAbsent(strutsPackage.searchNamespace(), namespace -> new NamespaceActions());
+      for (final Action action : strutsPackage.getActions()) {
+        final String name = action.getName().getRawText();
+        if (name == null) {
+          continue;
+        }
+        namespaceActions.add(name, action, ordinal);
+        myAllActions.add(name, action, ordinal);
+        ordinal++;
+      }
+    }
+  }
+
+  @NotNull
+  List<Action> findActionsByName(@NotNull final String path, @Nullable final String namespace) {
+    final NamespaceActions actions = namespace == null ? myAllActions : myNamespaces.get(namespace);
+    if (actions == null) {
+      return Collections.emptyList();
+    }
+
+    // strip everything behind "!"
+    final int bangIdx = path.indexOf('!');
+    return actions.find(bangIdx == -1 ? path : path.substring(0, bangIdx));
+  }
+
+  private static class IndexedAction {
+    private final Action myAction;
+    private final int myOrdinal;
+
+    private IndexedAction(final Action action, final int ordinal) {
+      myAction = action;
+      myOrdinal = ordinal;
+    }
+  }
+
+  private static class WildcardAction extends IndexedAction {
+    private final String myLiteralPrefix;
+    private final Pattern myPattern;
+
+    private WildcardAction(final Action action, final int ordinal, final String literalPrefix, final Pattern pattern) {
+      super(action, ordinal);
+      myLiteralPrefix = literalPrefix;
+      myPattern = pattern;
+    }
+
+    private boolean matches(final String path) {
+      return path.startsWith(myLiteralPrefix) && myPattern.matcher(path).matches();
+    }
+  }
+
+  private static class NamespaceActions {
+    private final MultiMap<String, IndexedAction> myExact = MultiMap.createSmart();
+    private final List<WildcardAction> myWildcards = new ArrayList<>();
+
+    private void add(final String name, final Action action, final int ordinal) {
+      if (name.indexOf('*') == -1) {
+        myExact.putValue(name, new IndexedAction(action, ordinal));
+        return;
+      }
+
+      final Pattern pattern;
+      try {
+        pattern = Pattern.compile(StringUtil.replace(name, "*", "[^/]*"));
+      }
+      catch (PatternSyntaxException e) {
+        return;
+      }
+      myWildcards.add(new WildcardAction(action, ordinal, getLiteralPrefix(name), pattern));
+    }
+
+    private List<Action> find(final String path) {
+      final List<IndexedAction> found = new SmartList<>(myExact.get(path));
+      for (final WildcardAction wildcard : myWildcards) {
+        if (wildcard.matches(path)) {
+          found.add(wildcard);
+        }
+      }
+      if (found.isEmpty()) {
+        return Collections.emptyList();
+      }
+
+      if (found.size() > 1) {
+        found.sort(Comparator.comparingInt(indexedAction -> indexedAction.myOrdinal));
+      }
+      final List<Action> result = new ArrayList<>(found.size());
+      for (final IndexedAction indexedAction : found) {
+        result.add(indexedAction.myAction);
+      }
+      return result;
+    }
+
+    private static String getLiteralPrefix(final String name) {
+      for (int i = 0; i < name.length(); i++) {
+        if (REGEX_META_CHARS.indexOf(name.charAt(i)) != -1) {
+          return name.substring(0, i);
+        }
+      }
+      return name;
+    }
+  }
+}
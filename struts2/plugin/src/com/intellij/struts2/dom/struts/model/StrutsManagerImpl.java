@@ -26,6 +26,7 @@ import com.intellij.struts2.facet.ui.StrutsFileSet;
 import com.intellij.util.xml.DomManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 import java.util.Collections;
 import java.util.List;
@@ -67,6 +68,12 @@ public class StrutsManagerImpl extends StrutsManager {
     return getCombinedModel(ModuleUtilCore.findModuleForPsiElement(psiElement));
   }
 
+  @TestOnly
+  @NotNull
+  public StrutsModelStatistics getModelStatistics() {
+    return myStrutsModelFactory.getStatistics();
+  }
+
   @NotNull
   public Set<StrutsFileSet> getAllConfigFileSets(@NotNull final Module module) {
     if (module.isDisposed()) {
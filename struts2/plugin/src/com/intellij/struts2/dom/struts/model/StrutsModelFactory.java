@@ -15,6 +15,7 @@
 
 package com.intellij.struts2.dom.struts.model;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -25,20 +26,41 @@ import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.struts2.dom.struts.StrutsRoot;
 import com.intellij.struts2.facet.ui.StrutsFileSet;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xml.DomFileElement;
 import com.intellij.util.xml.model.impl.DomModelFactory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Yann C&eacute;bron
  */
 class StrutsModelFactory extends DomModelFactory<StrutsRoot, StrutsModel, PsiElement> {
 
+  private static final Logger LOG = Logger.getInstance(StrutsModelFactory.class);
+
+  /**
+   * Models of file sets per module, reused as long as the set consists of the same unmodified files.
+   */
+  private final Map<Module, Map<StrutsFileSet, FileSetModel>> myFileSetModels = ContainerUtil.createConcurrentWeakMap();
+
+  /**
+   * Combined model per module, reused as long as all models of the module are reused.
+   */
+  private final Map<Module, CombinedModel> myCombinedModels = ContainerUtil.createConcurrentWeakMap();
+
+  private final AtomicInteger myModelsBuilt = new AtomicInteger();
+  private final AtomicInteger myModelsReused = new AtomicInteger();
+  private final AtomicInteger myCombinedModelsBuilt = new AtomicInteger();
+  private final AtomicInteger myCombinedModelsReused = new AtomicInteger();
+  private final AtomicLong myBuildTimeNanos = new AtomicLong();
+
   protected StrutsModelFactory(final Project project) {
     super(StrutsRoot.class, project, "struts2");
   }
@@ -48,6 +70,16 @@ class StrutsModelFactory extends DomModelFactory<StrutsRoot, StrutsModel, PsiEle
     final StrutsManager strutsManager = StrutsManager.getInstance(module.getProject());
     final Set<StrutsFileSet> fileSets = strutsManager.getAllConfigFileSets(module);
 
+    Map<StrutsFileSet, FileSetModel> fileSetModels = myFileSetModels.get(module);
+    if (fileSetModels == null) {
+      fileSetModels = ConcurrencyUtil.cacheOrGet(myFileSetModels, module, ContainerUtil.newConcurrentMap());
+    }
+    fileSetModels.keySet().retainAll(fileSets);
+
+    final long start = System.nanoTime();
+    int built = 0;
+    int reused = 0;
+
     final List<StrutsModel> models = new ArrayList<>(fileSets.size());
     for (final StrutsFileSet set : fileSets) {
       if (set.isRemoved()) {
@@ -70,19 +102,129 @@ class StrutsModelFactory extends DomModelFactory<StrutsRoot, StrutsModel, PsiEle
           }
         }
       }
-      if (!files.isEmpty()) {
-        final DomFileElement<StrutsRoot> element = createMergedModelRoot(files);
-        final StrutsModel model;
-        if (element != null) {
-          model = new StrutsModelImpl(element, files);
-          models.add(model);
-        }
+      if (files.isEmpty()) {
+        fileSetModels.remove(set);
+        continue;
+      }
+
+      final FileSetModel cached = fileSetModels.get(set);
+      if (cached != null && cached.isUpToDate(files)) {
+        models.add(cached.myModel);
+        reused++;
+        continue;
       }
+
+      final DomFileElement<StrutsRoot> element = createMergedModelRoot(files);
+      if (element != null) {
+        final StrutsModel model = new StrutsModelImpl(element, files);
+        fileSetModels.put(set, new FileSetModel(files, model));
+        models.add(model);
+        built++;
+      }
+    }
+
+    final long time = System.nanoTime() - start;
+    myModelsBuilt.addAndGet(built);
+    myModelsReused.addAndGet(reused);
+    myBuildTimeNanos.addAndGet(time);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Struts models of " + module.getName() + ": " + built + " built, " + reused + " reused in " +
+                TimeUnit.NANOSECONDS.toMillis(time) + " ms (total: " + getStatistics() + ")");
     }
 
     return models;
   }
 
+  @Nullable
+  @Override
+  public StrutsModel getCombinedModel(@Nullable final Module module) {
+    if (module == null) {
+      return null;
+    }
+
+    final List<StrutsModel> models = getAllModels(module);
+    final CombinedModel cached = myCombinedModels.get(module);
+    if (cached != null && cached.isUpToDate(models)) {
+      myCombinedModelsReused.incrementAndGet();
+      return cached.myModel;
+    }
+
+    final StrutsModel combinedModel = super.getCombinedModel(module);
+    if (combinedModel == null) {
+      myCombinedModels.remove(module);
+    }
+    else {
+      myCombinedModels.put(module, new CombinedModel(models, combinedModel));
+      myCombinedModelsBuilt.incrementAndGet();
+    }
+    return combinedModel;
+  }
+
+  /**
+   * @return Total number of built/reused models and time spent building file set models.
+   */
+  @NotNull
+  StrutsModelStatistics getStatistics() {
+    return new StrutsModelStatistics(myModelsBuilt.get(), myModelsReused.get(),
+                                     myCombinedModelsBuilt.get(), myCombinedModelsReused.get(),
+                                     TimeUnit.NANOSECONDS.toMillis(myBuildTimeNanos.get()));
+  }
+
+  private static class CombinedModel {
+    private final List<StrutsModel> myModels;
+    private final StrutsModel myModel;
+
+    private CombinedModel(final List<StrutsModel> models, final StrutsModel model) {
+      myModels = new ArrayList<>(models);
+      myModel = model;
+    }
+
+    private boolean isUpToDate(final List<StrutsModel> models) {
+      if (models.size() != myModels.size()) {
+        return false;
+      }
+
+      for (int i = 0; i < models.size(); i++) {
+        if (models.get(i) != myModels.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static class FileSetModel {
+    private final List<XmlFile> myFiles;
+    private final long[] myModificationStamps;
+    private final StrutsModel myModel;
+
+    private FileSetModel(final Set<XmlFile> files, final StrutsModel model) {
+      myFiles = new ArrayList<>(files);
+      myModificationStamps = new long[myFiles.size()];
+      for (int i = 0; i < myFiles.size(); i++) {
+        myModificationStamps[i] = myFiles.get(i).getModificationStamp();
+      }
+      myModel = model;
+    }
+
+    private boolean isUpToDate(final Set<XmlFile> files) {
+      if (files.size() != myFiles.size()) {
+        return false;
+      }
+
+      int i = 0;
+      for (final XmlFile file : files) {
+        if (file != myFiles.get(i) ||
+            !file.isValid() ||
+            file.getModificationStamp() != myModificationStamps[i]) {
+          return false;
+        }
+        i++;
+      }
+      return true;
+    }
+  }
+
   protected StrutsModel createCombinedModel(@NotNull final Set<XmlFile> xmlFiles,
                                             @NotNull final DomFileElement<StrutsRoot> strutsRootDomFileElement,
                                             final StrutsModel strutsModel,
@@ -15,9 +15,13 @@
 
 package com.intellij.struts2.dom.struts.model;
 
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Comparing;
-import com.intellij.openapi.util.Condition;
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.struts2.dom.struts.StrutsRoot;
 import com.intellij.struts2.dom.struts.action.Action;
@@ -25,17 +29,20 @@ import com.intellij.struts2.dom.struts.strutspackage.Interceptor;
 import com.intellij.struts2.dom.struts.strutspackage.InterceptorOrStackBase;
 import com.intellij.struts2.dom.struts.strutspackage.InterceptorStack;
 import com.intellij.struts2.dom.struts.strutspackage.StrutsPackage;
+import com.intellij.util.ArrayUtil;
 import com.intellij.util.Function;
 import com.intellij.util.NotNullFunction;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.MultiMap;
 import com.intellij.util.xml.DomFileElement;
 import com.intellij.util.xml.model.impl.DomModelImpl;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -52,9 +59,42 @@ class StrutsModelImpl extends DomModelImpl<StrutsRoot> implements StrutsModel {
   private static final Function<StrutsRoot, Collection<? extends StrutsPackage>> STRUTS_PACKAGE_COLLECTOR =
     strutsRoot -> strutsRoot.getPackages();
 
+  private final CachedValue<StrutsActionIndex> myActionIndex;
+  private final CachedValue<MultiMap<PsiClass, Action>> myActionsByClass;
+
   StrutsModelImpl(@NotNull final DomFileElement<StrutsRoot> strutsRootDomFileElement,
                   @NotNull final Set<XmlFile> xmlFiles) {
     super(strutsRootDomFileElement, xmlFiles);
+
+    final CachedValuesManager cachedValuesManager = CachedValuesManager.getManager(strutsRootDomFileElement.getFile().getProject());
+    myActionIndex = cachedValuesManager.createCachedValue(
+      () -> CachedValueProvider.Result.create(new StrutsActionIndex(getStrutsPackages()), getIndexDependencies(false)), false);
+    myActionsByClass = cachedValuesManager.createCachedValue(
+      () -> CachedValueProvider.Result.create(computeActionsByClass(), getIndexDependencies(true)), false);
+  }
+
+  /**
+   * Parent packages might be located in libraries, action classes depend on Java code.
+   */
+  private Object[] getIndexDependencies(final boolean javaStructure) {
+    final List<Object> dependencies = new ArrayList<>(getConfigFiles());
+    dependencies.add(ProjectRootManager.getInstance(getMergedModel().getFile().getProject()));
+    if (javaStructure) {
+      dependencies.add(PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+    }
+    return ArrayUtil.toObjectArray(dependencies);
+  }
+
+  private MultiMap<PsiClass, Action> computeActionsByClass() {
+    final MultiMap<PsiClass, Action> actionsByClass = MultiMap.createSmart();
+    processActions(action -> {
+      final PsiClass actionClass = action.searchActionClass();
+      if (actionClass != null) {
+        actionsByClass.putValue(actionClass, action);
+      }
+      return true;
+    });
+    return actionsByClass;
   }
 
   @NotNull
@@ -82,36 +122,17 @@ class StrutsModelImpl extends DomModelImpl<StrutsRoot> implements StrutsModel {
   @NotNull
   public List<Action> findActionsByName(@NotNull @NonNls final String name,
                                         @Nullable @NonNls final String namespace) {
-    return ContainerUtil.findAll(getActionsForNamespace(namespace), action -> action.matchesPath(name));
+    return myActionIndex.getValue().findActionsByName(name, namespace);
   }
 
   @NotNull
   public List<Action> findActionsByClass(@NotNull final PsiClass clazz) {
-    return findActionsByClassInner(clazz, false);
-  }
-
-  private List<Action> findActionsByClassInner(final PsiClass clazz,
-                                               final boolean skipOnFirst) {
-    final List<Action> actionResultList = new SmartList<>();
-
-    for (final StrutsPackage strutsPackage : getStrutsPackages()) {
-      for (final Action action : strutsPackage.getActions()) {
-        final PsiClass actionClassValue = action.searchActionClass();
-        if (Comparing.equal(clazz, actionClassValue)) {
-          actionResultList.add(action);
-          if (skipOnFirst) {
-            return actionResultList;
-          }
-        }
-      }
-    }
-
-    return actionResultList;
+    return new SmartList<>(myActionsByClass.getValue().get(clazz));
   }
 
   @Override
   public boolean isActionClass(@NotNull final PsiClass clazz) {
-    return !findActionsByClassInner(clazz, true).isEmpty();
+    return myActionsByClass.getValue().containsKey(clazz);
   }
 
   public List<Action> getActionsForNamespace(@Nullable @NonNls final String namespace) {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 The authors
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.struts2.dom.struts.model;
+
+/**
+ * Number of Struts models built and reused since project opening.
+ */
+public final class StrutsModelStatistics {
+
+  private final int myModelsBuilt;
+  private final int myModelsReused;
+  private final int myCombinedModelsBuilt;
+  private final int myCombinedModelsReused;
+  private final long myBuildTimeMillis;
+
+  StrutsModelStatistics(final int modelsBuilt,
+                        final int modelsReused,
+                        final int combinedModelsBuilt,
+                        final int combinedModelsReused,
+                        final long buildTimeMillis) {
+    myModelsBuilt = modelsBuilt;
+    myModelsReused = modelsReused;
+    myCombinedModelsBuilt = combinedModelsBuilt;
+    myCombinedModelsReused = combinedModelsReused;
+    myBuildTimeMillis = buildTimeMillis;
+  }
+
+  public int getModelsBuilt() {
+    return myModelsBuilt;
+  }
+
+  public int getModelsReused() {
+    return myModelsReused;
+  }
+
+  public int getCombinedModelsBuilt() {
+    return myCombinedModelsBuilt;
+  }
+
+  public int getCombinedModelsReused() {
+    return myCombinedModelsReused;
+  }
+
+  public long getBuildTimeMillis() {
+    return myBuildTimeMillis;
+  }
+
+  @Override
+  public String toString() {
+    return myModelsBuilt + " built, " + myModelsReused + " reused, " +
+           myCombinedModelsBuilt + " combined built, " + myCombinedModelsReused + " combined reused, " +
+           myBuildTimeMillis + " ms";
+  }
+}
@@ -22,19 +22,28 @@ import com.intellij.javaee.web.WebUtil;
 import com.intellij.javaee.web.facet.WebFacet;
 import com.intellij.lang.properties.IProperty;
 import com.intellij.lang.properties.PropertiesImplUtil;
+import com.intellij.lang.properties.psi.PropertiesFile;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.struts2.StrutsConstants;
 import com.intellij.struts2.dom.struts.StrutsRoot;
@@ -42,6 +51,7 @@ import com.intellij.struts2.dom.struts.constant.Constant;
 import com.intellij.struts2.dom.struts.model.StrutsManager;
 import com.intellij.struts2.dom.struts.model.StrutsModel;
 import com.intellij.util.CommonProcessors;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.FilteringProcessor;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xml.ConvertContext;
@@ -52,9 +62,8 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Yann C&eacute;bron
@@ -64,9 +73,24 @@ public class StrutsConstantManagerImpl extends StrutsConstantManager {
   @NonNls
   private static final String STRUTS_DEFAULT_PROPERTIES = "/org/apache/struts2/default.properties";
 
+  @NonNls
+  private static final String STRUTS_DEFAULT_PROPERTIES_NAME = "default.properties";
+
   @NonNls
   private static final String STRUTS_PROPERTIES_FILENAME = "struts.properties";
 
+  private static final Key<CachedValue<Map<String, StrutsConstant>>> KEY_CONSTANTS_BY_NAME =
+    Key.create("STRUTS2_CONSTANTS_BY_NAME");
+
+  /**
+   * Caches merged constant tables per module and model.
+   */
+  private static final Key<CachedValue<ConcurrentMap<StrutsModel, Map<String, String>>>> KEY_MERGED_CONSTANTS =
+    Key.create("STRUTS2_MERGED_CONSTANTS");
+
+  private static final Key<CachedValue<Map<String, String>>> KEY_WEB_XML_CONSTANTS =
+    Key.create("STRUTS2_WEB_XML_CONSTANTS");
+
   private static final Condition<Filter> WEB_XML_STRUTS_FILTER_CONDITION = filter -> {
     final PsiClass filterClass = filter.getFilterClass().getValue();
     return InheritanceUtil.isInheritor(filterClass, StrutsConstants.STRUTS_2_0_FILTER_CLASS) ||
@@ -88,6 +112,19 @@ public class StrutsConstantManagerImpl extends StrutsConstantManager {
         });
   }
 
+  /**
+   * Caches constant definitions of all available contributors per module, first definition of a name wins.
+   */
+  private Map<String, StrutsConstant> getConstantsByName(@NotNull final Module module) {
+    return CachedValuesManager.getManager(module.getProject()).getCachedValue(module, KEY_CONSTANTS_BY_NAME, () -> {
+      final Map<String, StrutsConstant> constantsByName = new HashMap<>();
+      for (final StrutsConstant strutsConstant : getConstants(module)) {
+        constantsByName.putIfAbsent(strutsConstant.getName(), strutsConstant);
+      }
+      return CachedValueProvider.Result.create(constantsByName, ProjectRootManager.getInstance(module.getProject()));
+    }, false);
+  }
+
   @Override
   @Nullable
   public <T> Converter<T> findConverter(@NotNull final PsiElement context,
@@ -97,7 +134,7 @@ public class StrutsConstantManagerImpl extends StrutsConstantManager {
       return null;
     }
 
-    final StrutsConstant strutsConstant = ContainerUtil.find(getConstants(module), strutsConstant1 -> Comparing.equal(strutsConstant1.getName(), strutsConstantKey.getKey()));
+    final StrutsConstant strutsConstant = getConstantsByName(module).get(strutsConstantKey.getKey());
 
     //noinspection unchecked
     return strutsConstant != null ? strutsConstant.getConverter() : null;
@@ -145,74 +182,148 @@ public class StrutsConstantManagerImpl extends StrutsConstantManager {
   private static String getStringValue(@NotNull final PsiFile context,
                                        @NotNull final StrutsModel strutsModel,
                                        @NotNull @NonNls final String name) {
-    final Project project = context.getProject();
     final Module module = ModuleUtilCore.findModuleForPsiElement(context);
     assert module != null : context;
 
-    // collect all properties with matching key
-    final List<IProperty> properties = PropertiesImplUtil.findPropertiesByKey(project, name);
+    // 1.-3. default.properties, struts.xml files, struts.properties
+    String value = getMergedConstants(module, strutsModel).get(name);
 
-    String value = null;
+    // 4. web.xml
+    final WebFacet webFacet = WebUtil.getWebFacet(context);
+    if (webFacet == null) {
+      return value; // should not happen in real projects..
+    }
 
-    // 1. default.properties from struts2-core.jar
-    final IProperty strutsDefaultProperty = ContainerUtil.find(properties, property -> {
-      final VirtualFile virtualFile = property.getPropertiesFile().getVirtualFile();
-      return virtualFile != null &&
-             virtualFile.getFileSystem() instanceof JarFileSystem &&
-             StringUtil.endsWith(virtualFile.getPath(), STRUTS_DEFAULT_PROPERTIES) &&
-             ModuleUtilCore.moduleContainsFile(module, virtualFile, true);
-    });
-    if (strutsDefaultProperty != null) {
-      value = strutsDefaultProperty.getValue();
+    final Map<String, String> webXmlConstants = getWebXmlConstants(webFacet);
+    if (webXmlConstants.containsKey(name)) {
+      value = webXmlConstants.get(name);
     }
 
-    // 2. <constant> from StrutsModel
-    final Condition<Constant> constantNameCondition = constant -> Comparing.equal(constant.getName().getStringValue(), name);
+    return value;
+  }
+
+  /**
+   * Returns all constant values for the given model, merged in the order Struts 2 reads them.
+   * The table is shared by all callers until any configuration or properties file changes.
+   *
+   * @param module      Module.
+   * @param strutsModel StrutsModel.
+   * @return Constant name to (possibly {@code null}) value.
+   */
+  @NotNull
+  private static Map<String, String> getMergedConstants(@NotNull final Module module,
+                                                        @NotNull final StrutsModel strutsModel) {
+    final ConcurrentMap<StrutsModel, Map<String, String>> tables =
+      CachedValuesManager.getManager(module.getProject()).getCachedValue(module, KEY_MERGED_CONSTANTS, () -> {
+        final ConcurrentMap<StrutsModel, Map<String, String>> map = ContainerUtil.newConcurrentMap();
+        return CachedValueProvider.Result.create(map,
+                                                 PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT,
+                                                 ProjectRootManager.getInstance(module.getProject()));
+      }, false);
+
+    final Map<String, String> constants = tables.get(strutsModel);
+    if (constants != null) {
+      return constants;
+    }
+    return ConcurrencyUtil.cacheOrGet(tables, strutsModel, computeMergedConstants(module, strutsModel));
+  }
+
+  @NotNull
+  private static Map<String, String> computeMergedConstants(@NotNull final Module module,
+                                                            @NotNull final StrutsModel strutsModel) {
+    final Project project = module.getProject();
+    final Map<String, String> constants = new HashMap<>();
 
+    // 1. default.properties from struts2-core.jar
+    putProperties(constants, findPropertiesFiles(project, STRUTS_DEFAULT_PROPERTIES_NAME, virtualFile ->
+      virtualFile.getFileSystem() instanceof JarFileSystem &&
+      StringUtil.endsWith(virtualFile.getPath(), STRUTS_DEFAULT_PROPERTIES) &&
+      ModuleUtilCore.moduleContainsFile(module, virtualFile, true)));
+
+    // 2. <constant> from StrutsModel
     final List<DomFileElement<StrutsRoot>> domFileElements = new ArrayList<>();
     collectStrutsXmls(domFileElements, strutsModel, "struts-default.xml", true);
     collectStrutsXmls(domFileElements, strutsModel, "struts-plugin.xml", true);
     collectStrutsXmls(domFileElements, strutsModel, "struts.xml", false);
     for (final DomFileElement<StrutsRoot> domFileElement : domFileElements) {
-      final Constant constant = ContainerUtil.find(domFileElement.getRootElement().getConstants(),
-                                                   constantNameCondition);
-      final String strutsXmlValue = constant != null ? constant.getValue().getStringValue() : null;
-      if (strutsXmlValue != null) {
-        value = strutsXmlValue;
+      final Set<String> processedNames = new HashSet<>();
+      for (final Constant constant : domFileElement.getRootElement().getConstants()) {
+        final String name = constant.getName().getStringValue();
+        if (name == null || !processedNames.add(name)) {
+          continue;
+        }
+
+        final String strutsXmlValue = constant.getValue().getStringValue();
+        if (strutsXmlValue != null) {
+          constants.put(name, strutsXmlValue);
+        }
       }
     }
 
     // 3. struts.properties in current module
-    final IProperty strutsProperty = ContainerUtil.find(properties, property -> {
-      final VirtualFile virtualFile = property.getPropertiesFile().getVirtualFile();
-      return virtualFile != null &&
-             Comparing.equal(virtualFile.getName(), STRUTS_PROPERTIES_FILENAME) &&
-             ModuleUtilCore.moduleContainsFile(module, virtualFile, false);
-    });
-    if (strutsProperty != null) {
-      value = strutsProperty.getValue();
-    }
+    putProperties(constants, findPropertiesFiles(project, STRUTS_PROPERTIES_FILENAME, virtualFile ->
+      ModuleUtilCore.moduleContainsFile(module, virtualFile, false)));
 
-    // 4. web.xml
-    final WebFacet webFacet = WebUtil.getWebFacet(context);
-    if (webFacet == null) {
-      return value; // should not happen in real projects..
-    }
-    final WebApp webApp = webFacet.getRoot();
-    if (webApp == null) {
-      return value; // no web.xml
+    return constants;
+  }
+
+  @NotNull
+  private static List<PropertiesFile> findPropertiesFiles(@NotNull final Project project,
+                                                          @NotNull @NonNls final String fileName,
+                                                          @NotNull final Condition<VirtualFile> condition) {
+    final List<PropertiesFile> propertiesFiles = new ArrayList<>();
+    for (final PsiFile psiFile : FilenameIndex.getFilesByName(project, fileName, GlobalSearchScope.allScope(project))) {
+      final VirtualFile virtualFile = psiFile.getVirtualFile();
+      final PropertiesFile propertiesFile = PropertiesImplUtil.getPropertiesFile(psiFile);
+      if (propertiesFile != null && virtualFile != null && condition.value(virtualFile)) {
+        propertiesFiles.add(propertiesFile);
+      }
     }
+    return propertiesFiles;
+  }
 
-    final Filter filter = ContainerUtil.find(webApp.getFilters(), WEB_XML_STRUTS_FILTER_CONDITION);
-    if (filter != null) {
-      final ParamValue initParam = ContainerUtil.find(filter.getInitParams(),
-                                                      (Condition<ParamValue>)paramValue -> Comparing.equal(paramValue.getParamName().getStringValue(), name));
-      if (initParam != null) {
-        value = initParam.getParamValue().getStringValue();
+  /**
+   * Overrides the values of earlier sources with the given files, the first file defining a key wins.
+   */
+  private static void putProperties(@NotNull final Map<String, String> constants,
+                                    @NotNull final List<PropertiesFile> propertiesFiles) {
+    final Set<String> processedKeys = new HashSet<>();
+    for (final PropertiesFile propertiesFile : propertiesFiles) {
+      for (final IProperty property : propertiesFile.getProperties()) {
+        final String key = property.getKey();
+        if (key != null && processedKeys.add(key)) {
+          constants.put(key, property.getValue());
+        }
       }
     }
+  }
 
-    return value;
+  /**
+   * Returns init-params of Struts filter in web.xml.
+   *
+   * @param webFacet Web facet.
+   * @return Parameter name to value.
+   */
+  @NotNull
+  private static Map<String, String> getWebXmlConstants(@NotNull final WebFacet webFacet) {
+    return CachedValuesManager.getManager(webFacet.getModule().getProject()).getCachedValue(webFacet, KEY_WEB_XML_CONSTANTS, () -> {
+      final Map<String, String> initParams = new HashMap<>();
+
+      final WebApp webApp = webFacet.getRoot();
+      final Filter filter = webApp == null ? null : ContainerUtil.find(webApp.getFilters(), WEB_XML_STRUTS_FILTER_CONDITION);
+      if (filter != null) {
+        for (final ParamValue paramValue : filter.getInitParams()) {
+          final String name = paramValue.getParamName().getStringValue();
+          if (name != null && !initParams.containsKey(name)) {
+            initParams.put(name, paramValue.getParamValue().getStringValue());
+          }
+        }
+      }
+
+      return CachedValueProvider.Result.create(initParams,
+                                               PsiModificationTracker.OUT_OF_CODE_BLOCK_MODIFICATION_COUNT,
+                                               PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+    }, false);
   }
 
   /**
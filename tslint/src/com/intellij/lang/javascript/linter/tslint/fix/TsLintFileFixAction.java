@@ -21,10 +21,12 @@ import com.intellij.lang.javascript.linter.JSLinterConfiguration;
 import com.intellij.lang.javascript.linter.JSLinterFixAction;
 import com.intellij.lang.javascript.linter.JSLinterGuesser;
 import com.intellij.lang.javascript.linter.tslint.TsLintBundle;
+import com.intellij.lang.javascript.linter.tslint.TslintUtil;
 import com.intellij.lang.javascript.linter.tslint.config.TsLintConfiguration;
 import com.intellij.lang.javascript.linter.tslint.config.TsLintState;
 import com.intellij.lang.javascript.linter.tslint.execution.TsLinterError;
 import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageService;
+import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageServicePool;
 import com.intellij.lang.javascript.service.JSLanguageServiceUtil;
 import com.intellij.lang.javascript.service.ResultWithError;
 import com.intellij.openapi.actionSystem.AnActionEvent;
@@ -34,10 +36,13 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.Future;
 
@@ -69,22 +74,46 @@ public class TsLintFileFixAction extends JSLinterFixAction {
     return new Task.Backgroundable(project, TsLintBundle.message("tslint.action.background.title"), true) {
       @Override
       public void run(@NotNull ProgressIndicator indicator) {
-        TsLintLanguageService service = TsLintLanguageService.getService(project);
+        TsLintLanguageServicePool pool = TsLintLanguageServicePool.getInstance(project);
         TsLintState state = TsLintConfiguration.getInstance(project).getExtendedState().getState();
+        // keeps every process of the pool busy, while not queueing all files at once
+        final int maxPending = pool.getSize() * 2;
+        final Deque<Pair<TsLintLanguageService, Future<List<TsLinterError>>>> pending = new ArrayDeque<>();
+        final long start = System.nanoTime();
+        int processed = 0;
         for (VirtualFile file : filesToProcess) {
           indicator.setText("Processing file " + file.getCanonicalPath());
-          final Future<List<TsLinterError>> future = ReadAction.compute(() -> service.highlightAndFix(file, state));
-          final ResultWithError<List<TsLinterError>> result = JSLanguageServiceUtil.awaitLanguageService(future, service);
-          if (result.getError() != null) {
-            JSLinterGuesser.NOTIFICATION_GROUP.createNotification("TSLint: " + result.getError(), MessageType.ERROR).notify(project);
+          final TsLintLanguageService service = pool.getService(file);
+          pending.addLast(Pair.create(service, ReadAction.compute(() -> service.highlightAndFix(file, state))));
+          if (pending.size() >= maxPending) {
+            awaitResult(project, pending.removeFirst());
+            reportProgress(indicator, ++processed, filesToProcess.size(), start);
           }
         }
+        while (!pending.isEmpty()) {
+          awaitResult(project, pending.removeFirst());
+          reportProgress(indicator, ++processed, filesToProcess.size(), start);
+        }
+        TslintUtil.LOG.info(String.format("TSLint fix: %d files fixed by %d processes, %.1f files/s", processed, pool.getSize(),
+                                          TsLintLanguageServicePool.getFilesPerSecond(processed, System.nanoTime() - start)));
 
         completeCallback.run();
       }
     };
   }
 
+  private static void awaitResult(@NotNull Project project, @NotNull Pair<TsLintLanguageService, Future<List<TsLinterError>>> pending) {
+    final ResultWithError<List<TsLinterError>> result = JSLanguageServiceUtil.awaitLanguageService(pending.second, pending.first);
+    if (result.getError() != null) {
+      JSLinterGuesser.NOTIFICATION_GROUP.createNotification("TSLint: " + result.getError(), MessageType.ERROR).notify(project);
+    }
+  }
+
+  private static void reportProgress(@NotNull ProgressIndicator indicator, int processed, int total, long start) {
+    indicator.setFraction((double)processed / total);
+    indicator.setText2(String.format("%.1f files/s", TsLintLanguageServicePool.getFilesPerSecond(processed, System.nanoTime() - start)));
+  }
+
   protected Collection<FileType> getFileTypes() {
     return TypeScriptUtil.TYPESCRIPT_FILE_TYPES;
   }
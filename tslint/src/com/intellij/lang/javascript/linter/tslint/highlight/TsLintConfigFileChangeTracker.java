@@ -6,6 +6,7 @@ import com.intellij.lang.javascript.linter.JSLinterConfigFileUtil;
 import com.intellij.lang.javascript.linter.tslint.TslintUtil;
 import com.intellij.lang.javascript.linter.tslint.config.TsLintConfiguration;
 import com.intellij.lang.javascript.linter.tslint.config.TsLintState;
+import com.intellij.lang.javascript.linter.tslint.service.TsLintResultCache;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -26,6 +27,15 @@ public final class TsLintConfigFileChangeTracker extends JSLinterConfigChangeTra
 
   @Override
   protected boolean isAnalyzerRestartNeeded(@NotNull Project project, @NotNull VirtualFile changedFile) {
+    final boolean restartNeeded = isConfigFile(project, changedFile);
+    if (restartNeeded) {
+      // a changed config may be extended by other configs
+      TsLintResultCache.getInstance(project).clear();
+    }
+    return restartNeeded;
+  }
+
+  private static boolean isConfigFile(@NotNull Project project, @NotNull VirtualFile changedFile) {
     final TsLintConfiguration configuration = TsLintConfiguration.getInstance(project);
     final TsLintState state = configuration.getExtendedState().getState();
     if (state.isCustomConfigFileUsed() && state.getCustomConfigFilePath() != null) {
@@ -16,6 +16,7 @@ import com.intellij.lang.javascript.linter.tslint.execution.TsLinterError;
 import com.intellij.lang.javascript.linter.tslint.fix.TsLintErrorFixAction;
 import com.intellij.lang.javascript.linter.tslint.fix.TsLintFileFixAction;
 import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageService;
+import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageServicePool;
 import com.intellij.lang.javascript.linter.tslint.ui.TsLintConfigurable;
 import com.intellij.lang.javascript.psi.JSFile;
 import com.intellij.lang.javascript.psi.util.JSUtils;
@@ -115,10 +116,15 @@ public final class TsLintExternalAnnotator extends JSLinterWithInspectionExterna
       JSLinterUtil.validateInterpreterAndPackage(collectedInfo.getProject(), TsLintDescriptor.PACKAGE_NAME, collectedInfo.getState());
     if (interpreterAndPackageError != null) return JSLinterAnnotationResult.create(collectedInfo, interpreterAndPackageError, config);
 
-    TsLintLanguageService service = TsLintLanguageService.getService(collectedInfo.getProject());
+    final TsLintLanguageServicePool pool = myOnTheFly ? null : TsLintLanguageServicePool.getInstance(collectedInfo.getProject());
+    TsLintLanguageService service = pool == null ? TsLintLanguageService.getService(collectedInfo.getProject())
+                                                 : pool.getService(collectedInfo.getVirtualFile());
 
     final Future<List<TsLinterError>> future = service.highlight(collectedInfo.getVirtualFile(), config, collectedInfo.getFileContent());
     final ResultWithError<List<TsLinterError>> result = JSLanguageServiceUtil.awaitLanguageService(future, service);
+    if (pool != null) {
+      pool.fileProcessed();
+    }
     if (result.getError() != null) {
       return JSLinterAnnotationResult.create(collectedInfo, new JSLinterFileLevelAnnotation(result.getError()), config);
     }
@@ -4,7 +4,7 @@ import com.intellij.codeInsight.daemon.HighlightDisplayKey;
 import com.intellij.lang.javascript.JSBundle;
 import com.intellij.lang.javascript.linter.JSLinterInspection;
 import com.intellij.lang.javascript.linter.tslint.TsLintBundle;
-import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageService;
+import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageServicePool;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.Nls;
@@ -28,7 +28,7 @@ public final class TsLintInspection extends JSLinterInspection {
 
   @Override
   protected void ensureServiceStopped(@NotNull Project project) {
-    TsLintLanguageService.getService(project).terminateStartedProcess(false);
+    TsLintLanguageServicePool.getInstance(project).terminateAll();
   }
 
   @Nls
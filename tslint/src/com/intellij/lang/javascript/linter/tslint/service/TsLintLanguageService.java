@@ -6,6 +6,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.intellij.idea.RareLogger;
 import com.intellij.lang.javascript.linter.tslint.TslintUtil;
+import com.intellij.lang.javascript.linter.tslint.config.TsLintConfiguration;
 import com.intellij.lang.javascript.linter.tslint.config.TsLintState;
 import com.intellij.lang.javascript.linter.tslint.execution.TsLintOutputJsonParser;
 import com.intellij.lang.javascript.linter.tslint.execution.TsLinterError;
@@ -54,13 +55,28 @@ public final class TsLintLanguageService extends JSLanguageServiceBase {
     final MyParameters parameters = MyParameters.checkParameters(virtualFile, config);
     if (parameters.getErrors() != null) return new FixedFuture<>(parameters.getErrors());
 
+    final String text = StringUtil.notNullize(content);
+    final TsLintResultCache cache = TsLintResultCache.getInstance(myProject);
+    final TsLintState state = TsLintConfiguration.getInstance(myProject).getExtendedState().getState();
+    final TsLintResultCache.Key key = config == null ? null : cache.createKey(parameters.getPath(), config, text, state);
+    if (key != null) {
+      final List<TsLinterError> cached = cache.get(key);
+      if (cached != null) return new FixedFuture<>(cached);
+    }
+
     final JSLanguageServiceQueue process = getProcess();
     if (process == null) {
       return new FixedFuture<>(Collections.singletonList(new TsLinterError(JSLanguageServiceUtil.getLanguageServiceCreationError(this))));
     }
-    TsLintGetErrorsCommand command = new TsLintGetErrorsCommand(parameters.getPath(), parameters.getConfigPath(),
-                                                                StringUtil.notNullize(content));
-    return process.execute(command, createHighlightProcessor(parameters.getPath()));
+
+    TsLintGetErrorsCommand command = new TsLintGetErrorsCommand(parameters.getPath(), parameters.getConfigPath(), text);
+    return process.execute(command, (object, answer) -> {
+      final List<TsLinterError> errors = parseResults(answer, parameters.getPath());
+      if (key != null && errors != null) {
+        cache.put(key, errors);
+      }
+      return errors;
+    });
   }
 
   public final Future<List<TsLinterError>> highlightAndFix(@Nullable VirtualFile virtualFile, @NotNull TsLintState state) {
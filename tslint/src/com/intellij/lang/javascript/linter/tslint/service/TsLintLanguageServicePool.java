@@ -0,0 +1,110 @@
+package com.intellij.lang.javascript.linter.tslint.service;
+
+import com.intellij.lang.javascript.linter.tslint.TslintUtil;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Language services used for batch inspection and for fixing many files at once:
+ * files are sharded by path across a few TSLint processes, the first one is the project's {@link TsLintLanguageService}.
+ */
+public final class TsLintLanguageServicePool implements Disposable {
+  private static final int MAX_POOL_SIZE = 4;
+  private static final int REPORT_EVERY_FILES = 1000;
+  private static final long BATCH_IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  @NotNull private final Project myProject;
+  private final TsLintLanguageService[] myServices;
+
+  private final Object myStatisticsLock = new Object();
+  private long myBatchStart;
+  private long myLastProcessed;
+  private int myBatchFiles;
+
+  @NotNull
+  public static TsLintLanguageServicePool getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, TsLintLanguageServicePool.class);
+  }
+
+  public TsLintLanguageServicePool(@NotNull Project project) {
+    myProject = project;
+    myServices = new TsLintLanguageService[Math.max(1, Math.min(MAX_POOL_SIZE, Runtime.getRuntime().availableProcessors() / 2))];
+  }
+
+  public int getSize() {
+    return myServices.length;
+  }
+
+  @NotNull
+  public TsLintLanguageService getService(@NotNull VirtualFile file) {
+    return getService((file.getPath().hashCode() & Integer.MAX_VALUE) % myServices.length);
+  }
+
+  @NotNull
+  private TsLintLanguageService getService(int shard) {
+    if (shard == 0) return TsLintLanguageService.getService(myProject);
+    synchronized (myServices) {
+      TsLintLanguageService service = myServices[shard];
+      if (service == null) {
+        service = new TsLintLanguageService(myProject);
+        Disposer.register(this, service);
+        myServices[shard] = service;
+      }
+      return service;
+    }
+  }
+
+  /**
+   * Stops the processes of all services of the pool, e.g. when the settings change; they are restarted on demand.
+   */
+  public void terminateAll() {
+    TsLintLanguageService.getService(myProject).terminateStartedProcess(false);
+    final List<TsLintLanguageService> started = new ArrayList<>();
+    synchronized (myServices) {
+      for (int i = 1; i < myServices.length; i++) {
+        if (myServices[i] != null) {
+          started.add(myServices[i]);
+        }
+      }
+    }
+    for (TsLintLanguageService service : started) {
+      service.terminateStartedProcess(false);
+    }
+  }
+
+  /**
+   * Counts a linted file, the throughput of a batch run is logged every {@link #REPORT_EVERY_FILES} files.
+   * A batch run ends when no file has been linted for a while.
+   */
+  public void fileProcessed() {
+    synchronized (myStatisticsLock) {
+      final long now = System.nanoTime();
+      if (myBatchFiles == 0 || now - myLastProcessed > BATCH_IDLE_NANOS) {
+        myBatchStart = now;
+        myBatchFiles = 0;
+      }
+      myLastProcessed = now;
+      myBatchFiles++;
+      if (myBatchFiles % REPORT_EVERY_FILES == 0) {
+        TslintUtil.LOG.info(String.format("TSLint batch: %d files linted by %d processes, %.1f files/s",
+                                          myBatchFiles, myServices.length, getFilesPerSecond(myBatchFiles, now - myBatchStart)));
+      }
+    }
+  }
+
+  public static double getFilesPerSecond(int files, long nanos) {
+    return nanos <= 0 ? 0 : files * (double)TimeUnit.SECONDS.toNanos(1) / nanos;
+  }
+
+  @Override
+  public void dispose() {
+  }
+}
@@ -0,0 +1,221 @@
+package com.intellij.lang.javascript.linter.tslint.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.lang.javascript.linter.tslint.TslintUtil;
+import com.intellij.lang.javascript.linter.tslint.config.TsLintState;
+import com.intellij.lang.javascript.linter.tslint.execution.TsLinterError;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Results of linting a file content, keyed by (file path, content hash, config hash, rules directory fingerprint,
+ * tslint version), so that unchanged files aren't sent to the language service again.
+ * <p>
+ * Only the config file itself is hashed, the configs it extends are not resolved: the whole cache is dropped
+ * when any config file changes, see {@link com.intellij.lang.javascript.linter.tslint.highlight.TsLintConfigFileChangeTracker},
+ * and when the settings are applied. Custom rules are fingerprinted by the names, sizes and timestamps of the files
+ * in the rules directory; the fingerprint is taken again after a change under the directory.
+ */
+public final class TsLintResultCache {
+  private static final int MAX_CACHED_RESULTS = 20000;
+
+  private final Map<Key, List<TsLinterError>> myResults = new LinkedHashMap<Key, List<TsLinterError>>(1024, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, List<TsLinterError>> eldest) {
+      return size() > MAX_CACHED_RESULTS;
+    }
+  };
+  /**
+   * config path -> (modification stamp, hash)
+   */
+  private final Map<String, Pair<Long, String>> myConfigHashes = ContainerUtil.newConcurrentMap();
+  /**
+   * package.json path -> (last modified, version)
+   */
+  private final Map<String, Pair<Long, String>> myPackageVersions = ContainerUtil.newConcurrentMap();
+  /**
+   * rules directory path -> fingerprint
+   */
+  private final Map<String, String> myRulesFingerprints = ContainerUtil.newConcurrentMap();
+
+  public TsLintResultCache(@NotNull Project project) {
+    project.getMessageBus().connect(project).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        if (myRulesFingerprints.isEmpty()) return;
+        for (VFileEvent event : events) {
+          myRulesFingerprints.keySet().removeIf(directory -> FileUtil.isAncestor(directory, event.getPath(), false));
+        }
+      }
+    });
+  }
+
+  @NotNull
+  public static TsLintResultCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, TsLintResultCache.class);
+  }
+
+  /**
+   * @return null if the result can't be cached, e.g. the tslint version is unknown
+   */
+  @Nullable
+  public Key createKey(@NotNull String path, @NotNull VirtualFile config, @NotNull String content, @NotNull TsLintState state) {
+    final String version = getPackageVersion(state.getPackagePath());
+    if (version == null) return null;
+    final String configHash = getConfigHash(config);
+    if (configHash == null) return null;
+    final String rulesFingerprint = getRulesFingerprint(state.getRulesDirectory());
+    return new Key(path, hash(content.getBytes(CharsetToolkit.UTF8_CHARSET)), configHash + ":" + rulesFingerprint, version);
+  }
+
+  @Nullable
+  public List<TsLinterError> get(@NotNull Key key) {
+    final List<TsLinterError> errors;
+    synchronized (myResults) {
+      errors = myResults.get(key);
+    }
+    return errors == null ? null : new ArrayList<>(errors);
+  }
+
+  public void put(@NotNull Key key, @NotNull List<TsLinterError> errors) {
+    // global errors are about the setup rather than the content
+    if (errors.stream().anyMatch(TsLinterError::isGlobal)) return;
+    final List<TsLinterError> copy = errors.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(errors));
+    synchronized (myResults) {
+      myResults.put(key, copy);
+    }
+  }
+
+  public void clear() {
+    synchronized (myResults) {
+      myResults.clear();
+    }
+    myConfigHashes.clear();
+    myRulesFingerprints.clear();
+  }
+
+  @Nullable
+  private String getConfigHash(@NotNull VirtualFile config) {
+    final long stamp = config.getModificationStamp();
+    final Pair<Long, String> cached = myConfigHashes.get(config.getPath());
+    if (cached != null && cached.first == stamp) return cached.second;
+
+    final byte[] bytes;
+    try {
+      bytes = config.contentsToByteArray();
+    }
+    catch (IOException e) {
+      TslintUtil.LOG.debug("Can not read " + config.getPath(), e);
+      return null;
+    }
+    final String hash = hash(bytes);
+    myConfigHashes.put(config.getPath(), Pair.create(stamp, hash));
+    return hash;
+  }
+
+  @NotNull
+  private String getRulesFingerprint(@Nullable String rulesDirectory) {
+    if (StringUtil.isEmptyOrSpaces(rulesDirectory)) return "";
+    final String directory = FileUtil.toSystemIndependentName(rulesDirectory.trim());
+    return myRulesFingerprints.computeIfAbsent(directory, TsLintResultCache::computeRulesFingerprint);
+  }
+
+  @NotNull
+  private static String computeRulesFingerprint(@NotNull String directory) {
+    final File root = new File(directory);
+    final List<String> entries = new ArrayList<>();
+    FileUtil.processFilesRecursively(root, file -> {
+      if (file.isFile()) {
+        entries.add(FileUtil.getRelativePath(root, file) + ":" + file.length() + ":" + file.lastModified());
+      }
+      return true;
+    });
+    Collections.sort(entries);
+    return directory + ":" + hash(StringUtil.join(entries, "\n").getBytes(CharsetToolkit.UTF8_CHARSET));
+  }
+
+  @Nullable
+  private String getPackageVersion(@Nullable String packagePath) {
+    if (StringUtil.isEmptyOrSpaces(packagePath)) return null;
+    final File packageJson = new File(packagePath, "package.json");
+    final long lastModified = packageJson.lastModified();
+    if (lastModified == 0) return null;
+    final Pair<Long, String> cached = myPackageVersions.get(packageJson.getPath());
+    if (cached != null && cached.first == lastModified) return cached.second;
+
+    String version = null;
+    try {
+      final JsonElement element = new JsonParser().parse(FileUtil.loadFile(packageJson, CharsetToolkit.UTF8_CHARSET));
+      final JsonElement versionElement = element.isJsonObject() ? ((JsonObject)element).get("version") : null;
+      if (versionElement != null && versionElement.isJsonPrimitive()) {
+        version = versionElement.getAsString();
+      }
+    }
+    catch (IOException | JsonParseException e) {
+      TslintUtil.LOG.debug("Can not read tslint version from " + packageJson.getPath(), e);
+    }
+    if (version == null) return null;
+    myPackageVersions.put(packageJson.getPath(), Pair.create(lastModified, version));
+    return version;
+  }
+
+  @NotNull
+  private static String hash(@NotNull byte[] bytes) {
+    try {
+      return StringUtil.toHexString(MessageDigest.getInstance("SHA-1").digest(bytes));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static final class Key {
+    @NotNull private final String myPath;
+    @NotNull private final String myContentHash;
+    @NotNull private final String myConfigHash;
+    @NotNull private final String myVersion;
+
+    private Key(@NotNull String path, @NotNull String contentHash, @NotNull String configHash, @NotNull String version) {
+      myPath = path;
+      myContentHash = contentHash;
+      myConfigHash = configHash;
+      myVersion = version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key)o;
+      return myPath.equals(key.myPath) &&
+             myContentHash.equals(key.myContentHash) &&
+             myConfigHash.equals(key.myConfigHash) &&
+             myVersion.equals(key.myVersion);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myPath, myContentHash, myConfigHash, myVersion);
+    }
+  }
+}
@@ -7,7 +7,8 @@ import com.intellij.lang.javascript.linter.JSLinterBaseView;
 import com.intellij.lang.javascript.linter.JSLinterConfigurable;
 import com.intellij.lang.javascript.linter.tslint.config.TsLintConfiguration;
 import com.intellij.lang.javascript.linter.tslint.config.TsLintState;
-import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageService;
+import com.intellij.lang.javascript.linter.tslint.service.TsLintLanguageServicePool;
+import com.intellij.lang.javascript.linter.tslint.service.TsLintResultCache;
 import com.intellij.openapi.options.ConfigurationException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
@@ -56,8 +57,8 @@ public class TsLintConfigurable extends JSLinterConfigurable<TsLintState> {
     if (!StringUtil.isEmptyOrSpaces(state.getPackagePath()) && state.isAllowJs()) {
       if (!checkPackageVersionForJs(state.getPackagePath())) throw new ConfigurationException("Linting JavaScript is not supported for this version of TSLint.");
     }
-    final TsLintLanguageService service = TsLintLanguageService.getService(myProject);
-    service.terminateStartedProcess(false);
+    TsLintLanguageServicePool.getInstance(myProject).terminateAll();
+    TsLintResultCache.getInstance(myProject).clear();
   }
 
   private static boolean checkPackageVersionForJs(final String packagePath) {
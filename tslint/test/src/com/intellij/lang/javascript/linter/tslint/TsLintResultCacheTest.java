@@ -0,0 +1,97 @@
+package com.intellij.lang.javascript.linter.tslint;
+
+import com.intellij.lang.javascript.linter.tslint.config.TsLintState;
+import com.intellij.lang.javascript.linter.tslint.execution.TsLinterError;
+import com.intellij.lang.javascript.linter.tslint.service.TsLintResultCache;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+public class TsLintResultCacheTest extends LightPlatformCodeInsightFixtureTestCase {
+  private static final String CONTENT = "let a = 1\n";
+
+  private TsLintResultCache myCache;
+  private File myPackageDir;
+  private TsLintState myState;
+  private VirtualFile myConfig;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCache = new TsLintResultCache(getProject());
+    myPackageDir = FileUtil.createTempDirectory("tslint", null);
+    writeVersion("5.9.1");
+    myState = new TsLintState.Builder().setPackagePath(myPackageDir.getPath()).build();
+    myConfig = myFixture.addFileToProject("tslint.json", "{\"rules\": {\"semicolon\": true}}").getVirtualFile();
+  }
+
+  public void testSameContentIsCached() {
+    final List<TsLinterError> errors = Collections.singletonList(createError());
+    myCache.put(createKey(CONTENT), errors);
+    assertEquals(errors, myCache.get(createKey(CONTENT)));
+    assertNull(myCache.get(createKey(CONTENT + "let b = 2\n")));
+    assertNull(myCache.get(myCache.createKey("/src/other.ts", myConfig, CONTENT, myState)));
+  }
+
+  public void testChangedConfigIsNotCached() throws IOException {
+    myCache.put(createKey(CONTENT), Collections.emptyList());
+    WriteAction.run(() -> VfsUtil.saveText(myConfig, "{\"rules\": {\"semicolon\": false}}"));
+    assertNull(myCache.get(createKey(CONTENT)));
+  }
+
+  public void testChangedVersionIsNotCached() throws IOException {
+    myCache.put(createKey(CONTENT), Collections.emptyList());
+    writeVersion("5.10.0");
+    new File(myPackageDir, "package.json").setLastModified(System.currentTimeMillis() + 10000);
+    assertNull(myCache.get(createKey(CONTENT)));
+  }
+
+  public void testChangedRulesAreNotCached() throws IOException {
+    final File rulesDir = FileUtil.createTempDirectory("rules", null);
+    final File rule = new File(rulesDir, "noFooRule.js");
+    FileUtil.writeToFile(rule, "exports.Rule = 1;");
+    final VirtualFile rulesVirtualDir = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(rulesDir);
+    assertNotNull(rulesVirtualDir);
+    rulesVirtualDir.getChildren();
+    myState = new TsLintState.Builder().setPackagePath(myPackageDir.getPath()).setRulesDirectory(rulesDir.getPath()).build();
+
+    myCache.put(createKey(CONTENT), Collections.emptyList());
+    assertNotNull(myCache.get(createKey(CONTENT)));
+
+    FileUtil.writeToFile(rule, "exports.Rule = 2; // changed");
+    VfsUtil.markDirtyAndRefresh(false, true, true, rulesVirtualDir);
+    assertNull(myCache.get(createKey(CONTENT)));
+  }
+
+  public void testGlobalErrorsAreNotCached() {
+    myCache.put(createKey(CONTENT), Collections.singletonList(new TsLinterError("Can not load tslint")));
+    assertNull(myCache.get(createKey(CONTENT)));
+  }
+
+  public void testNoPackageVersion() {
+    final TsLintState state = new TsLintState.Builder().setPackagePath(new File(myPackageDir, "missing").getPath()).build();
+    assertNull(myCache.createKey("/src/main.ts", myConfig, CONTENT, state));
+  }
+
+  private TsLintResultCache.Key createKey(String content) {
+    final TsLintResultCache.Key key = myCache.createKey("/src/main.ts", myConfig, content, myState);
+    assertNotNull(key);
+    return key;
+  }
+
+  private void writeVersion(String version) throws IOException {
+    FileUtil.writeToFile(new File(myPackageDir, "package.json"), "{\"name\": \"tslint\", \"version\": \"" + version + "\"}");
+  }
+
+  private static TsLinterError createError() {
+    return new TsLinterError("/src/main.ts", 1, 10, 1, 10, "Missing semicolon", "semicolon", false, null);
+  }
+}
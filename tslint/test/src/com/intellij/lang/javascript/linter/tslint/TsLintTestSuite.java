@@ -10,6 +10,7 @@ import org.junit.runners.Suite;
   TsLintConfigCompletionTest.class,
   TsLintConfigHighlightingTest.class,
   TsLintResolveTest.class,
+  TsLintResultCacheTest.class,
   TsLintCodeStyleImportBasicTest.class,
   TsLintCodeStyleImportIntegrationTest.class
 })